@@ -0,0 +1,45 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下行指令从 InternalHttpVerticle 经 event bus 交给 MqttServerVerticle 的信封。
+ * {@code envelope_current} 为 {@link DownlinkRouter#normalize} 加上 {@link LocalMessageCodec} 的原样传递，
+ * {@code envelope_jsonObject} 保留改动前的 JsonObject 信封（本地投递时 JsonObject codec 会 copy，接收方再把 payload 包装成 Buffer）作为对照。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandEnvelopeBenchmark {
+
+    private static final String PAYLOAD = "{\"schemaVersion\":1,\"reqId\":\"7f1c2a9e-1b7d-4c55-9a0e-3c1d5e6f7a8b\","
+            + "\"type\":\"setEmotion\",\"payload\":{\"emotion\":\"happy\"}}";
+
+    private final LocalMessageCodec<DownlinkCommand> codec = new LocalMessageCodec<>(DownlinkCommand.class);
+    private final DownlinkCommand command = new DownlinkCommand("pet-000123", "pet/pet-000123/cmd", 1,
+            Buffer.buffer(PAYLOAD));
+
+    @Benchmark
+    public Buffer envelope_current() {
+        return codec.transform(DownlinkRouter.normalize(command)).payload();
+    }
+
+    @Benchmark
+    public Buffer envelope_jsonObject() {
+        JsonObject envelope = new JsonObject()
+                .put("deviceId", command.deviceId())
+                .put("topic", command.topic())
+                .put("payload", PAYLOAD)
+                .put("qos", command.qos());
+        return Buffer.buffer(envelope.copy().getString("payload", ""));
+    }
+}
@@ -0,0 +1,52 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /internal/command/send 请求体的解析。{@code parse_current} 为 {@link DownlinkCommand#parse}：payload 为原始 JSON 时
+ * 直接切片请求体；{@code parse_currentStringPayload} 为旧版 pet-core 发送的字符串 payload；
+ * {@code parse_objectMapper} 保留改动前的做法（body 解码成 String 后按 record 类型绑定，payload 为 String）作为对照。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DownlinkCommandParseBenchmark {
+
+    record LegacyRequest(String deviceId, String topic, int qos, String payload) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Buffer rawBody = Buffer.buffer("{\"deviceId\":\"pet-000123\",\"topic\":\"pet/pet-000123/cmd\",\"qos\":1,"
+            + "\"payload\":{\"schemaVersion\":1,\"reqId\":\"7f1c2a9e-1b7d-4c55-9a0e-3c1d5e6f7a8b\","
+            + "\"type\":\"setEmotion\",\"payload\":{\"emotion\":\"happy\"}}}");
+    private final Buffer stringBody = Buffer.buffer("{\"deviceId\":\"pet-000123\",\"topic\":\"pet/pet-000123/cmd\",\"qos\":1,"
+            + "\"payload\":\"{\\\"schemaVersion\\\":1,\\\"reqId\\\":\\\"7f1c2a9e-1b7d-4c55-9a0e-3c1d5e6f7a8b\\\","
+            + "\\\"type\\\":\\\"setEmotion\\\",\\\"payload\\\":{\\\"emotion\\\":\\\"happy\\\"}}\"}");
+
+    @Benchmark
+    public DownlinkCommand parse_current() throws IOException {
+        return DownlinkCommand.parse(rawBody);
+    }
+
+    @Benchmark
+    public DownlinkCommand parse_currentStringPayload() throws IOException {
+        return DownlinkCommand.parse(stringBody);
+    }
+
+    @Benchmark
+    public LegacyRequest parse_objectMapper() throws IOException {
+        return objectMapper.readValue(stringBody.toString(StandardCharsets.UTF_8), LegacyRequest.class);
+    }
+}
@@ -0,0 +1,76 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条下行指令经 event bus 的一次请求-回复往返（不含 MQTT 写出）。{@code dispatch_current} 为 {@link DownlinkCommand}
+ * 与 {@link DownlinkReply} 经 {@link LocalMessageCodec} 传递；{@code dispatch_jsonObject} 保留改动前的 JsonObject 指令与回复作为对照。
+ * 用 {@code -prof gc} 对比每条指令的分配。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DownlinkDispatchBenchmark {
+
+    private static final String CODEC_ADDRESS = "bench.command.codec";
+    private static final String JSON_ADDRESS = "bench.command.json";
+    private static final String PAYLOAD = "{\"schemaVersion\":1,\"reqId\":\"7f1c2a9e-1b7d-4c55-9a0e-3c1d5e6f7a8b\","
+            + "\"type\":\"setEmotion\",\"payload\":{\"emotion\":\"happy\"}}";
+
+    private final DeliveryOptions options = new DeliveryOptions().setSendTimeout(3000);
+    private final DownlinkCommand command = new DownlinkCommand("pet-000123", "pet/pet-000123/cmd", 1,
+            Buffer.buffer(PAYLOAD));
+    private Vertx vertx;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        LocalMessageCodec.registerDownlink(vertx);
+        vertx.eventBus().<DownlinkCommand>consumer(CODEC_ADDRESS, message -> {
+            if (message.body().payload().length() > 0) {
+                message.reply(DownlinkReply.SENT);
+            }
+        });
+        vertx.eventBus().<JsonObject>consumer(JSON_ADDRESS, message -> {
+            Buffer payload = Buffer.buffer(message.body().getString("payload", ""));
+            if (payload.length() > 0) {
+                message.reply(new JsonObject().put("ok", true).put("reason", "SENT"));
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public DownlinkReply dispatch_current() {
+        return vertx.eventBus().<DownlinkReply>request(CODEC_ADDRESS, DownlinkRouter.normalize(command), options)
+                .toCompletionStage().toCompletableFuture().join().body();
+    }
+
+    @Benchmark
+    public boolean dispatch_jsonObject() {
+        JsonObject envelope = new JsonObject()
+                .put("deviceId", command.deviceId())
+                .put("topic", command.topic())
+                .put("payload", PAYLOAD)
+                .put("qos", command.qos());
+        return vertx.eventBus().<JsonObject>request(JSON_ADDRESS, envelope, options)
+                .toCompletionStage().toCompletableFuture().join().body().getBoolean("ok", false);
+    }
+}
@@ -0,0 +1,65 @@
+package com.deskpet.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每次 PINGREQ/PUBLISH 都会刷新会话活动时间，超时检测按 {@link EndpointSession#expiresAtMs()} 读取。
+ * {@code activity_current} 为 volatile long 字段写入；{@code activity_instant} 保留按 Instant 记录活动时间的旧做法、
+ * {@code activity_atomicLong} 保留改为紧凑会话前的 AtomicLong 包装作为对照，{@code activity_lazySet} 为有序写的候选。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EndpointSessionBenchmark {
+
+    private EndpointSession session;
+    private volatile Instant lastActivity;
+    private final AtomicLong lastActivityMs = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        session = new EndpointSession("pet-000123", null, 0, System.currentTimeMillis(), "127.0.0.1", 120_000, null, 0,
+                null, null, null);
+        lastActivity = Instant.now();
+    }
+
+    @Benchmark
+    public void activity_current() {
+        session.updateActivity();
+    }
+
+    @Benchmark
+    public void activity_instant() {
+        lastActivity = Instant.now();
+    }
+
+    @Benchmark
+    public void activity_atomicLong() {
+        lastActivityMs.set(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void activity_lazySet() {
+        lastActivityMs.lazySet(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long expiresAt_current() {
+        return session.expiresAtMs();
+    }
+
+    @Benchmark
+    public Instant lastActivity_current() {
+        return session.lastActivity();
+    }
+}
@@ -0,0 +1,54 @@
+package com.deskpet.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每条上行都会调用的计数方法。{@link GatewayMetrics#onTelemetry()} 等在 increment 之后还要 {@code sum()} 一遍所有 cell
+ * 作为返回值，多个 event loop 同时计数时 cell 增多、sum 变贵；这里在 4 线程竞争下与只 increment、
+ * 以及改用 AtomicLong 精确返回的候选做法对比。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class GatewayMetricsBenchmark {
+
+    private final GatewayMetrics metrics = GatewayMetrics.getInstance();
+    private final LongAdder adder = new LongAdder();
+    private final AtomicLong atomic = new AtomicLong();
+
+    @Benchmark
+    public long telemetry_current() {
+        return metrics.onTelemetry();
+    }
+
+    @Benchmark
+    public void telemetry_incrementOnly() {
+        adder.increment();
+    }
+
+    @Benchmark
+    public long telemetry_atomicLong() {
+        return atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    public long connect_current() {
+        return metrics.onConnect();
+    }
+
+    @Benchmark
+    public long commandSend_current() {
+        return metrics.onCommandSend();
+    }
+}
@@ -0,0 +1,107 @@
+package com.deskpet.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每条 PUBLISH/SUBSCRIBE 都要走的 topic 校验。{@code *_current} 调用 {@link TopicAcl} 现有实现，
+ * {@code *_noConcat} 为不拼接字符串、按区间比较的候选实现，配合 -prof gc 对比耗时与分配。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicAclBenchmark {
+
+    private static final String PREFIX = "pet/";
+
+    /**
+     * telemetry 为第一个分支命中，req 为最后一个分支命中，foreign 为其他设备的 topic（全部分支都不命中）。
+     */
+    @Param({"telemetry", "req", "foreign"})
+    public String kind;
+
+    private String deviceId;
+    private String publishTopic;
+    private String subscribeTopic;
+
+    @Setup
+    public void setUp() {
+        deviceId = "pet-000123";
+        String owner = "foreign".equals(kind) ? "pet-000124" : deviceId;
+        String suffix = "foreign".equals(kind) ? "telemetry" : kind;
+        publishTopic = PREFIX + owner + "/" + suffix;
+        subscribeTopic = PREFIX + owner + "/cmd/cbor";
+    }
+
+    @Benchmark
+    public boolean publish_current() {
+        return TopicAcl.isValidPublish(deviceId, publishTopic);
+    }
+
+    @Benchmark
+    public boolean publish_noConcat() {
+        return isValidPublishNoConcat(deviceId, publishTopic);
+    }
+
+    @Benchmark
+    public boolean subscribe_current() {
+        return TopicAcl.isValidSubscribe(deviceId, subscribeTopic);
+    }
+
+    @Benchmark
+    public boolean subscribe_noConcat() {
+        return isValidSubscribeNoConcat(deviceId, subscribeTopic);
+    }
+
+    @Benchmark
+    public String callbackPath_current() {
+        return TopicAcl.resolveCallbackPath(publishTopic);
+    }
+
+    static boolean isValidPublishNoConcat(String deviceId, String topic) {
+        int suffixAt = suffixOffset(deviceId, topic);
+        return suffixAt > 0
+                && (suffixIs(topic, suffixAt, "telemetry")
+                || suffixIs(topic, suffixAt, "cmd/ack")
+                || suffixIs(topic, suffixAt, "event")
+                || suffixIs(topic, suffixAt, "req"));
+    }
+
+    static boolean isValidSubscribeNoConcat(String deviceId, String topic) {
+        int suffixAt = suffixOffset(deviceId, topic);
+        if (suffixAt < 0) {
+            return false;
+        }
+        if (suffixIs(topic, suffixAt, "cmd") || suffixIs(topic, suffixAt, "resp")) {
+            return true;
+        }
+        int slash = topic.lastIndexOf('/');
+        return slash > suffixAt && PayloadFormat.fromTopicSuffix(topic) != null
+                && (topic.startsWith("cmd", suffixAt) && slash == suffixAt + 3
+                || topic.startsWith("resp", suffixAt) && slash == suffixAt + 4);
+    }
+
+    /**
+     * topic 以 pet/{deviceId}/ 开头时返回其后第一个字符的下标，否则返回 -1。
+     */
+    private static int suffixOffset(String deviceId, String topic) {
+        int slashAt = PREFIX.length() + deviceId.length();
+        if (topic.length() <= slashAt + 1 || !topic.startsWith(PREFIX)
+                || !topic.startsWith(deviceId, PREFIX.length()) || topic.charAt(slashAt) != '/') {
+            return -1;
+        }
+        return slashAt + 1;
+    }
+
+    private static boolean suffixIs(String topic, int offset, String suffix) {
+        return topic.length() - offset == suffix.length() && topic.startsWith(suffix, offset);
+    }
+}
@@ -4,21 +4,61 @@ import com.deskpet.gateway.InternalHttpVerticle;
 import com.deskpet.gateway.MqttServerVerticle;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.logging.log4j.LogManager;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class GatewayApplication {
 
-    public static final String ROUTE_MAP_NAME = "gateway.device.routing";
     public static final String COMMAND_ADDRESS_PREFIX = "gateway.command.";
+    public static final String VERTICLE_MAP_NAME = "gateway.verticles";
+    public static final String STATS_ADDRESS_SUFFIX = ".stats";
+    public static final String BROADCAST_ADDRESS_SUFFIX = ".broadcast";
+    public static final String DRAIN_ADDRESS_SUFFIX = ".drain";
+    public static final String DRAIN_ADDRESS = "gateway.drain";
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 10 * 60 * 1000L;
 
     public static void main(String[] args) {
         configureConsoleEncoding();
         Vertx vertx = Vertx.vertx();
         publishVerticle(vertx, MqttServerVerticle.class.getName());
         publishVerticle(vertx, InternalHttpVerticle.class.getName());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(vertx), "gateway-shutdown"));
+    }
+
+    /**
+     * SIGTERM 时先请求优雅下线（drain.enabled=false 时立即返回），完成后关闭 Vert.x 并刷出日志。
+     */
+    private static void shutdown(Vertx vertx) {
+        CountDownLatch drained = new CountDownLatch(1);
+        vertx.eventBus().<JsonObject>request(DRAIN_ADDRESS, new JsonObject().put("source", "signal"),
+                        new DeliveryOptions().setSendTimeout(SHUTDOWN_TIMEOUT_MS))
+                .onComplete(ar -> {
+                    if (ar.failed()) {
+                        log.warn("Drain on shutdown failed: {}", ar.cause().getMessage());
+                    }
+                    drained.countDown();
+                });
+        await(drained);
+        CountDownLatch closed = new CountDownLatch(1);
+        vertx.close().onComplete(ar -> closed.countDown());
+        await(closed);
+        LogManager.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private static void configureConsoleEncoding() {
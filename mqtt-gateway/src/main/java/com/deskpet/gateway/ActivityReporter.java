@@ -0,0 +1,117 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把设备最近活动时间批量上报给 pet-core（{@value #BATCH_PATH}），由 pet-core 一条语句更新 device_session.last_seen。
+ * <p>
+ * 每个 MqttServerVerticle 持有一个，只在该实例的 event loop 上运行。连接建立时由 {@link #track} 登记会话，
+ * 不再遍历进程级的 {@link SessionIndex}；已关闭的会话在扫描到时移除。活动时间取自
+ * {@link EndpointSession#lastActivityMs()}，比上次上报推进至少 minAdvanceMs 的设备进入本批，至多 maxBatchSize 台。
+ * 会话按轮转顺序扫描，每次从上一批停下的位置继续，已扫描的会话移到队尾，批次装满时排在后面的设备下一次优先上报。
+ * 发送成功后才记下已上报的时间，失败的设备下一次重新上报。同一时间只有一批在途。
+ */
+@Slf4j
+final class ActivityReporter {
+
+    static final String BATCH_PATH = "/internal/gateway/activity/batch";
+
+    // 本实例登记的会话，队首为下一次最先扫描的
+    private final ArrayDeque<EndpointSession> owned = new ArrayDeque<>();
+    private final CoreClient coreClient;
+    private final GatewayConfig.Activity config;
+    private final String instanceId;
+    private final GatewayMetrics metrics;
+    private boolean flushing;
+
+    ActivityReporter(CoreClient coreClient, GatewayConfig.Activity config, String instanceId, GatewayMetrics metrics) {
+        this.coreClient = coreClient;
+        this.config = config;
+        this.instanceId = instanceId;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 登记本实例新建立的会话。
+     */
+    void track(EndpointSession session) {
+        owned.addLast(session);
+    }
+
+    int trackedCount() {
+        return owned.size();
+    }
+
+    /**
+     * 上报一批有新活动的设备，完成（含失败）后完成；没有需要上报的设备或上一批仍在途时立即完成。
+     */
+    Future<Void> flush() {
+        if (flushing) {
+            return Future.succeededFuture();
+        }
+        List<EndpointSession> reported = new ArrayList<>();
+        List<Long> reportedMs = new ArrayList<>();
+        JsonArray deviceIds = new JsonArray();
+        JsonArray lastSeen = new JsonArray();
+        for (int remaining = owned.size(); remaining > 0 && reported.size() < config.maxBatchSize(); remaining--) {
+            EndpointSession session = owned.pollFirst();
+            if (session.closed()) {
+                continue;
+            }
+            owned.addLast(session);
+            long lastActivityMs = session.lastActivityMs();
+            if (lastActivityMs - session.reportedActivityMs() >= config.minAdvanceMs()) {
+                reported.add(session);
+                reportedMs.add(lastActivityMs);
+                deviceIds.add(session.deviceId());
+                lastSeen.add(lastActivityMs);
+            }
+        }
+        if (reported.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        flushing = true;
+        Promise<Void> sent = Promise.promise();
+        JsonObject body = new JsonObject()
+                .put("gatewayInstanceId", instanceId)
+                .put("deviceIds", deviceIds)
+                .put("lastSeen", lastSeen);
+        coreClient.postCallback(BATCH_PATH, body.toBuffer(), ar -> {
+            flushing = false;
+            if (CoreClient.isFailure(ar)) {
+                metrics.onActivityBatchFail();
+                log.warn("[ACTIVITY] 最近活动时间上报失败: devices={}, status={}", reported.size(), CoreClient.statusOf(ar));
+            } else {
+                for (int i = 0; i < reported.size(); i++) {
+                    reported.get(i).reportedActivityMs(reportedMs.get(i));
+                }
+                metrics.onActivityBatch(reported.size(), updatedCount(ar, reported.size()));
+            }
+            sent.complete();
+        });
+        return sent.future();
+    }
+
+    /**
+     * pet-core 返回的实际更新行数；响应体缺失或无法解析时按上报数计。
+     */
+    private static int updatedCount(AsyncResult<HttpResponse<Buffer>> ar, int rows) {
+        try {
+            JsonObject response = ar.result().bodyAsJsonObject();
+            return response == null ? rows : response.getInteger("updated", rows);
+        } catch (RuntimeException e) {
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.deskpet.gateway;
+
+/**
+ * 发往 pet-core 的进程级自适应并发上限（AIMD），所有 MqttServerVerticle 共享。
+ * <p>
+ * 每类接口各维护两条 RTT 指数滑动平均：短期的反映当前排队情况，长期的作为基线并缓慢跟随常态变化
+ * （批量回调本来就比鉴权慢，所以不混在一起比较）。超时、5xx、429，或短期 RTT 超过基线 rttTolerance 倍时，
+ * 上限乘以 backoffRatio，同一个短期 RTT 内最多减一次，避免同一批慢请求把上限一路压到底；否则在并发用到上限一半以上时
+ * 每个请求加 1/limit，即每轮 RTT 约加 1。
+ */
+final class AdaptiveLimiter {
+
+    private static final double SHORT_ALPHA = 0.2;
+    private static final double LONG_ALPHA = 0.01;
+    // 样本太少时基线不可信，只按失败减小
+    private static final int WARMUP_SAMPLES = 20;
+    private static final long MIN_DECREASE_INTERVAL_NANOS = 10_000_000L;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final double[] shortRttNanos;
+    private final double[] longRttNanos;
+    private final int[] samples;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    AdaptiveLimiter(GatewayConfig.CoreGuard config) {
+        this.minLimit = config.minLimit();
+        this.maxLimit = config.maxLimit();
+        this.backoffRatio = config.backoffRatio();
+        this.rttTolerance = config.rttTolerance();
+        this.limit = config.initialLimit();
+        int endpoints = CoreEndpoint.values().length;
+        this.shortRttNanos = new double[endpoints];
+        this.longRttNanos = new double[endpoints];
+        this.samples = new int[endpoints];
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 拿到许可后没有发出请求（如熔断中），归还许可且不记样本。
+     */
+    synchronized void cancel() {
+        inFlight--;
+    }
+
+    /**
+     * 请求结束：归还许可并按结果调整上限。dropped 表示超时、连接失败、5xx 或 429，其耗时不计入 RTT。
+     */
+    synchronized void release(CoreEndpoint endpoint, long nowNanos, long rttNanos, boolean dropped) {
+        inFlight--;
+        int index = endpoint.ordinal();
+        if (!dropped) {
+            if (samples[index]++ == 0) {
+                shortRttNanos[index] = rttNanos;
+                longRttNanos[index] = rttNanos;
+            } else {
+                shortRttNanos[index] += SHORT_ALPHA * (rttNanos - shortRttNanos[index]);
+                longRttNanos[index] += LONG_ALPHA * (rttNanos - longRttNanos[index]);
+            }
+        }
+        boolean slow = samples[index] >= WARMUP_SAMPLES && shortRttNanos[index] > longRttNanos[index] * rttTolerance;
+        if (dropped || slow) {
+            long interval = Math.max((long) shortRttNanos[index], MIN_DECREASE_INTERVAL_NANOS);
+            if (!decreased || nowNanos - lastDecreaseNanos >= interval) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = nowNanos;
+                decreased = true;
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * 该类接口的基线 RTT（长期滑动平均），尚无样本时返回 0。
+     */
+    synchronized long baselineRttNanos(CoreEndpoint endpoint) {
+        return (long) longRttNanos[endpoint.ordinal()];
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
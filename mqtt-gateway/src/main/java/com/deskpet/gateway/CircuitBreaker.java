@@ -0,0 +1,119 @@
+package com.deskpet.gateway;
+
+/**
+ * 一类 pet-core 接口的熔断器，进程内共享。
+ * <p>
+ * 连续 failureThreshold 次失败（连接失败、超时、5xx、429）后打开 openMs，期间直接拒绝；到期后进入半开，
+ * 只放行一个探测请求，成功则关闭，失败则重新打开。pet-core 回 Retry-After 时按它给出的时长打开。
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED(0), OPEN(1), HALF_OPEN(2);
+
+        private final int code;
+
+        State(int code) {
+            this.code = code;
+        }
+
+        int code() {
+            return code;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openMs;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilMs;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    /**
+     * 打开且未到期时返回 true，调用方不必排队等待并发许可。
+     */
+    synchronized boolean isOpen(long nowMs) {
+        return state == State.OPEN && nowMs < openUntilMs;
+    }
+
+    /**
+     * 是否放行一个请求；放行后必须以 {@link #onSuccess()} 或 {@link #onFailure(long)} 报告结果。
+     */
+    synchronized boolean allow(long nowMs) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowMs < openUntilMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * 放行后没有发出请求：半开时交还探测名额，不记结果。
+     */
+    synchronized void onCancelled() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * 记录一次失败，因此打开时返回 true。
+     */
+    synchronized boolean onFailure(long nowMs) {
+        if (state == State.OPEN) {
+            return false;
+        }
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            return open(nowMs + openMs);
+        }
+        return false;
+    }
+
+    /**
+     * 按 pet-core 的 Retry-After 打开到 untilMs，已打开更久时不缩短；因此从非打开状态转为打开时返回 true。
+     */
+    synchronized boolean openUntil(long untilMs) {
+        if (state == State.OPEN) {
+            openUntilMs = Math.max(openUntilMs, untilMs);
+            return false;
+        }
+        return open(untilMs);
+    }
+
+    private boolean open(long untilMs) {
+        state = State.OPEN;
+        openUntilMs = untilMs;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        return true;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
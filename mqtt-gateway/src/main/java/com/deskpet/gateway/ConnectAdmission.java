@@ -0,0 +1,218 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.vertx.core.Vertx;
+import io.vertx.mqtt.MqttEndpoint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * CONNECT 准入控制：限制正在进行中的 pet-core 鉴权请求数与连接速率，超出部分进入 FIFO 等待队列。
+ * <p>
+ * 全局在途数与令牌桶由所有 MqttServerVerticle 实例共享（{@link Shared}）；每个实例自己的在途数与等待队列
+ * 只在其 event loop 上访问。排队超时或队列已满时以 SERVER_UNAVAILABLE 拒绝，让设备自行退避重连。
+ */
+@Slf4j
+final class ConnectAdmission {
+
+    private static final long DRAIN_INTERVAL_MS = 10;
+
+    private final Vertx vertx;
+    private final GatewayConfig.Admission config;
+    private final Shared shared;
+    private final GatewayMetrics metrics;
+    private final LongSupplier clock;
+    private final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+    private int inFlight;
+    private long drainTimerId = -1;
+
+    ConnectAdmission(Vertx vertx, GatewayConfig.Admission config, GatewayMetrics metrics) {
+        this(vertx, config, Shared.get(config), metrics, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 毫秒时钟，用于计算排队时长
+     */
+    ConnectAdmission(Vertx vertx, GatewayConfig.Admission config, Shared shared, GatewayMetrics metrics,
+                     LongSupplier clock) {
+        this.vertx = vertx;
+        this.config = config;
+        this.shared = shared;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    /**
+     * 申请一次鉴权许可。获得许可时调用 start；鉴权结束后必须调用 {@link #release()}。
+     */
+    void admit(MqttEndpoint endpoint, Consumer<MqttEndpoint> start) {
+        if (!config.enabled()) {
+            start.accept(endpoint);
+            return;
+        }
+        if (queue.isEmpty() && tryAcquire()) {
+            metrics.onConnectAdmissionWait(0);
+            start.accept(endpoint);
+            return;
+        }
+        if (queue.size() >= config.maxQueue()) {
+            shed(endpoint, "queue_full");
+            return;
+        }
+        Waiting waiting = new Waiting(endpoint, start, clock.getAsLong());
+        endpoint.closeHandler(v -> waiting.cancelled = true);
+        queue.addLast(waiting);
+        metrics.onConnectQueued(1);
+        scheduleDrain();
+    }
+
+    void release() {
+        if (!config.enabled()) {
+            return;
+        }
+        inFlight--;
+        shared.inFlight.decrementAndGet();
+        drain();
+    }
+
+    private boolean tryAcquire() {
+        if (inFlight >= config.maxInFlightPerVerticle()) {
+            return false;
+        }
+        if (!shared.tryAcquireSlot()) {
+            return false;
+        }
+        if (!shared.tryAcquireRate()) {
+            shared.inFlight.decrementAndGet();
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private void drain() {
+        long now = clock.getAsLong();
+        while (!queue.isEmpty()) {
+            Waiting head = queue.peekFirst();
+            if (head.cancelled) {
+                queue.pollFirst();
+                metrics.onConnectQueued(-1);
+                continue;
+            }
+            long waitedMs = now - head.enqueuedAtMs;
+            if (waitedMs > config.maxWaitMs()) {
+                queue.pollFirst();
+                metrics.onConnectQueued(-1);
+                shed(head.endpoint, "timeout");
+                continue;
+            }
+            if (!tryAcquire()) {
+                break;
+            }
+            queue.pollFirst();
+            metrics.onConnectQueued(-1);
+            metrics.onConnectAdmissionWait(waitedMs);
+            head.start.accept(head.endpoint);
+        }
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainTimerId >= 0) {
+            return;
+        }
+        drainTimerId = vertx.setTimer(DRAIN_INTERVAL_MS, id -> {
+            drainTimerId = -1;
+            drain();
+        });
+    }
+
+    private void shed(MqttEndpoint endpoint, String reason) {
+        metrics.onConnectShed(reason);
+        log.warn("[Admission] 连接被限流拒绝: deviceId={}, reason={}", endpoint.clientIdentifier(), reason);
+        endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE);
+    }
+
+    private static final class Waiting {
+        private final MqttEndpoint endpoint;
+        private final Consumer<MqttEndpoint> start;
+        private final long enqueuedAtMs;
+        private boolean cancelled;
+
+        private Waiting(MqttEndpoint endpoint, Consumer<MqttEndpoint> start, long enqueuedAtMs) {
+            this.endpoint = endpoint;
+            this.start = start;
+            this.enqueuedAtMs = enqueuedAtMs;
+        }
+    }
+
+    /**
+     * 进程级共享部分：全局在途鉴权数与 CONNECT 速率（GCRA 形式的令牌桶，单个 CAS 完成判断与扣减）。
+     */
+    static final class Shared {
+        private static Shared instance;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong theoreticalArrivalNanos;
+        private final LongSupplier nanoClock;
+        private final int maxInFlight;
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+
+        Shared(int maxInFlight, int ratePerSec, int burst) {
+            this(maxInFlight, ratePerSec, burst, System::nanoTime);
+        }
+
+        Shared(int maxInFlight, int ratePerSec, int burst, LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            this.theoreticalArrivalNanos = new AtomicLong(nanoClock.getAsLong());
+            this.maxInFlight = maxInFlight;
+            this.emissionIntervalNanos = ratePerSec > 0 ? 1_000_000_000L / ratePerSec : 0;
+            this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+        }
+
+        static synchronized Shared get(GatewayConfig.Admission config) {
+            if (instance == null) {
+                instance = new Shared(config.maxInFlight(), config.connectRatePerSec(), config.connectBurst());
+                GatewayMetrics.getInstance().registerConnectInFlight(instance.inFlight::get);
+            }
+            return instance;
+        }
+
+        boolean tryAcquireSlot() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= maxInFlight) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean tryAcquireRate() {
+            if (emissionIntervalNanos == 0) {
+                return true;
+            }
+            while (true) {
+                long now = nanoClock.getAsLong();
+                long tat = theoreticalArrivalNanos.get();
+                long base = Math.max(tat, now);
+                if (base - now > burstToleranceNanos) {
+                    return false;
+                }
+                if (theoreticalArrivalNanos.compareAndSet(tat, base + emissionIntervalNanos)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.parsetools.RecordParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 到 pet-core 的二进制长连接，帧格式见 {@link RpcFrame}。
+ * <p>
+ * 每个 MqttServerVerticle 持有一条，只在该实例的 event loop 上访问。连接建立后先发送 HELLO 完成内部 Token 校验，
+ * 之后双向多路复用：网关发起批量上行，pet-core 发起下行指令。在途请求不超过 maxInFlight，超出或写缓冲已满时
+ * 立即以 {@link NotSent} 失败，由调用方回退到 HTTP；已写出的请求超时或连接断开时 pet-core 可能已经处理，
+ * 以其他异常失败，调用方不应重发。连接断开后按指数退避自动重连。
+ */
+@Slf4j
+final class CoreChannel {
+
+    /**
+     * 处理 pet-core 发来的请求。
+     */
+    @FunctionalInterface
+    interface InboundHandler {
+        Future<Reply> handle(byte op, Buffer body);
+    }
+
+    record Reply(int status, Buffer body) {
+    }
+
+    private final Vertx vertx;
+    private final NetClient netClient;
+    private final GatewayConfig.Rpc config;
+    private final String token;
+    private final String instanceId;
+    private final InboundHandler inbound;
+    private final GatewayMetrics metrics;
+    private final Map<Integer, Pending> pending = new HashMap<>();
+    private NetSocket socket;
+    private boolean ready;
+    private boolean closed;
+    private int nextId = 1;
+    private long reconnectDelayMs;
+
+    CoreChannel(Vertx vertx, GatewayConfig.Rpc config, String token, String instanceId,
+                InboundHandler inbound, GatewayMetrics metrics) {
+        this.vertx = vertx;
+        this.netClient = vertx.createNetClient(new NetClientOptions()
+                .setTcpNoDelay(true)
+                .setTcpKeepAlive(true)
+                .setConnectTimeout(config.timeoutMs()));
+        this.config = config;
+        this.token = token;
+        this.instanceId = instanceId;
+        this.inbound = inbound;
+        this.metrics = metrics;
+    }
+
+    void start() {
+        connect();
+    }
+
+    void close() {
+        closed = true;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    boolean ready() {
+        return ready;
+    }
+
+    /**
+     * 发起一次请求。通道未就绪、在途已满或写缓冲已满时立即以 {@link NotSent} 失败。
+     */
+    Future<Reply> request(byte op, Buffer body) {
+        if (!ready) {
+            return Future.failedFuture(new NotSent("core channel not ready"));
+        }
+        if (pending.size() >= config.maxInFlight() || socket.writeQueueFull()) {
+            metrics.onRpcBusy();
+            return Future.failedFuture(new NotSent("core channel busy"));
+        }
+        metrics.onRpcRequest();
+        return send(op, body);
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        netClient.connect(config.port(), config.host()).onComplete(ar -> {
+            if (ar.failed()) {
+                log.warn("[RPC] 连接 pet-core 失败: {}:{} error={}", config.host(), config.port(), ar.cause().getMessage());
+                scheduleReconnect();
+                return;
+            }
+            attach(ar.result());
+        });
+    }
+
+    private void attach(NetSocket connected) {
+        this.socket = connected;
+        // 写缓冲上限放宽到一帧的最大长度，单个大批次不至于立即触发背压
+        connected.setWriteQueueMaxSize(config.maxFrameBytes());
+        RecordParser parser = RecordParser.newFixed(RpcFrame.LENGTH_BYTES);
+        parser.handler(new Handler<>() {
+            private int frameLength = -1;
+
+            @Override
+            public void handle(Buffer chunk) {
+                if (frameLength < 0) {
+                    frameLength = chunk.getInt(0);
+                    if (frameLength < RpcFrame.HEADER_BYTES || frameLength > config.maxFrameBytes()) {
+                        log.warn("[RPC] 非法帧长度，断开连接: length={}", frameLength);
+                        connected.close();
+                        return;
+                    }
+                    parser.fixedSizeMode(frameLength);
+                    return;
+                }
+                frameLength = -1;
+                parser.fixedSizeMode(RpcFrame.LENGTH_BYTES);
+                onFrame(connected, RpcFrame.decode(chunk));
+            }
+        });
+        connected.handler(parser);
+        connected.closeHandler(v -> onClosed(connected));
+        connected.exceptionHandler(e -> {
+            log.warn("[RPC] 连接异常: {}", e.getMessage());
+            connected.close();
+        });
+
+        JsonObject hello = new JsonObject().put("token", token).put("instanceId", instanceId);
+        send(RpcFrame.OP_HELLO, hello.toBuffer()).onComplete(ar -> {
+            if (connected != socket) {
+                return;
+            }
+            if (ar.succeeded() && ar.result().status() == 200) {
+                ready = true;
+                reconnectDelayMs = 0;
+                metrics.onRpcConnected(1);
+                log.info("[RPC] 已连接 pet-core: {}:{}", config.host(), config.port());
+                return;
+            }
+            log.warn("[RPC] HELLO 被拒绝: status={}", ar.succeeded() ? ar.result().status() : -1);
+            connected.close();
+        });
+    }
+
+    private Future<Reply> send(byte op, Buffer body) {
+        int id = allocateId();
+        Promise<Reply> promise = Promise.promise();
+        long timerId = vertx.setTimer(config.timeoutMs(), t -> {
+            Pending expired = pending.remove(id);
+            if (expired != null) {
+                expired.promise.fail(new VertxException("core channel request timeout", true));
+            }
+        });
+        pending.put(id, new Pending(promise, timerId));
+        socket.write(RpcFrame.request(id, op, body).encode());
+        return promise.future();
+    }
+
+    private void onFrame(NetSocket from, RpcFrame frame) {
+        if (!frame.isRequest()) {
+            Pending waiting = pending.remove(frame.id());
+            if (waiting != null) {
+                vertx.cancelTimer(waiting.timerId);
+                waiting.promise.complete(new Reply(frame.status(), frame.body()));
+            }
+            return;
+        }
+        metrics.onRpcInbound();
+        inbound.handle(frame.op(), frame.body()).onComplete(ar -> {
+            Reply reply = ar.succeeded() ? ar.result() : new Reply(500, null);
+            if (from == socket) {
+                from.write(RpcFrame.response(frame.id(), frame.op(), reply.status(), reply.body()).encode());
+            }
+        });
+    }
+
+    private void onClosed(NetSocket closedSocket) {
+        if (closedSocket != socket) {
+            return;
+        }
+        if (ready) {
+            metrics.onRpcConnected(-1);
+            log.warn("[RPC] 与 pet-core 的连接断开，在途请求={}", pending.size());
+        }
+        ready = false;
+        socket = null;
+        List<Pending> failed = new ArrayList<>(pending.values());
+        pending.clear();
+        for (Pending waiting : failed) {
+            vertx.cancelTimer(waiting.timerId);
+            waiting.promise.fail(new VertxException("core channel closed", true));
+        }
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if (closed) {
+            return;
+        }
+        reconnectDelayMs = reconnectDelayMs == 0
+                ? config.reconnectMs()
+                : Math.min(config.maxReconnectMs(), reconnectDelayMs * 2);
+        vertx.setTimer(reconnectDelayMs, id -> connect());
+    }
+
+    private int allocateId() {
+        while (true) {
+            int id = nextId;
+            nextId = id == Integer.MAX_VALUE ? 1 : id + 1;
+            if (!pending.containsKey(id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 请求是否因未写出而失败（pet-core 一定没有收到）。
+     */
+    static boolean isNotSent(AsyncResult<?> ar) {
+        return ar.failed() && ar.cause() instanceof NotSent;
+    }
+
+    private record Pending(Promise<Reply> promise, long timerId) {
+    }
+
+    /**
+     * 未写出就失败的请求：通道未就绪或繁忙。
+     */
+    static final class NotSent extends VertxException {
+        private static final long serialVersionUID = 1L;
+
+        private NotSent(String message) {
+            super(message, true);
+        }
+    }
+}
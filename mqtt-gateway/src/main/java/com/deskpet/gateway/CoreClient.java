@@ -0,0 +1,196 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 网关调用 pet-core 内部接口的 HTTP 客户端，统一处理内部 Token、准入与重试。
+ * 鉴权与上行回调经过 {@link CoreGuard}（长连接批量上行经 {@link #acquire} 同样经过）；get/postJson 直接构造的请求（物模型拉取、下线迁移等控制面调用）不经过。
+ */
+final class CoreClient {
+
+    static final String HEADER_INTERNAL_TOKEN = "X-Internal-Token";
+    static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private final Vertx vertx;
+    private final WebClient webClient;
+    private final GatewayConfig config;
+    private final CoreGuard guard;
+    private final long maxBackoffMs;
+
+    CoreClient(Vertx vertx, WebClient webClient, GatewayConfig config) {
+        this.vertx = vertx;
+        this.webClient = webClient;
+        this.config = config;
+        this.guard = new CoreGuard(vertx, config.coreGuard(), GatewayMetrics.getInstance());
+        this.maxBackoffMs = config.coreGuard().maxBackoffMs();
+    }
+
+    HttpRequest<Buffer> get(String path) {
+        return withToken(webClient.getAbs(config.coreInternalBaseUrl() + path));
+    }
+
+    HttpRequest<Buffer> postJson(String path) {
+        return withToken(webClient.postAbs(config.coreInternalBaseUrl() + path))
+                .putHeader("Content-Type", "application/json");
+    }
+
+    private HttpRequest<Buffer> withToken(HttpRequest<Buffer> request) {
+        if (!config.internalToken().isBlank()) {
+            request.putHeader(HEADER_INTERNAL_TOKEN, config.internalToken());
+        }
+        return request;
+    }
+
+    /**
+     * 不经 HTTP 发出的调用（长连接批量上行）申请准入，请求结束后以 {@link CoreGuard.Permit#releaseRpc} 归还。
+     */
+    Future<CoreGuard.Permit> acquire(CoreEndpoint endpoint) {
+        return guard.acquire(endpoint);
+    }
+
+    /**
+     * 以回调配置（callback.*）发送 JSON 请求，按路径归入对应的熔断器。
+     */
+    void postCallback(String path, Buffer payload, Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
+        sendWithRetry(CoreEndpoint.fromPath(path), () -> postJson(path), payload, config.callbackTimeoutMs(),
+                config.callbackMaxRetries(), config.callbackRetryDelayMs(), null, handler);
+    }
+
+    /**
+     * 经 {@link CoreGuard} 准入后发送，连接失败、超时、5xx 与 429 时重试。重试间隔从 retryDelayMs 起按次数翻倍并加抖动，
+     * 不超过 coreGuard.maxBackoffMs；响应带 Retry-After 时至少等待该时长，超过 maxBackoffMs 则不再重试。
+     * 被准入拒绝的请求不重试，以 {@link CoreGuard.Rejected} 失败返回。
+     */
+    void sendWithRetry(CoreEndpoint endpoint,
+                       Supplier<HttpRequest<Buffer>> requestSupplier,
+                       Buffer payload,
+                       int timeoutMs,
+                       int maxRetries,
+                       int retryDelayMs,
+                       Runnable onRetry,
+                       Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
+        new Call(endpoint, requestSupplier, payload, timeoutMs, maxRetries, retryDelayMs, onRetry, handler).send();
+    }
+
+    private final class Call {
+        private final CoreEndpoint endpoint;
+        private final Supplier<HttpRequest<Buffer>> requestSupplier;
+        private final Buffer payload;
+        private final int timeoutMs;
+        private final int maxRetries;
+        private final int retryDelayMs;
+        private final Runnable onRetry;
+        private final Handler<AsyncResult<HttpResponse<Buffer>>> handler;
+        private int attempt;
+
+        private Call(CoreEndpoint endpoint, Supplier<HttpRequest<Buffer>> requestSupplier, Buffer payload, int timeoutMs,
+                     int maxRetries, int retryDelayMs, Runnable onRetry, Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
+            this.endpoint = endpoint;
+            this.requestSupplier = requestSupplier;
+            this.payload = payload;
+            this.timeoutMs = timeoutMs;
+            this.maxRetries = maxRetries;
+            this.retryDelayMs = retryDelayMs;
+            this.onRetry = onRetry;
+            this.handler = handler;
+        }
+
+        private void send() {
+            guard.acquire(endpoint).onComplete(permit -> {
+                if (permit.failed()) {
+                    handler.handle(Future.failedFuture(permit.cause()));
+                    return;
+                }
+                HttpRequest<Buffer> request = requestSupplier.get();
+                if (timeoutMs > 0) {
+                    request.timeout(timeoutMs);
+                }
+                Handler<AsyncResult<HttpResponse<Buffer>>> wrapped = ar -> {
+                    permit.result().release(ar);
+                    onResponse(ar);
+                };
+                if (payload == null) {
+                    request.send(wrapped);
+                } else {
+                    request.sendBuffer(payload, wrapped);
+                }
+            });
+        }
+
+        private void onResponse(AsyncResult<HttpResponse<Buffer>> ar) {
+            long retryAfterMs = retryAfterMs(ar);
+            if (retryAfterMs > 0) {
+                guard.honourRetryAfter(endpoint, retryAfterMs);
+            }
+            if (!CoreGuard.isOverloadFailure(ar) || attempt >= maxRetries || retryAfterMs > maxBackoffMs) {
+                handler.handle(ar);
+                return;
+            }
+            if (onRetry != null) {
+                onRetry.run();
+            }
+            long delay = Math.max(backoffDelayMs(retryDelayMs, attempt, maxBackoffMs), retryAfterMs);
+            attempt++;
+            if (delay == 0) {
+                send();
+            } else {
+                vertx.setTimer(delay, id -> send());
+            }
+        }
+    }
+
+    /**
+     * 第 attempt 次重试（从 0 起）前的等待：baseMs 按次数翻倍、不超过 capMs，取其一半加上另一半以内的随机值，
+     * 让同一时刻失败的大量请求错开重试。
+     */
+    static long backoffDelayMs(int baseMs, int attempt, long capMs) {
+        if (baseMs <= 0) {
+            return 0;
+        }
+        long delay = Math.min(Math.max(baseMs, capMs), (long) baseMs << Math.min(attempt, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * 429/503 响应的 Retry-After（秒数形式）换算成毫秒，没有或无法解析时返回 0。
+     */
+    static long retryAfterMs(AsyncResult<HttpResponse<Buffer>> ar) {
+        int status = statusOf(ar);
+        if (status != 429 && status != 503) {
+            return 0;
+        }
+        String retryAfter = ar.result().getHeader(HEADER_RETRY_AFTER);
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static boolean isFailure(AsyncResult<HttpResponse<Buffer>> ar) {
+        return ar.failed() || (ar.result() != null && ar.result().statusCode() >= 400);
+    }
+
+    static int statusOf(AsyncResult<HttpResponse<Buffer>> ar) {
+        if (ar == null) {
+            return -1;
+        }
+        if (ar.succeeded() && ar.result() != null) {
+            return ar.result().statusCode();
+        }
+        return -1;
+    }
+}
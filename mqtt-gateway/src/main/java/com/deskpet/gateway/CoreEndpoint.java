@@ -0,0 +1,58 @@
+package com.deskpet.gateway;
+
+/**
+ * 网关调用的 pet-core 接口分类，每类各有一个熔断器，指标按 key 区分。
+ */
+enum CoreEndpoint {
+    AUTH("auth"),
+    TELEMETRY("telemetry"),
+    EVENT("event"),
+    REQUEST("request"),
+    ACK("ack"),
+    UPLINK_BATCH("uplink_batch"),
+    PRESENCE("presence"),
+    OTHER("other");
+
+    static final String AUTH_PATH = "/internal/auth";
+    private static final String PRESENCE_PREFIX = "/internal/gateway/";
+
+    private final String key;
+
+    CoreEndpoint(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static CoreEndpoint of(UplinkType type) {
+        return switch (type) {
+            case TELEMETRY -> TELEMETRY;
+            case EVENT -> EVENT;
+            case REQUEST -> REQUEST;
+            case ACK -> ACK;
+        };
+    }
+
+    /**
+     * 按回调路径归类；单条上行路径形如 {@code /internal/telemetry/{deviceId}}。
+     */
+    static CoreEndpoint fromPath(String path) {
+        if (path.startsWith(AUTH_PATH)) {
+            return AUTH;
+        }
+        if (path.equals(UplinkDispatcher.BATCH_PATH)) {
+            return UPLINK_BATCH;
+        }
+        if (path.startsWith(PRESENCE_PREFIX)) {
+            return PRESENCE;
+        }
+        for (UplinkType type : UplinkType.values()) {
+            if (path.startsWith(type.callbackPath())) {
+                return of(type);
+            }
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,265 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.HttpResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * pet-core 调用的准入：先向进程级 {@link AdaptiveLimiter} 申请并发许可，再经过该类接口的 {@link CircuitBreaker}。
+ * HTTP 调用由 {@link CoreClient} 申请，经 {@link CoreChannel} 发送的批量上行由 {@link UplinkDispatcher} 申请。
+ * <p>
+ * 许可不足时请求进入本实例的 FIFO 等待队列（只在所属 event loop 上访问），队列已满、等待超过 maxWaitMs 或熔断中
+ * 时以 {@link Rejected} 直接失败，不再重试，由调用方按原有的回调失败处理（spool、fail-open 等）。
+ */
+@Slf4j
+final class CoreGuard {
+
+    static final String REASON_QUEUE_FULL = "queue_full";
+    static final String REASON_QUEUE_TIMEOUT = "queue_timeout";
+    static final String REASON_CIRCUIT_OPEN = "circuit_open";
+
+    private static final long DRAIN_INTERVAL_MS = 10;
+    private static final Permit NO_PERMIT = new Permit(null, null, 0);
+
+    private final Vertx vertx;
+    private final GatewayConfig.CoreGuard config;
+    private final Shared shared;
+    private final GatewayMetrics metrics;
+    private final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+    private long drainTimerId = -1;
+
+    CoreGuard(Vertx vertx, GatewayConfig.CoreGuard config, GatewayMetrics metrics) {
+        this.vertx = vertx;
+        this.config = config;
+        this.shared = config.enabled() ? Shared.get(config) : null;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 申请一次调用许可；请求结束后必须调用 {@link Permit#release(AsyncResult)}。
+     */
+    Future<Permit> acquire(CoreEndpoint endpoint) {
+        if (shared == null) {
+            return Future.succeededFuture(NO_PERMIT);
+        }
+        long nowMs = System.currentTimeMillis();
+        if (shared.breaker(endpoint).isOpen(nowMs)) {
+            return reject(endpoint, REASON_CIRCUIT_OPEN);
+        }
+        if (queue.isEmpty() && shared.limiter.tryAcquire()) {
+            return admit(endpoint, nowMs);
+        }
+        if (queue.size() >= config.maxQueue()) {
+            return reject(endpoint, REASON_QUEUE_FULL);
+        }
+        Waiting waiting = new Waiting(endpoint, nowMs);
+        queue.addLast(waiting);
+        scheduleDrain();
+        return waiting.promise.future();
+    }
+
+    /**
+     * pet-core 回 Retry-After 时在这段时间内熔断该类接口。
+     */
+    void honourRetryAfter(CoreEndpoint endpoint, long retryAfterMs) {
+        metrics.onCoreRetryAfter();
+        if (shared != null && shared.breaker(endpoint).openUntil(System.currentTimeMillis() + retryAfterMs)) {
+            onBreakerOpened(endpoint, "retry_after");
+        }
+    }
+
+    private Future<Permit> admit(CoreEndpoint endpoint, long nowMs) {
+        if (!shared.breaker(endpoint).allow(nowMs)) {
+            shared.limiter.cancel();
+            return reject(endpoint, REASON_CIRCUIT_OPEN);
+        }
+        return Future.succeededFuture(new Permit(this, endpoint, System.nanoTime()));
+    }
+
+    private Future<Permit> reject(CoreEndpoint endpoint, String reason) {
+        metrics.onCoreRejected(endpoint, reason);
+        return Future.failedFuture(new Rejected(endpoint, reason));
+    }
+
+    private void onResult(CoreEndpoint endpoint, long startNanos, boolean failed) {
+        long nowNanos = System.nanoTime();
+        shared.limiter.release(endpoint, nowNanos, nowNanos - startNanos, failed);
+        CircuitBreaker breaker = shared.breaker(endpoint);
+        if (!failed) {
+            breaker.onSuccess();
+        } else if (breaker.onFailure(System.currentTimeMillis())) {
+            onBreakerOpened(endpoint, "failures");
+        }
+        drain();
+    }
+
+    private void onCancelled(CoreEndpoint endpoint) {
+        shared.limiter.cancel();
+        shared.breaker(endpoint).onCancelled();
+        drain();
+    }
+
+    private void onBreakerOpened(CoreEndpoint endpoint, String cause) {
+        metrics.onCoreBreakerOpen(endpoint);
+        log.warn("[CoreGuard] pet-core 接口熔断: endpoint={}, cause={}", endpoint.key(), cause);
+    }
+
+    private void drain() {
+        long nowMs = System.currentTimeMillis();
+        while (!queue.isEmpty()) {
+            Waiting head = queue.peekFirst();
+            if (nowMs - head.enqueuedAtMs > config.maxWaitMs()) {
+                queue.pollFirst();
+                head.promise.handle(reject(head.endpoint, REASON_QUEUE_TIMEOUT));
+                continue;
+            }
+            if (!shared.limiter.tryAcquire()) {
+                break;
+            }
+            queue.pollFirst();
+            head.promise.handle(admit(head.endpoint, nowMs));
+        }
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainTimerId >= 0) {
+            return;
+        }
+        drainTimerId = vertx.setTimer(DRAIN_INTERVAL_MS, id -> {
+            drainTimerId = -1;
+            drain();
+        });
+    }
+
+    /**
+     * 计入自适应上限与熔断的失败：连接失败、超时、5xx 与 429；其余 4xx 是业务结果，pet-core 本身正常。
+     */
+    static boolean isOverloadFailure(AsyncResult<HttpResponse<Buffer>> ar) {
+        if (ar.failed()) {
+            return true;
+        }
+        return isOverloadStatus(ar.result().statusCode());
+    }
+
+    /**
+     * 长连接请求的同一判定：超时、连接断开、5xx（含 pet-core 排队已满的 503）与 429。
+     */
+    static boolean isRpcOverloadFailure(AsyncResult<CoreChannel.Reply> ar) {
+        return ar.failed() || isOverloadStatus(ar.result().status());
+    }
+
+    private static boolean isOverloadStatus(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    static boolean isRejected(AsyncResult<?> ar) {
+        return ar.failed() && ar.cause() instanceof Rejected;
+    }
+
+    /**
+     * 一次已放行的调用。
+     */
+    static final class Permit {
+        private final CoreGuard guard;
+        private final CoreEndpoint endpoint;
+        private final long startNanos;
+
+        private Permit(CoreGuard guard, CoreEndpoint endpoint, long startNanos) {
+            this.guard = guard;
+            this.endpoint = endpoint;
+            this.startNanos = startNanos;
+        }
+
+        void release(AsyncResult<HttpResponse<Buffer>> ar) {
+            if (guard != null) {
+                guard.onResult(endpoint, startNanos, isOverloadFailure(ar));
+            }
+        }
+
+        /**
+         * 长连接请求结束；未写出（{@link CoreChannel.NotSent}）的只归还许可，不计入上限调整与熔断。
+         */
+        void releaseRpc(AsyncResult<CoreChannel.Reply> ar) {
+            if (guard == null) {
+                return;
+            }
+            if (CoreChannel.isNotSent(ar)) {
+                guard.onCancelled(endpoint);
+            } else {
+                guard.onResult(endpoint, startNanos, isRpcOverloadFailure(ar));
+            }
+        }
+    }
+
+    /**
+     * 未发出就被拒绝的调用。
+     */
+    static final class Rejected extends VertxException {
+        private static final long serialVersionUID = 1L;
+
+        private final String reason;
+
+        Rejected(CoreEndpoint endpoint, String reason) {
+            super("core call rejected: endpoint=" + endpoint.key() + ", reason=" + reason, true);
+            this.reason = reason;
+        }
+
+        String reason() {
+            return reason;
+        }
+    }
+
+    private static final class Waiting {
+        private final CoreEndpoint endpoint;
+        private final long enqueuedAtMs;
+        private final Promise<Permit> promise = Promise.promise();
+
+        private Waiting(CoreEndpoint endpoint, long enqueuedAtMs) {
+            this.endpoint = endpoint;
+            this.enqueuedAtMs = enqueuedAtMs;
+        }
+    }
+
+    /**
+     * 进程级共享部分：并发上限与各类接口的熔断器。
+     */
+    static final class Shared {
+        private static Shared instance;
+
+        private final AdaptiveLimiter limiter;
+        private final Map<CoreEndpoint, CircuitBreaker> breakers = new EnumMap<>(CoreEndpoint.class);
+
+        Shared(GatewayConfig.CoreGuard config) {
+            this.limiter = new AdaptiveLimiter(config);
+            for (CoreEndpoint endpoint : CoreEndpoint.values()) {
+                breakers.put(endpoint, new CircuitBreaker(config.breakerFailureThreshold(), config.breakerOpenMs()));
+            }
+        }
+
+        static synchronized Shared get(GatewayConfig.CoreGuard config) {
+            if (instance == null) {
+                Shared created = new Shared(config);
+                GatewayMetrics.getInstance().registerCoreGuard(created.limiter::limit, created.limiter::inFlight,
+                        endpoint -> created.breaker(endpoint).state().code());
+                instance = created;
+            }
+            return instance;
+        }
+
+        CircuitBreaker breaker(CoreEndpoint endpoint) {
+            return breakers.get(endpoint);
+        }
+    }
+}
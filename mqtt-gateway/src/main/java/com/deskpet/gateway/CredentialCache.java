@@ -0,0 +1,170 @@
+package com.deskpet.gateway;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 设备凭证校验结果缓存，进程内所有 MqttServerVerticle 实例共享。
+ * <p>
+ * 每个设备只保留最近一次校验结果，键为 deviceId，值中保存密码的 HMAC 摘要（密钥为进程启动时随机生成），
+ * 不保存明文。摘要不一致视为未命中，需重新走 pet-core 鉴权；仅缓存 pet-core 明确给出的通过/拒绝结果。
+ */
+final class CredentialCache {
+
+    enum Verdict {
+        ALLOW,
+        DENY,
+        MISS
+    }
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static CredentialCache shared;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final GatewayConfig.AuthCache config;
+    private final GatewayMetrics metrics;
+    private final LongSupplier clock;
+    private final SecretKeySpec digestKey;
+    private final ThreadLocal<Mac> macs;
+
+    CredentialCache(GatewayConfig.AuthCache config, GatewayMetrics metrics, LongSupplier clock) {
+        this.config = config;
+        this.metrics = metrics;
+        this.clock = clock;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 获取进程级共享实例（首次调用时按配置创建）。
+     */
+    static synchronized CredentialCache shared(GatewayConfig.AuthCache config) {
+        if (shared == null) {
+            GatewayMetrics metrics = GatewayMetrics.getInstance();
+            shared = new CredentialCache(config, metrics, System::currentTimeMillis);
+            metrics.registerAuthCacheSize(shared::size);
+        }
+        return shared;
+    }
+
+    boolean enabled() {
+        return config.enabled();
+    }
+
+    Verdict lookup(String deviceId, String password) {
+        if (!config.enabled()) {
+            return Verdict.MISS;
+        }
+        Entry entry = entries.get(deviceId);
+        if (entry == null) {
+            metrics.onAuthCacheMiss();
+            return Verdict.MISS;
+        }
+        if (entry.expiresAtMs() <= clock.getAsLong()) {
+            entries.remove(deviceId, entry);
+            metrics.onAuthCacheMiss();
+            return Verdict.MISS;
+        }
+        if (!MessageDigest.isEqual(entry.digest(), digest(deviceId, password))) {
+            metrics.onAuthCacheMiss();
+            return Verdict.MISS;
+        }
+        metrics.onAuthCacheHit();
+        return entry.allowed() ? Verdict.ALLOW : Verdict.DENY;
+    }
+
+    /**
+     * 最近一次鉴权通过时 pet-core 返回的 productKey，没有缓存时为 null。
+     */
+    String productKey(String deviceId) {
+        Entry entry = entries.get(deviceId);
+        return entry == null ? null : entry.productKey();
+    }
+
+    void putAllowed(String deviceId, String password, String productKey) {
+        put(deviceId, password, true, productKey, config.positiveTtlSec());
+    }
+
+    void putDenied(String deviceId, String password) {
+        put(deviceId, password, false, null, config.negativeTtlSec());
+    }
+
+    void invalidate(Collection<String> deviceIds) {
+        deviceIds.forEach(entries::remove);
+    }
+
+    void invalidateAll() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void put(String deviceId, String password, boolean allowed, String productKey, int ttlSec) {
+        if (!config.enabled() || ttlSec <= 0) {
+            return;
+        }
+        long expiresAt = clock.getAsLong() + ttlSec * 1000L;
+        Entry previous = entries.put(deviceId, new Entry(digest(deviceId, password), allowed, productKey, expiresAt));
+        if (previous == null && entries.size() > config.maxEntries()) {
+            evict();
+        }
+    }
+
+    /**
+     * 超出容量时先清理过期项，仍超出则按哈希顺序（近似随机）淘汰。
+     */
+    private void evict() {
+        long now = clock.getAsLong();
+        int overflow = entries.size() - config.maxEntries();
+        Iterator<Entry> iterator = entries.values().iterator();
+        int scanned = 0;
+        while (overflow > 0 && iterator.hasNext() && scanned < 64) {
+            if (iterator.next().expiresAtMs() <= now) {
+                iterator.remove();
+                overflow--;
+                metrics.onAuthCacheEviction();
+            }
+            scanned++;
+        }
+        iterator = entries.values().iterator();
+        while (overflow > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            overflow--;
+            metrics.onAuthCacheEviction();
+        }
+    }
+
+    private byte[] digest(String deviceId, String password) {
+        Mac mac = macs.get();
+        mac.update(deviceId.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC unavailable", e);
+        }
+    }
+
+    private record Entry(byte[] digest, boolean allowed, String productKey, long expiresAtMs) {
+    }
+}
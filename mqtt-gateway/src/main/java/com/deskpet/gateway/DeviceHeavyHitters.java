@@ -0,0 +1,272 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按设备统计上行消息数与字节数的近似 Top-K，进程内所有 MqttServerVerticle 共享，内存与设备数无关。
+ * <p>
+ * 两个时间环：10 秒一格共 30 格（覆盖 1m、5m 窗口）与 5 分钟一格共 12 格（覆盖 1h 窗口）。每格一对 count-min sketch
+ * （消息数、字节数，按 设备+消息类型 计数）与两张固定大小的候选表（按消息数、按字节数各一张）：候选表按哈希分桶，
+ * 桶内只留当前格估计值较大的一个 设备+类型。发布路径只做原子加与 CAS，不加锁；时间格轮换由第一个进入新格的线程清零，
+ * 轮换瞬间的少量计数可能丢失或残留。查询时汇总窗口内各格的候选，按窗口内各格 sketch 估计值之和用小顶堆取前 N。
+ */
+final class DeviceHeavyHitters {
+
+    private static final long FINE_SLOT_MS = 10_000;
+    private static final int FINE_SLOTS = 30;
+    private static final long COARSE_SLOT_MS = 300_000;
+    private static final int COARSE_SLOTS = 12;
+    private static final UplinkType[] TYPES = UplinkType.values();
+
+    private static DeviceHeavyHitters shared;
+
+    enum Window {
+        M1("1m"),
+        M5("5m"),
+        H1("1h");
+
+        private final String key;
+
+        Window(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return key;
+        }
+
+        static Window fromKey(String key) {
+            for (Window window : values()) {
+                if (window.key.equals(key)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    record Hitter(String deviceId, long messages, long bytes) {
+        JsonObject toJson() {
+            return new JsonObject().put("deviceId", deviceId).put("messages", messages).put("bytes", bytes);
+        }
+    }
+
+    private final int depth;
+    private final int widthMask;
+    private final int candidateMask;
+    private final Ring fine;
+    private final Ring coarse;
+
+    DeviceHeavyHitters(GatewayConfig.HeavyHitters config) {
+        this.depth = config.depth();
+        this.widthMask = powerOfTwo(config.width()) - 1;
+        this.candidateMask = powerOfTwo(config.candidates()) - 1;
+        this.fine = new Ring(FINE_SLOT_MS, FINE_SLOTS);
+        this.coarse = new Ring(COARSE_SLOT_MS, COARSE_SLOTS);
+    }
+
+    static synchronized DeviceHeavyHitters shared(GatewayConfig.HeavyHitters config) {
+        if (shared == null) {
+            shared = new DeviceHeavyHitters(config);
+            GatewayMetrics.getInstance().registerHeavyHitters(shared, config.topN());
+        }
+        return shared;
+    }
+
+    /**
+     * 发布路径调用：计入一条上行消息，bytes 为 MQTT payload 字节数。
+     */
+    void record(String deviceId, UplinkType type, int bytes, long nowMs) {
+        long hash = hash(deviceId, type);
+        fine.add(deviceId, type, hash, bytes, nowMs);
+        coarse.add(deviceId, type, hash, bytes, nowMs);
+    }
+
+    /**
+     * 窗口内按消息数（byBytes 为 false）或字节数排序的前 limit 个设备；type 为 null 时合计所有消息类型。
+     */
+    List<Hitter> top(Window window, boolean byBytes, UplinkType type, int limit, long nowMs) {
+        Ring ring = window == Window.H1 ? coarse : fine;
+        int slots = switch (window) {
+            case M1 -> 6;
+            case M5 -> FINE_SLOTS;
+            case H1 -> COARSE_SLOTS;
+        };
+        List<Slot> live = ring.live(nowMs, slots);
+        Map<String, Hitter> hitters = new HashMap<>();
+        for (Slot slot : live) {
+            AtomicReferenceArray<Candidate> candidates = byBytes ? slot.byBytes : slot.byMessages;
+            for (int i = 0; i < candidates.length(); i++) {
+                Candidate candidate = candidates.get(i);
+                if (candidate != null && (type == null || candidate.type == type)
+                        && !hitters.containsKey(candidate.deviceId)) {
+                    hitters.put(candidate.deviceId, estimate(live, candidate.deviceId, type));
+                }
+            }
+        }
+        Comparator<Hitter> order = byBytes
+                ? Comparator.comparingLong(Hitter::bytes)
+                : Comparator.comparingLong(Hitter::messages);
+        PriorityQueue<Hitter> heap = new PriorityQueue<>(order);
+        for (Hitter hitter : hitters.values()) {
+            heap.offer(hitter);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Hitter> result = new ArrayList<>(heap);
+        result.sort(order.reversed().thenComparing(Hitter::deviceId));
+        return result;
+    }
+
+    /**
+     * 固定占用的计数器字节数（不含候选表中的设备 ID）。
+     */
+    long sketchBytes() {
+        return (long) (FINE_SLOTS + COARSE_SLOTS) * 2 * depth * (widthMask + 1) * Long.BYTES;
+    }
+
+    private Hitter estimate(List<Slot> live, String deviceId, UplinkType type) {
+        long messages = 0;
+        long bytes = 0;
+        for (UplinkType candidateType : TYPES) {
+            if (type != null && candidateType != type) {
+                continue;
+            }
+            long hash = hash(deviceId, candidateType);
+            for (Slot slot : live) {
+                messages += slot.estimate(slot.messages, hash);
+                bytes += slot.estimate(slot.bytes, hash);
+            }
+        }
+        return new Hitter(deviceId, messages, bytes);
+    }
+
+    private void offer(AtomicReferenceArray<Candidate> candidates, String deviceId, UplinkType type, long hash,
+                       long estimate) {
+        int bucket = (int) (hash >>> 40) & candidateMask;
+        Candidate current = candidates.get(bucket);
+        if (current != null && current.hash == hash && current.type == type && current.deviceId.equals(deviceId)) {
+            current.estimate = estimate;
+        } else if (current == null || current.estimate < estimate) {
+            candidates.compareAndSet(bucket, current, new Candidate(deviceId, type, hash, estimate));
+        }
+    }
+
+    private static long hash(String deviceId, UplinkType type) {
+        long h = deviceId.hashCode() * 0x9E3779B97F4A7C15L + type.ordinal();
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static int powerOfTwo(int value) {
+        return Integer.highestOneBit(Math.max(1, value - 1)) << 1;
+    }
+
+    private final class Ring {
+        private final long slotMs;
+        private final Slot[] slots;
+
+        private Ring(long slotMs, int count) {
+            this.slotMs = slotMs;
+            this.slots = new Slot[count];
+            for (int i = 0; i < count; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        private void add(String deviceId, UplinkType type, long hash, int bytes, long nowMs) {
+            long epoch = nowMs / slotMs;
+            Slot slot = slots[(int) (epoch % slots.length)];
+            long current = slot.epoch.get();
+            if (current < epoch && slot.epoch.compareAndSet(current, epoch)) {
+                slot.clear();
+            }
+            long messageEstimate = Long.MAX_VALUE;
+            long byteEstimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int index = slot.index(hash, row);
+                messageEstimate = Math.min(messageEstimate, slot.messages.incrementAndGet(index));
+                byteEstimate = Math.min(byteEstimate, slot.bytes.addAndGet(index, bytes));
+            }
+            offer(slot.byMessages, deviceId, type, hash, messageEstimate);
+            offer(slot.byBytes, deviceId, type, hash, byteEstimate);
+        }
+
+        /**
+         * 最近 count 格中仍属于当前时间范围的格（含当前格）。
+         */
+        private List<Slot> live(long nowMs, int count) {
+            long epoch = nowMs / slotMs;
+            List<Slot> live = new ArrayList<>(count);
+            for (Slot slot : slots) {
+                long slotEpoch = slot.epoch.get();
+                if (slotEpoch <= epoch && slotEpoch > epoch - count) {
+                    live.add(slot);
+                }
+            }
+            return live;
+        }
+    }
+
+    private final class Slot {
+        private final AtomicLong epoch = new AtomicLong(-1);
+        private final AtomicLongArray messages = new AtomicLongArray(depth * (widthMask + 1));
+        private final AtomicLongArray bytes = new AtomicLongArray(depth * (widthMask + 1));
+        private final AtomicReferenceArray<Candidate> byMessages = new AtomicReferenceArray<>(candidateMask + 1);
+        private final AtomicReferenceArray<Candidate> byBytes = new AtomicReferenceArray<>(candidateMask + 1);
+
+        /**
+         * 第 row 行的列号：两个哈希的线性组合（Kirsch-Mitzenmacher），各行互相独立。
+         */
+        private int index(long hash, int row) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+        }
+
+        private long estimate(AtomicLongArray counters, long hash) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, counters.get(index(hash, row)));
+            }
+            return estimate;
+        }
+
+        private void clear() {
+            for (int i = 0; i < messages.length(); i++) {
+                messages.set(i, 0);
+                bytes.set(i, 0);
+            }
+            for (int i = 0; i < byMessages.length(); i++) {
+                byMessages.set(i, null);
+                byBytes.set(i, null);
+            }
+        }
+    }
+
+    private static final class Candidate {
+        private final String deviceId;
+        private final UplinkType type;
+        private final long hash;
+        private volatile long estimate;
+
+        private Candidate(String deviceId, UplinkType type, long hash, long estimate) {
+            this.deviceId = deviceId;
+            this.type = type;
+            this.hash = hash;
+            this.estimate = estimate;
+        }
+    }
+}
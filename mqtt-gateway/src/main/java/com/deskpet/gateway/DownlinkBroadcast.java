@@ -0,0 +1,176 @@
+package com.deskpet.gateway;
+
+import com.deskpet.GatewayApplication;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一次批量下行广播，只在 InternalHttpVerticle 的 event loop 上访问。
+ * <p>
+ * 调用方逐个 {@link #add(String)} 目标设备，按 {@link SessionIndex} 把设备归入所在 MqttServerVerticle 的分组，每组攒满
+ * {@value #CHUNK_SIZE} 个即以一条 event bus 消息投递该批 deviceId；在途批次达到 {@value #MAX_OUTSTANDING_CHUNKS}
+ * 时 {@link #saturated()} 为 true，调用方应暂停读取，待 {@link #whenDrained(Runnable)} 回调后继续。
+ * 结果只逐个列出失败的设备（按原因分组），成功的仅计数。
+ */
+@Slf4j
+final class DownlinkBroadcast {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_OUTSTANDING_CHUNKS = 16;
+    static final String REASON_OFFLINE = "OFFLINE";
+    static final String REASON_DISPATCH_FAILED = "DISPATCH_FAILED";
+    private static final int CHUNK_TIMEOUT_MS = 10_000;
+
+    private final Vertx vertx;
+    private final SessionIndex sessions;
+    private final OfflineSessionStore offlineSessions;
+    private final GatewayMetrics metrics;
+    private final String payload;
+    private final int qos;
+    private final Map<String, JsonArray> pendingByAddress = new HashMap<>();
+    private final Map<String, JsonArray> failed = new TreeMap<>();
+    private final Promise<JsonObject> done = Promise.promise();
+    private int total;
+    private int sent;
+    private int queued;
+    private int outstandingChunks;
+    private boolean finished;
+    private Runnable drainHandler;
+
+    DownlinkBroadcast(Vertx vertx, SessionIndex sessions, OfflineSessionStore offlineSessions, GatewayMetrics metrics,
+                      String payload, int qos) {
+        this.vertx = vertx;
+        this.sessions = sessions;
+        this.offlineSessions = offlineSessions;
+        this.metrics = metrics;
+        this.payload = payload;
+        this.qos = qos;
+    }
+
+    void add(String deviceId) {
+        if (deviceId == null || deviceId.isBlank()) {
+            return;
+        }
+        total++;
+        String address = sessions.routeOf(deviceId);
+        if (address == null && offlineSessions != null && qos == MqttQoS.AT_LEAST_ONCE.value()) {
+            OfflineSessionStore.EnqueueResult result = offlineSessions.enqueue(deviceId, topicOf(deviceId),
+                    payload.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+            switch (result) {
+                case QUEUED -> {
+                    queued++;
+                    return;
+                }
+                case QUEUE_FULL -> {
+                    fail("OFFLINE_QUEUE_FULL", deviceId);
+                    return;
+                }
+                case ONLINE -> address = sessions.routeOf(deviceId);
+                case NO_SESSION -> {
+                }
+            }
+        }
+        if (address == null) {
+            fail(REASON_OFFLINE, deviceId);
+            return;
+        }
+        JsonArray chunk = pendingByAddress.computeIfAbsent(address, key -> new JsonArray());
+        chunk.add(deviceId);
+        if (chunk.size() >= CHUNK_SIZE) {
+            pendingByAddress.remove(address);
+            dispatch(address, chunk);
+        }
+    }
+
+    boolean saturated() {
+        return outstandingChunks >= MAX_OUTSTANDING_CHUNKS;
+    }
+
+    /**
+     * 在途批次回落到上限以下时回调一次。
+     */
+    void whenDrained(Runnable handler) {
+        if (!saturated()) {
+            handler.run();
+            return;
+        }
+        this.drainHandler = handler;
+    }
+
+    /**
+     * 所有目标已添加：发出剩余分组，全部批次返回后完成。
+     */
+    Future<JsonObject> finish() {
+        finished = true;
+        pendingByAddress.forEach(this::dispatch);
+        pendingByAddress.clear();
+        completeIfDone();
+        return done.future();
+    }
+
+    static String topicOf(String deviceId) {
+        return "pet/" + deviceId + "/cmd";
+    }
+
+    private void dispatch(String address, JsonArray deviceIds) {
+        outstandingChunks++;
+        JsonObject chunk = new JsonObject().put("payload", payload).put("qos", qos).put("deviceIds", deviceIds);
+        DeliveryOptions options = new DeliveryOptions().setSendTimeout(CHUNK_TIMEOUT_MS);
+        vertx.eventBus().<JsonObject>request(address + GatewayApplication.BROADCAST_ADDRESS_SUFFIX, chunk, options)
+                .onComplete(ar -> {
+                    outstandingChunks--;
+                    if (ar.succeeded()) {
+                        merge(ar.result().body());
+                    } else {
+                        log.warn("[BROADCAST] 批次投递失败: address={}, size={}, error={}",
+                                address, deviceIds.size(), ar.cause().getMessage());
+                        deviceIds.forEach(deviceId -> fail(REASON_DISPATCH_FAILED, (String) deviceId));
+                    }
+                    if (drainHandler != null && !saturated()) {
+                        Runnable handler = drainHandler;
+                        drainHandler = null;
+                        handler.run();
+                    }
+                    completeIfDone();
+                });
+    }
+
+    private void merge(JsonObject reply) {
+        sent += reply.getInteger("sent", 0);
+        JsonObject replyFailed = reply.getJsonObject("failed", new JsonObject());
+        for (String reason : replyFailed.fieldNames()) {
+            replyFailed.getJsonArray(reason).forEach(deviceId -> fail(reason, (String) deviceId));
+        }
+    }
+
+    private void fail(String reason, String deviceId) {
+        failed.computeIfAbsent(reason, key -> new JsonArray()).add(deviceId);
+    }
+
+    private void completeIfDone() {
+        if (!finished || outstandingChunks > 0 || done.future().isComplete()) {
+            return;
+        }
+        int failedCount = failed.values().stream().mapToInt(JsonArray::size).sum();
+        metrics.onBroadcast(total, sent + queued, failedCount);
+        JsonObject failedJson = new JsonObject();
+        failed.forEach(failedJson::put);
+        done.complete(new JsonObject()
+                .put("ok", true)
+                .put("total", total)
+                .put("sent", sent)
+                .put("queued", queued)
+                .put("failed", failedJson));
+    }
+}
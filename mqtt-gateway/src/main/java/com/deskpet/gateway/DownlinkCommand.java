@@ -0,0 +1,69 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+
+/**
+ * 经 event bus 从 InternalHttpVerticle（或 {@link CoreChannel}）交给设备所在 MqttServerVerticle 的下行指令，
+ * 以 {@link LocalMessageCodec} 原样传递，不复制。
+ * <p>
+ * 请求体中的 payload 为 JSON 对象或数组时，{@link #payload} 是请求体 Buffer 的切片，与请求体共享同一块内存直到
+ * {@code endpoint.publish}；为 JSON 字符串时（旧版 pet-core）解码一次后包装成 Buffer。
+ * ttlMs 为调用方允许设备离线时缓存该消息的最长毫秒数（pet-core 传指令超时），0 表示按网关配置。
+ */
+record DownlinkCommand(String deviceId, String topic, int qos, Buffer payload, long ttlMs) {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    DownlinkCommand(String deviceId, String topic, int qos, Buffer payload) {
+        this(deviceId, topic, qos, payload, 0);
+    }
+
+    /**
+     * 解析 {@code {"deviceId","topic","qos","payload","ttlMs"}}；未知字段忽略，缺省的 payload 为空 Buffer。
+     */
+    static DownlinkCommand parse(Buffer body) throws IOException {
+        String deviceId = null;
+        String topic = null;
+        int qos = 0;
+        long ttlMs = 0;
+        Buffer payload = Buffer.buffer(0);
+        // 解析器读的是请求体的一份拷贝，字节偏移与 body 一致，payload 仍从 body 切片
+        try (JsonParser parser = JSON_FACTORY.createParser(body.getBytes())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("request body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "deviceId" -> deviceId = parser.getValueAsString();
+                    case "topic" -> topic = parser.getValueAsString();
+                    case "qos" -> qos = parser.getValueAsInt(0);
+                    case "payload" -> payload = readPayload(parser, token, body);
+                    case "ttlMs" -> ttlMs = Math.max(0, parser.getValueAsLong(0));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new DownlinkCommand(deviceId, topic, qos, payload, ttlMs);
+    }
+
+    private static Buffer readPayload(JsonParser parser, JsonToken token, Buffer body) throws IOException {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            int start = (int) parser.currentTokenLocation().getByteOffset();
+            parser.skipChildren();
+            int end = (int) parser.currentLocation().getByteOffset();
+            return body.slice(start, end);
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return Buffer.buffer(0);
+        }
+        String text = parser.getText();
+        return text.isBlank() ? Buffer.buffer(0) : Buffer.buffer(text);
+    }
+}
@@ -0,0 +1,39 @@
+package com.deskpet.gateway;
+
+/**
+ * MqttServerVerticle 对 {@link DownlinkCommand} 的回复，经 {@link LocalMessageCodec} 原样传递；
+ * 取值固定，回复时不再构建 JSON。名称即返回给 pet-core 的 reason。
+ */
+enum DownlinkReply {
+    SENT(true),
+    OFFLINE(false),
+    INVALID_TOPIC(false),
+    WINDOW_FULL(false),
+    QUEUE_TIMEOUT(false),
+    ENCODE_FAILED(false);
+
+    private final boolean ok;
+
+    DownlinkReply(boolean ok) {
+        this.ok = ok;
+    }
+
+    boolean ok() {
+        return ok;
+    }
+
+    /**
+     * 把 {@link OutboundWindow.Completion} 的结果映射为回复。
+     */
+    static DownlinkReply of(boolean ok, String reason) {
+        if (ok) {
+            return SENT;
+        }
+        return switch (reason) {
+            case OutboundWindow.REASON_WINDOW_FULL -> WINDOW_FULL;
+            case OutboundWindow.REASON_QUEUE_TIMEOUT -> QUEUE_TIMEOUT;
+            case "ENCODE_FAILED" -> ENCODE_FAILED;
+            default -> OFFLINE;
+        };
+    }
+}
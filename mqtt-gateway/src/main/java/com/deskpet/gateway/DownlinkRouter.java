@@ -0,0 +1,127 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * pet-core 下行请求（指令/设备请求响应）的路由：校验 topic，按 {@link SessionIndex} 投递到设备所在的 MqttServerVerticle；
+ * 设备短暂离线且开启持久会话时写入离线队列。HTTP 接口与 {@link CoreChannel} 共用。
+ * 指令与回复经 {@link LocalMessageCodec} 在 event bus 上原样传递，payload 切片一直保留到写出。
+ */
+@Slf4j
+final class DownlinkRouter {
+
+    private static final int COMMAND_TIMEOUT_MS = 3000;
+    private static final DeliveryOptions DISPATCH_OPTIONS = new DeliveryOptions().setSendTimeout(COMMAND_TIMEOUT_MS);
+
+    /**
+     * 路由结果，status 与 HTTP 接口返回的状态码一致。
+     */
+    record Outcome(int status, boolean ok, String reason) {
+        Buffer toJson() {
+            return new JsonObject().put("ok", ok).put("reason", reason).toBuffer();
+        }
+    }
+
+    private final Vertx vertx;
+    private final SessionIndex sessions;
+    private final OfflineSessionStore offlineSessions;
+    private final GatewayMetrics metrics;
+
+    DownlinkRouter(Vertx vertx, SessionIndex sessions, OfflineSessionStore offlineSessions, GatewayMetrics metrics) {
+        this.vertx = vertx;
+        this.sessions = sessions;
+        this.offlineSessions = offlineSessions;
+        this.metrics = metrics;
+    }
+
+    Future<Outcome> send(DownlinkCommand command, String expectedChannel) {
+        metrics.onCommandSend();
+        log.info("[CMD-GW] 收到下行请求: deviceId={}, topic={}, qos={}", command.deviceId(), command.topic(), command.qos());
+        if (command.payload().length() == 0) {
+            log.warn("[CMD-GW] payload 为空: deviceId={}", command.deviceId());
+            return fail(400, "EMPTY_PAYLOAD");
+        }
+        if (!TopicAcl.isValidDownlink(command.deviceId(), command.topic())
+                || !command.topic().endsWith("/" + expectedChannel)) {
+            log.warn("[CMD-GW] 非法下行 topic: deviceId={}, topic={}", command.deviceId(), command.topic());
+            return fail(400, "INVALID_TOPIC");
+        }
+        command = normalize(command);
+
+        String address = sessions.routeOf(command.deviceId());
+        if (address == null && offlineSessions != null && command.qos() == MqttQoS.AT_LEAST_ONCE.value()) {
+            OfflineSessionStore.EnqueueResult queued = offlineSessions.enqueue(command.deviceId(), command.topic(),
+                    command.payload().getBytes(), System.currentTimeMillis(), command.ttlMs());
+            if (queued == OfflineSessionStore.EnqueueResult.QUEUED) {
+                log.info("[CMD-GW] 设备短暂离线，已缓存到持久会话: deviceId={}", command.deviceId());
+                metrics.onCommandSendOk();
+                return Future.succeededFuture(new Outcome(200, true, "QUEUED"));
+            }
+            if (queued == OfflineSessionStore.EnqueueResult.QUEUE_FULL) {
+                log.warn("[CMD-GW] 离线队列已满: deviceId={}", command.deviceId());
+                return fail(409, "OFFLINE_QUEUE_FULL");
+            }
+            if (queued == OfflineSessionStore.EnqueueResult.ONLINE) {
+                // 设备恰好在路由查询后重连，重新解析路由
+                address = sessions.routeOf(command.deviceId());
+            }
+        }
+        if (address == null) {
+            log.warn("[CMD-GW] 设备不在会话表中(OFFLINE): deviceId={}, 会话表大小={}", command.deviceId(), sessions.size());
+            return fail(409, "OFFLINE");
+        }
+        log.info("[CMD-GW] 路由解析成功: deviceId={}, address={}", command.deviceId(), address);
+
+        long startNanos = System.nanoTime();
+        return vertx.eventBus().<DownlinkReply>request(address, command, DISPATCH_OPTIONS)
+                .onComplete(ar -> metrics.onCommandDispatchLatency(startNanos))
+                .map(reply -> {
+                    DownlinkReply result = reply.body();
+                    if (!result.ok()) {
+                        metrics.onCommandSendFail();
+                        return new Outcome(409, false, result.name());
+                    }
+                    metrics.onCommandSendOk();
+                    return new Outcome(200, true, result.name());
+                })
+                .otherwise(e -> {
+                    log.warn("Command dispatch failed: {}", e.getMessage());
+                    metrics.onCommandSendFail();
+                    return new Outcome(500, false, "DISPATCH_FAILED");
+                });
+    }
+
+    /**
+     * 开始一次批量下行广播，目标 topic 为各设备的 pet/{deviceId}/cmd。
+     */
+    DownlinkBroadcast broadcast(String payload, int qos) {
+        return new DownlinkBroadcast(vertx, sessions, offlineSessions, metrics, payload, normalizeQos(qos));
+    }
+
+    private Future<Outcome> fail(int status, String reason) {
+        metrics.onCommandSendFail();
+        return Future.succeededFuture(new Outcome(status, false, reason));
+    }
+
+    /**
+     * qos 不在 0~2 时按 1 处理；payload 原样保留。
+     */
+    static DownlinkCommand normalize(DownlinkCommand command) {
+        int qos = normalizeQos(command.qos());
+        return qos == command.qos() ? command
+                : new DownlinkCommand(command.deviceId(), command.topic(), qos, command.payload(), command.ttlMs());
+    }
+
+    private static int normalizeQos(int qos) {
+        if (qos >= 0 && qos <= 2) {
+            return qos;
+        }
+        return MqttQoS.AT_LEAST_ONCE.value();
+    }
+}
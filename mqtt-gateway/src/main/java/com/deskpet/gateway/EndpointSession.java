@@ -1,26 +1,234 @@
 package com.deskpet.gateway;
 
 import io.vertx.mqtt.MqttEndpoint;
+import io.vertx.mqtt.messages.codes.MqttDisconnectReasonCode;
 
 import java.time.Instant;
-import java.util.concurrent.atomic.AtomicReference;
 
-public record EndpointSession(
-        String deviceId,
-        MqttEndpoint endpoint,
-        Instant connectedAt,
-        String clientIp,
-        AtomicReference<Instant> lastActivityAt
-) {
-    public EndpointSession(String deviceId, MqttEndpoint endpoint, Instant connectedAt, String clientIp) {
-        this(deviceId, endpoint, connectedAt, clientIp, new AtomicReference<>(connectedAt));
+/**
+ * 一个在线连接的会话，登记在 {@link SessionIndex} 中，只由 owner 对应的 MqttServerVerticle 修改。
+ * <p>
+ * 百万连接时每个字段都按连接数放大，因此时间只存毫秒数，IPv4 地址压缩为 int（其他地址才保留字符串），
+ * deviceId 与 productKey 由调用方去重后传入，下行编码与活动时间直接存为字段，不另建包装对象。
+ * MQTT 5 协商结果与别名表放在 {@link Mqtt5Session} 中，3.1.1 连接只多一个空引用。
+ */
+public final class EndpointSession {
+
+    private final String deviceId;
+    private final MqttEndpoint endpoint;
+    private final int owner;
+    private final long connectedAtMs;
+    private final int ipv4;
+    private final String otherIp;
+    private final long idleTimeoutMs;
+    private final OutboundWindow outbound;
+    private final long persistentGeneration;
+    private final String productKey;
+    private final TelemetryGate telemetryGate;
+    private final Mqtt5Session mqtt5;
+    // 指令与响应两个下行 topic 各自的编码，由设备分别订阅带格式后缀的 topic 选择
+    private volatile PayloadFormat commandFormat = PayloadFormat.JSON;
+    private volatile PayloadFormat responseFormat = PayloadFormat.JSON;
+    private volatile long lastActivityMs;
+    private long reportedActivityMs;
+    private boolean closed;
+
+    public EndpointSession(String deviceId, MqttEndpoint endpoint, int owner, long connectedAtMs, String clientIp,
+                           long idleTimeoutMs, OutboundWindow outbound, long persistentGeneration,
+                           String productKey, TelemetryGate telemetryGate, Mqtt5Session mqtt5) {
+        this.deviceId = deviceId;
+        this.endpoint = endpoint;
+        this.owner = owner;
+        this.connectedAtMs = connectedAtMs;
+        long packed = packIpv4(clientIp);
+        this.ipv4 = (int) packed;
+        this.otherIp = packed < 0 ? clientIp : null;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.outbound = outbound;
+        this.persistentGeneration = persistentGeneration;
+        this.productKey = productKey;
+        this.telemetryGate = telemetryGate;
+        this.mqtt5 = mqtt5;
+        this.lastActivityMs = connectedAtMs;
+        this.reportedActivityMs = connectedAtMs;
+    }
+
+    public String deviceId() {
+        return deviceId;
+    }
+
+    public MqttEndpoint endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * 所属 MqttServerVerticle 在 {@link SessionIndex} 中的序号。
+     */
+    public int owner() {
+        return owner;
+    }
+
+    public Instant connectedAt() {
+        return Instant.ofEpochMilli(connectedAtMs);
+    }
+
+    public String clientIp() {
+        if (otherIp != null) {
+            return otherIp;
+        }
+        return ((ipv4 >>> 24) & 0xFF) + "." + ((ipv4 >>> 16) & 0xFF) + "." + ((ipv4 >>> 8) & 0xFF) + "." + (ipv4 & 0xFF);
+    }
+
+    /**
+     * 非 IPv4 地址的原始字符串；IPv4 时为 null。
+     */
+    String otherIp() {
+        return otherIp;
+    }
+
+    public long idleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public OutboundWindow outbound() {
+        return outbound;
+    }
+
+    public long persistentGeneration() {
+        return persistentGeneration;
+    }
+
+    public String productKey() {
+        return productKey;
+    }
+
+    public TelemetryGate telemetryGate() {
+        return telemetryGate;
+    }
+
+    /**
+     * 按 MQTT 5 语义处理的连接的协商状态；3.1.1 连接（或未启用 mqtt5 配置）时为 null。
+     */
+    Mqtt5Session mqtt5() {
+        return mqtt5;
+    }
+
+    public int protocolVersion() {
+        return mqtt5 != null ? Mqtt5Session.PROTOCOL_VERSION : 4;
+    }
+
+    /**
+     * MQTT 5 协商后的会话保留秒数；3.1.1 连接返回 -1，持久会话按 session.sessionTtlSec 保留。
+     */
+    public long sessionExpirySec() {
+        return mqtt5 != null ? mqtt5.sessionExpirySec() : -1;
+    }
+
+    /**
+     * MQTT 5 连接结束的原因码（设备 DISCONNECT 携带或网关主动断开时发出）；尚未断开、直接断连或 3.1.1 连接为 null。
+     */
+    public MqttDisconnectReasonCode disconnectReason() {
+        return mqtt5 != null ? mqtt5.disconnectReason() : null;
+    }
+
+    /**
+     * 下行 topic（不带格式后缀的 pet/{id}/cmd 或 pet/{id}/resp）当前使用的编码。
+     */
+    public PayloadFormat downlinkFormat(String topic) {
+        return isResponseTopic(topic) ? responseFormat : commandFormat;
+    }
+
+    public void setDownlinkFormat(String topic, PayloadFormat format) {
+        if (isResponseTopic(topic)) {
+            this.responseFormat = format;
+        } else {
+            this.commandFormat = format;
+        }
+    }
+
+    private static boolean isResponseTopic(String topic) {
+        return topic.endsWith("/resp");
+    }
+
+    /**
+     * 是否为 cleanSession=false 的持久会话（由 {@link OfflineSessionStore} 分配了连接代数）。
+     */
+    public boolean persistent() {
+        return persistentGeneration > 0;
     }
 
     public void updateActivity() {
-        lastActivityAt.set(Instant.now());
+        lastActivityMs = System.currentTimeMillis();
+    }
+
+    public long lastActivityMs() {
+        return lastActivityMs;
+    }
+
+    /**
+     * 最近一次上报给 pet-core 的活动时间，只由 owner Verticle 读写；上线时 pet-core 已记录连接时间。
+     */
+    long reportedActivityMs() {
+        return reportedActivityMs;
+    }
+
+    void reportedActivityMs(long reportedActivityMs) {
+        this.reportedActivityMs = reportedActivityMs;
     }
 
     public Instant lastActivity() {
-        return lastActivityAt.get();
+        return Instant.ofEpochMilli(lastActivityMs);
+    }
+
+    /**
+     * 按最近活动时间计算的超时时刻（毫秒）。
+     */
+    public long expiresAtMs() {
+        return lastActivityMs + idleTimeoutMs;
+    }
+
+    /**
+     * 标记连接已关闭，只有第一次调用返回 true（DISCONNECT 与连接关闭都会触发清理）。
+     */
+    boolean markClosed() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    boolean closed() {
+        return closed;
+    }
+
+    /**
+     * 点分十进制 IPv4 压缩为无符号 32 位值；不是 IPv4 时返回 -1。
+     */
+    static long packIpv4(String ip) {
+        if (ip == null) {
+            return -1;
+        }
+        long packed = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || ++octets > 4) {
+                    return -1;
+                }
+                packed = packed << 8 | value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + c - '0';
+                if (value > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? packed : -1;
     }
 }
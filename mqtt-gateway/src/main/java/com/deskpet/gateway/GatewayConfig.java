@@ -6,10 +6,16 @@ import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.net.URL;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 public record GatewayConfig(
         int mqttPort,
@@ -28,7 +34,24 @@ public record GatewayConfig(
         String metricsPath,
         int statsLogIntervalSec,
         int heartbeatIntervalSec,
-        int heartbeatTimeoutSec
+        int heartbeatTimeoutSec,
+        Batch batch,
+        AuthCache authCache,
+        Admission admission,
+        Spool spool,
+        Downlink downlink,
+        Session session,
+        Rpc rpc,
+        Telemetry telemetry,
+        Presence presence,
+        Drain drain,
+        Mqtt5 mqtt5,
+        ThingModel thingModel,
+        CoreGuard coreGuard,
+        UplinkOrder uplinkOrder,
+        UplinkPriority uplinkPriority,
+        HeavyHitters heavyHitters,
+        Activity activity
 ) {
     public static Future<GatewayConfig> load(Vertx vertx) {
         ConfigStoreOptions store = new ConfigStoreOptions()
@@ -47,7 +70,7 @@ public record GatewayConfig(
         return promise.future();
     }
 
-    private static GatewayConfig fromConfig(JsonObject config) {
+    static GatewayConfig fromConfig(JsonObject config) {
         JsonObject mqtt = config.getJsonObject("mqtt", new JsonObject());
         int mqttPort = mqtt.getInteger("port", 1883);
         JsonObject internal = config.getJsonObject("internal", new JsonObject());
@@ -74,11 +97,29 @@ public record GatewayConfig(
         JsonObject heartbeat = config.getJsonObject("heartbeat", new JsonObject());
         int heartbeatIntervalSec = heartbeat.getInteger("intervalSec", 30);
         int heartbeatTimeoutSec = heartbeat.getInteger("timeoutSec", 120);
+        Batch batch = Batch.fromConfig(config.getJsonObject("batch", new JsonObject()));
+        AuthCache authCache = AuthCache.fromConfig(config.getJsonObject("authCache", new JsonObject()));
+        Admission admission = Admission.fromConfig(config.getJsonObject("admission", new JsonObject()));
+        Spool spool = Spool.fromConfig(config.getJsonObject("spool", new JsonObject()));
+        Downlink downlink = Downlink.fromConfig(config.getJsonObject("downlink", new JsonObject()));
+        Session session = Session.fromConfig(config.getJsonObject("session", new JsonObject()));
+        Rpc rpc = Rpc.fromConfig(config.getJsonObject("rpc", new JsonObject()));
+        Telemetry telemetry = Telemetry.fromConfig(config.getJsonObject("telemetry", new JsonObject()));
+        Presence presence = Presence.fromConfig(config.getJsonObject("presence", new JsonObject()));
+        Drain drain = Drain.fromConfig(config.getJsonObject("drain", new JsonObject()));
+        Mqtt5 mqtt5 = Mqtt5.fromConfig(config.getJsonObject("mqtt5", new JsonObject()));
+        ThingModel thingModel = ThingModel.fromConfig(config.getJsonObject("thingModel", new JsonObject()));
+        CoreGuard coreGuard = CoreGuard.fromConfig(config.getJsonObject("coreGuard", new JsonObject()));
+        UplinkOrder uplinkOrder = UplinkOrder.fromConfig(config.getJsonObject("uplinkOrder", new JsonObject()));
+        UplinkPriority uplinkPriority = UplinkPriority.fromConfig(config.getJsonObject("uplinkPriority", new JsonObject()));
+        HeavyHitters heavyHitters = HeavyHitters.fromConfig(config.getJsonObject("heavyHitters", new JsonObject()));
+        Activity activity = Activity.fromConfig(config.getJsonObject("activity", new JsonObject()));
         return new GatewayConfig(mqttPort, internalPort, coreInternalBaseUrl, instanceId, internalToken,
                 authTimeoutMs, authMaxRetries, authRetryDelayMs, authFailOpen,
                 callbackTimeoutMs, callbackMaxRetries, callbackRetryDelayMs,
                 metricsEnabled, metricsPath, statsLogIntervalSec,
-                heartbeatIntervalSec, heartbeatTimeoutSec);
+                heartbeatIntervalSec, heartbeatTimeoutSec, batch, authCache, admission, spool, downlink, session, rpc, telemetry,
+                presence, drain, mqtt5, thingModel, coreGuard, uplinkOrder, uplinkPriority, heavyHitters, activity);
     }
 
     private static String resolveConfigPath() {
@@ -96,4 +137,472 @@ public record GatewayConfig(
         }
         return "config.yaml";
     }
+
+    /**
+     * 上行批量回调配置：按条数、字节数和最大等待时间（linger）攒批后一次性发往 pet-core。
+     */
+    public record Batch(
+            boolean enabled,
+            int maxMessages,
+            int maxBytes,
+            int lingerMs,
+            Set<UplinkType> types
+    ) {
+        static Batch fromConfig(JsonObject batch) {
+            boolean enabled = batch.getBoolean("enabled", false);
+            int maxMessages = Math.max(1, batch.getInteger("maxMessages", 200));
+            int maxBytes = Math.max(1024, batch.getInteger("maxBytes", 256 * 1024));
+            int lingerMs = Math.max(0, batch.getInteger("lingerMs", 5));
+            JsonArray typeNames = batch.getJsonArray("types", new JsonArray().add("telemetry").add("event").add("ack"));
+            Set<UplinkType> types = EnumSet.noneOf(UplinkType.class);
+            for (Object name : typeNames) {
+                UplinkType type = UplinkType.fromKey(String.valueOf(name));
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+            return new Batch(enabled, maxMessages, maxBytes, lingerMs, Collections.unmodifiableSet(types));
+        }
+
+        public boolean accepts(UplinkType type) {
+            return enabled && types.contains(type);
+        }
+    }
+
+    /**
+     * 网关侧设备凭证缓存配置：通过结果与拒绝结果分别设置 TTL。
+     */
+    public record AuthCache(
+            boolean enabled,
+            int maxEntries,
+            int positiveTtlSec,
+            int negativeTtlSec
+    ) {
+        static AuthCache fromConfig(JsonObject authCache) {
+            return new AuthCache(
+                    authCache.getBoolean("enabled", false),
+                    Math.max(1, authCache.getInteger("maxEntries", 200_000)),
+                    authCache.getInteger("positiveTtlSec", 600),
+                    authCache.getInteger("negativeTtlSec", 30));
+        }
+    }
+
+    /**
+     * CONNECT 准入控制配置：全局/单实例在途鉴权上限、连接速率与等待队列。
+     */
+    public record Admission(
+            boolean enabled,
+            int maxInFlight,
+            int maxInFlightPerVerticle,
+            int connectRatePerSec,
+            int connectBurst,
+            int maxQueue,
+            int maxWaitMs
+    ) {
+        static Admission fromConfig(JsonObject admission) {
+            return new Admission(
+                    admission.getBoolean("enabled", false),
+                    Math.max(1, admission.getInteger("maxInFlight", 256)),
+                    Math.max(1, admission.getInteger("maxInFlightPerVerticle", 32)),
+                    Math.max(0, admission.getInteger("connectRatePerSec", 500)),
+                    Math.max(1, admission.getInteger("connectBurst", 200)),
+                    Math.max(0, admission.getInteger("maxQueue", 5000)),
+                    Math.max(0, admission.getInteger("maxWaitMs", 3000)));
+        }
+    }
+
+    /**
+     * 上行本地预写日志配置：消息写入本地 spool 即回 PUBACK，由后台重放投递到 pet-core。
+     */
+    public record Spool(
+            boolean enabled,
+            String dir,
+            int segmentBytes,
+            long maxBytes,
+            int maxInFlight,
+            int retryDelayMs,
+            int maxRetryDelayMs,
+            Set<UplinkType> types
+    ) {
+        static Spool fromConfig(JsonObject spool) {
+            JsonArray typeNames = spool.getJsonArray("types", new JsonArray().add("telemetry").add("event"));
+            Set<UplinkType> types = EnumSet.noneOf(UplinkType.class);
+            for (Object name : typeNames) {
+                UplinkType type = UplinkType.fromKey(String.valueOf(name));
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+            return new Spool(
+                    spool.getBoolean("enabled", false),
+                    spool.getString("dir", "data/spool"),
+                    Math.max(64 * 1024, spool.getInteger("segmentBytes", 64 * 1024 * 1024)),
+                    Math.max(1024 * 1024, spool.getLong("maxBytes", 1024L * 1024 * 1024)),
+                    Math.max(1, spool.getInteger("maxInFlight", 256)),
+                    Math.max(10, spool.getInteger("retryDelayMs", 1000)),
+                    Math.max(10, spool.getInteger("maxRetryDelayMs", 30_000)),
+                    Collections.unmodifiableSet(types));
+        }
+
+        public boolean accepts(UplinkType type) {
+            return enabled && types.contains(type);
+        }
+    }
+
+    /**
+     * QoS1 下行发送窗口配置：每个会话的在途上限、等待队列、重发间隔与次数。
+     */
+    public record Downlink(
+            boolean enabled,
+            int maxInFlight,
+            int maxQueue,
+            int retransmitMs,
+            int maxRetransmits,
+            int queueTimeoutMs
+    ) {
+        static Downlink fromConfig(JsonObject downlink) {
+            return new Downlink(
+                    downlink.getBoolean("enabled", false),
+                    Math.max(1, downlink.getInteger("maxInFlight", 16)),
+                    Math.max(0, downlink.getInteger("maxQueue", 64)),
+                    Math.max(100, downlink.getInteger("retransmitMs", 10_000)),
+                    Math.max(0, downlink.getInteger("maxRetransmits", 3)),
+                    Math.max(100, downlink.getInteger("queueTimeoutMs", 2_000)));
+        }
+    }
+
+    /**
+     * 持久会话（cleanSession=false）配置：离线会话保留时长、离线下行缓存上限与消息 TTL。
+     */
+    public record Session(
+            boolean enabled,
+            int sessionTtlSec,
+            int maxMessagesPerDevice,
+            int maxTotalMessages,
+            int messageTtlSec
+    ) {
+        static Session fromConfig(JsonObject session) {
+            return new Session(
+                    session.getBoolean("enabled", false),
+                    Math.max(1, session.getInteger("sessionTtlSec", 300)),
+                    Math.max(0, session.getInteger("maxMessagesPerDevice", 32)),
+                    Math.max(0, session.getInteger("maxTotalMessages", 100_000)),
+                    Math.max(1, session.getInteger("messageTtlSec", 120)));
+        }
+    }
+
+    /**
+     * 与 pet-core 之间的二进制长连接配置：每个 MqttServerVerticle 建立一条连接，批量上行与下行指令优先走该通道，
+     * 不可用时回退到 HTTP 接口。
+     */
+    public record Rpc(
+            boolean enabled,
+            String host,
+            int port,
+            int maxInFlight,
+            int timeoutMs,
+            int reconnectMs,
+            int maxReconnectMs,
+            int maxFrameBytes
+    ) {
+        static Rpc fromConfig(JsonObject rpc) {
+            return new Rpc(
+                    rpc.getBoolean("enabled", false),
+                    rpc.getString("host", "localhost"),
+                    rpc.getInteger("port", 9091),
+                    Math.max(1, rpc.getInteger("maxInFlight", 64)),
+                    Math.max(100, rpc.getInteger("timeoutMs", 3000)),
+                    Math.max(10, rpc.getInteger("reconnectMs", 500)),
+                    Math.max(10, rpc.getInteger("maxReconnectMs", 30_000)),
+                    Math.max(64 * 1024, rpc.getInteger("maxFrameBytes", 4 * 1024 * 1024)));
+        }
+    }
+
+    /**
+     * 遥测上行限流配置：每台设备一个令牌桶限制每秒消息数，可选按窗口合并（窗口内只转发最新一条）。
+     * 默认策略对所有设备生效，products 下可按 productKey 覆盖部分字段；事件、回执与请求不受影响。
+     */
+    public record Telemetry(
+            boolean enabled,
+            Policy defaults,
+            Map<String, Policy> products
+    ) {
+        static Telemetry fromConfig(JsonObject telemetry) {
+            Policy defaults = Policy.fromConfig(telemetry, new Policy(0, 0, 0));
+            Map<String, Policy> products = new HashMap<>();
+            JsonObject overrides = telemetry.getJsonObject("products", new JsonObject());
+            for (String productKey : overrides.fieldNames()) {
+                products.put(productKey, Policy.fromConfig(overrides.getJsonObject(productKey), defaults));
+            }
+            return new Telemetry(telemetry.getBoolean("enabled", false), defaults, Map.copyOf(products));
+        }
+
+        /**
+         * 设备所属产品的策略，未知产品或未配置覆盖时使用默认策略；未启用时返回 null。
+         */
+        public Policy policyFor(String productKey) {
+            if (!enabled) {
+                return null;
+            }
+            Policy policy = productKey == null ? defaults : products.getOrDefault(productKey, defaults);
+            return policy.unlimited() ? null : policy;
+        }
+
+        /**
+         * @param ratePerSec 每秒允许的消息数，0 表示不限速
+         * @param burst      令牌桶容量，允许的瞬时突发条数
+         * @param coalesceMs 合并窗口，0 表示不合并
+         */
+        public record Policy(double ratePerSec, int burst, int coalesceMs) {
+            static Policy fromConfig(JsonObject policy, Policy fallback) {
+                double ratePerSec = Math.max(0, policy.getDouble("ratePerSec", fallback.ratePerSec()));
+                int burst = policy.getInteger("burst", fallback.burst());
+                return new Policy(
+                        ratePerSec,
+                        Math.max(1, burst > 0 ? burst : (int) Math.ceil(ratePerSec)),
+                        Math.max(0, policy.getInteger("coalesceMs", fallback.coalesceMs())));
+            }
+
+            boolean unlimited() {
+                return ratePerSec <= 0 && coalesceMs <= 0;
+            }
+        }
+    }
+
+    /**
+     * 在线状态通知配置：离线先挂起 debounceMs，期间重新上线则两次变化互相抵消；
+     * 净变化与原始上下线记录按 flushIntervalMs 合并为一次批量请求发给 pet-core。
+     */
+    public record Presence(
+            boolean enabled,
+            int debounceMs,
+            int flushIntervalMs,
+            int maxBatch,
+            int maxHistory,
+            int flapRetentionSec
+    ) {
+        static Presence fromConfig(JsonObject presence) {
+            return new Presence(
+                    presence.getBoolean("enabled", false),
+                    Math.max(0, presence.getInteger("debounceMs", 5000)),
+                    Math.max(10, presence.getInteger("flushIntervalMs", 1000)),
+                    Math.max(1, presence.getInteger("maxBatch", 2000)),
+                    Math.max(0, presence.getInteger("maxHistory", 100_000)),
+                    Math.max(1, presence.getInteger("flapRetentionSec", 3600)));
+        }
+    }
+
+    /**
+     * 优雅下线配置：拒绝新连接，把当前设备一次性告知 pet-core，再按速率分散关闭已有会话，让设备错开重连到其他网关。
+     *
+     * @param enabled          收到 SIGTERM 时是否先下线再退出；POST /internal/drain 不受此开关影响
+     * @param closeRatePerSec  全网关每秒关闭的会话数，由各 Verticle 均分，间隔随机
+     * @param maxDurationSec   下线最长耗时，超时后剩余会话一次性关闭
+     * @param handoffGraceSec  pet-core 等待设备在其他网关重连的秒数，超时仍未重连才标记离线
+     */
+    public record Drain(
+            boolean enabled,
+            int closeRatePerSec,
+            int maxDurationSec,
+            int handoffGraceSec
+    ) {
+        static Drain fromConfig(JsonObject drain) {
+            return new Drain(
+                    drain.getBoolean("enabled", false),
+                    Math.max(1, drain.getInteger("closeRatePerSec", 500)),
+                    Math.max(1, drain.getInteger("maxDurationSec", 60)),
+                    Math.max(0, drain.getInteger("handoffGraceSec", 60)));
+        }
+    }
+
+    /**
+     * MQTT 5 协商配置。关闭时 MQTT 5 连接按 3.1.1 的语义处理：不声明别名与接收上限，会话保留仍按 cleanStart。
+     *
+     * @param enabled           是否为 MQTT 5 连接启用 Topic Alias、Receive Maximum 与 Session Expiry Interval
+     * @param receiveMaximum    CONNACK 声明的上行接收上限，设备同时未确认的 QoS1 上行超过该值时以 0x93 断开
+     * @param topicAliasMaximum CONNACK 声明的上行别名个数，0 表示不接受别名
+     */
+    public record Mqtt5(
+            boolean enabled,
+            int receiveMaximum,
+            int topicAliasMaximum
+    ) {
+        static Mqtt5 fromConfig(JsonObject mqtt5) {
+            return new Mqtt5(
+                    mqtt5.getBoolean("enabled", false),
+                    Math.max(1, Math.min(65_535, mqtt5.getInteger("receiveMaximum", 32))),
+                    Math.max(0, Math.min(65_535, mqtt5.getInteger("topicAliasMaximum", 8))));
+        }
+    }
+
+    /**
+     * 物模型校验配置：按产品从 pet-core 拉取属性定义并编译为校验器，遥测在转发前按属性类型与规格校验。
+     *
+     * @param enabled            是否校验遥测
+     * @param strip              true 时剔除不合规字段后转发其余部分（mode: strip），false 时整条拒绝（mode: reject）
+     * @param refreshIntervalSec 带版本号询问 pet-core 快照是否变化的间隔；拉取失败的产品同样在该间隔后重试
+     */
+    public record ThingModel(
+            boolean enabled,
+            boolean strip,
+            int refreshIntervalSec
+    ) {
+        static ThingModel fromConfig(JsonObject thingModel) {
+            return new ThingModel(
+                    thingModel.getBoolean("enabled", false),
+                    "strip".equalsIgnoreCase(thingModel.getString("mode", "reject")),
+                    Math.max(1, thingModel.getInteger("refreshIntervalSec", 30)));
+        }
+    }
+
+    /**
+     * pet-core 调用保护：所有鉴权与上行回调先经过进程级自适应并发上限（AIMD），再经过按接口分类的熔断器。
+     * 重试间隔按 retryDelayMs 指数增长并加随机抖动，不超过 maxBackoffMs；未启用时只保留指数退避。
+     *
+     * @param initialLimit            启动时的并发上限
+     * @param minLimit                并发上限下限
+     * @param maxLimit                并发上限上限
+     * @param backoffRatio            RTT 变慢、超时、5xx 或 429 时上限乘以的系数
+     * @param rttTolerance            短期 RTT 相对长期基线的容忍倍数，超出视为 pet-core 开始排队
+     * @param maxQueue                每个 Verticle 等待并发许可的请求数上限，超出直接失败
+     * @param maxWaitMs               等待并发许可的最长毫秒数，超时直接失败
+     * @param breakerFailureThreshold 同一类接口连续失败多少次后熔断
+     * @param breakerOpenMs           熔断持续毫秒数，到期后放行一个探测请求
+     * @param maxBackoffMs            重试间隔上限；pet-core 要求的 Retry-After 超过该值时不再重试
+     */
+    public record CoreGuard(
+            boolean enabled,
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            double backoffRatio,
+            double rttTolerance,
+            int maxQueue,
+            int maxWaitMs,
+            int breakerFailureThreshold,
+            int breakerOpenMs,
+            int maxBackoffMs
+    ) {
+        static CoreGuard fromConfig(JsonObject guard) {
+            int minLimit = Math.max(1, guard.getInteger("minLimit", 8));
+            int maxLimit = Math.max(minLimit, guard.getInteger("maxLimit", 512));
+            return new CoreGuard(
+                    guard.getBoolean("enabled", false),
+                    Math.max(minLimit, Math.min(maxLimit, guard.getInteger("initialLimit", 64))),
+                    minLimit,
+                    maxLimit,
+                    Math.max(0.1, Math.min(0.99, guard.getDouble("backoffRatio", 0.9))),
+                    Math.max(1.0, guard.getDouble("rttTolerance", 2.0)),
+                    Math.max(0, guard.getInteger("maxQueue", 10_000)),
+                    Math.max(0, guard.getInteger("maxWaitMs", 1000)),
+                    Math.max(1, guard.getInteger("breakerFailureThreshold", 20)),
+                    Math.max(1, guard.getInteger("breakerOpenMs", 5000)),
+                    Math.max(0, guard.getInteger("maxBackoffMs", 5000)));
+        }
+    }
+
+    /**
+     * 按设备保序投递上行：同一设备同时只有一个请求在途（一个批次中连续的若干条，或一条逐条回调），
+     * 其余消息在该设备的队列中等待；不同设备之间互不影响。
+     *
+     * @param maxInFlightPerDevice 同一设备一次交给同一批次的最多消息数
+     * @param maxQueuedPerDevice   同一设备排队等待的消息数上限，超出的消息按投递失败处理
+     */
+    public record UplinkOrder(
+            boolean enabled,
+            int maxInFlightPerDevice,
+            int maxQueuedPerDevice
+    ) {
+        static UplinkOrder fromConfig(JsonObject order) {
+            return new UplinkOrder(
+                    order.getBoolean("enabled", false),
+                    Math.max(1, order.getInteger("maxInFlightPerDevice", 16)),
+                    Math.max(1, order.getInteger("maxQueuedPerDevice", 256)));
+        }
+    }
+
+    /**
+     * 上行优先级通道：回执与设备请求、事件、遥测各自排队、各自限制在途请求数（每个 Verticle），互不阻塞。
+     * 遥测通道中尚未发出的消息按设备只保留最新一条，队列已满时遥测直接丢弃，其余通道按投递失败处理。
+     */
+    public record UplinkPriority(
+            boolean enabled,
+            LaneLimit high,
+            LaneLimit normal,
+            LaneLimit low
+    ) {
+        static UplinkPriority fromConfig(JsonObject priority) {
+            return new UplinkPriority(
+                    priority.getBoolean("enabled", false),
+                    LaneLimit.fromConfig(priority.getJsonObject("high", new JsonObject()), 16, 10_000),
+                    LaneLimit.fromConfig(priority.getJsonObject("normal", new JsonObject()), 8, 10_000),
+                    LaneLimit.fromConfig(priority.getJsonObject("low", new JsonObject()), 4, 20_000));
+        }
+
+        LaneLimit limit(UplinkLane lane) {
+            return switch (lane) {
+                case HIGH -> high;
+                case NORMAL -> normal;
+                case LOW -> low;
+            };
+        }
+
+        /**
+         * @param maxInFlight 该通道同时在途的回调请求数（一个批次算一个）
+         * @param maxQueued   该通道尚未发出的消息数上限
+         */
+        public record LaneLimit(int maxInFlight, int maxQueued) {
+            static LaneLimit fromConfig(JsonObject lane, int defaultInFlight, int defaultQueued) {
+                return new LaneLimit(Math.max(1, lane.getInteger("maxInFlight", defaultInFlight)),
+                        Math.max(1, lane.getInteger("maxQueued", defaultQueued)));
+            }
+        }
+    }
+
+    /**
+     * 按设备统计上行流量的近似 Top-K（count-min sketch），内存固定，约为 42 × 2 × depth × width × 8 字节。
+     *
+     * @param depth      sketch 行数，越大估计越不容易偏高
+     * @param width      每行计数器个数（向上取 2 的幂），估计误差约为窗口内总量的 e / width
+     * @param candidates 每个时间格的候选表桶数（向上取 2 的幂），也是查询 limit 的上限
+     * @param topN       metrics 端点每个窗口输出的设备数
+     */
+    public record HeavyHitters(
+            boolean enabled,
+            int depth,
+            int width,
+            int candidates,
+            int topN
+    ) {
+        static HeavyHitters fromConfig(JsonObject hitters) {
+            int candidates = Math.max(16, hitters.getInteger("candidates", 256));
+            return new HeavyHitters(
+                    hitters.getBoolean("enabled", false),
+                    Math.max(1, Math.min(8, hitters.getInteger("depth", 4))),
+                    Math.max(64, hitters.getInteger("width", 512)),
+                    candidates,
+                    Math.max(1, Math.min(candidates, hitters.getInteger("topN", 10))));
+        }
+    }
+
+    /**
+     * 设备最近活动时间上报：每个 Verticle 每 flushIntervalMs 把自上次上报后有新活动的在线设备合并为一批发给 pet-core。
+     *
+     * @param maxBatchSize 一批最多的设备数，超出的留到下一次
+     * @param minAdvanceMs 活动时间比上次上报推进至少这么多才再次上报，限制每台设备的写入频率
+     */
+    public record Activity(
+            boolean enabled,
+            int flushIntervalMs,
+            int maxBatchSize,
+            int minAdvanceMs
+    ) {
+        static Activity fromConfig(JsonObject activity) {
+            return new Activity(
+                    activity.getBoolean("enabled", false),
+                    Math.max(100, activity.getInteger("flushIntervalMs", 30_000)),
+                    Math.max(1, activity.getInteger("maxBatchSize", 5000)),
+                    Math.max(1, activity.getInteger("minAdvanceMs", 60_000)));
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package com.deskpet.gateway;
+
+import com.deskpet.GatewayApplication;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关优雅下线，进程内只执行一次。
+ * <p>
+ * 先把会话表中的全部设备一次性告知 pet-core（{@value #HANDOFF_PATH}），pet-core 在宽限期内不把它们标记离线；
+ * 再通知每个 MqttServerVerticle 拒绝新 CONNECT，并按 closeRatePerSec 的均分速率、随机间隔关闭已有会话，
+ * 让设备错开重连到其他网关；各 Verticle 关闭完毕并把积压上行交给 pet-core 后回复，全部回复后下线完成。
+ */
+@Slf4j
+final class GatewayDrain {
+
+    static final String HANDOFF_PATH = "/internal/gateway/handoff";
+
+    enum State {
+        IDLE,
+        DRAINING,
+        DRAINED
+    }
+
+    private static final GatewayDrain INSTANCE = new GatewayDrain(GatewayMetrics.getInstance());
+    private static final long REPLY_SLACK_MS = 10_000;
+
+    private final GatewayMetrics metrics;
+    private State state = State.IDLE;
+    private Promise<JsonObject> done;
+    private int sessions;
+    private long startedAtMs;
+    private long finishedAtMs;
+
+    GatewayDrain(GatewayMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    static GatewayDrain getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始下线；已在下线或已完成时返回同一个结果。
+     */
+    synchronized Future<JsonObject> start(Vertx vertx, CoreClient coreClient, GatewayConfig config) {
+        if (state != State.IDLE) {
+            return done.future();
+        }
+        state = State.DRAINING;
+        done = Promise.promise();
+        startedAtMs = System.currentTimeMillis();
+        List<String> deviceIds = SessionIndex.shared().deviceIds();
+        sessions = deviceIds.size();
+        metrics.onDrainState(1, sessions);
+        log.info("[DRAIN] 开始优雅下线: instanceId={}, sessions={}, closeRatePerSec={}",
+                config.instanceId(), sessions, config.drain().closeRatePerSec());
+        handoff(coreClient, config, deviceIds)
+                .compose(v -> closeSessions(vertx, config.drain()))
+                .onComplete(ar -> finish(ar.succeeded() ? ar.result() : 0));
+        return done.future();
+    }
+
+    synchronized JsonObject status() {
+        long endMs = state == State.DRAINED ? finishedAtMs : System.currentTimeMillis();
+        return new JsonObject()
+                .put("state", state.name())
+                .put("sessions", sessions)
+                .put("closed", metrics.drainClosedCount())
+                .put("remaining", metrics.onlineCount())
+                .put("durationMs", state == State.IDLE ? 0 : endMs - startedAtMs);
+    }
+
+    private Future<Void> handoff(CoreClient coreClient, GatewayConfig config, List<String> deviceIds) {
+        if (deviceIds.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        JsonObject body = new JsonObject()
+                .put("gatewayInstanceId", config.instanceId())
+                .put("deviceIds", new JsonArray(new ArrayList<>(deviceIds)))
+                .put("graceSec", config.drain().handoffGraceSec());
+        return coreClient.postJson(HANDOFF_PATH)
+                .timeout(config.callbackTimeoutMs() * 5L)
+                .sendJsonObject(body)
+                .<Void>map(response -> {
+                    if (response.statusCode() >= 400) {
+                        log.warn("[DRAIN] 设备迁移通知被拒: status={}", response.statusCode());
+                    }
+                    return null;
+                })
+                .recover(e -> {
+                    log.warn("[DRAIN] 设备迁移通知失败，继续下线: error={}", e.getMessage());
+                    return Future.succeededFuture();
+                });
+    }
+
+    private Future<Integer> closeSessions(Vertx vertx, GatewayConfig.Drain drain) {
+        LocalMap<String, String> verticles = vertx.sharedData().getLocalMap(GatewayApplication.VERTICLE_MAP_NAME);
+        List<String> addresses = new ArrayList<>(verticles.keySet());
+        if (addresses.isEmpty()) {
+            return Future.succeededFuture(0);
+        }
+        long maxDurationMs = drain.maxDurationSec() * 1000L;
+        JsonObject request = new JsonObject()
+                .put("ratePerSec", (double) drain.closeRatePerSec() / addresses.size())
+                .put("maxDurationMs", maxDurationMs);
+        DeliveryOptions options = new DeliveryOptions().setSendTimeout(maxDurationMs + REPLY_SLACK_MS);
+        List<Future<Integer>> replies = new ArrayList<>();
+        for (String address : addresses) {
+            replies.add(vertx.eventBus().<JsonObject>request(address + GatewayApplication.DRAIN_ADDRESS_SUFFIX, request, options)
+                    .map(reply -> reply.body().getInteger("closed", 0))
+                    .otherwise(e -> {
+                        log.warn("[DRAIN] Verticle 下线未完成: address={}, error={}", address, e.getMessage());
+                        return 0;
+                    }));
+        }
+        return Future.join(replies).map(all -> replies.stream().mapToInt(Future::result).sum());
+    }
+
+    private synchronized void finish(int closed) {
+        state = State.DRAINED;
+        finishedAtMs = System.currentTimeMillis();
+        metrics.onDrainState(2, sessions);
+        JsonObject result = status().put("closedByVerticles", closed);
+        log.info("[DRAIN] 优雅下线完成: {}", result.encode());
+        done.complete(result);
+    }
+}
@@ -1,7 +1,17 @@
 package com.deskpet.gateway;
 
+import io.vertx.core.json.JsonObject;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
 
 public final class GatewayMetrics {
     private static final GatewayMetrics INSTANCE = new GatewayMetrics();
@@ -18,10 +28,109 @@ public final class GatewayMetrics {
     private final LongAdder commandSendCount = new LongAdder();
     private final LongAdder commandSendOkCount = new LongAdder();
     private final LongAdder commandSendFailCount = new LongAdder();
+    private final LongAdder broadcastCount = new LongAdder();
+    private final LongAdder broadcastTargetCount = new LongAdder();
+    private final LongAdder broadcastDeliveredCount = new LongAdder();
+    private final LongAdder broadcastFailedCount = new LongAdder();
+    private final LongAdder batchFallbackCount = new LongAdder();
+    private final LongAdder heartbeatTimeoutCount = new LongAdder();
+    private final LongAdder uplinkJsonCount = new LongAdder();
+    private final LongAdder uplinkCborCount = new LongAdder();
+    private final LongAdder uplinkMsgpackCount = new LongAdder();
+    private final LongAdder payloadDecodeErrorCount = new LongAdder();
+    private final LongAdder downlinkEncodedCount = new LongAdder();
+    private final AtomicInteger downlinkInFlight = new AtomicInteger();
+    private final AtomicInteger downlinkQueued = new AtomicInteger();
+    private final LongAdder downlinkRetransmitCount = new LongAdder();
+    private final LongAdder downlinkRetransmitGiveUpCount = new LongAdder();
+    private final LongAdder downlinkWindowFullCount = new LongAdder();
+    private final LongAdder downlinkQueueTimeoutCount = new LongAdder();
+    private final LongAdder offlineQueuedCount = new LongAdder();
+    private final LongAdder offlineRejectedCount = new LongAdder();
+    private final LongAdder offlineExpiredCount = new LongAdder();
+    private final LongAdder offlineFlushedCount = new LongAdder();
+    private volatile IntSupplier offlineSessions = () -> 0;
+    private final LongAdder presenceFlapCount = new LongAdder();
+    private final LongAdder presenceBatchCount = new LongAdder();
+    private final LongAdder presenceChangeCount = new LongAdder();
+    private final LongAdder presenceBatchFailCount = new LongAdder();
+    private final LongAdder presenceHistoryDroppedCount = new LongAdder();
+    private volatile IntSupplier presencePending = () -> 0;
+    private final LongAdder activityBatchCount = new LongAdder();
+    private final LongAdder activityBatchFailCount = new LongAdder();
+    private final LongAdder activityRowCount = new LongAdder();
+    private final LongAdder activityUpdatedCount = new LongAdder();
+    private final AtomicInteger drainState = new AtomicInteger();
+    private final AtomicInteger drainSessions = new AtomicInteger();
+    private final LongAdder drainClosedCount = new LongAdder();
+    private final LongAdder mqtt5ConnectCount = new LongAdder();
+    private final LongAdder uplinkAliasedCount = new LongAdder();
+    private final LongAdder uplinkAliasSavedBytes = new LongAdder();
+    private final LongAdder downlinkAliasedCount = new LongAdder();
+    private final LongAdder downlinkAliasSavedBytes = new LongAdder();
+    private final LongAdder receiveMaximumExceededCount = new LongAdder();
+    private final LongAdder topicAliasInvalidCount = new LongAdder();
+    private volatile IntSupplier offlineQueueDepth = () -> 0;
+    private final LongAdder authCacheHitCount = new LongAdder();
+    private final LongAdder authCacheMissCount = new LongAdder();
+    private final LongAdder authCacheEvictionCount = new LongAdder();
+    private volatile IntSupplier authCacheSize = () -> 0;
+    private final AtomicInteger connectQueueDepth = new AtomicInteger();
+    private final LongAdder connectShedQueueFullCount = new LongAdder();
+    private final LongAdder connectShedTimeoutCount = new LongAdder();
+    private final BucketHistogram connectAdmissionWaitMs = new BucketHistogram(0, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000);
+    private volatile IntSupplier connectInFlight = () -> 0;
+    private final LongAdder spoolAppendCount = new LongAdder();
+    private final LongAdder spoolFullCount = new LongAdder();
+    private final LongAdder spoolReplayedCount = new LongAdder();
+    private final LongAdder spoolDroppedCount = new LongAdder();
+    private volatile LongSupplier spoolBytes = () -> 0;
+    private volatile IntSupplier spoolSegments = () -> 0;
+    private volatile LongSupplier spoolLag = () -> 0;
+    private volatile LongSupplier spoolOldestAgeMs = () -> 0;
+    private final AtomicInteger rpcConnected = new AtomicInteger();
+    private final LongAdder rpcRequestCount = new LongAdder();
+    private final LongAdder rpcInboundCount = new LongAdder();
+    private final LongAdder rpcBusyCount = new LongAdder();
+    private final LongAdder rpcFallbackCount = new LongAdder();
+    private final BucketHistogram batchSize = new BucketHistogram(1, 5, 10, 25, 50, 100, 200, 500, 1000);
+    private final BucketHistogram batchFlushLatencyMs = new BucketHistogram(1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500);
+    private final Map<String, LongAdder[]> telemetryDropped = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder[]> thingModelViolations = new ConcurrentHashMap<>();
+    private final LongAdder thingModelUpdateCount = new LongAdder();
+    private final LongAdder thingModelFetchFailCount = new LongAdder();
+    private volatile IntSupplier thingModelProducts = () -> 0;
+    private final Map<CoreEndpoint, LongAdder[]> coreRejected = new EnumMap<>(CoreEndpoint.class);
+    private final Map<CoreEndpoint, LongAdder> coreBreakerOpenCount = new EnumMap<>(CoreEndpoint.class);
+    private final LongAdder coreRetryAfterCount = new LongAdder();
+    private final AtomicInteger uplinkOrderQueued = new AtomicInteger();
+    private final LongAdder uplinkOrderOverflowCount = new LongAdder();
+    private final LongAdder uplinkInvalidJsonCount = new LongAdder();
+    private final Map<UplinkLane, AtomicInteger> uplinkLaneQueued = new EnumMap<>(UplinkLane.class);
+    private final Map<UplinkLane, LatencyHistogram> uplinkLaneWaitMs = new EnumMap<>(UplinkLane.class);
+    private final Map<UplinkLane, LongAdder[]> uplinkLaneShed = new EnumMap<>(UplinkLane.class);
+    private volatile DeviceHeavyHitters heavyHitters;
+    private volatile int heavyHittersTopN;
+    private volatile IntSupplier coreLimit = () -> 0;
+    private volatile IntSupplier coreInFlight = () -> 0;
+    private volatile ToIntFunction<CoreEndpoint> coreBreakerState = endpoint -> 0;
+    private final LatencyHistogram authLatency = new LatencyHistogram();
+    private final LatencyHistogram connectAcceptLatency = new LatencyHistogram();
+    private final LatencyHistogram callbackLatency = new LatencyHistogram();
+    private final LatencyHistogram commandDispatchLatency = new LatencyHistogram();
     private final AtomicInteger onlineCount = new AtomicInteger();
     private final long startTimeMs = System.currentTimeMillis();
 
     private GatewayMetrics() {
+        for (CoreEndpoint endpoint : CoreEndpoint.values()) {
+            coreRejected.put(endpoint, new LongAdder[]{new LongAdder(), new LongAdder(), new LongAdder()});
+            coreBreakerOpenCount.put(endpoint, new LongAdder());
+        }
+        for (UplinkLane lane : UplinkLane.values()) {
+            uplinkLaneQueued.put(lane, new AtomicInteger());
+            uplinkLaneWaitMs.put(lane, new LatencyHistogram());
+            uplinkLaneShed.put(lane, new LongAdder[]{new LongAdder(), new LongAdder()});
+        }
     }
 
     public static GatewayMetrics getInstance() {
@@ -88,6 +197,379 @@ public final class GatewayMetrics {
         return commandSendFailCount.sum();
     }
 
+    /**
+     * 记录一次批量下行广播的目标数、已写出或已缓存数与失败数。
+     */
+    public void onBroadcast(int targets, int delivered, int failed) {
+        broadcastCount.increment();
+        broadcastTargetCount.add(targets);
+        broadcastDeliveredCount.add(delivered);
+        broadcastFailedCount.add(failed);
+    }
+
+    /**
+     * 记录一次批量回调：批大小与从发出到收到响应的耗时。
+     */
+    public void onBatchFlush(int size, long latencyMs) {
+        batchSize.record(size);
+        batchFlushLatencyMs.record(latencyMs);
+    }
+
+    public void onBatchFallback() {
+        batchFallbackCount.increment();
+    }
+
+    void onUplinkFormat(PayloadFormat format) {
+        switch (format) {
+            case JSON -> uplinkJsonCount.increment();
+            case CBOR -> uplinkCborCount.increment();
+            case MSGPACK -> uplinkMsgpackCount.increment();
+        }
+    }
+
+    public void onPayloadDecodeError() {
+        payloadDecodeErrorCount.increment();
+    }
+
+    public void onDownlinkEncoded() {
+        downlinkEncodedCount.increment();
+    }
+
+    public void onHeartbeatTimeout() {
+        heartbeatTimeoutCount.increment();
+    }
+
+    public void onDownlinkInFlight(int delta) {
+        downlinkInFlight.addAndGet(delta);
+    }
+
+    public void onDownlinkQueued(int delta) {
+        downlinkQueued.addAndGet(delta);
+    }
+
+    public void onDownlinkRetransmit() {
+        downlinkRetransmitCount.increment();
+    }
+
+    public void onDownlinkRetransmitGiveUp() {
+        downlinkRetransmitGiveUpCount.increment();
+    }
+
+    public void onOfflineQueued() {
+        offlineQueuedCount.increment();
+    }
+
+    public void onOfflineRejected() {
+        offlineRejectedCount.increment();
+    }
+
+    public void onOfflineExpired(int count) {
+        if (count > 0) {
+            offlineExpiredCount.add(count);
+        }
+    }
+
+    public void onOfflineFlushed(int count) {
+        if (count > 0) {
+            offlineFlushedCount.add(count);
+        }
+    }
+
+    public void registerOfflineSessions(IntSupplier sessions, IntSupplier queueDepth) {
+        this.offlineSessions = sessions;
+        this.offlineQueueDepth = queueDepth;
+    }
+
+    public void onPresenceFlap() {
+        presenceFlapCount.increment();
+    }
+
+    public void onPresenceBatch(int changes) {
+        presenceBatchCount.increment();
+        presenceChangeCount.add(changes);
+    }
+
+    public void onPresenceBatchFail() {
+        presenceBatchFailCount.increment();
+    }
+
+    /**
+     * 一批最近活动时间发送成功：rows 为上报的设备数，updated 为 pet-core 实际更新的会话数。
+     */
+    public void onActivityBatch(int rows, int updated) {
+        activityBatchCount.increment();
+        activityRowCount.add(rows);
+        activityUpdatedCount.add(updated);
+    }
+
+    public void onActivityBatchFail() {
+        activityBatchFailCount.increment();
+    }
+
+    public void onPresenceHistoryDropped(int count) {
+        if (count > 0) {
+            presenceHistoryDroppedCount.add(count);
+        }
+    }
+
+    public void registerPresencePending(IntSupplier pending) {
+        this.presencePending = pending;
+    }
+
+    /**
+     * @param state 0 未下线，1 下线中，2 已完成
+     */
+    public void onDrainState(int state, int sessions) {
+        drainState.set(state);
+        drainSessions.set(sessions);
+    }
+
+    public void onDrainSessionClosed() {
+        drainClosedCount.increment();
+    }
+
+    public long drainClosedCount() {
+        return drainClosedCount.sum();
+    }
+
+    public void onMqtt5Connect() {
+        mqtt5ConnectCount.increment();
+    }
+
+    /**
+     * 一条使用 Topic Alias 的 PUBLISH，savedBytes 为相对完整 topic 节省的字节数（建立映射时为负）。
+     */
+    public void onTopicAlias(boolean uplink, int savedBytes) {
+        if (uplink) {
+            uplinkAliasedCount.increment();
+            uplinkAliasSavedBytes.add(savedBytes);
+        } else {
+            downlinkAliasedCount.increment();
+            downlinkAliasSavedBytes.add(savedBytes);
+        }
+    }
+
+    public void onReceiveMaximumExceeded() {
+        receiveMaximumExceededCount.increment();
+    }
+
+    public void onTopicAliasInvalid() {
+        topicAliasInvalidCount.increment();
+    }
+
+    public void onDownlinkOverflow(String reason) {
+        if ("QUEUE_TIMEOUT".equals(reason)) {
+            downlinkQueueTimeoutCount.increment();
+        } else {
+            downlinkWindowFullCount.increment();
+        }
+    }
+
+    public void onAuthCacheHit() {
+        authCacheHitCount.increment();
+    }
+
+    public void onAuthCacheMiss() {
+        authCacheMissCount.increment();
+    }
+
+    public void onAuthCacheEviction() {
+        authCacheEvictionCount.increment();
+    }
+
+    public void registerAuthCacheSize(IntSupplier size) {
+        this.authCacheSize = size;
+    }
+
+    public void onConnectQueued(int delta) {
+        connectQueueDepth.addAndGet(delta);
+    }
+
+    public void onConnectAdmissionWait(long waitMs) {
+        connectAdmissionWaitMs.record(waitMs);
+    }
+
+    public void onConnectShed(String reason) {
+        if ("timeout".equals(reason)) {
+            connectShedTimeoutCount.increment();
+        } else {
+            connectShedQueueFullCount.increment();
+        }
+    }
+
+    public void registerConnectInFlight(IntSupplier inFlight) {
+        this.connectInFlight = inFlight;
+    }
+
+    public void onSpoolAppend() {
+        spoolAppendCount.increment();
+    }
+
+    public void onSpoolFull() {
+        spoolFullCount.increment();
+    }
+
+    public void onSpoolReplayed() {
+        spoolReplayedCount.increment();
+    }
+
+    public void onSpoolDropped() {
+        spoolDroppedCount.increment();
+    }
+
+    public void onRpcConnected(int delta) {
+        rpcConnected.addAndGet(delta);
+    }
+
+    public void onRpcRequest() {
+        rpcRequestCount.increment();
+    }
+
+    public void onRpcInbound() {
+        rpcInboundCount.increment();
+    }
+
+    public void onRpcBusy() {
+        rpcBusyCount.increment();
+    }
+
+    public void onRpcFallback() {
+        rpcFallbackCount.increment();
+    }
+
+    /**
+     * 按产品与原因（{@link TelemetryGate#REASON_RATE_LIMITED}、{@link TelemetryGate#REASON_COALESCED}）统计未转发的遥测。
+     */
+    public void onTelemetryDropped(String productKey, String reason) {
+        LongAdder[] counts = telemetryDropped.computeIfAbsent(productKey == null ? "unknown" : productKey,
+                key -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        counts[TelemetryGate.REASON_COALESCED.equals(reason) ? 1 : 0].increment();
+    }
+
+    /**
+     * 按产品统计不符合物模型的遥测：rejected 为 true 时计一条整条拒绝的消息，否则计剔除的字段数。
+     * 返回对应计数的累计值，供调用方抽样打印日志。
+     */
+    public long onThingModelViolation(String productKey, boolean rejected, int fields) {
+        LongAdder[] counts = thingModelViolations.computeIfAbsent(productKey,
+                key -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        LongAdder count = counts[rejected ? 0 : 1];
+        count.add(rejected ? 1 : fields);
+        return count.sum();
+    }
+
+    public void onThingModelUpdate() {
+        thingModelUpdateCount.increment();
+    }
+
+    public void onThingModelFetchFail() {
+        thingModelFetchFailCount.increment();
+    }
+
+    public void registerThingModelProducts(IntSupplier products) {
+        this.thingModelProducts = products;
+    }
+
+    /**
+     * 按接口分类与原因（{@link CoreGuard#REASON_QUEUE_FULL}、{@link CoreGuard#REASON_QUEUE_TIMEOUT}、
+     * {@link CoreGuard#REASON_CIRCUIT_OPEN}）统计未发出的 pet-core 调用。
+     */
+    public void onCoreRejected(CoreEndpoint endpoint, String reason) {
+        LongAdder[] counts = coreRejected.get(endpoint);
+        counts[CoreGuard.REASON_QUEUE_FULL.equals(reason) ? 0 : CoreGuard.REASON_QUEUE_TIMEOUT.equals(reason) ? 1 : 2].increment();
+    }
+
+    public void onCoreBreakerOpen(CoreEndpoint endpoint) {
+        coreBreakerOpenCount.get(endpoint).increment();
+    }
+
+    public void onCoreRetryAfter() {
+        coreRetryAfterCount.increment();
+    }
+
+    /**
+     * 按设备保序而排队等待前一个请求完成的上行消息数变化。
+     */
+    public void onUplinkOrderQueued(int delta) {
+        uplinkOrderQueued.addAndGet(delta);
+    }
+
+    public void onUplinkOrderOverflow() {
+        uplinkOrderOverflowCount.increment();
+    }
+
+    /**
+     * 走批量但 payload 不是单个 JSON 值而被拒绝的上行，返回累计数用于日志限频。
+     */
+    public long onUplinkInvalidJson() {
+        uplinkInvalidJsonCount.increment();
+        return uplinkInvalidJsonCount.sum();
+    }
+
+    public void onUplinkLaneQueued(UplinkLane lane, int delta) {
+        uplinkLaneQueued.get(lane).addAndGet(delta);
+    }
+
+    public void onUplinkLaneWait(UplinkLane lane, long enqueuedNanos) {
+        uplinkLaneWaitMs.get(lane).recordSince(enqueuedNanos);
+    }
+
+    /**
+     * 优先级通道主动丢弃的上行消息：replaced 为被同设备更新的遥测取代，queue_full 为通道已满。
+     */
+    public void onUplinkLaneShed(UplinkLane lane, boolean replaced) {
+        uplinkLaneShed.get(lane)[replaced ? 0 : 1].increment();
+    }
+
+    public void registerHeavyHitters(DeviceHeavyHitters hitters, int topN) {
+        this.heavyHittersTopN = topN;
+        this.heavyHitters = hitters;
+    }
+
+    public void registerCoreGuard(IntSupplier limit, IntSupplier inFlight, ToIntFunction<CoreEndpoint> breakerState) {
+        this.coreLimit = limit;
+        this.coreInFlight = inFlight;
+        this.coreBreakerState = breakerState;
+    }
+
+    /**
+     * 一次 pet-core 鉴权调用（含重试）的耗时。
+     */
+    public void onAuthLatency(long startNanos) {
+        authLatency.recordSince(startNanos);
+    }
+
+    /**
+     * 从收到 CONNECT 到接受连接的耗时，含准入排队与鉴权。
+     */
+    public void onConnectAccepted(long startNanos) {
+        connectAcceptLatency.recordSince(startNanos);
+    }
+
+    /**
+     * 一次上行回调 pet-core（单条或批量，HTTP 或长连接）的耗时。
+     */
+    public void onCallbackLatency(long startNanos) {
+        callbackLatency.recordSince(startNanos);
+    }
+
+    /**
+     * 下行指令经 event bus 投递到连接所在实例并得到结果的耗时。
+     */
+    public void onCommandDispatchLatency(long startNanos) {
+        commandDispatchLatency.recordSince(startNanos);
+    }
+
+    public void registerSpool(LongSupplier bytes, IntSupplier segments, LongSupplier lag) {
+        this.spoolBytes = bytes;
+        this.spoolSegments = segments;
+        this.spoolLag = lag;
+    }
+
+    public void registerSpoolOldestAge(LongSupplier oldestAgeMs) {
+        this.spoolOldestAgeMs = oldestAgeMs;
+    }
+
     public void setOnlineCount(int count) {
         onlineCount.set(Math.max(0, count));
     }
@@ -144,10 +626,55 @@ public final class GatewayMetrics {
         return commandSendFailCount.sum();
     }
 
+    public long batchFallbackCount() {
+        return batchFallbackCount.sum();
+    }
+
+    public long batchFlushCount() {
+        return batchSize.count();
+    }
+
+    public long authCacheHitCount() {
+        return authCacheHitCount.sum();
+    }
+
+    public long authCacheMissCount() {
+        return authCacheMissCount.sum();
+    }
+
+    public long authCacheEvictionCount() {
+        return authCacheEvictionCount.sum();
+    }
+
+    public double authCacheHitRatio() {
+        long hits = authCacheHitCount();
+        long total = hits + authCacheMissCount();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public int connectQueueDepth() {
+        return connectQueueDepth.get();
+    }
+
+    public long connectShedCount() {
+        return connectShedQueueFullCount.sum() + connectShedTimeoutCount.sum();
+    }
+
     public double uptimeSeconds() {
         return (System.currentTimeMillis() - startTimeMs) / 1000.0;
     }
 
+    /**
+     * 各热路径阶段的耗时百分位，供调试接口与管理后台查看。
+     */
+    public JsonObject latencySummary() {
+        return new JsonObject()
+                .put("auth", authLatency.snapshot().toJson())
+                .put("connectAccept", connectAcceptLatency.snapshot().toJson())
+                .put("callback", callbackLatency.snapshot().toJson())
+                .put("commandDispatch", commandDispatchLatency.snapshot().toJson());
+    }
+
     public String toPrometheus() {
         StringBuilder sb = new StringBuilder();
         appendGauge(sb, "deskpet_gateway_online", onlineCount(), "当前在线设备数");
@@ -163,10 +690,185 @@ public final class GatewayMetrics {
         appendCounter(sb, "deskpet_gateway_command_send_total", commandSendCount(), "下发请求次数");
         appendCounter(sb, "deskpet_gateway_command_send_ok_total", commandSendOkCount(), "下发成功次数");
         appendCounter(sb, "deskpet_gateway_command_send_fail_total", commandSendFailCount(), "下发失败次数");
+        appendCounter(sb, "deskpet_gateway_broadcast_total", broadcastCount.sum(), "批量下行广播次数");
+        appendCounter(sb, "deskpet_gateway_broadcast_target_total", broadcastTargetCount.sum(), "批量下行广播的目标设备数");
+        appendCounter(sb, "deskpet_gateway_broadcast_delivered_total", broadcastDeliveredCount.sum(), "批量下行广播已写出或缓存到离线队列的设备数");
+        appendCounter(sb, "deskpet_gateway_broadcast_failed_total", broadcastFailedCount.sum(), "批量下行广播失败的设备数");
+        sb.append("# HELP deskpet_gateway_uplink_format_total 按编码格式统计的上行消息数\n");
+        sb.append("# TYPE deskpet_gateway_uplink_format_total counter\n");
+        sb.append("deskpet_gateway_uplink_format_total{format=\"json\"} ").append(uplinkJsonCount.sum()).append('\n');
+        sb.append("deskpet_gateway_uplink_format_total{format=\"cbor\"} ").append(uplinkCborCount.sum()).append('\n');
+        sb.append("deskpet_gateway_uplink_format_total{format=\"msgpack\"} ").append(uplinkMsgpackCount.sum()).append('\n');
+        appendCounter(sb, "deskpet_gateway_payload_decode_error_total", payloadDecodeErrorCount.sum(), "二进制 payload 解码失败次数");
+        appendCounter(sb, "deskpet_gateway_downlink_encoded_total", downlinkEncodedCount.sum(), "按设备选择格式编码的下行消息数");
+        appendCounter(sb, "deskpet_gateway_heartbeat_timeout_total", heartbeatTimeoutCount.sum(), "心跳超时断开次数");
+        sb.append("# HELP deskpet_gateway_telemetry_dropped_total 限流或合并而未转发的遥测数\n");
+        sb.append("# TYPE deskpet_gateway_telemetry_dropped_total counter\n");
+        new TreeMap<>(telemetryDropped).forEach((product, counts) -> {
+            sb.append("deskpet_gateway_telemetry_dropped_total{product=\"").append(product)
+                    .append("\",reason=\"").append(TelemetryGate.REASON_RATE_LIMITED).append("\"} ").append(counts[0].sum()).append('\n');
+            sb.append("deskpet_gateway_telemetry_dropped_total{product=\"").append(product)
+                    .append("\",reason=\"").append(TelemetryGate.REASON_COALESCED).append("\"} ").append(counts[1].sum()).append('\n');
+        });
+        sb.append("# HELP deskpet_gateway_thing_model_violation_total 不符合物模型的遥测：整条拒绝的消息数与剔除的字段数\n");
+        sb.append("# TYPE deskpet_gateway_thing_model_violation_total counter\n");
+        new TreeMap<>(thingModelViolations).forEach((product, counts) -> {
+            sb.append("deskpet_gateway_thing_model_violation_total{product=\"").append(product)
+                    .append("\",action=\"rejected\"} ").append(counts[0].sum()).append('\n');
+            sb.append("deskpet_gateway_thing_model_violation_total{product=\"").append(product)
+                    .append("\",action=\"stripped\"} ").append(counts[1].sum()).append('\n');
+        });
+        appendGauge(sb, "deskpet_gateway_thing_model_products", thingModelProducts.getAsInt(), "已加载物模型快照的产品数");
+        appendCounter(sb, "deskpet_gateway_thing_model_update_total", thingModelUpdateCount.sum(), "物模型快照加载或按新版本替换的次数");
+        appendCounter(sb, "deskpet_gateway_thing_model_fetch_fail_total", thingModelFetchFailCount.sum(), "物模型快照拉取失败次数");
+        appendGauge(sb, "deskpet_gateway_uplink_order_queued", uplinkOrderQueued.get(), "按设备保序排队等待发送的上行消息数");
+        appendCounter(sb, "deskpet_gateway_uplink_order_overflow_total", uplinkOrderOverflowCount.sum(), "设备排队已满而未投递的上行消息数");
+        appendCounter(sb, "deskpet_gateway_uplink_invalid_json_total", uplinkInvalidJsonCount.sum(), "不是单个 JSON 值而拒绝拼入批次的上行消息数");
+        sb.append("# HELP deskpet_gateway_uplink_lane_queue_depth 各优先级通道尚未发出的上行消息数\n");
+        sb.append("# TYPE deskpet_gateway_uplink_lane_queue_depth gauge\n");
+        uplinkLaneQueued.forEach((lane, queued) -> sb.append("deskpet_gateway_uplink_lane_queue_depth{lane=\"")
+                .append(lane.key()).append("\"} ").append(queued.get()).append('\n'));
+        sb.append("# HELP deskpet_gateway_uplink_lane_wait_ms 上行消息在优先级通道中的排队时间(毫秒)\n");
+        sb.append("# TYPE deskpet_gateway_uplink_lane_wait_ms histogram\n");
+        uplinkLaneWaitMs.forEach((lane, histogram) ->
+                histogram.appendSamples(sb, "deskpet_gateway_uplink_lane_wait_ms", "lane=\"" + lane.key() + "\""));
+        sb.append("# HELP deskpet_gateway_uplink_lane_shed_total 优先级通道主动丢弃的上行消息数\n");
+        sb.append("# TYPE deskpet_gateway_uplink_lane_shed_total counter\n");
+        uplinkLaneShed.forEach((lane, counts) -> {
+            sb.append("deskpet_gateway_uplink_lane_shed_total{lane=\"").append(lane.key())
+                    .append("\",reason=\"replaced\"} ").append(counts[0].sum()).append('\n');
+            sb.append("deskpet_gateway_uplink_lane_shed_total{lane=\"").append(lane.key())
+                    .append("\",reason=\"queue_full\"} ").append(counts[1].sum()).append('\n');
+        });
+        appendHeavyHitters(sb);
+        appendGauge(sb, "deskpet_gateway_core_limit", coreLimit.getAsInt(), "发往 pet-core 的自适应并发上限");
+        appendGauge(sb, "deskpet_gateway_core_in_flight", coreInFlight.getAsInt(), "发往 pet-core 的在途请求数");
+        sb.append("# HELP deskpet_gateway_core_rejected_total 并发上限或熔断而未发出的 pet-core 调用数\n");
+        sb.append("# TYPE deskpet_gateway_core_rejected_total counter\n");
+        coreRejected.forEach((endpoint, counts) -> {
+            sb.append("deskpet_gateway_core_rejected_total{endpoint=\"").append(endpoint.key())
+                    .append("\",reason=\"").append(CoreGuard.REASON_QUEUE_FULL).append("\"} ").append(counts[0].sum()).append('\n');
+            sb.append("deskpet_gateway_core_rejected_total{endpoint=\"").append(endpoint.key())
+                    .append("\",reason=\"").append(CoreGuard.REASON_QUEUE_TIMEOUT).append("\"} ").append(counts[1].sum()).append('\n');
+            sb.append("deskpet_gateway_core_rejected_total{endpoint=\"").append(endpoint.key())
+                    .append("\",reason=\"").append(CoreGuard.REASON_CIRCUIT_OPEN).append("\"} ").append(counts[2].sum()).append('\n');
+        });
+        sb.append("# HELP deskpet_gateway_core_breaker_state pet-core 接口熔断器状态(0 关闭，1 打开，2 半开)\n");
+        sb.append("# TYPE deskpet_gateway_core_breaker_state gauge\n");
+        for (CoreEndpoint endpoint : CoreEndpoint.values()) {
+            sb.append("deskpet_gateway_core_breaker_state{endpoint=\"").append(endpoint.key()).append("\"} ")
+                    .append(coreBreakerState.applyAsInt(endpoint)).append('\n');
+        }
+        sb.append("# HELP deskpet_gateway_core_breaker_open_total pet-core 接口熔断次数\n");
+        sb.append("# TYPE deskpet_gateway_core_breaker_open_total counter\n");
+        coreBreakerOpenCount.forEach((endpoint, count) -> sb.append("deskpet_gateway_core_breaker_open_total{endpoint=\"")
+                .append(endpoint.key()).append("\"} ").append(count.sum()).append('\n'));
+        appendCounter(sb, "deskpet_gateway_core_retry_after_total", coreRetryAfterCount.sum(), "pet-core 返回 Retry-After 的次数");
+        appendGauge(sb, "deskpet_gateway_downlink_in_flight", downlinkInFlight.get(), "等待 PUBACK 的 QoS1 下行消息数");
+        appendGauge(sb, "deskpet_gateway_downlink_queued", downlinkQueued.get(), "下行窗口已满而排队的消息数");
+        appendCounter(sb, "deskpet_gateway_downlink_retransmit_total", downlinkRetransmitCount.sum(), "QoS1 下行重发次数");
+        appendCounter(sb, "deskpet_gateway_downlink_retransmit_give_up_total", downlinkRetransmitGiveUpCount.sum(), "QoS1 下行重发次数耗尽放弃的消息数");
+        sb.append("# HELP deskpet_gateway_downlink_rejected_total 下行窗口拒绝的消息数\n");
+        sb.append("# TYPE deskpet_gateway_downlink_rejected_total counter\n");
+        sb.append("deskpet_gateway_downlink_rejected_total{reason=\"window_full\"} ").append(downlinkWindowFullCount.sum()).append('\n');
+        sb.append("deskpet_gateway_downlink_rejected_total{reason=\"queue_timeout\"} ").append(downlinkQueueTimeoutCount.sum()).append('\n');
+        appendGauge(sb, "deskpet_gateway_persistent_sessions", offlineSessions.getAsInt(), "保留中的持久会话数");
+        appendGauge(sb, "deskpet_gateway_offline_queue_depth", offlineQueueDepth.getAsInt(), "为离线设备缓存的下行消息数");
+        appendCounter(sb, "deskpet_gateway_offline_queued_total", offlineQueuedCount.sum(), "缓存到离线队列的下行消息数");
+        appendCounter(sb, "deskpet_gateway_offline_rejected_total", offlineRejectedCount.sum(), "离线队列已满被拒绝的下行消息数");
+        appendCounter(sb, "deskpet_gateway_offline_expired_total", offlineExpiredCount.sum(), "离线队列中过期丢弃的下行消息数");
+        appendCounter(sb, "deskpet_gateway_offline_flushed_total", offlineFlushedCount.sum(), "重连后补发的离线下行消息数");
+        appendCounter(sb, "deskpet_gateway_presence_flap_total", presenceFlapCount.sum(), "去抖窗口内离线后重新上线而互相抵消的次数");
+        appendCounter(sb, "deskpet_gateway_presence_batch_total", presenceBatchCount.sum(), "发往 pet-core 的在线状态批次数");
+        appendCounter(sb, "deskpet_gateway_presence_change_total", presenceChangeCount.sum(), "批量通知的在线状态净变化数");
+        appendCounter(sb, "deskpet_gateway_presence_batch_fail_total", presenceBatchFailCount.sum(), "在线状态批次发送失败次数");
+        appendCounter(sb, "deskpet_gateway_presence_history_dropped_total", presenceHistoryDroppedCount.sum(), "积压超限而丢弃的原始上下线记录数");
+        appendGauge(sb, "deskpet_gateway_presence_pending", presencePending.getAsInt(), "等待通知 pet-core 的在线状态变化数");
+        appendCounter(sb, "deskpet_gateway_activity_batch_total", activityBatchCount.sum(), "发往 pet-core 的最近活动时间批次数");
+        appendCounter(sb, "deskpet_gateway_activity_batch_fail_total", activityBatchFailCount.sum(), "最近活动时间批次发送失败次数");
+        appendCounter(sb, "deskpet_gateway_activity_rows_total", activityRowCount.sum(), "上报最近活动时间的设备次数");
+        appendCounter(sb, "deskpet_gateway_activity_updated_total", activityUpdatedCount.sum(), "pet-core 实际更新 last_seen 的会话数");
+        long uplinks = telemetryCount.sum() + eventCount.sum() + requestCount.sum() + ackCount.sum();
+        appendGauge(sb, "deskpet_gateway_activity_write_ratio", uplinks == 0 ? 0 : (double) activityUpdatedCount.sum() / uplinks,
+                "last_seen 写入行数与上行消息数之比（写放大）");
+        appendGauge(sb, "deskpet_gateway_drain_state", drainState.get(), "优雅下线状态(0 未下线，1 下线中，2 已完成)");
+        appendGauge(sb, "deskpet_gateway_drain_sessions", drainSessions.get(), "开始下线时需要迁移的会话数");
+        appendCounter(sb, "deskpet_gateway_drain_closed_total", drainClosedCount.sum(), "下线过程中主动关闭的会话数");
+        appendCounter(sb, "deskpet_gateway_mqtt5_connect_total", mqtt5ConnectCount.sum(), "按 MQTT 5 协商的连接数");
+        sb.append("# HELP deskpet_gateway_topic_alias_total 使用 Topic Alias 的 PUBLISH 数\n");
+        sb.append("# TYPE deskpet_gateway_topic_alias_total counter\n");
+        sb.append("deskpet_gateway_topic_alias_total{direction=\"uplink\"} ").append(uplinkAliasedCount.sum()).append('\n');
+        sb.append("deskpet_gateway_topic_alias_total{direction=\"downlink\"} ").append(downlinkAliasedCount.sum()).append('\n');
+        sb.append("# HELP deskpet_gateway_topic_alias_saved_bytes_total Topic Alias 相对完整 topic 节省的字节数\n");
+        sb.append("# TYPE deskpet_gateway_topic_alias_saved_bytes_total counter\n");
+        sb.append("deskpet_gateway_topic_alias_saved_bytes_total{direction=\"uplink\"} ").append(uplinkAliasSavedBytes.sum()).append('\n');
+        sb.append("deskpet_gateway_topic_alias_saved_bytes_total{direction=\"downlink\"} ").append(downlinkAliasSavedBytes.sum()).append('\n');
+        sb.append("# HELP deskpet_gateway_mqtt5_protocol_error_total 因违反协商参数被断开的 MQTT 5 连接数\n");
+        sb.append("# TYPE deskpet_gateway_mqtt5_protocol_error_total counter\n");
+        sb.append("deskpet_gateway_mqtt5_protocol_error_total{reason=\"receive_maximum_exceeded\"} ").append(receiveMaximumExceededCount.sum()).append('\n');
+        sb.append("deskpet_gateway_mqtt5_protocol_error_total{reason=\"topic_alias_invalid\"} ").append(topicAliasInvalidCount.sum()).append('\n');
+        appendCounter(sb, "deskpet_gateway_auth_cache_hit_total", authCacheHitCount(), "鉴权缓存命中次数");
+        appendCounter(sb, "deskpet_gateway_auth_cache_miss_total", authCacheMissCount(), "鉴权缓存未命中次数");
+        appendCounter(sb, "deskpet_gateway_auth_cache_eviction_total", authCacheEvictionCount(), "鉴权缓存淘汰次数");
+        appendGauge(sb, "deskpet_gateway_auth_cache_size", authCacheSize.getAsInt(), "鉴权缓存条目数");
+        appendGauge(sb, "deskpet_gateway_auth_cache_hit_ratio", authCacheHitRatio(), "鉴权缓存命中率");
+        appendGauge(sb, "deskpet_gateway_connect_queue_depth", connectQueueDepth(), "等待鉴权的连接数");
+        appendGauge(sb, "deskpet_gateway_connect_auth_in_flight", connectInFlight.getAsInt(), "进行中的鉴权请求数");
+        connectAdmissionWaitMs.appendPrometheus(sb, "deskpet_gateway_connect_admission_wait_ms", "连接准入等待时间(毫秒)");
+        sb.append("# HELP deskpet_gateway_connect_shed_total 准入控制拒绝的连接数\n");
+        sb.append("# TYPE deskpet_gateway_connect_shed_total counter\n");
+        sb.append("deskpet_gateway_connect_shed_total{reason=\"queue_full\"} ").append(connectShedQueueFullCount.sum()).append('\n');
+        sb.append("deskpet_gateway_connect_shed_total{reason=\"timeout\"} ").append(connectShedTimeoutCount.sum()).append('\n');
+        appendCounter(sb, "deskpet_gateway_spool_append_total", spoolAppendCount.sum(), "写入本地 spool 的上行消息数");
+        appendCounter(sb, "deskpet_gateway_spool_full_total", spoolFullCount.sum(), "spool 已满改为直连回调的消息数");
+        appendCounter(sb, "deskpet_gateway_spool_replayed_total", spoolReplayedCount.sum(), "spool 重放成功的消息数");
+        appendCounter(sb, "deskpet_gateway_spool_dropped_total", spoolDroppedCount.sum(), "spool 重放被 pet-core 拒绝而丢弃的消息数");
+        appendGauge(sb, "deskpet_gateway_spool_bytes", spoolBytes.getAsLong(), "spool 占用字节数");
+        appendGauge(sb, "deskpet_gateway_spool_segments", spoolSegments.getAsInt(), "spool 分段文件数");
+        appendGauge(sb, "deskpet_gateway_spool_replay_lag", spoolLag.getAsLong(), "spool 未确认投递的消息数");
+        appendGauge(sb, "deskpet_gateway_spool_oldest_undelivered_age_ms", spoolOldestAgeMs.getAsLong(), "spool 最早未投递消息的滞留时长(毫秒)");
+        appendGauge(sb, "deskpet_gateway_core_rpc_connected", rpcConnected.get(), "与 pet-core 已建立的长连接数");
+        appendCounter(sb, "deskpet_gateway_core_rpc_request_total", rpcRequestCount.sum(), "经长连接发往 pet-core 的请求数");
+        appendCounter(sb, "deskpet_gateway_core_rpc_inbound_total", rpcInboundCount.sum(), "pet-core 经长连接下发的请求数");
+        appendCounter(sb, "deskpet_gateway_core_rpc_busy_total", rpcBusyCount.sum(), "长连接在途已满而拒绝的请求数");
+        appendCounter(sb, "deskpet_gateway_core_rpc_fallback_total", rpcFallbackCount.sum(), "长连接不可用而回退 HTTP 的批次数");
+        appendCounter(sb, "deskpet_gateway_batch_fallback_total", batchFallbackCount(), "批量回调被拒后逐条回退次数");
+        batchSize.appendPrometheus(sb, "deskpet_gateway_batch_size", "批量回调每批消息条数");
+        batchFlushLatencyMs.appendPrometheus(sb, "deskpet_gateway_batch_flush_latency_ms", "批量回调耗时(毫秒)");
+        authLatency.appendPrometheus(sb, "deskpet_gateway_auth_latency_ms", "pet-core 鉴权耗时(毫秒)");
+        connectAcceptLatency.appendPrometheus(sb, "deskpet_gateway_connect_accept_latency_ms", "CONNECT 到接受连接的耗时(毫秒)");
+        callbackLatency.appendPrometheus(sb, "deskpet_gateway_callback_latency_ms", "上行回调 pet-core 耗时(毫秒)");
+        commandDispatchLatency.appendPrometheus(sb, "deskpet_gateway_command_dispatch_latency_ms", "下行指令 event bus 投递耗时(毫秒)");
         appendGauge(sb, "deskpet_gateway_uptime_seconds", uptimeSeconds(), "运行时长(秒)");
         return sb.toString();
     }
 
+    /**
+     * 各窗口按消息数与字节数的前 topN 个设备（所有消息类型合计），序列数固定为 3 × 2 × topN。
+     */
+    private void appendHeavyHitters(StringBuilder sb) {
+        DeviceHeavyHitters hitters = heavyHitters;
+        if (hitters == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        appendGauge(sb, "deskpet_gateway_device_top_sketch_bytes", hitters.sketchBytes(), "设备流量 Top-K 统计占用的计数器字节数");
+        for (boolean byBytes : new boolean[]{false, true}) {
+            String name = byBytes ? "deskpet_gateway_device_top_bytes" : "deskpet_gateway_device_top_messages";
+            sb.append("# HELP ").append(name).append(byBytes ? " 窗口内上行字节数最多的设备(近似值)\n" : " 窗口内上行消息数最多的设备(近似值)\n");
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            for (DeviceHeavyHitters.Window window : DeviceHeavyHitters.Window.values()) {
+                List<DeviceHeavyHitters.Hitter> top = hitters.top(window, byBytes, null, heavyHittersTopN, now);
+                for (int i = 0; i < top.size(); i++) {
+                    DeviceHeavyHitters.Hitter hitter = top.get(i);
+                    sb.append(name).append("{window=\"").append(window.key()).append("\",rank=\"").append(i + 1)
+                            .append("\",device=\"").append(hitter.deviceId()).append("\"} ")
+                            .append(byBytes ? hitter.bytes() : hitter.messages()).append('\n');
+                }
+            }
+        }
+    }
+
     private void appendCounter(StringBuilder sb, String name, long value, String help) {
         sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
         sb.append("# TYPE ").append(name).append(" counter\n");
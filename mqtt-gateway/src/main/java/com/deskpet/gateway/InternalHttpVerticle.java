@@ -1,23 +1,28 @@
 package com.deskpet.gateway;
 
 import com.deskpet.GatewayApplication;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.DeliveryOptions;
-import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.handler.BodyHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 @Slf4j
 public class InternalHttpVerticle extends AbstractVerticle {
@@ -25,12 +30,18 @@ public class InternalHttpVerticle extends AbstractVerticle {
     private static final String HEADER_CONTENT_TYPE = "Content-Type";
     private static final String HEADER_INTERNAL_TOKEN = "X-Internal-Token";
     private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
     private static final String FIELD_REASON = "reason";
     private static final int COMMAND_TIMEOUT_MS = 3000;
 
     private GatewayConfig config;
-    private ObjectMapper objectMapper;
     private GatewayMetrics metrics;
+    private CredentialCache credentialCache;
+    private DownlinkRouter downlinkRouter;
+    private SessionIndex sessions;
+    private PresenceBatcher presenceBatcher;
+    private DeviceHeavyHitters heavyHitters;
+    private CoreClient coreClient;
 
     @Override
     public void start(Promise<Void> startPromise) {
@@ -40,13 +51,43 @@ public class InternalHttpVerticle extends AbstractVerticle {
                 return;
             }
             this.config = ar.result();
-            this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
             this.metrics = GatewayMetrics.getInstance();
+            this.credentialCache = CredentialCache.shared(config.authCache());
+            OfflineSessionStore offlineSessions = config.session().enabled()
+                    ? OfflineSessionStore.shared(config.session())
+                    : null;
+            LocalMessageCodec.registerDownlink(vertx);
+            this.sessions = SessionIndex.shared();
+            this.downlinkRouter = new DownlinkRouter(vertx, sessions, offlineSessions, metrics);
+            if (config.presence().enabled()) {
+                this.presenceBatcher = PresenceBatcher.shared(config.presence());
+            }
+            if (config.heavyHitters().enabled()) {
+                this.heavyHitters = DeviceHeavyHitters.shared(config.heavyHitters());
+            }
+            this.coreClient = new CoreClient(vertx, WebClient.create(vertx), config);
+            vertx.eventBus().<JsonObject>consumer(GatewayApplication.DRAIN_ADDRESS, message -> {
+                if (!config.drain().enabled()) {
+                    message.reply(new JsonObject().put("state", "SKIPPED"));
+                    return;
+                }
+                GatewayDrain.getInstance().start(vertx, coreClient, config).onComplete(drained -> message.reply(drained.result()));
+            });
 
             Router router = Router.router(vertx);
+            // 广播目标列表可能很大，不经 BodyHandler 整体缓存，NDJSON 请求体按行流式读取
+            router.post("/internal/command/broadcast").handler(this::handleBroadcast);
             router.route().handler(BodyHandler.create());
             router.post("/internal/command/send").handler(this::handleSendCommand);
             router.post("/internal/response/send").handler(this::handleSendResponse);
+            router.post("/internal/auth/invalidate").handler(this::handleAuthInvalidate);
+            router.get("/internal/debug/downlink").handler(this::handleDownlinkDebug);
+            router.get("/internal/debug/latency").handler(this::handleLatencyDebug);
+            router.get("/internal/debug/flaps").handler(this::handleFlapDebug);
+            router.get("/internal/debug/hitters").handler(this::handleHitterDebug);
+            router.get("/internal/debug/sessions").handler(this::handleSessionDebug);
+            router.post("/internal/drain").handler(this::handleDrain);
+            router.get("/internal/drain").handler(this::handleDrainStatus);
             if (config.metricsEnabled()) {
                 router.get(config.metricsPath()).handler(this::handleMetrics);
             }
@@ -78,102 +119,318 @@ public class InternalHttpVerticle extends AbstractVerticle {
         if (!isAuthorized(ctx)) {
             return;
         }
-        SendPublishRequest request = parseRequest(ctx);
-        if (request == null) {
+        DownlinkCommand command = parseCommand(ctx);
+        if (command == null) {
             return;
         }
-        metrics.onCommandSend();
-        log.info("[CMD-GW] 收到下行请求: deviceId={}, topic={}, qos={}", request.deviceId(), request.topic(), request.qos());
-        if (request.payload() == null || request.payload().isBlank()) {
-            log.warn("[CMD-GW] payload 为空: deviceId={}", request.deviceId());
-            sendJson(ctx, 400, false, "EMPTY_PAYLOAD");
-            metrics.onCommandSendFail();
+        downlinkRouter.send(command, expectedChannel)
+                .onSuccess(outcome -> sendJson(ctx, outcome.status(), outcome.ok(), outcome.reason()));
+    }
+
+    /**
+     * 向一批设备的 pet/{deviceId}/cmd 下发同一条指令。请求体为 {@code {"payload":..,"qos":1,"deviceIds":[..]}}；
+     * 目标很多时可用 NDJSON：首行为不含 deviceIds 的同样结构，之后每行一个 deviceId。
+     * 返回写出数、缓存到离线队列的数量与按原因分组的失败设备。
+     */
+    private void handleBroadcast(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
             return;
         }
-        if (!TopicAcl.isValidDownlink(request.deviceId(), request.topic())
-                || !request.topic().endsWith("/" + expectedChannel)) {
-            log.warn("[CMD-GW] 非法下行 topic: deviceId={}, topic={}", request.deviceId(), request.topic());
-            sendJson(ctx, 400, false, "INVALID_TOPIC");
-            metrics.onCommandSendFail();
+        HttpServerRequest request = ctx.request();
+        String contentType = request.getHeader(HEADER_CONTENT_TYPE);
+        if (contentType != null && contentType.startsWith(CONTENT_TYPE_NDJSON)) {
+            streamBroadcast(ctx);
             return;
         }
+        request.body().onComplete(ar -> {
+            JsonObject body;
+            try {
+                body = ar.succeeded() ? ar.result().toJsonObject() : null;
+            } catch (RuntimeException e) {
+                body = null;
+            }
+            if (body == null) {
+                sendJson(ctx, 400, false, "BAD_REQUEST");
+                return;
+            }
+            DownlinkBroadcast broadcast = startBroadcast(ctx, body);
+            if (broadcast != null) {
+                feedBroadcast(ctx, broadcast, body.getJsonArray("deviceIds", new JsonArray()), 0);
+            }
+        });
+    }
 
-        String address = resolveRouteAddress(request.deviceId());
-        if (address == null) {
-            LocalMap<String, String> routing = vertx.sharedData().getLocalMap(GatewayApplication.ROUTE_MAP_NAME);
-            log.warn("[CMD-GW] 设备不在路由表中(OFFLINE): deviceId={}, 路由表大小={}, 路由表内容={}",
-                    request.deviceId(), routing.size(), routing.keySet());
-            sendJson(ctx, 409, false, "OFFLINE");
-            metrics.onCommandSendFail();
+    /**
+     * 每个 event loop 轮次最多处理一批目标，在途批次过多时等待回落后继续。
+     */
+    private void feedBroadcast(RoutingContext ctx, DownlinkBroadcast broadcast, JsonArray deviceIds, int from) {
+        int end = Math.min(deviceIds.size(), from + DownlinkBroadcast.CHUNK_SIZE);
+        for (int i = from; i < end; i++) {
+            broadcast.add(deviceIds.getValue(i) instanceof String deviceId ? deviceId : null);
+        }
+        if (end == deviceIds.size()) {
+            broadcast.finish().onSuccess(result -> sendBroadcastResult(ctx, result));
             return;
         }
-        log.info("[CMD-GW] 路由解析成功: deviceId={}, address={}", request.deviceId(), address);
+        broadcast.whenDrained(() -> vertx.runOnContext(v -> feedBroadcast(ctx, broadcast, deviceIds, end)));
+    }
 
-        JsonObject command = buildCommand(request);
-        DeliveryOptions options = new DeliveryOptions().setSendTimeout(COMMAND_TIMEOUT_MS);
-        vertx.eventBus().request(address, command, options, ar -> handleCommandDispatch(ctx, ar));
+    private void streamBroadcast(RoutingContext ctx) {
+        RecordParser parser = RecordParser.newDelimited("\n", ctx.request());
+        DownlinkBroadcast[] broadcast = new DownlinkBroadcast[1];
+        parser.handler(line -> {
+            if (ctx.response().ended()) {
+                return;
+            }
+            String text = line.toString(StandardCharsets.UTF_8).trim();
+            if (broadcast[0] == null) {
+                try {
+                    broadcast[0] = startBroadcast(ctx, new JsonObject(text));
+                } catch (RuntimeException e) {
+                    sendJson(ctx, 400, false, "BAD_REQUEST");
+                }
+                return;
+            }
+            if (text.length() > 1 && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') {
+                text = text.substring(1, text.length() - 1);
+            }
+            broadcast[0].add(text);
+            if (broadcast[0].saturated()) {
+                parser.pause();
+                broadcast[0].whenDrained(parser::resume);
+            }
+        });
+        parser.exceptionHandler(e -> {
+            log.warn("[BROADCAST] 读取请求体失败: {}", e.getMessage());
+            if (!ctx.response().ended()) {
+                sendJson(ctx, 400, false, "BAD_REQUEST");
+            }
+        });
+        parser.endHandler(v -> {
+            if (ctx.response().ended()) {
+                return;
+            }
+            if (broadcast[0] == null) {
+                sendJson(ctx, 400, false, "BAD_REQUEST");
+                return;
+            }
+            broadcast[0].finish().onSuccess(result -> sendBroadcastResult(ctx, result));
+        });
     }
 
-    private boolean isAuthorized(RoutingContext ctx) {
-        if (config.internalToken().isBlank()) {
-            return true;
-        }
-        String token = ctx.request().getHeader(HEADER_INTERNAL_TOKEN);
-        if (config.internalToken().equals(token)) {
-            return true;
+    private DownlinkBroadcast startBroadcast(RoutingContext ctx, JsonObject header) {
+        Object payload = header.getValue("payload");
+        String payloadText = payload instanceof JsonObject json ? json.encode() : payload instanceof String text ? text : null;
+        if (payloadText == null || payloadText.isBlank()) {
+            sendJson(ctx, 400, false, "EMPTY_PAYLOAD");
+            return null;
         }
-        sendJson(ctx, 401, false, "INVALID_INTERNAL_TOKEN");
-        return false;
+        return downlinkRouter.broadcast(payloadText, header.getInteger("qos", 1));
     }
 
-    private SendPublishRequest parseRequest(RoutingContext ctx) {
-        String body = ctx.body().asString(StandardCharsets.UTF_8.name());
+    private void sendBroadcastResult(RoutingContext ctx, JsonObject result) {
+        log.info("[BROADCAST] 批量下行完成: total={}, sent={}, queued={}",
+                result.getInteger("total"), result.getInteger("sent"), result.getInteger("queued"));
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(result.encode());
+    }
+
+    /**
+     * pet-core 在设备密钥轮换或授权码撤销后推送，使对应设备的凭证缓存立即失效。
+     */
+    private void handleAuthInvalidate(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        JsonObject body;
         try {
-            return objectMapper.readValue(body, SendPublishRequest.class);
-        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            body = ctx.body().asJsonObject();
+        } catch (RuntimeException e) {
             sendJson(ctx, 400, false, "BAD_REQUEST");
-            return null;
+            return;
+        }
+        if (body == null) {
+            sendJson(ctx, 400, false, "BAD_REQUEST");
+            return;
+        }
+        if (body.getBoolean("all", false)) {
+            credentialCache.invalidateAll();
+            log.info("[AUTH-CACHE] 全量失效");
+        } else {
+            JsonArray deviceIds = body.getJsonArray("deviceIds", new JsonArray());
+            List<String> ids = deviceIds.stream().map(String::valueOf).toList();
+            credentialCache.invalidate(ids);
+            log.info("[AUTH-CACHE] 失效设备凭证: count={}", ids.size());
         }
+        sendJson(ctx, 200, true, "INVALIDATED");
     }
 
-    private String resolveRouteAddress(String deviceId) {
-        LocalMap<String, String> routing = vertx.sharedData().getLocalMap(GatewayApplication.ROUTE_MAP_NAME);
-        return routing.get(deviceId);
+    /**
+     * 汇总各 MqttServerVerticle 的下行发送窗口统计，按积压（在途 + 排队）降序返回前 limit 个会话。
+     */
+    private void handleDownlinkDebug(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        int limit = parseLimit(ctx.request().getParam("limit"));
+        JsonObject query = new JsonObject().put("limit", limit);
+        DeliveryOptions options = new DeliveryOptions().setSendTimeout(COMMAND_TIMEOUT_MS);
+        LocalMap<String, String> verticles = vertx.sharedData().getLocalMap(GatewayApplication.VERTICLE_MAP_NAME);
+        List<Future<JsonArray>> replies = new ArrayList<>();
+        for (String address : verticles.keySet()) {
+            replies.add(vertx.eventBus().<JsonObject>request(address + GatewayApplication.STATS_ADDRESS_SUFFIX, query, options)
+                    .map(reply -> reply.body().getJsonArray("sessions", new JsonArray()))
+                    .otherwise(e -> new JsonArray()));
+        }
+        Future.join(replies).onComplete(ar -> {
+            List<JsonObject> sessions = new ArrayList<>();
+            for (Future<JsonArray> reply : replies) {
+                JsonArray array = reply.result();
+                if (array != null) {
+                    array.forEach(item -> sessions.add((JsonObject) item));
+                }
+            }
+            sessions.sort(Comparator.comparingInt((JsonObject item) -> item.getInteger("inFlight") + item.getInteger("queued"))
+                    .thenComparingLong(item -> item.getLong("retransmits") + item.getLong("overflows"))
+                    .reversed());
+            JsonArray result = new JsonArray();
+            sessions.stream().limit(limit).forEach(result::add);
+            ctx.response()
+                    .setStatusCode(200)
+                    .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                    .end(new JsonObject().put("ok", true).put("verticles", replies.size()).put("sessions", result).encode());
+        });
     }
 
-    private JsonObject buildCommand(SendPublishRequest request) {
-        int qos = normalizeQos(request.qos());
-        return new JsonObject()
-                .put("deviceId", request.deviceId())
-                .put("topic", request.topic())
-                .put("payload", request.payload())
-                .put("qos", qos);
+    private void handleLatencyDebug(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(new JsonObject().put("ok", true).put("stages", metrics.latencySummary()).encode());
+    }
+
+    private void handleFlapDebug(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        JsonArray devices = new JsonArray();
+        if (presenceBatcher != null) {
+            presenceBatcher.topFlaps(parseLimit(ctx.request().getParam("limit")))
+                    .forEach(flap -> devices.add(flap.toJson()));
+        }
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(new JsonObject().put("ok", true).put("enabled", presenceBatcher != null)
+                        .put("devices", devices).encode());
     }
 
-    private int normalizeQos(int qos) {
-        if (qos >= 0 && qos <= 2) {
-            return qos;
+    /**
+     * 窗口（1m/5m/1h）内上行消息数（by=messages）或字节数（by=bytes）最多的设备，type 为空时合计所有消息类型。
+     */
+    private void handleHitterDebug(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        String windowKey = ctx.request().getParam("window", "1m");
+        String by = ctx.request().getParam("by", "messages");
+        String typeKey = ctx.request().getParam("type", "");
+        DeviceHeavyHitters.Window window = DeviceHeavyHitters.Window.fromKey(windowKey);
+        boolean byBytes = by.equals("bytes");
+        UplinkType type = typeKey.isEmpty() ? null : UplinkType.fromKey(typeKey);
+        if (window == null || !byBytes && !by.equals("messages") || !typeKey.isEmpty() && type == null) {
+            sendJson(ctx, 400, false, "BAD_REQUEST");
+            return;
+        }
+        JsonArray devices = new JsonArray();
+        if (heavyHitters != null) {
+            int limit = Math.min(parseLimit(ctx.request().getParam("limit")), config.heavyHitters().candidates());
+            heavyHitters.top(window, byBytes, type, limit, System.currentTimeMillis())
+                    .forEach(hitter -> devices.add(hitter.toJson()));
         }
-        return MqttQoS.AT_LEAST_ONCE.value();
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(new JsonObject().put("ok", true).put("enabled", heavyHitters != null)
+                        .put("window", window.key()).put("by", by).put("type", type == null ? "all" : type.key())
+                        .put("devices", devices).encode());
     }
 
-    private void handleCommandDispatch(RoutingContext ctx, AsyncResult<Message<Object>> ar) {
-        if (ar.failed()) {
-            log.warn("Command dispatch failed: {}", ar.cause().getMessage());
-            sendJson(ctx, 500, false, "DISPATCH_FAILED");
-            metrics.onCommandSendFail();
+    /**
+     * 会话表的内存占用：估算的每会话字节数，以及堆使用量按会话数均摊的参考值。
+     */
+    private void handleSessionDebug(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
             return;
         }
-        JsonObject reply = (JsonObject) ar.result().body();
-        boolean ok = reply.getBoolean("ok", false);
-        String reason = reply.getString(FIELD_REASON, "");
-        if (!ok) {
-            sendJson(ctx, 409, false, reason);
-            metrics.onCommandSendFail();
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(new JsonObject().put("ok", true).mergeIn(sessions.footprint()).encode());
+    }
+
+    /**
+     * 触发优雅下线后立即返回，进度见 GET /internal/drain 或 deskpet_gateway_drain_* 指标。
+     */
+    private void handleDrain(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
             return;
         }
-        metrics.onCommandSendOk();
-        sendJson(ctx, 200, true, "SENT");
+        GatewayDrain drain = GatewayDrain.getInstance();
+        drain.start(vertx, coreClient, config);
+        ctx.response()
+                .setStatusCode(202)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(drain.status().put("ok", true).encode());
+    }
+
+    private void handleDrainStatus(RoutingContext ctx) {
+        if (!isAuthorized(ctx)) {
+            return;
+        }
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+                .end(GatewayDrain.getInstance().status().put("ok", true).encode());
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            return value == null ? 50 : Math.max(1, Math.min(1000, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            return 50;
+        }
+    }
+
+    private boolean isAuthorized(RoutingContext ctx) {
+        if (config.internalToken().isBlank()) {
+            return true;
+        }
+        String token = ctx.request().getHeader(HEADER_INTERNAL_TOKEN);
+        if (config.internalToken().equals(token)) {
+            return true;
+        }
+        sendJson(ctx, 401, false, "INVALID_INTERNAL_TOKEN");
+        return false;
+    }
+
+    private DownlinkCommand parseCommand(RoutingContext ctx) {
+        Buffer body = ctx.body().buffer();
+        if (body == null) {
+            sendJson(ctx, 400, false, "BAD_REQUEST");
+            return null;
+        }
+        try {
+            return DownlinkCommand.parse(body);
+        } catch (IOException e) {
+            sendJson(ctx, 400, false, "BAD_REQUEST");
+            return null;
+        }
     }
 
     private void sendJson(RoutingContext ctx, int statusCode, boolean ok, String reason) {
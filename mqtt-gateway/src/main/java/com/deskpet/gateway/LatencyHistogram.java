@@ -0,0 +1,163 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热路径耗时分布：对数-线性分桶（每个 2 的幂区间再均分 8 个子桶，相对误差不超过 12.5%），单位微秒，
+ * 覆盖 0 ~ 约 134 秒，更大的值计入最后一个桶。
+ * <p>
+ * 每个记录线程（通常是 event loop）持有独立的计数条带，只由该线程写入，写入使用 release 语义的普通存储，
+ * 无 CAS、无锁、首次之后无对象分配；采集时合并所有条带。Prometheus 输出按 2 的幂合并为较少的累计桶，
+ * 百分位则按完整精度计算。
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 26;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int COUNT_SLOT = BUCKETS;
+    private static final int SUM_SLOT = BUCKETS + 1;
+    /**
+     * Prometheus 导出的桶上界（微秒），均为内部桶边界，因此累计值精确。
+     */
+    private static final long[] EXPORT_BOUNDS_MICROS = {
+            128, 256, 512, 1024, 2048, 4096, 8192, 16_384, 32_768, 65_536, 131_072, 262_144,
+            524_288, 1_048_576, 2_097_152, 4_194_304, 8_388_608, 16_777_216, 33_554_432};
+
+    private final List<AtomicLongArray> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AtomicLongArray> localStripe = ThreadLocal.withInitial(this::newStripe);
+
+    void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        AtomicLongArray stripe = localStripe.get();
+        int index = bucketIndex(micros);
+        stripe.lazySet(index, stripe.get(index) + 1);
+        stripe.lazySet(COUNT_SLOT, stripe.get(COUNT_SLOT) + 1);
+        stripe.lazySet(SUM_SLOT, stripe.get(SUM_SLOT) + micros);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶 index 覆盖的区间上界（不含），单位微秒。
+     */
+    static long bucketUpperMicros(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1L;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width;
+    }
+
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            count += stripe.get(COUNT_SLOT);
+            sum += stripe.get(SUM_SLOT);
+        }
+        return new Snapshot(counts, count, sum);
+    }
+
+    void appendPrometheus(StringBuilder sb, String name, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" histogram\n");
+        appendSamples(sb, name, "");
+    }
+
+    /**
+     * 只输出样本行，labels 形如 {@code lane="low"}，供同一指标下按标签区分的多个分布共用 HELP/TYPE。
+     */
+    void appendSamples(StringBuilder sb, String name, String labels) {
+        Snapshot snapshot = snapshot();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        String suffix = labels.isEmpty() ? " " : "} ";
+        long cumulative = 0;
+        int index = 0;
+        for (long bound : EXPORT_BOUNDS_MICROS) {
+            while (index < BUCKETS && bucketUpperMicros(index) <= bound) {
+                cumulative += snapshot.counts[index++];
+            }
+            sb.append(name).append("_bucket{").append(prefix).append("le=\"").append(bound / 1000.0).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        while (index < BUCKETS) {
+            cumulative += snapshot.counts[index++];
+        }
+        sb.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        sb.append(name).append("_sum").append(labels.isEmpty() ? "" : "{" + labels).append(suffix)
+                .append(snapshot.sumMicros / 1000.0).append('\n');
+        sb.append(name).append("_count").append(labels.isEmpty() ? "" : "{" + labels).append(suffix)
+                .append(cumulative).append('\n');
+    }
+
+    private AtomicLongArray newStripe() {
+        AtomicLongArray stripe = new AtomicLongArray(BUCKETS + 2);
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    /**
+     * 合并后的分布快照。
+     */
+    record Snapshot(long[] counts, long count, long sumMicros) {
+
+        /**
+         * 第 p 百分位（0~100）所在桶的上界，单位毫秒；无数据时为 0。
+         */
+        double percentileMs(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * p / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperMicros(i) / 1000.0;
+                }
+            }
+            return bucketUpperMicros(counts.length - 1) / 1000.0;
+        }
+
+        double meanMs() {
+            return count == 0 ? 0 : sumMicros / 1000.0 / count;
+        }
+
+        JsonObject toJson() {
+            return new JsonObject()
+                    .put("count", count)
+                    .put("meanMs", meanMs())
+                    .put("p50Ms", percentileMs(50))
+                    .put("p90Ms", percentileMs(90))
+                    .put("p99Ms", percentileMs(99))
+                    .put("p999Ms", percentileMs(99.9))
+                    .put("maxMs", percentileMs(100));
+        }
+    }
+}
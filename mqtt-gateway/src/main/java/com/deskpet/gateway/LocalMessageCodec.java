@@ -0,0 +1,59 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * 只用于本进程 event bus 的 codec：投递时直接传递同一个对象，不序列化也不复制，要求消息类型不可变。
+ * 网关不组集群，编码到网络的方法不会被调用。
+ */
+final class LocalMessageCodec<T> implements MessageCodec<T, T> {
+
+    private final String name;
+
+    LocalMessageCodec(Class<T> type) {
+        this.name = "local-" + type.getSimpleName();
+    }
+
+    /**
+     * 为下行指令与回复注册默认 codec。同一 Vertx 上的各 Verticle 都会调用，已注册时忽略。
+     */
+    static synchronized void registerDownlink(Vertx vertx) {
+        register(vertx, DownlinkCommand.class);
+        register(vertx, DownlinkReply.class);
+    }
+
+    private static <T> void register(Vertx vertx, Class<T> type) {
+        try {
+            vertx.eventBus().registerDefaultCodec(type, new LocalMessageCodec<>(type));
+        } catch (IllegalStateException ignored) {
+            // 已由其他 Verticle 注册
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T value) {
+        throw new UnsupportedOperationException(name + " is local only");
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        throw new UnsupportedOperationException(name + " is local only");
+    }
+
+    @Override
+    public T transform(T value) {
+        return value;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,241 @@
+package com.deskpet.gateway;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.MqttEndpoint;
+import io.vertx.mqtt.messages.codes.MqttDisconnectReasonCode;
+
+import java.util.function.IntConsumer;
+
+/**
+ * MQTT 5 连接协商出的参数与连接级状态，只在会话所属 Verticle 的 event loop 上访问；MQTT 3.1.1 连接没有此对象。
+ * <p>
+ * 上行：CONNACK 声明 topicAliasMaximum 与 receiveMaximum，设备用别名代替重复的完整 topic，别名映射只在本连接内有效；
+ * 同时未回 PUBACK 的 QoS1 上行超过 receiveMaximum 时以 0x93 断开。下行：在设备 CONNECT 声明的 Topic Alias Maximum
+ * 内为 /cmd、/resp 依次分配别名，第一次发送带完整 topic 建立映射，之后只发空 topic 与别名；设备声明的
+ * Receive Maximum 作为下行窗口的在途上限。
+ */
+final class Mqtt5Session {
+
+    static final int PROTOCOL_VERSION = 5;
+    static final int DEFAULT_RECEIVE_MAXIMUM = 65_535;
+    // 一个设备的下行 topic 只有 cmd、resp 及其格式后缀，别名个数不需要更多
+    static final int MAX_OUTBOUND_ALIASES = 8;
+    // Topic Alias 属性：1 字节标识 + 2 字节值
+    static final int ALIAS_PROPERTY_BYTES = 3;
+
+    private static final MqttProperties[] ALIAS_PROPERTIES = new MqttProperties[MAX_OUTBOUND_ALIASES + 1];
+
+    static {
+        for (int alias = 1; alias <= MAX_OUTBOUND_ALIASES; alias++) {
+            MqttProperties properties = new MqttProperties();
+            properties.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS.value(), alias));
+            ALIAS_PROPERTIES[alias] = properties;
+        }
+    }
+
+    private final long requestedSessionExpirySec;
+    private final int sessionExpirySec;
+    private final int clientReceiveMaximum;
+    private final int clientTopicAliasMaximum;
+    private final int receiveMaximum;
+    private final int topicAliasMaximum;
+    private String[] inboundAliases;
+    private String[] outboundAliases;
+    private int inboundInFlight;
+    private volatile MqttDisconnectReasonCode disconnectReason;
+
+    private Mqtt5Session(long requestedSessionExpirySec, int sessionExpirySec, int clientReceiveMaximum,
+                         int clientTopicAliasMaximum, int receiveMaximum, int topicAliasMaximum) {
+        this.requestedSessionExpirySec = requestedSessionExpirySec;
+        this.sessionExpirySec = sessionExpirySec;
+        this.clientReceiveMaximum = clientReceiveMaximum;
+        this.clientTopicAliasMaximum = clientTopicAliasMaximum;
+        this.receiveMaximum = receiveMaximum;
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+
+    /**
+     * 按 CONNECT 属性与网关配置协商；会话保留时长不超过 maxSessionExpirySec（未启用持久会话时为 0）。
+     */
+    static Mqtt5Session negotiate(MqttProperties connect, GatewayConfig.Mqtt5 config, int maxSessionExpirySec) {
+        // Session Expiry Interval 是 4 字节无符号数，0xFFFFFFFF 表示永不过期
+        long requestedExpiry = Integer.toUnsignedLong(intProperty(connect, MqttProperties.MqttPropertyType.SESSION_EXPIRY_INTERVAL, 0));
+        int clientReceiveMaximum = intProperty(connect, MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM, DEFAULT_RECEIVE_MAXIMUM);
+        int clientTopicAliasMaximum = intProperty(connect, MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM, 0);
+        return new Mqtt5Session(requestedExpiry, (int) Math.min(requestedExpiry, Math.max(0, maxSessionExpirySec)),
+                Math.max(1, clientReceiveMaximum), Math.min(MAX_OUTBOUND_ALIASES, Math.max(0, clientTopicAliasMaximum)),
+                config.receiveMaximum(), config.topicAliasMaximum());
+    }
+
+    /**
+     * CONNACK 属性：声明网关的接收上限与别名个数；会话保留时长被缩短时回告实际值。
+     */
+    MqttProperties connAckProperties() {
+        MqttProperties properties = new MqttProperties();
+        properties.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM.value(), receiveMaximum));
+        properties.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM.value(), topicAliasMaximum));
+        if (sessionExpirySec != requestedSessionExpirySec) {
+            properties.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.SESSION_EXPIRY_INTERVAL.value(), sessionExpirySec));
+        }
+        return properties;
+    }
+
+    /**
+     * 还原上行 PUBLISH 的 topic：带别名且 topic 非空时登记映射，topic 为空时按别名查找。
+     * 别名为 0、超过声明的个数或尚未登记时返回 null，调用方以 0x94 断开连接。
+     */
+    String resolveTopic(String topicName, MqttProperties properties) {
+        int alias = aliasOf(properties);
+        if (alias < 0) {
+            return topicName.isEmpty() ? null : topicName;
+        }
+        if (alias == 0 || alias > topicAliasMaximum) {
+            return null;
+        }
+        if (!topicName.isEmpty()) {
+            if (inboundAliases == null) {
+                inboundAliases = new String[topicAliasMaximum];
+            }
+            inboundAliases[alias - 1] = topicName;
+            return topicName;
+        }
+        return inboundAliases == null ? null : inboundAliases[alias - 1];
+    }
+
+    /**
+     * 登记一条待确认的 QoS1 上行，超过 receiveMaximum 时返回 false。
+     */
+    boolean acquireInbound() {
+        return ++inboundInFlight <= receiveMaximum;
+    }
+
+    void releaseInbound() {
+        if (inboundInFlight > 0) {
+            inboundInFlight--;
+        }
+    }
+
+    int inboundInFlight() {
+        return inboundInFlight;
+    }
+
+    /**
+     * 写出一条下行，已分配别名的 topic 只发别名。savedBytes 接收相对完整 topic 节省的字节数（建立映射的那次为负），
+     * 返回 endpoint 的写出 Future。
+     */
+    Future<Integer> publish(MqttEndpoint endpoint, String topic, Buffer payload, MqttQoS qos, boolean dup,
+                            int messageId, IntConsumer savedBytes) {
+        int alias = outboundAlias(topic);
+        if (alias > 0) {
+            savedBytes.accept(ByteBufUtil.utf8Bytes(topic) - ALIAS_PROPERTY_BYTES);
+            return endpoint.publish("", payload, qos, dup, false, messageId, ALIAS_PROPERTIES[alias]);
+        }
+        alias = assignOutboundAlias(topic);
+        if (alias > 0) {
+            savedBytes.accept(-ALIAS_PROPERTY_BYTES);
+        }
+        return endpoint.publish(topic, payload, qos, dup, false, messageId,
+                alias > 0 ? ALIAS_PROPERTIES[alias] : MqttProperties.NO_PROPERTIES);
+    }
+
+    /**
+     * 已分配给该 topic 的下行别名，没有时返回 0。
+     */
+    int outboundAlias(String topic) {
+        if (outboundAliases != null) {
+            for (int i = 0; i < outboundAliases.length; i++) {
+                if (topic.equals(outboundAliases[i])) {
+                    return i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 为 topic 分配下一个别名；设备未声明别名或已用完时返回 0，之后照常发送完整 topic。
+     */
+    int assignOutboundAlias(String topic) {
+        if (clientTopicAliasMaximum == 0) {
+            return 0;
+        }
+        if (outboundAliases == null) {
+            outboundAliases = new String[clientTopicAliasMaximum];
+        }
+        for (int i = 0; i < outboundAliases.length; i++) {
+            if (outboundAliases[i] == null) {
+                outboundAliases[i] = topic;
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 上行 PUBLISH 使用别名时相对完整 topic 节省的字节数：只带别名时省下 topic 减去属性开销，建立映射时多出属性开销。
+     */
+    static int aliasSavings(String topicName, String resolvedTopic) {
+        return topicName.isEmpty() ? ByteBufUtil.utf8Bytes(resolvedTopic) - ALIAS_PROPERTY_BYTES : -ALIAS_PROPERTY_BYTES;
+    }
+
+    static boolean hasAlias(MqttProperties properties) {
+        return aliasOf(properties) >= 0;
+    }
+
+    /**
+     * 设备 CONNECT 请求的会话保留秒数（协商前）。
+     */
+    long requestedSessionExpirySec() {
+        return requestedSessionExpirySec;
+    }
+
+    /**
+     * 协商后的会话保留秒数，0 表示断开即丢弃会话。
+     */
+    int sessionExpirySec() {
+        return sessionExpirySec;
+    }
+
+    int clientReceiveMaximum() {
+        return clientReceiveMaximum;
+    }
+
+    int clientTopicAliasMaximum() {
+        return clientTopicAliasMaximum;
+    }
+
+    int receiveMaximum() {
+        return receiveMaximum;
+    }
+
+    int topicAliasMaximum() {
+        return topicAliasMaximum;
+    }
+
+    /**
+     * 连接结束的原因码：设备 DISCONNECT 携带的，或网关主动断开时发出的；连接直接关闭时为 null。
+     */
+    MqttDisconnectReasonCode disconnectReason() {
+        return disconnectReason;
+    }
+
+    void setDisconnectReason(MqttDisconnectReasonCode disconnectReason) {
+        this.disconnectReason = disconnectReason;
+    }
+
+    private static int aliasOf(MqttProperties properties) {
+        return intProperty(properties, MqttProperties.MqttPropertyType.TOPIC_ALIAS, -1);
+    }
+
+    private static int intProperty(MqttProperties properties, MqttProperties.MqttPropertyType type, int defaultValue) {
+        if (properties == null) {
+            return defaultValue;
+        }
+        MqttProperties.MqttProperty<?> property = properties.getProperty(type.value());
+        return property != null && property.value() instanceof Integer value ? value : defaultValue;
+    }
+}
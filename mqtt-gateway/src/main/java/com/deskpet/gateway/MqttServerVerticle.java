@@ -4,40 +4,76 @@ import com.deskpet.GatewayApplication;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.SocketAddress;
-import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.mqtt.MqttEndpoint;
 import io.vertx.mqtt.MqttServer;
 import io.vertx.mqtt.MqttServerOptions;
+import io.vertx.mqtt.MqttTopicSubscription;
 import io.vertx.mqtt.messages.MqttPublishMessage;
+import io.vertx.mqtt.messages.codes.MqttDisconnectReasonCode;
+import io.vertx.mqtt.messages.codes.MqttPubAckReasonCode;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
 @Slf4j
 public class MqttServerVerticle extends AbstractVerticle {
 
-    private static final String HEADER_INTERNAL_TOKEN = "X-Internal-Token";
     private static final String UNKNOWN_IP = "unknown";
+    private static final String HEADER_PRODUCT_KEY = "X-Product-Key";
+    private static final long OFFLINE_SWEEP_INTERVAL_MS = 5000;
+    private static final long DRAIN_POLL_MS = 50;
+    private static final Comparator<OutboundWindow> DOWNLINK_BACKLOG_ORDER = Comparator
+            .comparingInt((OutboundWindow window) -> window.inFlightCount() + window.queuedCount())
+            .thenComparingLong(window -> window.retransmitCount() + window.overflowCount())
+            .reversed();
 
-    private final Map<String, EndpointSession> sessions = new ConcurrentHashMap<>();
+    private SessionIndex sessions;
+    private int owner = -1;
+    private int openSessions;
     private GatewayConfig config;
-    private WebClient webClient;
+    private CoreClient coreClient;
+    private CoreChannel coreChannel;
+    private DownlinkRouter downlinkRouter;
+    private UplinkDispatcher uplinkDispatcher;
+    private CredentialCache credentialCache;
+    private ConnectAdmission connectAdmission;
+    private UplinkSpool uplinkSpool;
+    private OfflineSessionStore offlineSessions;
+    private PresenceBatcher presenceBatcher;
+    private ThingModelRegistry thingModels;
+    private DeviceHeavyHitters heavyHitters;
+    private ActivityReporter activityReporter;
+    private boolean presenceFlushing;
+    private boolean presenceFlusher;
+    private boolean draining;
+    private TimingWheel<EndpointSession> heartbeatWheel;
+    private final Set<OutboundWindow> activeDownlinks = new LinkedHashSet<>();
     private ObjectMapper objectMapper;
     private String commandAddress;
     private GatewayMetrics metrics;
@@ -50,41 +86,142 @@ public class MqttServerVerticle extends AbstractVerticle {
                 return;
             }
             this.config = ar.result();
-            this.webClient = WebClient.create(vertx);
+            this.coreClient = new CoreClient(vertx, WebClient.create(vertx), config);
             this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
             this.commandAddress = GatewayApplication.COMMAND_ADDRESS_PREFIX + UUID.randomUUID();
             log.info("[MQTT] Verticle 启动: commandAddress={}", commandAddress);
             this.metrics = GatewayMetrics.getInstance();
+            if (config.rpc().enabled()) {
+                this.coreChannel = new CoreChannel(vertx, config.rpc(), config.internalToken(), config.instanceId(),
+                        this::handleCoreRequest, metrics);
+            }
+            this.uplinkDispatcher = new UplinkDispatcher(vertx, coreClient, coreChannel, config.batch(),
+                    config.uplinkOrder(), config.uplinkPriority(), metrics);
+            this.credentialCache = CredentialCache.shared(config.authCache());
+            this.connectAdmission = new ConnectAdmission(vertx, config.admission(), metrics);
+            if (config.spool().enabled()) {
+                this.uplinkSpool = UplinkSpool.shared(config.spool());
+                if (uplinkSpool.claimReplayer()) {
+                    new SpoolReplayer(vertx, uplinkSpool, uplinkDispatcher, config.spool(), metrics).start();
+                }
+            }
 
-            vertx.eventBus().consumer(commandAddress, message -> {
-                JsonObject body = (JsonObject) message.body();
-                String deviceId = body.getString("deviceId");
-                log.info("[MQTT] EventBus 收到指令: deviceId={}, topic={}", deviceId, body.getString("topic"));
-                EndpointSession session = sessions.get(deviceId);
-                if (session == null) {
-                    log.warn("[MQTT] 设备不在会话表中: deviceId={}, sessions={}", deviceId, sessions.keySet());
-                    message.reply(new JsonObject().put("ok", false).put("reason", "OFFLINE"));
-                    return;
+            this.sessions = SessionIndex.shared();
+            this.owner = sessions.registerOwner(commandAddress);
+            LocalMessageCodec.registerDownlink(vertx);
+            vertx.eventBus().<DownlinkCommand>consumer(commandAddress, this::handleCommand);
+            if (config.session().enabled()) {
+                this.offlineSessions = OfflineSessionStore.shared(config.session());
+                if (offlineSessions.claimSweeper()) {
+                    vertx.setPeriodic(OFFLINE_SWEEP_INTERVAL_MS, id -> offlineSessions.sweep(System.currentTimeMillis()));
                 }
-                String topic = body.getString("topic");
-                String payload = body.getString("payload", "");
-                int qosValue = body.getInteger("qos", MqttQoS.AT_LEAST_ONCE.value());
-                if (!TopicAcl.isValidDownlink(deviceId, topic)) {
-                    log.warn("[MQTT] 非法下行 topic: deviceId={}, topic={}", deviceId, topic);
-                    message.reply(new JsonObject().put("ok", false).put("reason", "INVALID_TOPIC"));
-                    return;
+            }
+            if (config.presence().enabled()) {
+                this.presenceBatcher = PresenceBatcher.shared(config.presence());
+                this.presenceFlusher = presenceBatcher.claimFlusher();
+                if (presenceFlusher) {
+                    vertx.setPeriodic(config.presence().flushIntervalMs(), id -> flushPresence());
                 }
-                MqttQoS qos = MqttQoS.valueOf(qosValue);
-                log.info("[MQTT] 发布到设备: deviceId={}, topic={}, qos={}, payloadLen={}", deviceId, topic, qos, payload.length());
-                session.endpoint().publish(topic, Buffer.buffer(payload), qos, false, false);
-                message.reply(new JsonObject().put("ok", true));
-            });
+            }
+            if (config.heavyHitters().enabled()) {
+                this.heavyHitters = DeviceHeavyHitters.shared(config.heavyHitters());
+            }
+            if (config.activity().enabled()) {
+                this.activityReporter = new ActivityReporter(coreClient, config.activity(), config.instanceId(), metrics);
+                vertx.setPeriodic(config.activity().flushIntervalMs(), id -> activityReporter.flush());
+            }
+            if (config.thingModel().enabled()) {
+                this.thingModels = ThingModelRegistry.shared(config.thingModel());
+                if (thingModels.claimRefresher()) {
+                    vertx.setPeriodic(config.thingModel().refreshIntervalSec() * 1000L,
+                            id -> thingModels.refreshAll(coreClient, config.callbackTimeoutMs()));
+                }
+            }
+            this.downlinkRouter = new DownlinkRouter(vertx, sessions, offlineSessions, metrics);
+            if (coreChannel != null) {
+                coreChannel.start();
+            }
+            vertx.sharedData().getLocalMap(GatewayApplication.VERTICLE_MAP_NAME).put(commandAddress, config.instanceId());
+            vertx.eventBus().<JsonObject>consumer(commandAddress + GatewayApplication.STATS_ADDRESS_SUFFIX,
+                    message -> message.reply(downlinkStats(message.body().getInteger("limit", 50))));
+            vertx.eventBus().<JsonObject>consumer(commandAddress + GatewayApplication.BROADCAST_ADDRESS_SUFFIX,
+                    this::handleBroadcastChunk);
+            vertx.eventBus().<JsonObject>consumer(commandAddress + GatewayApplication.DRAIN_ADDRESS_SUFFIX, this::handleDrain);
+            startDownlinkTicker();
 
             scheduleStatsLog(vertx);
             startMqttServer(startPromise);
         });
     }
 
+    @Override
+    public void stop() {
+        if (commandAddress != null) {
+            vertx.sharedData().getLocalMap(GatewayApplication.VERTICLE_MAP_NAME).remove(commandAddress);
+        }
+        if (owner >= 0) {
+            sessions.unregisterOwner(owner);
+        }
+        if (uplinkDispatcher != null) {
+            uplinkDispatcher.flush();
+        }
+        if (coreChannel != null) {
+            coreChannel.close();
+        }
+        if (uplinkSpool != null) {
+            uplinkSpool.force();
+        }
+    }
+
+    /**
+     * 处理 pet-core 经长连接下发的指令与设备请求响应，语义与 /internal/command/send、/internal/response/send 相同。
+     */
+    private Future<CoreChannel.Reply> handleCoreRequest(byte op, Buffer body) {
+        String channel = op == RpcFrame.OP_COMMAND_SEND ? "cmd" : op == RpcFrame.OP_RESPONSE_SEND ? "resp" : null;
+        if (channel == null) {
+            return Future.succeededFuture(new CoreChannel.Reply(404, null));
+        }
+        DownlinkCommand command;
+        try {
+            command = DownlinkCommand.parse(body);
+        } catch (IOException e) {
+            return Future.succeededFuture(new CoreChannel.Reply(400,
+                    new DownlinkRouter.Outcome(400, false, "BAD_REQUEST").toJson()));
+        }
+        return downlinkRouter.send(command, channel)
+                .map(outcome -> new CoreChannel.Reply(outcome.status(), outcome.toJson()));
+    }
+
+    /**
+     * 处理 DownlinkRouter 经 event bus 投递的单条下行，payload 原样交给会话写出。
+     */
+    private void handleCommand(Message<DownlinkCommand> message) {
+        DownlinkCommand command = message.body();
+        String deviceId = command.deviceId();
+        log.info("[MQTT] EventBus 收到指令: deviceId={}, topic={}", deviceId, command.topic());
+        EndpointSession session = sessions.get(deviceId);
+        if (session == null || session.owner() != owner) {
+            log.warn("[MQTT] 设备不在本实例会话表中: deviceId={}, sessions={}", deviceId, sessions.size());
+            message.reply(DownlinkReply.OFFLINE);
+            return;
+        }
+        if (!TopicAcl.isValidDownlink(deviceId, command.topic())) {
+            log.warn("[MQTT] 非法下行 topic: deviceId={}, topic={}", deviceId, command.topic());
+            message.reply(DownlinkReply.INVALID_TOPIC);
+            return;
+        }
+        MqttQoS qos = MqttQoS.valueOf(command.qos());
+        log.info("[MQTT] 发布到设备: deviceId={}, topic={}, qos={}, payloadLen={}",
+                deviceId, command.topic(), qos, command.payload().length());
+        long expiresAtMs = command.ttlMs() > 0 ? System.currentTimeMillis() + command.ttlMs() : 0;
+        publishToSession(session, command.topic(), command.payload(), qos, expiresAtMs, (ok, reason) -> {
+            if (!ok) {
+                log.warn("[MQTT] 下行被发送窗口拒绝: deviceId={}, reason={}", deviceId, reason);
+            }
+            message.reply(DownlinkReply.of(ok, reason));
+        });
+    }
+
     private void startMqttServer(Promise<Void> startPromise) {
         MqttServerOptions options = new MqttServerOptions()
                 .setPort(config.mqttPort());
@@ -104,46 +241,75 @@ public class MqttServerVerticle extends AbstractVerticle {
     }
 
     private void handleEndpoint(MqttEndpoint endpoint) {
+        long connectStartNanos = System.nanoTime();
         String deviceId = endpoint.clientIdentifier();
         String username = endpoint.auth() != null ? endpoint.auth().getUsername() : null;
         String password = endpoint.auth() != null ? endpoint.auth().getPassword() : null;
         log.info("[MQTT] 设备连接请求: deviceId={}, username={}", deviceId, username);
+        if (draining) {
+            endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE);
+            return;
+        }
         if (username == null || password == null || !deviceId.equals(username)) {
             log.warn("[MQTT] 认证信息缺失或不匹配: deviceId={}, username={}", deviceId, username);
             endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_BAD_USER_NAME_OR_PASSWORD);
             return;
         }
 
-        String authUrl = config.coreInternalBaseUrl() + "/internal/auth";
-        Supplier<HttpRequest<Buffer>> requestSupplier = () -> {
-            HttpRequest<Buffer> authRequest = webClient.getAbs(authUrl);
-            if (!config.internalToken().isBlank()) {
-                authRequest.putHeader(HEADER_INTERNAL_TOKEN, config.internalToken());
-            }
-            return authRequest
-                    .addQueryParam("deviceId", deviceId)
-                    .addQueryParam("secret", password);
-        };
+        CredentialCache.Verdict cached = credentialCache.lookup(deviceId, password);
+        if (cached == CredentialCache.Verdict.ALLOW) {
+            acceptEndpoint(endpoint, deviceId, credentialCache.productKey(deviceId), connectStartNanos);
+            return;
+        }
+        if (cached == CredentialCache.Verdict.DENY) {
+            metrics.onAuthFail();
+            log.warn("Auth rejected (cached): deviceId={}", deviceId);
+            endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_BAD_USER_NAME_OR_PASSWORD);
+            return;
+        }
+
+        connectAdmission.admit(endpoint, admitted -> authenticate(admitted, deviceId, password, connectStartNanos));
+    }
+
+    private void authenticate(MqttEndpoint endpoint, String deviceId, String password, long connectStartNanos) {
+        Supplier<HttpRequest<Buffer>> requestSupplier = () -> coreClient.get(CoreEndpoint.AUTH_PATH)
+                .addQueryParam("deviceId", deviceId)
+                .addQueryParam("secret", password);
 
-        sendWithRetry(requestSupplier, null, config.authTimeoutMs(), config.authMaxRetries(),
+        long authStartNanos = System.nanoTime();
+        coreClient.sendWithRetry(CoreEndpoint.AUTH, requestSupplier, null, config.authTimeoutMs(), config.authMaxRetries(),
                 config.authRetryDelayMs(), () -> metrics.onAuthRetry(), ar -> {
+                    metrics.onAuthLatency(authStartNanos);
+                    connectAdmission.release();
                     if (isAuthOk(ar)) {
-                        acceptEndpoint(endpoint, deviceId);
+                        String productKey = ar.result().getHeader(HEADER_PRODUCT_KEY);
+                        credentialCache.putAllowed(deviceId, password, productKey);
+                        acceptEndpoint(endpoint, deviceId, productKey, connectStartNanos);
                         return;
                     }
+                    if (isAuthDenied(ar)) {
+                        credentialCache.putDenied(deviceId, password);
+                    }
                     boolean failOpen = config.authFailOpen() && shouldFailOpen(ar);
                     if (failOpen) {
                         log.warn("Auth failed but fail-open enabled: deviceId={}", deviceId);
-                        acceptEndpoint(endpoint, deviceId);
+                        acceptEndpoint(endpoint, deviceId, null, connectStartNanos);
                         return;
                     }
                     metrics.onAuthFail();
-                    log.warn("Auth rejected: deviceId={} status={}", deviceId, statusOf(ar));
+                    if (CoreGuard.isRejected(ar) || CoreClient.statusOf(ar) == 429) {
+                        log.warn("Auth unavailable: deviceId={} cause={}", deviceId,
+                                ar.failed() ? ar.cause().getMessage() : "status=429");
+                        endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE);
+                        return;
+                    }
+                    log.warn("Auth rejected: deviceId={} status={}", deviceId, CoreClient.statusOf(ar));
                     endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_BAD_USER_NAME_OR_PASSWORD);
                 });
     }
 
-    private void wireEndpointHandlers(MqttEndpoint endpoint, String deviceId) {
+    private void wireEndpointHandlers(MqttEndpoint endpoint, EndpointSession session) {
+        String deviceId = session.deviceId();
         endpoint.subscribeHandler(subscribe -> {
             var suback = subscribe.topicSubscriptions().stream()
                     .map(sub -> {
@@ -153,73 +319,267 @@ public class MqttServerVerticle extends AbstractVerticle {
                     })
                     .toList();
             endpoint.subscribeAcknowledge(subscribe.messageId(), suback);
+            for (MqttTopicSubscription sub : subscribe.topicSubscriptions()) {
+                if (isValidSubscribe(deviceId, sub.topicName()) && applyDownlinkFormat(session, sub.topicName(), true)) {
+                    log.info("[MQTT] 设备选择下行编码: deviceId={}, topic={}", deviceId, sub.topicName());
+                }
+            }
+            if (offlineSessions != null && !endpoint.isCleanSession()) {
+                offlineSessions.recordSubscriptions(deviceId, subscribe.topicSubscriptions().stream()
+                        .map(MqttTopicSubscription::topicName)
+                        .filter(topic -> isValidSubscribe(deviceId, topic))
+                        .toList());
+            }
         });
 
-        endpoint.publishHandler(message -> handlePublish(deviceId, message));
-
-        endpoint.pingHandler(v -> {
-            EndpointSession session = sessions.get(deviceId);
-            if (session != null) {
-                session.updateActivity();
+        endpoint.unsubscribeHandler(unsubscribe -> {
+            endpoint.unsubscribeAcknowledge(unsubscribe.messageId());
+            for (String topic : unsubscribe.topics()) {
+                if (isValidSubscribe(deviceId, topic) && applyDownlinkFormat(session, topic, false)) {
+                    log.info("[MQTT] 设备取消下行编码: deviceId={}, topic={}", deviceId, topic);
+                }
+            }
+            if (offlineSessions != null && !endpoint.isCleanSession()) {
+                offlineSessions.removeSubscriptions(deviceId, unsubscribe.topics());
             }
         });
 
-        endpoint.disconnectHandler(v -> handleDisconnect(deviceId));
+        endpoint.publishHandler(message -> handlePublish(session, message));
 
-        endpoint.closeHandler(v -> handleDisconnect(deviceId));
-    }
+        endpoint.pingHandler(v -> session.updateActivity());
 
-    private void handlePublish(String deviceId, MqttPublishMessage message) {
-        EndpointSession session = sessions.get(deviceId);
-        if (session != null) {
-            session.updateActivity();
+        if (session.mqtt5() != null) {
+            // disconnectHandler 先于 disconnectMessageHandler 触发，MQTT 5 连接只注册后者以便记录原因码
+            endpoint.disconnectMessageHandler(disconnect -> {
+                session.mqtt5().setDisconnectReason(disconnect.code());
+                handleDisconnect(session);
+            });
+        } else {
+            endpoint.disconnectHandler(v -> handleDisconnect(session));
         }
+
+        endpoint.closeHandler(v -> handleDisconnect(session));
+    }
+
+    private void handlePublish(EndpointSession session, MqttPublishMessage message) {
+        String deviceId = session.deviceId();
+        session.updateActivity();
         String topic = message.topicName();
+        Mqtt5Session mqtt5 = session.mqtt5();
+        if (mqtt5 != null) {
+            if (message.qosLevel() == MqttQoS.AT_LEAST_ONCE && !mqtt5.acquireInbound()) {
+                metrics.onReceiveMaximumExceeded();
+                log.warn("Receive maximum exceeded: deviceId={} inFlight={} receiveMaximum={}",
+                        deviceId, mqtt5.inboundInFlight(), mqtt5.receiveMaximum());
+                closeSession(session, MqttDisconnectReasonCode.RECEIVE_MAXIMUM_EXCEEDED);
+                return;
+            }
+            String resolved = mqtt5.resolveTopic(topic, message.properties());
+            if (resolved == null) {
+                metrics.onTopicAliasInvalid();
+                log.warn("Topic alias invalid: deviceId={} topic={}", deviceId, topic);
+                closeSession(session, MqttDisconnectReasonCode.TOPIC_ALIAS_INVALID);
+                return;
+            }
+            if (Mqtt5Session.hasAlias(message.properties())) {
+                metrics.onTopicAlias(true, Mqtt5Session.aliasSavings(topic, resolved));
+            }
+            topic = resolved;
+        }
         if (!isValidPublish(deviceId, topic)) {
             log.warn("Publish denied: deviceId={} topic={}", deviceId, topic);
+            rejectPublish(session, message, MqttPubAckReasonCode.NOT_AUTHORIZED);
             return;
         }
-        boolean telemetry = topic.endsWith("/telemetry");
-        boolean event = topic.endsWith("/event");
-        boolean request = topic.endsWith("/req");
-        String targetPath = TopicAcl.resolveCallbackPath(topic);
-        String url = config.coreInternalBaseUrl() + targetPath + deviceId;
         Buffer payload = message.payload();
-        long count;
-        if (telemetry) {
-            count = metrics.onTelemetry();
-        } else if (event) {
-            count = metrics.onEvent();
-        } else if (request) {
-            count = metrics.onRequest();
-        } else {
-            count = metrics.onAck();
+        PayloadFormat format = PayloadFormat.detect(payload);
+        if (format != PayloadFormat.JSON) {
+            try {
+                payload = format.toJson(payload);
+            } catch (IOException | RuntimeException e) {
+                metrics.onPayloadDecodeError();
+                log.warn("Payload decode failed: deviceId={} topic={} format={} error={}", deviceId, topic, format, e.getMessage());
+                rejectPublish(session, message, MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID);
+                return;
+            }
+        }
+        metrics.onUplinkFormat(format);
+        UplinkType type = UplinkType.fromTopic(topic);
+        long count = switch (type) {
+            case TELEMETRY -> metrics.onTelemetry();
+            case EVENT -> metrics.onEvent();
+            case REQUEST -> metrics.onRequest();
+            case ACK -> metrics.onAck();
+        };
+        if (heavyHitters != null) {
+            heavyHitters.record(deviceId, type, message.payload().length(), System.currentTimeMillis());
         }
         if (log.isDebugEnabled()) {
-            String type = telemetry ? "telemetry" : (event ? "event" : (request ? "request" : "ack"));
-            log.debug("Upstream {} received: deviceId={} count={}", type, deviceId, count);
+            log.debug("Upstream {} received: deviceId={} count={}", type.key(), deviceId, count);
         }
-        Supplier<HttpRequest<Buffer>> requestSupplier = () -> {
-            HttpRequest<Buffer> postRequest = webClient.postAbs(url);
-            if (!config.internalToken().isBlank()) {
-                postRequest.putHeader(HEADER_INTERNAL_TOKEN, config.internalToken());
+        if (type == UplinkType.TELEMETRY && thingModels != null) {
+            payload = validateTelemetry(session, payload, message);
+            if (payload == null) {
+                return;
             }
-            postRequest.putHeader("Content-Type", "application/json");
-            return postRequest;
-        };
-        sendWithRetry(requestSupplier, payload, config.callbackTimeoutMs(), config.callbackMaxRetries(),
-                config.callbackRetryDelayMs(), null, ar -> {
-                    if (ar.failed() || (ar.result() != null && ar.result().statusCode() >= 400)) {
-                        metrics.onCallbackFail();
-                        log.warn("Callback failed: deviceId={} topic={} status={}", deviceId, topic, statusOf(ar));
-                    }
-                    if (message.qosLevel() == MqttQoS.AT_LEAST_ONCE) {
-                        EndpointSession sessionRe = sessions.get(deviceId);
-                        if (sessionRe != null) {
-                            sessionRe.endpoint().publishAcknowledge(message.messageId());
-                        }
-                    }
-                });
+        }
+        if (type == UplinkType.TELEMETRY && session.telemetryGate() != null
+                && !admitTelemetry(session, payload, message)) {
+            return;
+        }
+        forwardUplink(type, session, payload, message);
+    }
+
+    /**
+     * 按设备所属产品的物模型校验遥测，返回要转发的 payload（剔除模式下已去掉不合规字段）；整条拒绝时返回 null。
+     * 产品快照尚未加载时发起拉取，本条不校验直接放行；不是 JSON 对象的遥测在两种模式下都整条拒绝。
+     */
+    private Buffer validateTelemetry(EndpointSession session, Buffer payload, MqttPublishMessage message) {
+        String productKey = session.productKey();
+        if (productKey == null) {
+            return payload;
+        }
+        ThingModelValidator validator = thingModels.get(productKey);
+        if (validator == null) {
+            if (thingModels.claimFetch(productKey, System.currentTimeMillis())) {
+                thingModels.refresh(coreClient, productKey, config.callbackTimeoutMs());
+            }
+            return payload;
+        }
+        if (validator.isEmpty()) {
+            return payload;
+        }
+        boolean strip = config.thingModel().strip();
+        int invalid;
+        JsonObject telemetry = null;
+        try {
+            telemetry = payload.toJsonObject();
+            invalid = validator.validate(telemetry, strip);
+        } catch (DecodeException | ClassCastException e) {
+            invalid = -1;
+        }
+        if (invalid == 0) {
+            return payload;
+        }
+        if (strip && invalid > 0) {
+            metrics.onThingModelViolation(productKey, false, invalid);
+            if (log.isDebugEnabled()) {
+                log.debug("Telemetry fields stripped: deviceId={} productKey={} version={} fields={}",
+                        session.deviceId(), productKey, validator.version(), invalid);
+            }
+            return telemetry.toBuffer();
+        }
+        long rejected = metrics.onThingModelViolation(productKey, true, 1);
+        if (rejected % 1000 == 1) {
+            log.warn("Telemetry rejected by thing model: deviceId={} productKey={} version={} invalidFields={} rejected={}",
+                    session.deviceId(), productKey, validator.version(), invalid, rejected);
+        }
+        rejectPublish(session, message, MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID);
+        return null;
+    }
+
+    /**
+     * 按设备所属产品的遥测策略限流或合并：返回 true 表示立即转发，否则消息已丢弃或暂存到窗口结束。
+     * 丢弃和被替换的消息同样回复 PUBACK，避免 QoS1 重发进一步放大流量。
+     */
+    private boolean admitTelemetry(EndpointSession session, Buffer payload, MqttPublishMessage message) {
+        TelemetryGate gate = session.telemetryGate();
+        long now = System.currentTimeMillis();
+        switch (gate.offer(now)) {
+            case FORWARD -> {
+                return true;
+            }
+            case RATE_LIMITED -> {
+                metrics.onTelemetryDropped(session.productKey(), TelemetryGate.REASON_RATE_LIMITED);
+                if (gate.rateLimitedCount() % 1000 == 1) {
+                    log.warn("Telemetry rate limited: deviceId={} productKey={} dropped={}",
+                            session.deviceId(), session.productKey(), gate.rateLimitedCount());
+                }
+                acknowledgePublish(session, message);
+                return false;
+            }
+            default -> {
+                TelemetryGate.Held superseded = gate.hold(new TelemetryGate.Held(payload, message));
+                if (superseded != null) {
+                    metrics.onTelemetryDropped(session.productKey(), TelemetryGate.REASON_COALESCED);
+                    acknowledgePublish(session, superseded.message());
+                }
+                long delayMs = gate.armFlush(now);
+                if (delayMs > 0) {
+                    vertx.setTimer(delayMs, id -> flushTelemetry(session));
+                }
+                return false;
+            }
+        }
+    }
+
+    private void flushTelemetry(EndpointSession session) {
+        TelemetryGate.Held latest = session.telemetryGate().flush(System.currentTimeMillis());
+        if (latest != null) {
+            forwardUplink(UplinkType.TELEMETRY, session, latest.payload(), latest.message());
+        }
+    }
+
+    private void forwardUplink(UplinkType type, EndpointSession session, Buffer payload, MqttPublishMessage message) {
+        String deviceId = session.deviceId();
+        if (uplinkSpool != null && config.spool().accepts(type)) {
+            // 写入本地 spool 即视为已接收，由 SpoolReplayer 异步投递到 pet-core
+            if (uplinkSpool.append(type, deviceId, payload, System.currentTimeMillis()) >= 0) {
+                metrics.onSpoolAppend();
+                acknowledgePublish(session, message);
+                return;
+            }
+            metrics.onSpoolFull();
+        }
+        uplinkDispatcher.dispatch(type, deviceId, payload, result -> acknowledgePublish(session, message));
+    }
+
+    /**
+     * PUBACK 只回给收到该消息的连接；连接已关闭时不再回复，设备会在新连接上重发。
+     */
+    private void acknowledgePublish(EndpointSession session, MqttPublishMessage message) {
+        if (message.qosLevel() == MqttQoS.AT_LEAST_ONCE && !session.closed()) {
+            if (session.mqtt5() != null) {
+                session.mqtt5().releaseInbound();
+            }
+            session.endpoint().publishAcknowledge(message.messageId());
+        }
+    }
+
+    private void rejectPublish(EndpointSession session, MqttPublishMessage message, MqttPubAckReasonCode reason) {
+        if (!session.closed()) {
+            rejectPublish(session.endpoint(), session.mqtt5(), message, reason);
+        }
+    }
+
+    /**
+     * 不转发的上行：MQTT 5 连接以 PUBACK 原因码告知设备并释放接收额度。3.1.1 没有失败 PUBACK：内容不合规
+     * （PAYLOAD_FORMAT_INVALID，原样重发也不会通过）与限流一样按已丢弃回复 PUBACK，避免设备反复重发；无权发布的 topic 不回复。
+     */
+    static void rejectPublish(MqttEndpoint endpoint, Mqtt5Session mqtt5, MqttPublishMessage message,
+                              MqttPubAckReasonCode reason) {
+        if (message.qosLevel() != MqttQoS.AT_LEAST_ONCE) {
+            return;
+        }
+        if (mqtt5 != null) {
+            mqtt5.releaseInbound();
+            endpoint.publishAcknowledge(message.messageId(), reason, MqttProperties.NO_PROPERTIES);
+        } else if (reason == MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID) {
+            endpoint.publishAcknowledge(message.messageId());
+        }
+    }
+
+    /**
+     * 网关主动断开：MQTT 5 连接先发带原因码的 DISCONNECT，3.1.1 直接关闭连接。
+     */
+    private void closeSession(EndpointSession session, MqttDisconnectReasonCode reason) {
+        Mqtt5Session mqtt5 = session.mqtt5();
+        if (mqtt5 == null) {
+            session.endpoint().close();
+            return;
+        }
+        mqtt5.setDisconnectReason(reason);
+        session.endpoint().disconnect(reason, MqttProperties.NO_PROPERTIES);
     }
 
     private boolean isValidSubscribe(String deviceId, String topic) {
@@ -231,80 +591,364 @@ public class MqttServerVerticle extends AbstractVerticle {
     }
 
     private void notifyPresence(String deviceId, String ip, boolean online) {
-        String url = config.coreInternalBaseUrl() + (online ? "/internal/gateway/deviceOnline" : "/internal/gateway/deviceOffline");
+        if (presenceBatcher != null) {
+            if (online) {
+                presenceBatcher.online(deviceId, ip, System.currentTimeMillis());
+            } else {
+                presenceBatcher.offline(deviceId, ip, System.currentTimeMillis());
+            }
+            return;
+        }
+        String path = online ? "/internal/gateway/deviceOnline" : "/internal/gateway/deviceOffline";
         GatewayPresenceRequest request = new GatewayPresenceRequest(deviceId, config.instanceId(), ip);
         try {
             String body = objectMapper.writeValueAsString(request);
-            Supplier<HttpRequest<Buffer>> requestSupplier = () -> {
-                HttpRequest<Buffer> presenceRequest = webClient.postAbs(url);
-                if (!config.internalToken().isBlank()) {
-                    presenceRequest.putHeader(HEADER_INTERNAL_TOKEN, config.internalToken());
+            long startNanos = System.nanoTime();
+            coreClient.postCallback(path, Buffer.buffer(body), ar -> {
+                metrics.onCallbackLatency(startNanos);
+                if (CoreClient.isFailure(ar)) {
+                    metrics.onCallbackFail();
+                    log.warn("Presence notify failed: deviceId={} status={}", deviceId, CoreClient.statusOf(ar));
                 }
-                presenceRequest.putHeader("Content-Type", "application/json");
-                return presenceRequest;
-            };
-            sendWithRetry(requestSupplier, Buffer.buffer(body), config.callbackTimeoutMs(),
-                    config.callbackMaxRetries(), config.callbackRetryDelayMs(), null, ar -> {
-                        if (ar.failed() || (ar.result() != null && ar.result().statusCode() >= 400)) {
-                            metrics.onCallbackFail();
-                            log.warn("Presence notify failed: deviceId={} status={}", deviceId, statusOf(ar));
-                        }
-                    });
+            });
         } catch (Exception e) {
             log.error("Presence notify error: {}", e.getMessage(), e);
         }
     }
 
-    private void markRoute(String deviceId) {
-        LocalMap<String, String> routing = vertx.sharedData().getLocalMap(GatewayApplication.ROUTE_MAP_NAME);
-        routing.put(deviceId, commandAddress);
-        metrics.setOnlineCount(routing.size());
-        log.info("[MQTT] 路由注册: deviceId={}, address={}, 路由表大小={}", deviceId, commandAddress, routing.size());
+    /**
+     * 同一时间只有一个批次在途；发送失败时放回，下个周期重试。
+     */
+    private Future<Void> flushPresence() {
+        if (presenceFlushing) {
+            return Future.succeededFuture();
+        }
+        long now = System.currentTimeMillis();
+        PresenceBatcher.Batch batch = presenceBatcher.drain(now);
+        if (batch.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        presenceFlushing = true;
+        Promise<Void> sent = Promise.promise();
+        long startNanos = System.nanoTime();
+        coreClient.postCallback(PresenceBatcher.BATCH_PATH, batch.toJson(config.instanceId()).toBuffer(), ar -> {
+            presenceFlushing = false;
+            metrics.onCallbackLatency(startNanos);
+            if (CoreClient.isFailure(ar)) {
+                metrics.onPresenceBatchFail();
+                presenceBatcher.restore(batch, System.currentTimeMillis());
+                log.warn("[PRESENCE] 在线状态批量通知失败: changes={}, history={}, status={}",
+                        batch.changes().size(), batch.history().size(), CoreClient.statusOf(ar));
+            } else {
+                metrics.onPresenceBatch(batch.changes().size());
+            }
+            sent.complete();
+        });
+        return sent.future();
+    }
+
+    /**
+     * 优雅下线：拒绝新连接，按给定速率以随机间隔逐个关闭本实例的会话（平均间隔 1/rate 秒），
+     * 超过 maxDurationMs 后剩余会话一次性关闭；全部断开后把积压上行与在线状态交给 pet-core 再回复关闭数。
+     */
+    private void handleDrain(Message<JsonObject> message) {
+        draining = true;
+        double ratePerSec = Math.max(0.001, message.body().getDouble("ratePerSec", 100.0));
+        long deadlineMs = System.currentTimeMillis() + message.body().getLong("maxDurationMs", 60_000L);
+        List<EndpointSession> pending = new ArrayList<>();
+        sessions.forEachOwnedBy(owner, pending::add);
+        Collections.shuffle(pending);
+        log.info("[DRAIN] Verticle 开始关闭会话: address={}, sessions={}, ratePerSec={}",
+                commandAddress, pending.size(), String.format("%.1f", ratePerSec));
+        Promise<Integer> closed = Promise.promise();
+        closeNext(pending.iterator(), 0, ratePerSec, deadlineMs, closed);
+        closed.future()
+                .compose(count -> awaitSessionsClosed(deadlineMs)
+                        .compose(v -> uplinkDispatcher.drain())
+                        .compose(v -> presenceFlusher ? flushPresence() : Future.succeededFuture())
+                        .map(count))
+                .onComplete(ar -> message.reply(new JsonObject().put("closed", ar.result())));
     }
 
-    private boolean clearRoute(String deviceId) {
-        LocalMap<String, String> routing = vertx.sharedData().getLocalMap(GatewayApplication.ROUTE_MAP_NAME);
-        String owner = routing.get(deviceId);
-        if (commandAddress.equals(owner)) {
-            routing.remove(deviceId);
-            log.info("[MQTT] 路由移除: deviceId={}, 路由表大小={}", deviceId, routing.size());
-            metrics.setOnlineCount(routing.size());
-            return true;
-        } else {
-            log.warn("[MQTT] 路由移除跳过(非本 Verticle 拥有): deviceId={}, owner={}, mine={}", deviceId, owner, commandAddress);
-            metrics.setOnlineCount(routing.size());
-            return false;
+    private void closeNext(Iterator<EndpointSession> pending, int closedCount, double ratePerSec, long deadlineMs,
+                           Promise<Integer> closed) {
+        int count = closedCount;
+        boolean overdue = System.currentTimeMillis() >= deadlineMs;
+        while (pending.hasNext()) {
+            EndpointSession session = pending.next();
+            if (session.closed()) {
+                continue;
+            }
+            closeSession(session, MqttDisconnectReasonCode.SERVER_SHUTTING_DOWN);
+            metrics.onDrainSessionClosed();
+            count++;
+            if (!overdue) {
+                break;
+            }
+        }
+        if (!pending.hasNext()) {
+            closed.complete(count);
+            return;
+        }
+        long delayMs = Math.max(1, (long) (ThreadLocalRandom.current().nextDouble() * 2000 / ratePerSec));
+        int next = count;
+        vertx.setTimer(delayMs, id -> closeNext(pending, next, ratePerSec, deadlineMs, closed));
+    }
+
+    private Future<Void> awaitSessionsClosed(long deadlineMs) {
+        if (openSessions == 0 || System.currentTimeMillis() >= deadlineMs) {
+            return Future.succeededFuture();
         }
+        Promise<Void> empty = Promise.promise();
+        vertx.setTimer(DRAIN_POLL_MS, id -> awaitSessionsClosed(deadlineMs).onComplete(empty));
+        return empty.future();
     }
 
-    private void acceptEndpoint(MqttEndpoint endpoint, String deviceId) {
-        endpoint.accept(false);
+    private void acceptEndpoint(MqttEndpoint endpoint, String deviceId, String productKey, long connectStartNanos) {
+        if (draining) {
+            // 鉴权期间进入下线的连接同样拒绝
+            endpoint.reject(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Mqtt5Session mqtt5 = config.mqtt5().enabled() && endpoint.protocolVersion() == Mqtt5Session.PROTOCOL_VERSION
+                ? Mqtt5Session.negotiate(endpoint.connectProperties(), config.mqtt5(),
+                        offlineSessions == null ? 0 : config.session().sessionTtlSec())
+                : null;
+        // MQTT 5 的 cleanStart=false 但 Session Expiry Interval 为 0 时，会话在断开时即结束
+        boolean cleanSession = endpoint.isCleanSession() || mqtt5 != null && mqtt5.sessionExpirySec() == 0;
+        OfflineSessionStore.Attachment attachment = offlineSessions == null ? null
+                : offlineSessions.attach(deviceId, cleanSession, now);
+        boolean sessionPresent = attachment != null && attachment.sessionPresent();
+        if (mqtt5 != null) {
+            endpoint.accept(sessionPresent, mqtt5.connAckProperties());
+            metrics.onMqtt5Connect();
+        } else {
+            endpoint.accept(sessionPresent);
+        }
+        metrics.onConnectAccepted(connectStartNanos);
         SocketAddress remoteAddress = endpoint.remoteAddress();
         String ip = remoteAddress == null ? UNKNOWN_IP : remoteAddress.host();
-        sessions.put(deviceId, new EndpointSession(deviceId, endpoint, Instant.now(), ip));
-        markRoute(deviceId);
+        OutboundWindow outbound = null;
+        if (mqtt5 != null) {
+            // MQTT 5 会话始终经窗口下发，在途数不超过设备声明的 Receive Maximum
+            int maxInFlight = config.downlink().enabled()
+                    ? Math.min(config.downlink().maxInFlight(), mqtt5.clientReceiveMaximum())
+                    : mqtt5.clientReceiveMaximum();
+            outbound = new OutboundWindow(deviceId, (topic, payload, qos, dup, messageId) ->
+                    mqtt5.publish(endpoint, topic, payload, qos, dup, messageId,
+                            savedBytes -> metrics.onTopicAlias(false, savedBytes)),
+                    config.downlink(), metrics, maxInFlight, false);
+        } else if (config.downlink().enabled()) {
+            outbound = new OutboundWindow(deviceId, (topic, payload, qos, dup, messageId) ->
+                    endpoint.publish(topic, payload, qos, dup, false, messageId), config.downlink(), metrics);
+        }
+        if (outbound != null) {
+            OutboundWindow window = outbound;
+            endpoint.publishAcknowledgeHandler(messageId -> window.onPubAck(messageId, System.currentTimeMillis()));
+        }
+        GatewayConfig.Telemetry.Policy telemetryPolicy = config.telemetry().policyFor(productKey);
+        // 百万连接下同一设备反复重连、同一产品大量设备，统一引用常量池中的字符串
+        EndpointSession session = new EndpointSession(deviceId.intern(), endpoint, owner, now, ip,
+                idleTimeoutMs(endpoint.keepAliveTimeSeconds()), outbound,
+                attachment == null ? 0 : attachment.generation(), productKey == null ? null : productKey.intern(),
+                telemetryPolicy == null ? null : new TelemetryGate(telemetryPolicy, now), mqtt5);
+        EndpointSession previous = sessions.put(session);
+        openSessions++;
+        if (heartbeatWheel != null) {
+            heartbeatWheel.schedule(session, session.expiresAtMs());
+        }
+        if (activityReporter != null) {
+            activityReporter.track(session);
+        }
+        metrics.setOnlineCount(sessions.size());
         metrics.onConnect();
-        log.info("Device connected: deviceId={} ip={} online={}", deviceId, ip, metrics.onlineCount());
+        log.info("Device connected: deviceId={} ip={} protocol={} online={} replaced={}", deviceId, ip,
+                session.protocolVersion(), metrics.onlineCount(), previous != null);
         notifyPresence(deviceId, ip, true);
-        wireEndpointHandlers(endpoint, deviceId);
+        wireEndpointHandlers(endpoint, session);
+        if (sessionPresent) {
+            // 恢复会话的设备不会重新订阅，按保留的订阅还原下行编码，补发的消息才能按设备选择的格式编码
+            for (String topic : offlineSessions.subscriptions(deviceId)) {
+                applyDownlinkFormat(session, topic, true);
+            }
+        }
+        if (attachment != null && !attachment.pending().isEmpty()) {
+            log.info("[MQTT] 补发离线期间缓存的下行消息: deviceId={}, count={}", deviceId, attachment.pending().size());
+            for (OfflineSessionStore.QueuedMessage queued : attachment.pending()) {
+                publishToSession(session, queued.topic(), Buffer.buffer(queued.payload()), MqttQoS.AT_LEAST_ONCE,
+                        queued.expiresAtMs(), (ok, reason) -> {
+                            if (!ok) {
+                                log.warn("[MQTT] 离线消息补发失败: deviceId={}, reason={}", deviceId, reason);
+                            }
+                        });
+            }
+        }
     }
 
-    private void handleDisconnect(String deviceId) {
-        EndpointSession session = sessions.remove(deviceId);
-        if (session == null) {
+    /**
+     * 持久会话断开时把未确认的下行转回离线队列；窗口里保存的是已按设备格式编码的内容，先还原成 JSON 与原 topic。
+     * 带截止时间的消息只缓存到截止时间，已过期的直接丢弃。
+     */
+    private void requeueUnacknowledged(EndpointSession session, String topic, Buffer payload, long expiresAtMs,
+                                       long now) {
+        if (expiresAtMs != 0 && expiresAtMs <= now) {
+            metrics.onOfflineExpired(1);
             return;
         }
+        // 按写出时的 topic 后缀还原，编码可能在写出之后因订阅变化而改变
+        PayloadFormat format = PayloadFormat.fromTopicSuffix(topic);
+        if (format != null && format != PayloadFormat.JSON) {
+            try {
+                payload = format.toJson(payload);
+                topic = topic.substring(0, topic.length() - format.topicSuffix().length() - 1);
+            } catch (IOException | RuntimeException e) {
+                return;
+            }
+        }
+        offlineSessions.enqueue(session.deviceId(), topic, payload.getBytes(), now,
+                expiresAtMs == 0 ? 0 : expiresAtMs - now);
+    }
+
+    /**
+     * 按订阅或取消订阅的带格式后缀的 topic（如 pet/{id}/cmd/cbor）更新对应下行 topic 的编码；取消订阅只在该格式
+     * 仍在使用时恢复为 JSON。topic 不带格式后缀时返回 false。
+     */
+    static boolean applyDownlinkFormat(EndpointSession session, String subscribedTopic, boolean subscribed) {
+        PayloadFormat format = PayloadFormat.fromTopicSuffix(subscribedTopic);
+        if (format == null) {
+            return false;
+        }
+        String downlinkTopic = subscribedTopic.substring(0, subscribedTopic.lastIndexOf('/'));
+        if (subscribed) {
+            session.setDownlinkFormat(downlinkTopic, format);
+        } else if (session.downlinkFormat(downlinkTopic) == format) {
+            session.setDownlinkFormat(downlinkTopic, PayloadFormat.JSON);
+        }
+        return true;
+    }
+
+    /**
+     * 下发到在线会话：开启发送窗口时经窗口控制，否则直接写出（不限制 Netty 写缓冲中的堆积），均在写入 socket 后回复。
+     * expiresAtMs 为离线缓存截止时间，0 表示按配置。
+     */
+    private void publishToSession(EndpointSession session, String topic, Buffer payload, MqttQoS qos,
+                                  long expiresAtMs, OutboundWindow.Completion completion) {
+        PayloadFormat format = session.downlinkFormat(topic);
+        if (format != PayloadFormat.JSON) {
+            try {
+                payload = format.fromJson(payload);
+                topic = topic + "/" + format.topicSuffix();
+                metrics.onDownlinkEncoded();
+            } catch (IOException | RuntimeException e) {
+                log.warn("[MQTT] 下行编码失败: deviceId={}, format={}, error={}", session.deviceId(), format, e.getMessage());
+                completion.complete(false, "ENCODE_FAILED");
+                return;
+            }
+        }
+        OutboundWindow outbound = session.outbound();
+        if (outbound == null) {
+            OutboundWindow.completeOnWrite(session.endpoint().publish(topic, payload, qos, false, false), completion);
+            return;
+        }
+        outbound.offer(topic, payload, qos, System.currentTimeMillis(), expiresAtMs, completion);
+        if (!outbound.idle()) {
+            activeDownlinks.add(outbound);
+        }
+    }
+
+    /**
+     * 向本实例上的一批设备下发同一条指令（由 {@link DownlinkBroadcast} 分批投递），全部写出或被拒绝后
+     * 回复写出数与按原因分组的失败设备。
+     */
+    private void handleBroadcastChunk(Message<JsonObject> message) {
+        JsonObject body = message.body();
+        Buffer payload = Buffer.buffer(body.getString("payload", ""));
+        MqttQoS qos = MqttQoS.valueOf(body.getInteger("qos", MqttQoS.AT_LEAST_ONCE.value()));
+        JsonArray deviceIds = body.getJsonArray("deviceIds", new JsonArray());
+        JsonObject failed = new JsonObject();
+        // [0] 尚未完成的设备数（多 1 个占位，循环结束后释放），[1] 已写出数
+        int[] state = {deviceIds.size() + 1, 0};
+        Runnable completeOne = () -> {
+            if (--state[0] == 0) {
+                message.reply(new JsonObject().put("sent", state[1]).put("failed", failed));
+            }
+        };
+        for (Object value : deviceIds) {
+            String deviceId = (String) value;
+            EndpointSession session = sessions.get(deviceId);
+            if (session == null || session.owner() != owner) {
+                addBroadcastFailure(failed, DownlinkBroadcast.REASON_OFFLINE, deviceId);
+                completeOne.run();
+                continue;
+            }
+            publishToSession(session, DownlinkBroadcast.topicOf(deviceId), payload, qos, 0, (ok, reason) -> {
+                if (ok) {
+                    state[1]++;
+                } else {
+                    addBroadcastFailure(failed, reason, deviceId);
+                }
+                completeOne.run();
+            });
+        }
+        completeOne.run();
+    }
+
+    private static void addBroadcastFailure(JsonObject failed, String reason, String deviceId) {
+        JsonArray ids = failed.getJsonArray(reason);
+        if (ids == null) {
+            ids = new JsonArray();
+            failed.put(reason, ids);
+        }
+        ids.add(deviceId);
+    }
+
+    /**
+     * 连接断开的清理，DISCONNECT 与连接关闭各触发一次，只处理第一次。会话表中该设备已被新连接覆盖
+     * （重连到本实例或其他实例）时只清理本连接，不移除新会话也不通知离线。
+     */
+    private void handleDisconnect(EndpointSession session) {
+        if (!session.markClosed()) {
+            return;
+        }
+        openSessions--;
+        String deviceId = session.deviceId();
+        long now = System.currentTimeMillis();
+        if (session.persistent() && session.mqtt5() != null) {
+            offlineSessions.detach(deviceId, session.persistentGeneration(), now, session.sessionExpirySec() * 1000L);
+        } else if (session.persistent()) {
+            offlineSessions.detach(deviceId, session.persistentGeneration(), now);
+        }
+        if (session.outbound() != null) {
+            session.outbound().close((topic, payload, expiresAtMs) -> {
+                if (session.persistent()) {
+                    requeueUnacknowledged(session, topic, payload, expiresAtMs, now);
+                }
+            });
+            activeDownlinks.remove(session.outbound());
+        }
+        TelemetryGate.Held heldTelemetry = session.telemetryGate() == null ? null : session.telemetryGate().drain();
+        if (heldTelemetry != null) {
+            forwardUplink(UplinkType.TELEMETRY, session, heldTelemetry.payload(), heldTelemetry.message());
+        }
         String ip = session.clientIp();
-        boolean removed = clearRoute(deviceId);
+        boolean removed = sessions.remove(session);
+        metrics.setOnlineCount(sessions.size());
         metrics.onDisconnect();
-        if (removed) {
-            log.info("Device disconnected: deviceId={} ip={} online={}", deviceId, ip, metrics.onlineCount());
+        if (removed && draining) {
+            log.info("Device drained, offline left to pet-core handoff: deviceId={} ip={}", deviceId, ip);
+        } else if (removed) {
+            log.info("Device disconnected: deviceId={} ip={} online={} reason={}", deviceId, ip, metrics.onlineCount(),
+                    session.disconnectReason());
             notifyPresence(deviceId, ip, false);
         } else {
             log.info("Device old connection closed, skip offline notify: deviceId={} ip={}", deviceId, ip);
         }
     }
 
+    /**
+     * 心跳超时由时间轮驱动：每个 tick 只检查到期槽内的会话，期间有活动的会话按最新活动时间重新挂入。
+     */
     private void startHeartbeatChecker() {
         int intervalSec = config.heartbeatIntervalSec();
         int timeoutSec = config.heartbeatTimeoutSec();
@@ -312,33 +956,87 @@ public class MqttServerVerticle extends AbstractVerticle {
             log.info("[Heartbeat] 心跳检测已禁用: intervalSec={}, timeoutSec={}", intervalSec, timeoutSec);
             return;
         }
-        log.info("[Heartbeat] 启动心跳检测: intervalSec={}, timeoutSec={}", intervalSec, timeoutSec);
-        vertx.setPeriodic(intervalSec * 1000L, id -> {
-            Instant now = Instant.now();
-            for (EndpointSession session : sessions.values()) {
-                long idleSec = Duration.between(session.lastActivity(), now).getSeconds();
-                if (idleSec > timeoutSec) {
-                    log.warn("[Heartbeat] 心跳超时，强制断开: deviceId={}, idle={}s", session.deviceId(), idleSec);
-                    session.endpoint().close();
+        long tickMs = intervalSec * 1000L;
+        heartbeatWheel = new TimingWheel<>(tickMs, (int) (timeoutSec * 1000L / tickMs) + 1, System.currentTimeMillis());
+        log.info("[Heartbeat] 启动心跳检测: intervalSec={}, timeoutSec={}, wheelSize={}",
+                intervalSec, timeoutSec, heartbeatWheel.wheelSize());
+        vertx.setPeriodic(tickMs, id -> heartbeatWheel.advance(System.currentTimeMillis(), this::checkHeartbeat));
+    }
+
+    private long checkHeartbeat(EndpointSession session, long nowMs) {
+        if (session.closed()) {
+            return 0;
+        }
+        long expiresAt = session.expiresAtMs();
+        if (expiresAt > nowMs) {
+            return expiresAt;
+        }
+        metrics.onHeartbeatTimeout();
+        log.warn("[Heartbeat] 心跳超时，强制断开: deviceId={}, idle={}s, timeout={}s", session.deviceId(),
+                (nowMs - session.lastActivityMs()) / 1000, session.idleTimeoutMs() / 1000);
+        closeSession(session, MqttDisconnectReasonCode.KEEP_ALIVE_TIMEOUT);
+        return 0;
+    }
+
+    /**
+     * 按 MQTT 规范取 CONNECT 中 keepalive 的 1.5 倍作为空闲超时，并以配置的 heartbeat.timeoutSec 为上限；
+     * keepalive 为 0（不启用）时直接使用配置值。
+     */
+    private long idleTimeoutMs(int keepAliveSec) {
+        long capMs = config.heartbeatTimeoutSec() * 1000L;
+        if (keepAliveSec <= 0 || capMs <= 0) {
+            return capMs;
+        }
+        return Math.min(capMs, keepAliveSec * 1500L);
+    }
+
+    /**
+     * 只遍历有在途或排队下行消息的会话，处理重发与排队超时。
+     */
+    private void startDownlinkTicker() {
+        GatewayConfig.Downlink downlink = config.downlink();
+        if (!downlink.enabled() && !config.mqtt5().enabled()) {
+            return;
+        }
+        long periodMs = Math.max(50, Math.min(1000, Math.min(downlink.retransmitMs(), downlink.queueTimeoutMs()) / 2));
+        vertx.setPeriodic(periodMs, id -> {
+            long now = System.currentTimeMillis();
+            Iterator<OutboundWindow> iterator = activeDownlinks.iterator();
+            while (iterator.hasNext()) {
+                OutboundWindow window = iterator.next();
+                window.tick(now);
+                if (window.idle()) {
+                    iterator.remove();
                 }
             }
         });
     }
 
+    /**
+     * 本 Verticle 下行积压最严重的会话，供 /internal/debug/downlink 汇总排查慢设备。
+     */
+    private JsonObject downlinkStats(int limit) {
+        List<OutboundWindow> windows = new ArrayList<>();
+        sessions.forEachOwnedBy(owner, session -> {
+            OutboundWindow window = session.outbound();
+            if (window != null && (!window.idle() || window.retransmitCount() > 0 || window.overflowCount() > 0)) {
+                windows.add(window);
+            }
+        });
+        windows.sort(DOWNLINK_BACKLOG_ORDER);
+        JsonArray result = new JsonArray();
+        windows.stream().limit(limit).forEach(window -> result.add(window.stats()));
+        return new JsonObject().put("verticle", commandAddress).put("sessions", result);
+    }
+
     private void cleanupStaleSessionsOnStartup() {
-        String url = config.coreInternalBaseUrl() + "/internal/gateway/cleanup";
         JsonObject body = new JsonObject().put("gatewayInstanceId", config.instanceId());
-        HttpRequest<Buffer> request = webClient.postAbs(url);
-        if (!config.internalToken().isBlank()) {
-            request.putHeader(HEADER_INTERNAL_TOKEN, config.internalToken());
-        }
-        request.putHeader("Content-Type", "application/json");
-        request.sendJsonObject(body, ar -> {
+        coreClient.postJson("/internal/gateway/cleanup").sendJsonObject(body, ar -> {
             if (ar.succeeded() && ar.result().statusCode() < 400) {
                 log.info("[Cleanup] 网关启动清理成功: instanceId={}", config.instanceId());
             } else {
                 log.warn("[Cleanup] 网关启动清理失败: instanceId={}, status={}",
-                        config.instanceId(), statusOf(ar));
+                        config.instanceId(), CoreClient.statusOf(ar));
             }
         });
     }
@@ -360,60 +1058,16 @@ public class MqttServerVerticle extends AbstractVerticle {
         //         metrics.callbackFailCount()));
     }
 
-    private void sendWithRetry(Supplier<HttpRequest<Buffer>> requestSupplier,
-                               Buffer payload,
-                               int timeoutMs,
-                               int maxRetries,
-                               int retryDelayMs,
-                               Runnable onRetry,
-                               io.vertx.core.Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
-        attemptSend(requestSupplier, payload, timeoutMs, maxRetries, retryDelayMs, 0, onRetry, handler);
-    }
-
-    private void attemptSend(Supplier<HttpRequest<Buffer>> requestSupplier,
-                             Buffer payload,
-                             int timeoutMs,
-                             int maxRetries,
-                             int retryDelayMs,
-                             int attempt,
-                             Runnable onRetry,
-                             io.vertx.core.Handler<AsyncResult<HttpResponse<Buffer>>> handler) {
-        HttpRequest<Buffer> request = requestSupplier.get();
-        if (timeoutMs > 0) {
-            request.timeout(timeoutMs);
-        }
-        io.vertx.core.Handler<AsyncResult<HttpResponse<Buffer>>> wrapped = ar -> {
-            if (shouldRetry(ar) && attempt < maxRetries) {
-                if (onRetry != null) {
-                    onRetry.run();
-                }
-                long delay = Math.max(0, retryDelayMs);
-                if (delay == 0) {
-                    attemptSend(requestSupplier, payload, timeoutMs, maxRetries, retryDelayMs, attempt + 1, onRetry, handler);
-                } else {
-                    vertx.setTimer(delay, id -> attemptSend(requestSupplier, payload, timeoutMs, maxRetries,
-                            retryDelayMs, attempt + 1, onRetry, handler));
-                }
-                return;
-            }
-            handler.handle(ar);
-        };
-        if (payload == null) {
-            request.send(wrapped);
-        } else {
-            request.sendBuffer(payload, wrapped);
-        }
+    private boolean isAuthOk(AsyncResult<HttpResponse<Buffer>> ar) {
+        return ar.succeeded() && ar.result().statusCode() == 200;
     }
 
-    private boolean shouldRetry(AsyncResult<HttpResponse<Buffer>> ar) {
+    private boolean isAuthDenied(AsyncResult<HttpResponse<Buffer>> ar) {
         if (ar.failed()) {
-            return true;
+            return false;
         }
-        return ar.result().statusCode() >= 500;
-    }
-
-    private boolean isAuthOk(AsyncResult<HttpResponse<Buffer>> ar) {
-        return ar.succeeded() && ar.result().statusCode() == 200;
+        int status = ar.result().statusCode();
+        return status == 401 || status == 404;
     }
 
     private boolean shouldFailOpen(AsyncResult<HttpResponse<Buffer>> ar) {
@@ -422,14 +1076,4 @@ public class MqttServerVerticle extends AbstractVerticle {
         }
         return ar.result().statusCode() >= 500;
     }
-
-    private int statusOf(AsyncResult<HttpResponse<Buffer>> ar) {
-        if (ar == null) {
-            return -1;
-        }
-        if (ar.succeeded() && ar.result() != null) {
-            return ar.result().statusCode();
-        }
-        return -1;
-    }
 }
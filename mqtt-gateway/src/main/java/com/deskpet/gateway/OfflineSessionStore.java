@@ -0,0 +1,257 @@
+package com.deskpet.gateway;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * cleanSession=false 设备的持久会话状态，进程内所有 MqttServerVerticle 共享（设备重连可能落到其他实例）。
+ * <p>
+ * 设备断开后在 sessionTtlSec 内保留其订阅，并为其缓存 QoS1 下行消息（每设备与全局均有上限，单条消息有 TTL），
+ * 重连时按入队顺序一次性取出交给新连接下发；订阅用于恢复会话时还原设备的下行编码格式（设备恢复会话时不会重新订阅）。消息只保存 topic 与 payload 字节，不保留 Buffer 等包装对象。
+ * 每个设备的状态用自身监视器保护；在线/离线切换与入队在同一把锁内完成，避免重连瞬间入队的消息被遗漏。
+ */
+final class OfflineSessionStore {
+
+    enum EnqueueResult {
+        QUEUED,
+        QUEUE_FULL,
+        NO_SESSION,
+        ONLINE
+    }
+
+    record QueuedMessage(String topic, byte[] payload, long expiresAtMs) {
+    }
+
+    /**
+     * 连接接入结果：sessionPresent 用于 CONNACK，generation 用于断开时识别是否仍是当前连接。
+     */
+    record Attachment(boolean sessionPresent, long generation, List<QueuedMessage> pending) {
+    }
+
+    private static final Attachment CLEAN = new Attachment(false, 0, List.of());
+    private static OfflineSessionStore shared;
+
+    private final Map<String, State> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger totalQueued = new AtomicInteger();
+    private final GatewayConfig.Session config;
+    private final GatewayMetrics metrics;
+    private boolean sweeperClaimed;
+
+    OfflineSessionStore(GatewayConfig.Session config, GatewayMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    static synchronized OfflineSessionStore shared(GatewayConfig.Session config) {
+        if (shared == null) {
+            GatewayMetrics metrics = GatewayMetrics.getInstance();
+            shared = new OfflineSessionStore(config, metrics);
+            OfflineSessionStore store = shared;
+            metrics.registerOfflineSessions(store::sessionCount, store::queuedCount);
+        }
+        return shared;
+    }
+
+    /**
+     * 仅第一个调用者返回 true，由它负责周期清理。
+     */
+    synchronized boolean claimSweeper() {
+        if (sweeperClaimed) {
+            return false;
+        }
+        sweeperClaimed = true;
+        return true;
+    }
+
+    /**
+     * 设备连接成功时调用。cleanSession=true 时丢弃已有状态；否则标记在线并取出未过期的缓存消息。
+     */
+    Attachment attach(String deviceId, boolean cleanSession, long nowMs) {
+        if (cleanSession) {
+            State removed = sessions.remove(deviceId);
+            if (removed != null) {
+                synchronized (removed) {
+                    removed.removed = true;
+                    discard(removed.queue.size());
+                    removed.queue.clear();
+                }
+            }
+            return CLEAN;
+        }
+        while (true) {
+            State state = sessions.computeIfAbsent(deviceId, id -> new State());
+            synchronized (state) {
+                if (state.removed) {
+                    continue;
+                }
+                boolean present = state.attached;
+                state.attached = true;
+                state.online = true;
+                state.generation++;
+                List<QueuedMessage> pending = new ArrayList<>(state.queue.size());
+                for (QueuedMessage message : state.queue) {
+                    if (message.expiresAtMs() > nowMs) {
+                        pending.add(message);
+                    }
+                }
+                metrics.onOfflineExpired(state.queue.size() - pending.size());
+                discard(state.queue.size());
+                state.queue.clear();
+                metrics.onOfflineFlushed(pending.size());
+                return new Attachment(present, state.generation, pending);
+            }
+        }
+    }
+
+    /**
+     * 连接断开时调用；只有 generation 仍是当前连接时才转为离线，旧连接晚到的关闭事件被忽略。
+     */
+    void detach(String deviceId, long generation, long nowMs) {
+        detach(deviceId, generation, nowMs, config.sessionTtlSec() * 1000L);
+    }
+
+    /**
+     * 同上，离线会话保留 retainMs 而不是配置的 sessionTtlSec（MQTT 5 设备协商的 Session Expiry Interval）。
+     */
+    void detach(String deviceId, long generation, long nowMs, long retainMs) {
+        State state = sessions.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.generation == generation && state.online) {
+                state.online = false;
+                state.expiresAtMs = nowMs + retainMs;
+            }
+        }
+    }
+
+    /**
+     * 为离线的持久会话缓存一条 QoS1 下行消息。
+     */
+    EnqueueResult enqueue(String deviceId, String topic, byte[] payload, long nowMs) {
+        return enqueue(deviceId, topic, payload, nowMs, 0);
+    }
+
+    /**
+     * 同上，ttlMs 大于 0 时消息有效期取 ttlMs 与配置的 messageTtlSec 中较短者（调用方的超时先到，过期后不再补发）。
+     */
+    EnqueueResult enqueue(String deviceId, String topic, byte[] payload, long nowMs, long ttlMs) {
+        State state = sessions.get(deviceId);
+        if (state == null) {
+            return EnqueueResult.NO_SESSION;
+        }
+        synchronized (state) {
+            if (state.removed) {
+                return EnqueueResult.NO_SESSION;
+            }
+            if (state.online) {
+                return EnqueueResult.ONLINE;
+            }
+            if (state.queue.size() >= config.maxMessagesPerDevice()) {
+                metrics.onOfflineRejected();
+                return EnqueueResult.QUEUE_FULL;
+            }
+            if (totalQueued.incrementAndGet() > config.maxTotalMessages()) {
+                totalQueued.decrementAndGet();
+                metrics.onOfflineRejected();
+                return EnqueueResult.QUEUE_FULL;
+            }
+            long maxTtlMs = config.messageTtlSec() * 1000L;
+            long expiresAtMs = nowMs + (ttlMs > 0 ? Math.min(ttlMs, maxTtlMs) : maxTtlMs);
+            state.queue.addLast(new QueuedMessage(topic, payload, expiresAtMs));
+            metrics.onOfflineQueued();
+            return EnqueueResult.QUEUED;
+        }
+    }
+
+    void recordSubscriptions(String deviceId, Collection<String> topics) {
+        State state = sessions.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.subscriptions.addAll(topics);
+        }
+    }
+
+    void removeSubscriptions(String deviceId, Collection<String> topics) {
+        State state = sessions.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.subscriptions.removeAll(topics);
+        }
+    }
+
+    Set<String> subscriptions(String deviceId) {
+        State state = sessions.get(deviceId);
+        if (state == null) {
+            return Set.of();
+        }
+        synchronized (state) {
+            return Collections.unmodifiableSet(new HashSet<>(state.subscriptions));
+        }
+    }
+
+    /**
+     * 清理过期消息与超过保留期的离线会话。
+     */
+    void sweep(long nowMs) {
+        for (Map.Entry<String, State> entry : sessions.entrySet()) {
+            State state = entry.getValue();
+            synchronized (state) {
+                if (state.online) {
+                    continue;
+                }
+                if (state.expiresAtMs <= nowMs) {
+                    state.removed = true;
+                    sessions.remove(entry.getKey(), state);
+                    metrics.onOfflineExpired(state.queue.size());
+                    discard(state.queue.size());
+                    state.queue.clear();
+                    continue;
+                }
+                // 消息 TTL 可由调用方缩短，队列不按过期时间有序，逐条检查
+                int before = state.queue.size();
+                state.queue.removeIf(message -> message.expiresAtMs() <= nowMs);
+                int expired = before - state.queue.size();
+                discard(expired);
+                metrics.onOfflineExpired(expired);
+            }
+        }
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    int queuedCount() {
+        return totalQueued.get();
+    }
+
+    private void discard(int count) {
+        if (count > 0) {
+            totalQueued.addAndGet(-count);
+        }
+    }
+
+    private static final class State {
+        private final ArrayDeque<QueuedMessage> queue = new ArrayDeque<>(2);
+        private final Set<String> subscriptions = new HashSet<>(4);
+        private boolean attached;
+        private boolean online;
+        private boolean removed;
+        private long generation;
+        private long expiresAtMs;
+    }
+}
@@ -0,0 +1,275 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 单个设备会话的 QoS1 下行发送窗口，只在会话所属 Verticle 的 event loop 上访问。
+ * <p>
+ * 同时未收到 PUBACK 的 QoS1 消息不超过 maxInFlight，超出部分进入有界等待队列；队列也满时立即以
+ * {@value #REASON_WINDOW_FULL} 拒绝，避免慢设备在 Netty 写缓冲中无限堆积。在途消息超过 retransmitMs 未确认时
+ * 以相同 messageId 带 DUP 标志重发，重发 maxRetransmits 次仍未确认则放弃并释放窗口。
+ * 结果在 {@link Transport} 返回的写出 Future 完成后才回复：写入 socket 成功为 {@value #REASON_SENT}，失败为
+ * {@value #REASON_WRITE_FAILED}；排队超过 queueTimeoutMs 的消息以 {@value #REASON_QUEUE_TIMEOUT} 失败。
+ * <p>
+ * 窗口只约束 QoS1：QoS0/QoS2 直接写出、不计入在途数，也不受 maxQueue 限制，未开启窗口的 MQTT 3.1.1 会话
+ * （见 MqttServerVerticle#publishToSession）同样如此，这两类下行在慢连接上仍可能堆积在 Netty 写缓冲中。
+ */
+final class OutboundWindow {
+
+    static final String REASON_SENT = "SENT";
+    static final String REASON_WINDOW_FULL = "WINDOW_FULL";
+    static final String REASON_QUEUE_TIMEOUT = "QUEUE_TIMEOUT";
+    static final String REASON_OFFLINE = "OFFLINE";
+    static final String REASON_WRITE_FAILED = "WRITE_FAILED";
+
+    /**
+     * 实际写出 PUBLISH 报文，返回的 Future 在报文写入 socket 后完成。
+     */
+    @FunctionalInterface
+    interface Transport {
+        Future<?> publish(String topic, Buffer payload, MqttQoS qos, boolean dup, int messageId);
+    }
+
+    /**
+     * 下发结果回调：ok 为 true 表示已写入 socket。
+     */
+    @FunctionalInterface
+    interface Completion {
+        void complete(boolean ok, String reason);
+    }
+
+    /**
+     * 会话断开时接收未确认的在途消息；expiresAtMs 为提交时给出的截止时间，0 表示没有。
+     */
+    @FunctionalInterface
+    interface Unacknowledged {
+        void accept(String topic, Buffer payload, long expiresAtMs);
+    }
+
+    private final String deviceId;
+    private final Transport transport;
+    private final GatewayConfig.Downlink config;
+    private final GatewayMetrics metrics;
+    private final int maxInFlight;
+    private final boolean retransmit;
+    private final LinkedHashMap<Integer, InFlight> inFlight = new LinkedHashMap<>();
+    // 绝大多数会话从不排队，初始容量取最小值，避免每个连接预分配 16 个槽位
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>(0);
+    private int nextMessageId = 1;
+    private long sentCount;
+    private long ackedCount;
+    private long retransmitCount;
+    private long overflowCount;
+    private long expiredCount;
+
+    OutboundWindow(String deviceId, Transport transport, GatewayConfig.Downlink config, GatewayMetrics metrics) {
+        this(deviceId, transport, config, metrics, config.maxInFlight(), true);
+    }
+
+    /**
+     * @param maxInFlight 在途上限，MQTT 5 会话取设备声明的 Receive Maximum 与配置中较小者
+     * @param retransmit  是否在连接内超时重发；MQTT 5 只允许重连后重发，在途消息一直占用窗口直到 PUBACK 或断开
+     */
+    OutboundWindow(String deviceId, Transport transport, GatewayConfig.Downlink config, GatewayMetrics metrics,
+                   int maxInFlight, boolean retransmit) {
+        this.deviceId = deviceId;
+        this.transport = transport;
+        this.config = config;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+        this.retransmit = retransmit;
+    }
+
+    /**
+     * 提交一条下行消息。QoS0/QoS2 不占用窗口，直接写出，写出结果同样经 completion 回复。
+     */
+    void offer(String topic, Buffer payload, MqttQoS qos, long nowMs, Completion completion) {
+        offer(topic, payload, qos, nowMs, 0, completion);
+    }
+
+    /**
+     * 同上，expiresAtMs 随消息保存，断开时交还给 {@link Unacknowledged}，持久会话据此限制离线缓存时长。
+     */
+    void offer(String topic, Buffer payload, MqttQoS qos, long nowMs, long expiresAtMs, Completion completion) {
+        if (qos != MqttQoS.AT_LEAST_ONCE) {
+            completeOnWrite(transport.publish(topic, payload, qos, false, 0), completion);
+            return;
+        }
+        if (queue.isEmpty() && inFlight.size() < maxInFlight) {
+            send(topic, payload, nowMs, expiresAtMs, completion);
+            return;
+        }
+        if (queue.size() >= config.maxQueue()) {
+            overflowCount++;
+            metrics.onDownlinkOverflow(REASON_WINDOW_FULL);
+            completion.complete(false, REASON_WINDOW_FULL);
+            return;
+        }
+        queue.addLast(new Queued(topic, payload, nowMs, expiresAtMs, completion));
+        metrics.onDownlinkQueued(1);
+    }
+
+    void onPubAck(int messageId, long nowMs) {
+        if (inFlight.remove(messageId) == null) {
+            return;
+        }
+        ackedCount++;
+        metrics.onDownlinkInFlight(-1);
+        drainQueue(nowMs);
+    }
+
+    /**
+     * 周期调用：重发超时的在途消息、淘汰排队超时的消息。
+     */
+    void tick(long nowMs) {
+        if (retransmit) {
+            retransmitDue(nowMs);
+        }
+        while (!queue.isEmpty() && queue.peekFirst().enqueuedAtMs + config.queueTimeoutMs() <= nowMs) {
+            Queued queued = queue.pollFirst();
+            metrics.onDownlinkQueued(-1);
+            overflowCount++;
+            metrics.onDownlinkOverflow(REASON_QUEUE_TIMEOUT);
+            queued.completion.complete(false, REASON_QUEUE_TIMEOUT);
+        }
+        drainQueue(nowMs);
+    }
+
+    private void retransmitDue(long nowMs) {
+        List<InFlight> due = new ArrayList<>();
+        for (InFlight message : inFlight.values()) {
+            if (message.sentAtMs + config.retransmitMs() > nowMs) {
+                // 按发送时间有序，后面的都未到期
+                break;
+            }
+            due.add(message);
+        }
+        for (InFlight message : due) {
+            inFlight.remove(message.messageId);
+            if (message.retransmits >= config.maxRetransmits()) {
+                expiredCount++;
+                metrics.onDownlinkInFlight(-1);
+                metrics.onDownlinkRetransmitGiveUp();
+                continue;
+            }
+            message.retransmits++;
+            message.sentAtMs = nowMs;
+            retransmitCount++;
+            metrics.onDownlinkRetransmit();
+            transport.publish(message.topic, message.payload, MqttQoS.AT_LEAST_ONCE, true, message.messageId);
+            // 重新放到队尾，保持按发送时间排序
+            inFlight.put(message.messageId, message);
+        }
+    }
+
+    /**
+     * 会话断开：排队中的消息以 OFFLINE 失败；尚未收到 PUBACK 的在途消息按发送顺序交给 unacknowledged
+     * （持久会话据此转入离线队列，重连后重发）。
+     */
+    void close(Unacknowledged unacknowledged) {
+        metrics.onDownlinkInFlight(-inFlight.size());
+        for (InFlight message : inFlight.values()) {
+            unacknowledged.accept(message.topic, message.payload, message.expiresAtMs);
+        }
+        inFlight.clear();
+        while (!queue.isEmpty()) {
+            metrics.onDownlinkQueued(-1);
+            queue.pollFirst().completion.complete(false, REASON_OFFLINE);
+        }
+    }
+
+    boolean idle() {
+        return inFlight.isEmpty() && queue.isEmpty();
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    int queuedCount() {
+        return queue.size();
+    }
+
+    long retransmitCount() {
+        return retransmitCount;
+    }
+
+    long overflowCount() {
+        return overflowCount;
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("deviceId", deviceId)
+                .put("inFlight", inFlight.size())
+                .put("queued", queue.size())
+                .put("sent", sentCount)
+                .put("acked", ackedCount)
+                .put("retransmits", retransmitCount)
+                .put("overflows", overflowCount)
+                .put("expired", expiredCount);
+    }
+
+    private void drainQueue(long nowMs) {
+        while (!queue.isEmpty() && inFlight.size() < maxInFlight) {
+            Queued queued = queue.pollFirst();
+            metrics.onDownlinkQueued(-1);
+            send(queued.topic, queued.payload, nowMs, queued.expiresAtMs, queued.completion);
+        }
+    }
+
+    private void send(String topic, Buffer payload, long nowMs, long expiresAtMs, Completion completion) {
+        int messageId = allocateMessageId();
+        InFlight message = new InFlight(messageId, topic, payload, nowMs, expiresAtMs);
+        inFlight.put(messageId, message);
+        sentCount++;
+        metrics.onDownlinkInFlight(1);
+        completeOnWrite(transport.publish(topic, payload, MqttQoS.AT_LEAST_ONCE, false, messageId), completion);
+    }
+
+    /**
+     * 按写出结果回复；写出失败的 QoS1 消息仍留在窗口中，由 PUBACK、重发或会话断开释放。
+     */
+    static void completeOnWrite(Future<?> written, Completion completion) {
+        written.onComplete(result -> completion.complete(result.succeeded(),
+                result.succeeded() ? REASON_SENT : REASON_WRITE_FAILED));
+    }
+
+    private int allocateMessageId() {
+        while (true) {
+            int id = nextMessageId;
+            nextMessageId = id == 0xFFFF ? 1 : id + 1;
+            if (!inFlight.containsKey(id)) {
+                return id;
+            }
+        }
+    }
+
+    private static final class InFlight {
+        private final int messageId;
+        private final String topic;
+        private final Buffer payload;
+        private final long expiresAtMs;
+        private long sentAtMs;
+        private int retransmits;
+
+        private InFlight(int messageId, String topic, Buffer payload, long sentAtMs, long expiresAtMs) {
+            this.messageId = messageId;
+            this.topic = topic;
+            this.payload = payload;
+            this.sentAtMs = sentAtMs;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private record Queued(String topic, Buffer payload, long enqueuedAtMs, long expiresAtMs, Completion completion) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.vertx.core.buffer.Buffer;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 设备 payload 编码格式。
+ * <p>
+ * 上行按首字节识别：CBOR 以 map（0xA0–0xBF）或自描述标签 55799（0xD9）开头，MessagePack 以 map（0x80–0x8F、0xDE、0xDF）
+ * 开头；这些字节都不可能是 UTF-8 JSON 的首字节，因此与现有 JSON 设备不冲突。下行由设备订阅带后缀的 topic
+ * （如 {@code pet/{id}/cmd/cbor}）表明需要的格式。
+ * <p>
+ * 转码使用 Jackson 流式 API 逐 token 复制，不构建中间对象树；工厂对象线程安全，全局共享。
+ */
+enum PayloadFormat {
+    JSON(null, new JsonFactory()),
+    CBOR("cbor", new CBORFactory()),
+    MSGPACK("msgpack", new MessagePackFactory());
+
+    private final String topicSuffix;
+    private final JsonFactory factory;
+
+    PayloadFormat(String topicSuffix, JsonFactory factory) {
+        this.topicSuffix = topicSuffix;
+        this.factory = factory;
+    }
+
+    String topicSuffix() {
+        return topicSuffix;
+    }
+
+    /**
+     * 按首字节识别上行 payload 格式，空 payload 视为 JSON。
+     */
+    static PayloadFormat detect(Buffer payload) {
+        if (payload == null || payload.length() == 0) {
+            return JSON;
+        }
+        int first = payload.getByte(0) & 0xFF;
+        if ((first >= 0xA0 && first <= 0xBF) || first == 0xD9) {
+            return CBOR;
+        }
+        if ((first >= 0x80 && first <= 0x8F) || first == 0xDE || first == 0xDF) {
+            return MSGPACK;
+        }
+        return JSON;
+    }
+
+    /**
+     * 由订阅 topic 的最后一段解析下行格式，不带格式后缀时返回 null。
+     */
+    static PayloadFormat fromTopicSuffix(String topic) {
+        int slash = topic.lastIndexOf('/');
+        String suffix = slash < 0 ? topic : topic.substring(slash + 1);
+        for (PayloadFormat format : values()) {
+            if (suffix.equals(format.topicSuffix)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将本格式的 payload 转成 JSON。
+     */
+    Buffer toJson(Buffer payload) throws IOException {
+        if (this == JSON) {
+            return payload;
+        }
+        return transcode(payload, factory, JSON.factory);
+    }
+
+    /**
+     * 将 JSON payload 编码为本格式。
+     */
+    Buffer fromJson(Buffer payload) throws IOException {
+        if (this == JSON) {
+            return payload;
+        }
+        return transcode(payload, JSON.factory, factory);
+    }
+
+    private static Buffer transcode(Buffer source, JsonFactory from, JsonFactory to) throws IOException {
+        Buffer target = Buffer.buffer(source.length() + 16);
+        try (JsonParser parser = from.createParser(source.getBytes());
+             JsonGenerator generator = to.createGenerator(new BufferOutputStream(target), JsonEncoding.UTF8)) {
+            if (parser.nextToken() == null) {
+                throw new IOException("empty payload");
+            }
+            generator.copyCurrentStructure(parser);
+        }
+        return target;
+    }
+
+    /**
+     * 把生成器的输出直接追加到 Buffer，省去中间字节数组。
+     */
+    private static final class BufferOutputStream extends OutputStream {
+        private final Buffer target;
+
+        private BufferOutputStream(Buffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target.appendBytes(bytes, offset, length);
+        }
+    }
+}
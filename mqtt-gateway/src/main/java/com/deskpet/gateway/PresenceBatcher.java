@@ -0,0 +1,232 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备在线状态的去抖与批量通知，进程内所有 MqttServerVerticle 共享（设备重连可能落到其他实例）。
+ * <p>
+ * 上线在下次 flush 时通知；离线先挂起 debounceMs，期间重新上线则两次变化互相抵消，只记一次抖动（flap）。
+ * pet-core 只收到每台设备相对上次已通知状态的净变化，原始上下线记录另存一份随同一批次发出，用于会话历史。
+ * 每台设备的状态只在 {@link ConcurrentHashMap#compute} 内修改；原始记录队列用自身监视器保护，超出 maxHistory 时丢弃最新的记录。
+ */
+final class PresenceBatcher {
+
+    static final String BATCH_PATH = "/internal/gateway/presence/batch";
+
+    record Transition(String deviceId, boolean online, String ip, long tsMs) {
+        JsonObject toJson() {
+            return new JsonObject().put("deviceId", deviceId).put("online", online).put("ip", ip).put("ts", tsMs);
+        }
+    }
+
+    /**
+     * 一次 flush 取出的内容；previous 为发送前 pet-core 已知的状态，发送失败时据此还原。
+     */
+    record Batch(List<Transition> changes, List<Boolean> previous, List<Transition> history) {
+        boolean isEmpty() {
+            return changes.isEmpty() && history.isEmpty();
+        }
+
+        JsonObject toJson(String gatewayInstanceId) {
+            JsonArray changeArray = new JsonArray();
+            changes.forEach(change -> changeArray.add(change.toJson()));
+            JsonArray historyArray = new JsonArray();
+            history.forEach(item -> historyArray.add(item.toJson()));
+            return new JsonObject()
+                    .put("gatewayInstanceId", gatewayInstanceId)
+                    .put("changes", changeArray)
+                    .put("history", historyArray);
+        }
+    }
+
+    record Flap(String deviceId, int count, long lastFlapAtMs, boolean online) {
+        JsonObject toJson() {
+            return new JsonObject().put("deviceId", deviceId).put("flaps", count)
+                    .put("lastFlapAt", lastFlapAtMs).put("online", online);
+        }
+    }
+
+    private static PresenceBatcher shared;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+    private final ArrayDeque<Transition> history = new ArrayDeque<>();
+    private final GatewayConfig.Presence config;
+    private final GatewayMetrics metrics;
+    private boolean flusherClaimed;
+
+    PresenceBatcher(GatewayConfig.Presence config, GatewayMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    static synchronized PresenceBatcher shared(GatewayConfig.Presence config) {
+        if (shared == null) {
+            GatewayMetrics metrics = GatewayMetrics.getInstance();
+            shared = new PresenceBatcher(config, metrics);
+            metrics.registerPresencePending(shared::pendingCount);
+        }
+        return shared;
+    }
+
+    /**
+     * 仅第一个调用者返回 true，由它负责周期 flush。
+     */
+    synchronized boolean claimFlusher() {
+        if (flusherClaimed) {
+            return false;
+        }
+        flusherClaimed = true;
+        return true;
+    }
+
+    void online(String deviceId, String ip, long nowMs) {
+        record(new Transition(deviceId, true, ip, nowMs));
+        states.compute(deviceId, (id, state) -> {
+            if (state == null) {
+                state = new State();
+            }
+            if (!state.online && state.dirty) {
+                state.flaps++;
+                state.lastFlapAtMs = nowMs;
+                metrics.onPresenceFlap();
+            }
+            state.online = true;
+            state.ip = ip;
+            state.changedAtMs = nowMs;
+            state.dueAtMs = nowMs;
+            state.dirty = state.reported != Boolean.TRUE;
+            return state;
+        });
+    }
+
+    void offline(String deviceId, String ip, long nowMs) {
+        record(new Transition(deviceId, false, ip, nowMs));
+        states.compute(deviceId, (id, state) -> {
+            if (state == null) {
+                state = new State();
+            }
+            state.online = false;
+            state.ip = ip;
+            state.changedAtMs = nowMs;
+            state.dueAtMs = nowMs + config.debounceMs();
+            state.dirty = state.reported != Boolean.FALSE;
+            return state;
+        });
+    }
+
+    /**
+     * 取出已到期的净变化（最多 maxBatch 条）与积压的原始记录。取出即视为已通知，发送失败时调用 {@link #restore}。
+     * 同时清理已离线、无待发变化且抖动记录已过保留期的设备。
+     */
+    Batch drain(long nowMs) {
+        List<Transition> changes = new ArrayList<>();
+        List<Boolean> previous = new ArrayList<>();
+        long flapCutoff = nowMs - config.flapRetentionSec() * 1000L;
+        for (String deviceId : states.keySet()) {
+            states.computeIfPresent(deviceId, (id, state) -> {
+                if (state.dirty && state.dueAtMs <= nowMs && changes.size() < config.maxBatch()) {
+                    changes.add(new Transition(id, state.online, state.ip, state.changedAtMs));
+                    previous.add(state.reported);
+                    state.reported = state.online;
+                    state.dirty = false;
+                }
+                boolean idle = !state.dirty && !state.online && (state.flaps == 0 || state.lastFlapAtMs < flapCutoff);
+                return idle ? null : state;
+            });
+        }
+        List<Transition> drained;
+        synchronized (history) {
+            drained = new ArrayList<>(Math.min(history.size(), config.maxBatch()));
+            while (!history.isEmpty() && drained.size() < config.maxBatch()) {
+                drained.add(history.poll());
+            }
+        }
+        return new Batch(changes, previous, drained);
+    }
+
+    /**
+     * 发送失败时把批次放回：设备在此期间没有新的变化才还原为待发状态，原始记录放回队首。
+     */
+    void restore(Batch batch, long nowMs) {
+        for (int i = 0; i < batch.changes().size(); i++) {
+            Transition change = batch.changes().get(i);
+            Boolean previous = batch.previous().get(i);
+            states.compute(change.deviceId(), (id, state) -> {
+                if (state == null) {
+                    state = new State();
+                    state.online = change.online();
+                    state.ip = change.ip();
+                    state.changedAtMs = change.tsMs();
+                }
+                if (!state.dirty) {
+                    state.dueAtMs = nowMs;
+                }
+                state.reported = previous;
+                state.dirty = previous == null || previous != state.online;
+                return state;
+            });
+        }
+        synchronized (history) {
+            for (int i = batch.history().size() - 1; i >= 0; i--) {
+                if (history.size() >= config.maxHistory()) {
+                    metrics.onPresenceHistoryDropped(i + 1);
+                    break;
+                }
+                history.addFirst(batch.history().get(i));
+            }
+        }
+    }
+
+    /**
+     * 按抖动次数从多到少列出不稳定设备，用于排查；不加锁读取，结果可能略有滞后。
+     */
+    List<Flap> topFlaps(int limit) {
+        List<Flap> flaps = new ArrayList<>();
+        states.forEach((deviceId, state) -> {
+            if (state.flaps > 0) {
+                flaps.add(new Flap(deviceId, state.flaps, state.lastFlapAtMs, state.online));
+            }
+        });
+        flaps.sort(Comparator.comparingInt(Flap::count).reversed().thenComparing(Flap::deviceId));
+        return flaps.size() > limit ? flaps.subList(0, limit) : flaps;
+    }
+
+    int pendingCount() {
+        int count = 0;
+        for (State state : states.values()) {
+            if (state.dirty) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void record(Transition transition) {
+        synchronized (history) {
+            if (history.size() >= config.maxHistory()) {
+                metrics.onPresenceHistoryDropped(1);
+                return;
+            }
+            history.add(transition);
+        }
+    }
+
+    private static final class State {
+        boolean online;
+        String ip;
+        long changedAtMs;
+        long dueAtMs;
+        boolean dirty;
+        Boolean reported;
+        int flaps;
+        long lastFlapAtMs;
+    }
+}
@@ -0,0 +1,77 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * 网关与 pet-core 内部长连接的帧格式（两端须保持一致，pet-core 侧见 {@code com.deskpet.core.rpc.RpcFrame}）。
+ * <pre>
+ * [int length][byte type][int id][byte op][short status][body...]
+ * </pre>
+ * length 不含自身 4 字节；type 区分请求/响应；id 由发起方分配，响应原样带回，用于在同一连接上多路复用；
+ * status 仅响应使用，语义与 HTTP 状态码一致；body 为 JSON，与对应 HTTP 接口的请求/响应体相同。
+ */
+record RpcFrame(byte type, int id, byte op, int status, Buffer body) {
+
+    static final byte TYPE_REQUEST = 0;
+    static final byte TYPE_RESPONSE = 1;
+
+    /**
+     * 连接建立后网关发送的第一帧，body 为 {"token":"...","instanceId":"..."}。
+     */
+    static final byte OP_HELLO = 1;
+    /**
+     * 批量上行，body/响应与 {@code POST /internal/uplink/batch} 相同。
+     */
+    static final byte OP_UPLINK_BATCH = 2;
+    /**
+     * pet-core 下发指令，body/响应与 {@code POST /internal/command/send} 相同。
+     */
+    static final byte OP_COMMAND_SEND = 3;
+    /**
+     * pet-core 下发设备请求的响应，body/响应与 {@code POST /internal/response/send} 相同。
+     */
+    static final byte OP_RESPONSE_SEND = 4;
+
+    static final int LENGTH_BYTES = 4;
+    static final int HEADER_BYTES = 8;
+
+    static RpcFrame request(int id, byte op, Buffer body) {
+        return new RpcFrame(TYPE_REQUEST, id, op, 0, body);
+    }
+
+    static RpcFrame response(int id, byte op, int status, Buffer body) {
+        return new RpcFrame(TYPE_RESPONSE, id, op, status, body);
+    }
+
+    boolean isRequest() {
+        return type == TYPE_REQUEST;
+    }
+
+    /**
+     * 编码为带长度前缀的完整帧。
+     */
+    Buffer encode() {
+        int bodyLength = body == null ? 0 : body.length();
+        Buffer frame = Buffer.buffer(LENGTH_BYTES + HEADER_BYTES + bodyLength)
+                .appendInt(HEADER_BYTES + bodyLength)
+                .appendByte(type)
+                .appendInt(id)
+                .appendByte(op)
+                .appendShort((short) status);
+        if (bodyLength > 0) {
+            frame.appendBuffer(body);
+        }
+        return frame;
+    }
+
+    /**
+     * 解码去掉长度前缀后的帧内容。
+     */
+    static RpcFrame decode(Buffer frame) {
+        if (frame.length() < HEADER_BYTES) {
+            throw new IllegalArgumentException("frame too short: " + frame.length());
+        }
+        return new RpcFrame(frame.getByte(0), frame.getInt(1), frame.getByte(5),
+                frame.getShort(6) & 0xFFFF, frame.getBuffer(HEADER_BYTES, frame.length()));
+    }
+}
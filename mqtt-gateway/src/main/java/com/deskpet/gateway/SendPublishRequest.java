@@ -1,9 +0,0 @@
-package com.deskpet.gateway;
-
-public record SendPublishRequest(
-        String deviceId,
-        String topic,
-        int qos,
-        String payload
-) {
-}
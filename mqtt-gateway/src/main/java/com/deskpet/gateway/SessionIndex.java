@@ -0,0 +1,140 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进程内唯一的会话表：deviceId 到 {@link EndpointSession} 的映射，同时充当下行路由。
+ * <p>
+ * 每个 MqttServerVerticle 启动时登记自己的 event bus 地址并得到一个序号（owner），会话只记录序号，
+ * 路由时再按序号取地址；设备重连到其他实例时新会话直接覆盖旧会话，旧连接关闭时只移除仍指向自己的映射。
+ * 会话对象只由 owner 对应的 Verticle 修改，其他线程只读取不可变字段。
+ */
+final class SessionIndex {
+
+    // 以下按开启压缩指针的 64 位 HotSpot 估算：对象头 12 字节、引用 4 字节、8 字节对齐
+    private static final int NODE_BYTES = 32;
+    private static final int TABLE_SLOT_BYTES = 8;
+    private static final int SESSION_BYTES = 96;
+    private static final int WHEEL_NODE_BYTES = 24;
+    private static final int MQTT5_SESSION_BYTES = 56;
+
+    private static SessionIndex shared;
+
+    private final Map<String, EndpointSession> sessions = new ConcurrentHashMap<>();
+    private volatile String[] owners = new String[0];
+
+    static synchronized SessionIndex shared() {
+        if (shared == null) {
+            shared = new SessionIndex();
+        }
+        return shared;
+    }
+
+    /**
+     * 登记 Verticle 的 event bus 地址，返回其序号；Verticle 停止后序号不再复用。
+     */
+    synchronized int registerOwner(String address) {
+        String[] next = Arrays.copyOf(owners, owners.length + 1);
+        next[owners.length] = address;
+        owners = next;
+        return owners.length - 1;
+    }
+
+    synchronized void unregisterOwner(int owner) {
+        String[] next = owners.clone();
+        next[owner] = null;
+        owners = next;
+    }
+
+    String ownerAddress(int owner) {
+        String[] current = owners;
+        return owner >= 0 && owner < current.length ? current[owner] : null;
+    }
+
+    /**
+     * 设备所在 Verticle 的 event bus 地址，不在线时返回 null。
+     */
+    String routeOf(String deviceId) {
+        EndpointSession session = sessions.get(deviceId);
+        return session == null ? null : ownerAddress(session.owner());
+    }
+
+    EndpointSession get(String deviceId) {
+        return sessions.get(deviceId);
+    }
+
+    /**
+     * 登记新会话，返回被覆盖的旧会话（同一设备的上一条连接）。
+     */
+    EndpointSession put(EndpointSession session) {
+        return sessions.put(session.deviceId(), session);
+    }
+
+    /**
+     * 仅当设备仍映射到该会话时移除；设备已在其他连接上重新登记时返回 false。
+     */
+    boolean remove(EndpointSession session) {
+        return sessions.remove(session.deviceId(), session);
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    List<String> deviceIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    void forEachOwnedBy(int owner, Consumer<EndpointSession> action) {
+        for (EndpointSession session : sessions.values()) {
+            if (session.owner() == owner) {
+                action.accept(session);
+            }
+        }
+    }
+
+    /**
+     * 会话表的内存估算：索引节点、会话对象、心跳时间轮节点、MQTT 5 协商状态、deviceId 与非 IPv4 地址字符串按实际长度累加；
+     * 连接本身（Netty channel、MqttEndpoint）与下行窗口不计入，另给出堆使用量按会话数均摊的上限参考。
+     */
+    JsonObject footprint() {
+        long bytes = 0;
+        int count = 0;
+        int mqtt5 = 0;
+        for (EndpointSession session : sessions.values()) {
+            bytes += NODE_BYTES + TABLE_SLOT_BYTES + SESSION_BYTES + WHEEL_NODE_BYTES + stringBytes(session.deviceId());
+            if (session.otherIp() != null) {
+                bytes += stringBytes(session.otherIp());
+            }
+            if (session.mqtt5() != null) {
+                bytes += MQTT5_SESSION_BYTES;
+                mqtt5++;
+            }
+            count++;
+        }
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return new JsonObject()
+                .put("sessions", count)
+                .put("mqtt5Sessions", mqtt5)
+                .put("owners", (int) Arrays.stream(owners).filter(owner -> owner != null).count())
+                .put("tableBytes", bytes)
+                .put("tableBytesPerSession", count == 0 ? 0 : bytes / count)
+                .put("heapUsedBytes", heapUsed)
+                .put("heapBytesPerSession", count == 0 ? 0 : heapUsed / count);
+    }
+
+    /**
+     * Latin-1 字符串：String 对象 24 字节，byte[] 为 16 字节头加内容，按 8 字节对齐。
+     */
+    static long stringBytes(String value) {
+        return 24 + ((16 + value.length() + 7) & ~7L);
+    }
+}
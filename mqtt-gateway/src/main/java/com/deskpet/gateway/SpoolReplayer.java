@@ -0,0 +1,159 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 将 {@link UplinkSpool} 中的记录按序号顺序重放到 pet-core。
+ * <p>
+ * 进程内只有一个实例，运行在认领它的 MqttServerVerticle 的 event loop 上，复用该实例的 {@link UplinkDispatcher}
+ * （开启批量时重放同样走批量接口）。已读出未确认的记录数不超过 maxInFlight，同一设备同时只投递一条，前一条完成后
+ * 才发送下一条，因此失败重试不会让同设备的后续记录先于它落库。投递失败（网络错误/5xx）时暂停读取新记录，
+ * 按指数退避重试，pet-core 恢复后继续；被 pet-core 明确拒绝（4xx）的记录计数后丢弃。被优先级通道取代（SHED）的遥测
+ * 视为已由同设备更新的一条覆盖，直接确认，不重试也不计入失败，以免旧遥测在新遥测之后落库。
+ * ack 游标只推进到最小的未完成序号，因此崩溃恢复后从第一条未确认记录开始重放。
+ */
+@Slf4j
+final class SpoolReplayer {
+
+    /**
+     * 实际投递一条记录，正常运行时即 {@link UplinkDispatcher#dispatch}。
+     */
+    @FunctionalInterface
+    interface Sink {
+        void dispatch(UplinkType type, String deviceId, Buffer payload, Handler<UplinkResult> done);
+    }
+
+    private final Vertx vertx;
+    private final Context context;
+    private final UplinkSpool spool;
+    private final Sink sink;
+    private final GatewayConfig.Spool config;
+    private final GatewayMetrics metrics;
+    private final TreeMap<Long, UplinkSpool.SpoolRecord> pending = new TreeMap<>();
+    // 每个设备已读出未确认的记录，按序号排列，队首为正在投递或等待重试的一条
+    private final HashMap<String, ArrayDeque<UplinkSpool.SpoolRecord>> byDevice = new HashMap<>();
+    // 轮到投递（队首失败待重试、或前一条刚完成）但尚未发送的记录
+    private final TreeMap<Long, UplinkSpool.SpoolRecord> ready = new TreeMap<>();
+    private final AtomicBoolean wakeupScheduled = new AtomicBoolean();
+    private long retryTimerId = -1;
+    private int consecutiveFailures;
+    private volatile long oldestPendingTimestampMs;
+
+    SpoolReplayer(Vertx vertx, UplinkSpool spool, UplinkDispatcher dispatcher,
+                  GatewayConfig.Spool config, GatewayMetrics metrics) {
+        this(vertx, spool, dispatcher::dispatch, config, metrics);
+    }
+
+    SpoolReplayer(Vertx vertx, UplinkSpool spool, Sink sink, GatewayConfig.Spool config, GatewayMetrics metrics) {
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.spool = spool;
+        this.sink = sink;
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    void start() {
+        metrics.registerSpoolOldestAge(this::oldestPendingAgeMs);
+        spool.onAppend(this::wakeup);
+        drain();
+    }
+
+    /**
+     * 可在任意线程调用，多次唤醒合并为一次 drain。
+     */
+    private void wakeup() {
+        if (wakeupScheduled.compareAndSet(false, true)) {
+            context.runOnContext(v -> {
+                wakeupScheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    private void drain() {
+        if (retryTimerId < 0) {
+            while (!ready.isEmpty()) {
+                send(ready.pollFirstEntry().getValue());
+            }
+            while (pending.size() < config.maxInFlight()) {
+                UplinkSpool.SpoolRecord record = spool.next();
+                if (record == null) {
+                    break;
+                }
+                pending.put(record.seq(), record);
+                ArrayDeque<UplinkSpool.SpoolRecord> queue = byDevice.computeIfAbsent(record.deviceId(),
+                        id -> new ArrayDeque<>(2));
+                queue.addLast(record);
+                if (queue.size() == 1) {
+                    send(record);
+                }
+            }
+        }
+        updateOldest();
+    }
+
+    private void send(UplinkSpool.SpoolRecord record) {
+        sink.dispatch(record.type(), record.deviceId(), record.payload(), result -> onResult(record, result));
+    }
+
+    private void onResult(UplinkSpool.SpoolRecord record, UplinkResult result) {
+        if (result == UplinkResult.FAILED) {
+            // 仍是该设备的队首，后续记录等它重试成功后再发
+            ready.put(record.seq(), record);
+            scheduleRetry();
+            return;
+        }
+        if (result == UplinkResult.DELIVERED) {
+            consecutiveFailures = 0;
+            metrics.onSpoolReplayed();
+        } else if (result != UplinkResult.SHED) {
+            metrics.onSpoolDropped();
+            log.warn("[Spool] 重放记录被 pet-core 拒绝，已丢弃: seq={}, deviceId={}, type={}",
+                    record.seq(), record.deviceId(), record.type().key());
+        }
+        pending.remove(record.seq());
+        ArrayDeque<UplinkSpool.SpoolRecord> queue = byDevice.get(record.deviceId());
+        queue.pollFirst();
+        if (queue.isEmpty()) {
+            byDevice.remove(record.deviceId());
+        } else {
+            ready.put(queue.peekFirst().seq(), queue.peekFirst());
+        }
+        spool.commit(pending.isEmpty() ? spool.readSeq() : pending.firstKey());
+        drain();
+    }
+
+    private void scheduleRetry() {
+        if (retryTimerId >= 0) {
+            return;
+        }
+        long delay = Math.min(config.maxRetryDelayMs(),
+                (long) config.retryDelayMs() << Math.min(consecutiveFailures, 16));
+        consecutiveFailures++;
+        log.warn("[Spool] 重放失败，{}ms 后重试: pending={}, lag={}", delay, pending.size(),
+                spool.nextSeq() - spool.ackedSeq());
+        retryTimerId = vertx.setTimer(delay, id -> {
+            retryTimerId = -1;
+            drain();
+        });
+    }
+
+    private void updateOldest() {
+        oldestPendingTimestampMs = pending.isEmpty() ? 0 : pending.firstEntry().getValue().timestampMs();
+    }
+
+    private long oldestPendingAgeMs() {
+        long oldest = oldestPendingTimestampMs;
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+}
@@ -0,0 +1,128 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * 单个设备会话的遥测限流状态，只在会话所属 Verticle 的 event loop 上访问。
+ * <p>
+ * 先按令牌桶限制每秒消息数，超出的消息以 {@value #REASON_RATE_LIMITED} 丢弃；通过后若启用合并窗口，
+ * 距上次转发不足 coalesceMs 的消息暂存为待发，窗口内更新的消息替换旧的（旧的计为 {@value #REASON_COALESCED}），
+ * 窗口结束时由调用方取出最新一条转发并开始下一个窗口。
+ */
+final class TelemetryGate {
+
+    static final String REASON_RATE_LIMITED = "rate_limited";
+    static final String REASON_COALESCED = "coalesced";
+
+    enum Verdict {
+        FORWARD,
+        HOLD,
+        RATE_LIMITED
+    }
+
+    /**
+     * 暂存的遥测：已转为 JSON 的 payload 与原始报文（用于回复 PUBACK）。
+     */
+    record Held(Buffer payload, MqttPublishMessage message) {
+    }
+
+    private final GatewayConfig.Telemetry.Policy policy;
+    private double tokens;
+    private long refilledAtMs;
+    private long lastForwardAtMs;
+    private Held held;
+    private boolean flushArmed;
+    private long rateLimitedCount;
+    private long coalescedCount;
+
+    TelemetryGate(GatewayConfig.Telemetry.Policy policy, long nowMs) {
+        this.policy = policy;
+        this.tokens = policy.burst();
+        this.refilledAtMs = nowMs;
+        this.lastForwardAtMs = nowMs - policy.coalesceMs();
+    }
+
+    Verdict offer(long nowMs) {
+        if (!tryAcquire(nowMs)) {
+            rateLimitedCount++;
+            return Verdict.RATE_LIMITED;
+        }
+        if (policy.coalesceMs() <= 0) {
+            return Verdict.FORWARD;
+        }
+        if (held == null && !flushArmed && nowMs - lastForwardAtMs >= policy.coalesceMs()) {
+            lastForwardAtMs = nowMs;
+            return Verdict.FORWARD;
+        }
+        return Verdict.HOLD;
+    }
+
+    /**
+     * 暂存最新一条，返回被替换的旧消息（此前没有暂存时为 null）。
+     */
+    Held hold(Held latest) {
+        Held previous = held;
+        held = latest;
+        if (previous != null) {
+            coalescedCount++;
+        }
+        return previous;
+    }
+
+    /**
+     * 尚未安排窗口结束时返回距窗口结束的毫秒数，调用方应在该时刻调用 {@link #flush(long)}；已安排时返回 -1。
+     */
+    long armFlush(long nowMs) {
+        if (flushArmed) {
+            return -1;
+        }
+        flushArmed = true;
+        return Math.max(1, lastForwardAtMs + policy.coalesceMs() - nowMs);
+    }
+
+    /**
+     * 窗口结束：取出暂存的最新一条（可能为 null），有消息时以此刻开始下一个窗口。
+     */
+    Held flush(long nowMs) {
+        flushArmed = false;
+        Held latest = held;
+        held = null;
+        if (latest != null) {
+            lastForwardAtMs = nowMs;
+        }
+        return latest;
+    }
+
+    /**
+     * 会话结束时取出尚未转发的暂存消息。
+     */
+    Held drain() {
+        Held latest = held;
+        held = null;
+        return latest;
+    }
+
+    long rateLimitedCount() {
+        return rateLimitedCount;
+    }
+
+    long coalescedCount() {
+        return coalescedCount;
+    }
+
+    private boolean tryAcquire(long nowMs) {
+        if (policy.ratePerSec() <= 0) {
+            return true;
+        }
+        if (nowMs > refilledAtMs) {
+            tokens = Math.min(policy.burst(), tokens + (nowMs - refilledAtMs) * policy.ratePerSec() / 1000.0);
+            refilledAtMs = nowMs;
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各产品物模型校验器的缓存，进程内所有 MqttServerVerticle 共享。
+ * <p>
+ * 某产品的遥测第一次到达时由收到它的 Verticle 异步拉取快照（{@value #SNAPSHOT_PATH}），加载完成前的遥测不校验直接放行；
+ * 已加载的产品由认领刷新任务的 Verticle 每 refreshIntervalSec 带上当前版本号询问一次，版本未变时 pet-core 回 304，
+ * 变化时回新快照并整体替换。拉取失败的产品在 refreshIntervalSec 内不再重试。
+ */
+@Slf4j
+final class ThingModelRegistry {
+
+    static final String SNAPSHOT_PATH = "/internal/thingModel/";
+
+    private static ThingModelRegistry shared;
+
+    private final Map<String, ThingModelValidator> validators = new ConcurrentHashMap<>();
+    private final Map<String, Long> fetchBlockedUntilMs = new ConcurrentHashMap<>();
+    private final GatewayConfig.ThingModel config;
+    private final GatewayMetrics metrics;
+    private boolean refresherClaimed;
+
+    ThingModelRegistry(GatewayConfig.ThingModel config, GatewayMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    static synchronized ThingModelRegistry shared(GatewayConfig.ThingModel config) {
+        if (shared == null) {
+            GatewayMetrics metrics = GatewayMetrics.getInstance();
+            shared = new ThingModelRegistry(config, metrics);
+            metrics.registerThingModelProducts(shared.validators::size);
+        }
+        return shared;
+    }
+
+    /**
+     * 只有第一个调用者返回 true，由它负责定期刷新。
+     */
+    synchronized boolean claimRefresher() {
+        if (refresherClaimed) {
+            return false;
+        }
+        refresherClaimed = true;
+        return true;
+    }
+
+    ThingModelValidator get(String productKey) {
+        return validators.get(productKey);
+    }
+
+    /**
+     * 产品尚未加载且不在拉取中或失败退避期内时返回 true，调用方随后应调用 {@link #refresh}。
+     */
+    boolean claimFetch(String productKey, long nowMs) {
+        if (validators.containsKey(productKey)) {
+            return false;
+        }
+        long blockUntilMs = nowMs + config.refreshIntervalSec() * 1000L;
+        boolean[] claimed = new boolean[1];
+        fetchBlockedUntilMs.compute(productKey, (key, until) -> {
+            if (until != null && until > nowMs) {
+                return until;
+            }
+            claimed[0] = true;
+            return blockUntilMs;
+        });
+        return claimed[0];
+    }
+
+    /**
+     * 拉取或刷新一个产品的快照；已加载时带上版本号，未变化不替换。
+     */
+    void refresh(CoreClient coreClient, String productKey, int timeoutMs) {
+        ThingModelValidator current = validators.get(productKey);
+        HttpRequest<Buffer> request = coreClient.get(SNAPSHOT_PATH + URLEncoder.encode(productKey, StandardCharsets.UTF_8))
+                .timeout(timeoutMs);
+        if (current != null) {
+            request.addQueryParam("knownVersion", Long.toString(current.version()));
+        }
+        request.send().onComplete(ar -> apply(productKey, current, ar));
+    }
+
+    void refreshAll(CoreClient coreClient, int timeoutMs) {
+        for (String productKey : List.copyOf(validators.keySet())) {
+            refresh(coreClient, productKey, timeoutMs);
+        }
+    }
+
+    int size() {
+        return validators.size();
+    }
+
+    void apply(String productKey, ThingModelValidator current, AsyncResult<HttpResponse<Buffer>> ar) {
+        int status = ar.succeeded() ? ar.result().statusCode() : -1;
+        if (status == 304) {
+            return;
+        }
+        ThingModelValidator next;
+        if (status == 404) {
+            next = ThingModelValidator.empty(productKey);
+        } else if (status == 200) {
+            try {
+                next = ThingModelValidator.compile(ar.result().bodyAsJsonObject());
+            } catch (DecodeException | ClassCastException e) {
+                metrics.onThingModelFetchFail();
+                log.warn("Thing model snapshot invalid: productKey={} error={}", productKey, e.getMessage());
+                return;
+            }
+        } else {
+            metrics.onThingModelFetchFail();
+            log.warn("Thing model fetch failed: productKey={} status={}", productKey, CoreClient.statusOf(ar));
+            return;
+        }
+        validators.put(productKey, next);
+        fetchBlockedUntilMs.remove(productKey);
+        metrics.onThingModelUpdate();
+        log.info("Thing model loaded: productKey={} version={} -> {} properties={}",
+                productKey, current == null ? "-" : current.version(), next.version(), next.propertyCount());
+    }
+}
@@ -0,0 +1,178 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 某个产品某一版本物模型的编译结果，创建后只读，可被多个 event loop 同时使用。
+ * <p>
+ * 每个属性按 dataType 与 specs 预先生成一个校验函数，校验遥测时只按字段名查表，不再解析规格：
+ * int/float 校验数值类型与 min/max，bool 接受布尔值或 0/1，string 校验 maxLength，enum 校验取值集合，
+ * struct 只要求是对象；未知的 dataType 不校验。
+ */
+final class ThingModelValidator {
+
+    static final String EXTRA_FIELD = "extra";
+
+    @FunctionalInterface
+    interface FieldCheck {
+        boolean accepts(Object value);
+    }
+
+    private static final FieldCheck ANY = value -> true;
+
+    private final String productKey;
+    private final long version;
+    private final Map<String, FieldCheck> checks;
+
+    private ThingModelValidator(String productKey, long version, Map<String, FieldCheck> checks) {
+        this.productKey = productKey;
+        this.version = version;
+        this.checks = checks;
+    }
+
+    /**
+     * 编译 pet-core 返回的快照 {@code {"productKey","version","properties":[{"identifier","dataType","specs"}]}}。
+     */
+    static ThingModelValidator compile(JsonObject snapshot) {
+        Map<String, FieldCheck> checks = new HashMap<>();
+        JsonArray properties = snapshot.getJsonArray("properties", new JsonArray());
+        for (int i = 0; i < properties.size(); i++) {
+            JsonObject property = properties.getJsonObject(i);
+            String identifier = property.getString("identifier");
+            if (identifier != null && !identifier.isEmpty()) {
+                checks.put(identifier, compileCheck(property.getString("dataType", ""),
+                        property.getJsonObject("specs", new JsonObject())));
+            }
+        }
+        return new ThingModelValidator(snapshot.getString("productKey"), snapshot.getLong("version", 0L), Map.copyOf(checks));
+    }
+
+    /**
+     * 没有物模型的产品：缓存一个空校验器，避免每条遥测都去拉取。
+     */
+    static ThingModelValidator empty(String productKey) {
+        return new ThingModelValidator(productKey, 0, Map.of());
+    }
+
+    String productKey() {
+        return productKey;
+    }
+
+    long version() {
+        return version;
+    }
+
+    int propertyCount() {
+        return checks.size();
+    }
+
+    boolean isEmpty() {
+        return checks.isEmpty();
+    }
+
+    /**
+     * 校验遥测顶层与 {@value #EXTRA_FIELD} 内与属性同名的字段，返回不合规的字段数；strip 为 true 时同时移除这些字段。
+     * 物模型未定义的字段与值为 null 的字段不校验。
+     */
+    int validate(JsonObject telemetry, boolean strip) {
+        int invalid = validateFields(telemetry, strip);
+        if (telemetry.getValue(EXTRA_FIELD) instanceof JsonObject extra) {
+            invalid += validateFields(extra, strip);
+        }
+        return invalid;
+    }
+
+    private int validateFields(JsonObject fields, boolean strip) {
+        int invalid = 0;
+        Iterator<Map.Entry<String, Object>> iterator = fields.iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> field = iterator.next();
+            FieldCheck check = checks.get(field.getKey());
+            if (check == null || field.getValue() == null || check.accepts(field.getValue())) {
+                continue;
+            }
+            invalid++;
+            if (strip) {
+                iterator.remove();
+            }
+        }
+        return invalid;
+    }
+
+    static FieldCheck compileCheck(String dataType, JsonObject specs) {
+        return switch (dataType.toLowerCase()) {
+            case "int" -> rangeCheck(specs, true);
+            case "float" -> rangeCheck(specs, false);
+            case "bool" -> value -> value instanceof Boolean
+                    || value instanceof Number number && isIntegral(number) && (number.longValue() == 0 || number.longValue() == 1);
+            case "string" -> stringCheck(specs);
+            case "enum" -> enumCheck(specs);
+            case "struct" -> value -> value instanceof JsonObject;
+            default -> ANY;
+        };
+    }
+
+    private static FieldCheck rangeCheck(JsonObject specs, boolean integral) {
+        double min = specs.getValue("min") instanceof Number number ? number.doubleValue() : Double.NEGATIVE_INFINITY;
+        double max = specs.getValue("max") instanceof Number number ? number.doubleValue() : Double.POSITIVE_INFINITY;
+        return value -> {
+            if (!(value instanceof Number number) || integral && !isIntegral(number)) {
+                return false;
+            }
+            double d = number.doubleValue();
+            return !Double.isNaN(d) && d >= min && d <= max;
+        };
+    }
+
+    private static FieldCheck stringCheck(JsonObject specs) {
+        int maxLength = specs.getValue("maxLength") instanceof Number number ? number.intValue() : Integer.MAX_VALUE;
+        return value -> value instanceof String text && text.length() <= maxLength;
+    }
+
+    /**
+     * 取值集合来自 {@code {"values":[{"value":..}]}}，或文档中的 {@code {"idle":"空闲"}} 形式（取键）。
+     */
+    private static FieldCheck enumCheck(JsonObject specs) {
+        Set<String> values = new HashSet<>();
+        if (specs.getValue("values") instanceof JsonArray array) {
+            for (Object item : array) {
+                Object value = item instanceof JsonObject object ? object.getValue("value") : item;
+                if (value != null) {
+                    values.add(enumKey(value));
+                }
+            }
+        } else {
+            values.addAll(specs.fieldNames());
+        }
+        if (values.isEmpty()) {
+            return value -> value instanceof String || value instanceof Number;
+        }
+        Set<String> allowed = Set.copyOf(values);
+        return value -> (value instanceof String || value instanceof Number) && allowed.contains(enumKey(value));
+    }
+
+    private static String enumKey(Object value) {
+        return value instanceof Number number && isIntegral(number) ? Long.toString(number.longValue()) : value.toString();
+    }
+
+    private static boolean isIntegral(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short
+                || number instanceof Byte || number instanceof BigInteger) {
+            return true;
+        }
+        if (number instanceof BigDecimal decimal) {
+            return decimal.stripTrailingZeros().scale() <= 0;
+        }
+        double d = number.doubleValue();
+        return !Double.isInfinite(d) && d == Math.rint(d);
+    }
+}
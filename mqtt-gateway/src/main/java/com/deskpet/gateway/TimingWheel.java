@@ -0,0 +1,98 @@
+package com.deskpet.gateway;
+
+/**
+ * 单层哈希时间轮，只在所属 event loop 上访问（非线程安全）。
+ * <p>
+ * 每个槽对应一个 tick，超出轮长的到期时间会被截到轮内最后一个槽，到期回调时由调用方重新计算并再次挂入，
+ * 因此每次推进只遍历当前槽里的条目，开销与到期条目数成正比，与总条目数无关。
+ * 条目不支持主动取消：调用方在回调中判断条目是否仍有效，无效时返回 0 即丢弃（惰性删除）。
+ */
+final class TimingWheel<T> {
+
+    /**
+     * 到期回调：返回下一次到期时间（毫秒）以重新挂入，返回小于等于 0 的值则丢弃该条目。
+     */
+    @FunctionalInterface
+    interface ExpiryHandler<T> {
+        long onDue(T item, long nowMs);
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final Node<T>[] slots;
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMs, int minTicks, long startMs) {
+        if (tickMs <= 0 || minTicks <= 0) {
+            throw new IllegalArgumentException("tickMs and minTicks must be positive");
+        }
+        int wheelSize = Integer.highestOneBit(minTicks) << 1;
+        this.tickMs = tickMs;
+        this.mask = wheelSize - 1;
+        @SuppressWarnings("unchecked")
+        Node<T>[] slots = (Node<T>[]) new Node<?>[wheelSize];
+        this.slots = slots;
+        this.currentTick = startMs / tickMs;
+    }
+
+    void schedule(T item, long deadlineMs) {
+        insert(new Node<>(item), deadlineMs);
+    }
+
+    /**
+     * 推进到 nowMs，依次处理期间到期的槽；返回本次检查的条目数。
+     */
+    int advance(long nowMs, ExpiryHandler<T> handler) {
+        long targetTick = nowMs / tickMs;
+        int examined = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            int index = (int) (currentTick & mask);
+            Node<T> node = slots[index];
+            slots[index] = null;
+            while (node != null) {
+                Node<T> next = node.next;
+                node.next = null;
+                size--;
+                examined++;
+                long deadline = handler.onDue(node.item, nowMs);
+                if (deadline > 0) {
+                    insert(node, deadline);
+                }
+                node = next;
+            }
+        }
+        return examined;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int wheelSize() {
+        return slots.length;
+    }
+
+    private void insert(Node<T> node, long deadlineMs) {
+        long tick = (deadlineMs + tickMs - 1) / tickMs;
+        if (tick <= currentTick) {
+            tick = currentTick + 1;
+        } else if (tick > currentTick + mask) {
+            tick = currentTick + mask;
+        }
+        int index = (int) (tick & mask);
+        node.next = slots[index];
+        slots[index] = node;
+        size++;
+    }
+
+    private static final class Node<T> {
+        private final T item;
+        private Node<T> next;
+
+        private Node(T item) {
+            this.item = item;
+        }
+    }
+}
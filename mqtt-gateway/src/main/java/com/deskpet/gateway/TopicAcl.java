@@ -5,8 +5,13 @@ final class TopicAcl {
     }
 
     static boolean isValidSubscribe(String deviceId, String topic) {
-        return topic.equals("pet/" + deviceId + "/cmd")
-                || topic.equals("pet/" + deviceId + "/resp");
+        if (isValidDownlink(deviceId, topic)) {
+            return true;
+        }
+        // 订阅 pet/{id}/cmd/cbor 等带格式后缀的 topic 表示希望以该格式接收下行
+        int slash = topic.lastIndexOf('/');
+        return slash > 0 && PayloadFormat.fromTopicSuffix(topic) != null
+                && isValidDownlink(deviceId, topic.substring(0, slash));
     }
 
     static boolean isValidPublish(String deviceId, String topic) {
@@ -22,15 +27,6 @@ final class TopicAcl {
     }
 
     static String resolveCallbackPath(String topic) {
-        if (topic.endsWith("/telemetry")) {
-            return "/internal/telemetry/";
-        }
-        if (topic.endsWith("/event")) {
-            return "/internal/event/";
-        }
-        if (topic.endsWith("/req")) {
-            return "/internal/request/";
-        }
-        return "/internal/ack/";
+        return UplinkType.fromTopic(topic).callbackPath();
     }
 }
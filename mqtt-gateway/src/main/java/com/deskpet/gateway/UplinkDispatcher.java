@@ -0,0 +1,604 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 上行消息投递到 pet-core。
+ * <p>
+ * 每个 MqttServerVerticle 实例持有一个，只在该实例的 event loop 上访问，因此攒批缓冲无需加锁。
+ * 开启批量的消息类型按条数、字节数或 linger 超时攒成一批，以 JSON 数组发往 {@value #BATCH_PATH}；
+ * 其余类型仍逐条回调原有接口。配置了 {@link CoreChannel} 时批次优先经长连接发送，通道不可用、繁忙或 pet-core 返回 503
+ * 时回退到 HTTP；已写出的批次超时或连接断开时 pet-core 可能已经处理，整批以 FAILED 结束，不再经 HTTP 重发。
+ * 长连接上的批次与 HTTP 回调一样先经 {@link CoreGuard} 准入（{@link CoreEndpoint#UPLINK_BATCH}）。
+ * <p>
+ * 开启 uplinkOrder 时按设备保序：每个设备一条队列（{@link DeviceLane}），同一设备同时只有一个请求在途——
+ * 批次中连续的至多 maxInFlightPerDevice 条（pet-core 按数组顺序处理），或一条逐条回调；该请求完成（含重试）后
+ * 才交出下一组。不同设备的队列互不阻塞。批量被拒逐条回退时同一设备的消息也依次发送。
+ * <p>
+ * 开启 uplinkPriority 时消息按 {@link UplinkLane} 分入三个通道（{@link LaneQueue}），各自攒批、各自限制在途请求数，
+ * 遥测积压不占用回执与请求的发送额度；设备保序在通道内生效。遥测通道中尚未发出的消息按设备只保留最新一条，
+ * 被取代的一条以 {@link UplinkResult#SHED} 结束。未开启时所有消息共用一个不限在途数的通道。
+ * <p>
+ * payload 原样拼入批次数组，因此走批量的消息必须恰好是一个完整的 JSON 值，否则设备可借闭合括号伪造其他设备的条目；
+ * 不满足的以 {@link UplinkResult#REJECTED} 结束。
+ */
+@Slf4j
+final class UplinkDispatcher {
+
+    static final String BATCH_PATH = "/internal/uplink/batch";
+
+    private static final Buffer NULL_PAYLOAD = Buffer.buffer("null");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // {"type":"telemetry","deviceId":"","payload":} 与分隔符
+    private static final int ITEM_OVERHEAD_BYTES = 48;
+
+    private final Vertx vertx;
+    private final CoreClient coreClient;
+    private final CoreChannel coreChannel;
+    private final GatewayConfig.Batch batchConfig;
+    private final GatewayConfig.UplinkOrder orderConfig;
+    private final GatewayConfig.UplinkPriority priorityConfig;
+    private final GatewayMetrics metrics;
+    private final LaneQueue[] lanes;
+
+    private int inFlight;
+    private int queued;
+    private boolean draining;
+    private final List<Promise<Void>> idleWaiters = new ArrayList<>();
+
+    UplinkDispatcher(Vertx vertx, CoreClient coreClient, CoreChannel coreChannel, GatewayConfig.Batch batchConfig,
+                     GatewayConfig.UplinkOrder orderConfig, GatewayConfig.UplinkPriority priorityConfig,
+                     GatewayMetrics metrics) {
+        this.vertx = vertx;
+        this.coreClient = coreClient;
+        this.coreChannel = coreChannel;
+        this.batchConfig = batchConfig;
+        this.orderConfig = orderConfig;
+        this.priorityConfig = priorityConfig;
+        this.metrics = metrics;
+        if (priorityConfig != null && priorityConfig.enabled()) {
+            this.lanes = new LaneQueue[UplinkLane.values().length];
+            for (UplinkLane lane : UplinkLane.values()) {
+                lanes[lane.ordinal()] = new LaneQueue(lane, priorityConfig.limit(lane));
+            }
+        } else {
+            this.lanes = new LaneQueue[]{new LaneQueue(null, null)};
+        }
+    }
+
+    /**
+     * 投递一条上行消息，完成后回调投递结果。
+     */
+    void dispatch(UplinkType type, String deviceId, Buffer payload, Handler<UplinkResult> done) {
+        if (batchConfig.accepts(type) && !isEmpty(payload) && !isSingleJsonValue(payload)) {
+            long rejected = metrics.onUplinkInvalidJson();
+            if (rejected % 1000 == 1) {
+                log.warn("[Batch] payload 不是单个 JSON 值，拒绝拼入批次: deviceId={}, type={}, rejected={}",
+                        deviceId, type.key(), rejected);
+            }
+            done.handle(UplinkResult.REJECTED);
+            return;
+        }
+        PendingUplink uplink = new PendingUplink(type, deviceId, payload, done, System.nanoTime());
+        LaneQueue lane = lanes.length == 1 ? lanes[0] : lanes[UplinkLane.of(type).ordinal()];
+        boolean ordered = orderConfig != null && orderConfig.enabled();
+        if (lane.replacesTelemetry() && replaceTelemetry(lane, uplink, ordered)) {
+            return;
+        }
+        if (lane.queuedMessages >= lane.maxQueued) {
+            metrics.onUplinkLaneShed(lane.lane, false);
+            if (lane.lane == UplinkLane.LOW) {
+                done.handle(UplinkResult.SHED);
+                return;
+            }
+            log.warn("[Priority] 上行通道排队已满: lane={}, deviceId={}, type={}", lane.lane.key(), deviceId, type.key());
+            done.handle(UplinkResult.FAILED);
+            return;
+        }
+        if (!ordered) {
+            lane.queued(1);
+            if (batchConfig.accepts(type)) {
+                Group group = lane.offer(List.of(uplink));
+                if (lane.replacesTelemetry()) {
+                    lane.latestTelemetry.put(deviceId, group);
+                }
+            } else {
+                lane.singles.addLast(uplink);
+            }
+            pump(lane);
+            return;
+        }
+        DeviceLane device = lane.devices.get(deviceId);
+        if (device == null) {
+            device = new DeviceLane(lane, deviceId);
+            lane.devices.put(deviceId, device);
+        }
+        if (device.waiting.size() >= orderConfig.maxQueuedPerDevice()) {
+            metrics.onUplinkOrderOverflow();
+            log.warn("[Order] 设备上行排队已满: deviceId={}, type={}", deviceId, type.key());
+            done.handle(UplinkResult.FAILED);
+            return;
+        }
+        device.waiting.addLast(uplink);
+        lane.queued(1);
+        queued++;
+        metrics.onUplinkOrderQueued(1);
+        if (device.inFlight == 0) {
+            startLane(device);
+        }
+    }
+
+    /**
+     * 用新遥测取代同设备尚未发出的一条遥测，被取代的以 SHED 结束；没有可取代的返回 false。
+     */
+    private boolean replaceTelemetry(LaneQueue lane, PendingUplink uplink, boolean ordered) {
+        PendingUplink replaced;
+        if (ordered) {
+            DeviceLane device = lane.devices.get(uplink.deviceId());
+            if (device == null || device.waiting.isEmpty()) {
+                return false;
+            }
+            replaced = device.waiting.pollLast();
+            device.waiting.addLast(uplink);
+        } else {
+            Group group = lane.latestTelemetry.get(uplink.deviceId());
+            if (group == null) {
+                return false;
+            }
+            replaced = group.uplinks.set(0, uplink);
+            group.bytes = estimatedBytes(group.uplinks);
+        }
+        metrics.onUplinkLaneShed(lane.lane, true);
+        replaced.done().handle(UplinkResult.SHED);
+        return true;
+    }
+
+    /**
+     * 交出设备队列头部的下一组：连续的可批量消息进入同一批次，否则单独回调一条。
+     */
+    private void startLane(DeviceLane device) {
+        List<PendingUplink> group = new ArrayList<>();
+        int limit = Math.min(orderConfig.maxInFlightPerDevice(), batchConfig.maxMessages());
+        while (!device.waiting.isEmpty() && group.size() < limit && batchConfig.accepts(device.waiting.peekFirst().type())) {
+            group.add(device.track(device.waiting.pollFirst()));
+        }
+        if (group.isEmpty()) {
+            group.add(device.track(device.waiting.pollFirst()));
+        }
+        queued -= group.size();
+        metrics.onUplinkOrderQueued(-group.size());
+        if (batchConfig.accepts(group.get(0).type())) {
+            device.queue.offer(group);
+        } else {
+            device.queue.singles.addLast(group.get(0));
+        }
+        pump(device.queue);
+    }
+
+    private void laneDone(DeviceLane device) {
+        if (--device.inFlight > 0) {
+            return;
+        }
+        if (device.waiting.isEmpty()) {
+            device.queue.devices.remove(device.deviceId);
+        } else {
+            startLane(device);
+        }
+    }
+
+    /**
+     * 发出当前累积的批次，并在所有在途回调完成后完成，供优雅下线时确认上行已交给 pet-core。
+     */
+    Future<Void> drain() {
+        draining = true;
+        flush();
+        if (isIdle()) {
+            return Future.succeededFuture();
+        }
+        Promise<Void> idle = Promise.promise();
+        idleWaiters.add(idle);
+        return idle.future();
+    }
+
+    /**
+     * 立即发出各通道当前累积的批次（Verticle 停止时调用）；通道在途已满时剩余的在有请求完成后发出。
+     */
+    void flush() {
+        for (LaneQueue lane : lanes) {
+            pump(lane, true);
+        }
+    }
+
+    private void pump(LaneQueue lane) {
+        pump(lane, draining);
+    }
+
+    /**
+     * 在通道在途数未满时依次发出逐条回调与已就绪的批次：攒够条数或字节数、最早一组已等满 linger，或 force。
+     * 批次由完整的组拼成，同一组的消息不会被拆到两个批次。
+     */
+    private void pump(LaneQueue lane, boolean force) {
+        while (!lane.singles.isEmpty() && lane.inFlight < lane.maxInFlight) {
+            PendingUplink uplink = lane.singles.pollFirst();
+            lane.taken(uplink);
+            sendSingle(uplink, lane);
+        }
+        long now = System.nanoTime();
+        long lingerNanos = batchConfig.lingerMs() * 1_000_000L;
+        while (!lane.batches.isEmpty() && lane.inFlight < lane.maxInFlight) {
+            boolean ready = force || now - lane.batches.peekFirst().enqueuedNanos >= lingerNanos;
+            int groups = 0;
+            int messages = 0;
+            int bytes = 0;
+            for (Group group : lane.batches) {
+                if (messages > 0 && (messages + group.uplinks.size() > batchConfig.maxMessages()
+                        || bytes + group.bytes > batchConfig.maxBytes())) {
+                    ready = true;
+                    break;
+                }
+                groups++;
+                messages += group.uplinks.size();
+                bytes += group.bytes;
+            }
+            if (!ready && messages < batchConfig.maxMessages() && bytes < batchConfig.maxBytes()) {
+                break;
+            }
+            List<PendingUplink> batch = new ArrayList<>(messages);
+            Buffer body = Buffer.buffer(Math.min(bytes + 2, Math.max(batchConfig.maxBytes(), 4096))).appendByte((byte) '[');
+            for (int i = 0; i < groups; i++) {
+                Group group = lane.batches.pollFirst();
+                if (lane.replacesTelemetry()) {
+                    lane.latestTelemetry.remove(group.uplinks.get(0).deviceId(), group);
+                }
+                for (PendingUplink uplink : group.uplinks) {
+                    if (!batch.isEmpty()) {
+                        body.appendByte((byte) ',');
+                    }
+                    appendItem(body, uplink);
+                    batch.add(uplink);
+                    lane.taken(uplink);
+                }
+            }
+            sendBatch(batch, body.appendByte((byte) ']'), lane);
+        }
+        if (lane.batches.isEmpty() || lane.inFlight >= lane.maxInFlight) {
+            if (lane.lingerTimerId >= 0) {
+                vertx.cancelTimer(lane.lingerTimerId);
+                lane.lingerTimerId = -1;
+            }
+        } else if (lane.lingerTimerId < 0) {
+            long remainingNanos = lane.batches.peekFirst().enqueuedNanos + lingerNanos - now;
+            lane.lingerTimerId = vertx.setTimer(Math.max(1, remainingNanos / 1_000_000), id -> {
+                lane.lingerTimerId = -1;
+                pump(lane);
+            });
+        }
+    }
+
+    private void sendBatch(List<PendingUplink> batch, Buffer body, LaneQueue lane) {
+        inFlight++;
+        lane.inFlight++;
+        long startNanos = System.nanoTime();
+        if (coreChannel == null) {
+            postBatch(batch, body, startNanos, lane);
+            return;
+        }
+        coreClient.acquire(CoreEndpoint.UPLINK_BATCH).onComplete(permit -> {
+            if (permit.failed()) {
+                handleBatchResult(batch, startNanos, -1, null, lane);
+                return;
+            }
+            coreChannel.request(RpcFrame.OP_UPLINK_BATCH, body).onComplete(ar -> {
+                permit.result().releaseRpc(ar);
+                onRpcBatchResult(batch, body, startNanos, lane, ar);
+            });
+        });
+    }
+
+    private void onRpcBatchResult(List<PendingUplink> batch, Buffer body, long startNanos, LaneQueue lane,
+                                  AsyncResult<CoreChannel.Reply> ar) {
+        if (ar.succeeded() && ar.result().status() != 503) {
+            handleBatchResult(batch, startNanos, ar.result().status(), ar.result().body(), lane);
+            return;
+        }
+        if (ar.failed() && !CoreChannel.isNotSent(ar)) {
+            log.warn("[RPC] 批量上行已写出但未收到应答，不回退 HTTP: size={}, error={}", batch.size(), ar.cause().getMessage());
+            handleBatchResult(batch, startNanos, -1, null, lane);
+            return;
+        }
+        metrics.onRpcFallback();
+        postBatch(batch, body, startNanos, lane);
+    }
+
+    private void postBatch(List<PendingUplink> batch, Buffer body, long startNanos, LaneQueue lane) {
+        coreClient.postCallback(BATCH_PATH, body, ar -> handleBatchResult(batch, startNanos,
+                CoreClient.statusOf(ar), ar.succeeded() ? ar.result().body() : null, lane));
+    }
+
+    private static int estimatedBytes(List<PendingUplink> group) {
+        int bytes = 0;
+        for (PendingUplink uplink : group) {
+            bytes += ITEM_OVERHEAD_BYTES + uplink.deviceId().length() + (isEmpty(uplink.payload()) ? 4 : uplink.payload().length());
+        }
+        return bytes;
+    }
+
+    private static void appendItem(Buffer body, PendingUplink uplink) {
+        body.appendString("{\"type\":\"").appendString(uplink.type().key())
+                .appendString("\",\"deviceId\":").appendString(Json.encode(uplink.deviceId()))
+                .appendString(",\"payload\":")
+                .appendBuffer(isEmpty(uplink.payload()) ? NULL_PAYLOAD : uplink.payload())
+                .appendByte((byte) '}');
+    }
+
+    private void handleBatchResult(List<PendingUplink> batch, long startNanos, int status, Buffer responseBody,
+                                   LaneQueue lane) {
+        applyBatchResult(batch, startNanos, status, responseBody, () -> requestDone(lane));
+    }
+
+    /**
+     * 按批量响应结束各条消息，之后调用 done；逐条回退时等回退全部完成才调用，批次占用的通道额度保持到那时。
+     */
+    private void applyBatchResult(List<PendingUplink> batch, long startNanos, int status, Buffer responseBody,
+                                  Runnable done) {
+        metrics.onBatchFlush(batch.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        metrics.onCallbackLatency(startNanos);
+        if (status >= 200 && status < 300) {
+            Set<Integer> failed = parseFailedIndexes(responseBody);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingUplink uplink = batch.get(i);
+                if (failed.contains(i)) {
+                    metrics.onCallbackFail();
+                    log.warn("Batch item rejected: deviceId={} type={}", uplink.deviceId(), uplink.type().key());
+                    uplink.done().handle(UplinkResult.REJECTED);
+                } else {
+                    uplink.done().handle(UplinkResult.DELIVERED);
+                }
+            }
+            done.run();
+            return;
+        }
+        if (status == 400 || status == 404 || status == 413) {
+            // 批内存在非法 JSON、批过大或 pet-core 尚未支持批量接口：逐条回退，避免整批丢失
+            metrics.onBatchFallback();
+            log.warn("[Batch] 批量回调被拒，逐条回退: size={}, status={}", batch.size(), status);
+            sendInOrder(batch, done);
+            return;
+        }
+        log.warn("[Batch] 批量回调失败: size={}, status={}", batch.size(), status);
+        UplinkResult result = status >= 400 && status < 500 ? UplinkResult.REJECTED : UplinkResult.FAILED;
+        for (PendingUplink uplink : batch) {
+            metrics.onCallbackFail();
+            uplink.done().handle(result);
+        }
+        done.run();
+    }
+
+    private static Set<Integer> parseFailedIndexes(Buffer responseBody) {
+        Set<Integer> failed = new HashSet<>();
+        try {
+            JsonObject body = isEmpty(responseBody) ? null : responseBody.toJsonObject();
+            JsonArray indexes = body == null ? null : body.getJsonArray("failed");
+            if (indexes != null) {
+                for (int i = 0; i < indexes.size(); i++) {
+                    failed.add(indexes.getInteger(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("[Batch] 解析批量响应失败: {}", e.getMessage());
+        }
+        return failed;
+    }
+
+    /**
+     * 逐条回调一条消息；lane 为 null 时（批量回退）不另占通道的在途额度，额度仍由被拒的批次占用。
+     */
+    private void sendSingle(PendingUplink uplink, LaneQueue lane) {
+        inFlight++;
+        if (lane != null) {
+            lane.inFlight++;
+        }
+        long startNanos = System.nanoTime();
+        coreClient.postCallback(uplink.type().callbackPath() + uplink.deviceId(), uplink.payload(), ar -> {
+            metrics.onCallbackLatency(startNanos);
+            if (!CoreClient.isFailure(ar)) {
+                uplink.done().handle(UplinkResult.DELIVERED);
+            } else {
+                int status = CoreClient.statusOf(ar);
+                metrics.onCallbackFail();
+                log.warn("Callback failed: deviceId={} type={} status={}", uplink.deviceId(), uplink.type().key(), status);
+                uplink.done().handle(status >= 400 && status < 500 ? UplinkResult.REJECTED : UplinkResult.FAILED);
+            }
+            requestDone(lane);
+        });
+    }
+
+    /**
+     * 逐条回调，同一设备的消息等前一条完成后再发，不同设备并行；全部完成后调用 done。
+     */
+    private void sendInOrder(List<PendingUplink> batch, Runnable done) {
+        Map<String, ArrayDeque<PendingUplink>> byDevice = new LinkedHashMap<>();
+        for (PendingUplink uplink : batch) {
+            byDevice.computeIfAbsent(uplink.deviceId(), key -> new ArrayDeque<>()).addLast(uplink);
+        }
+        int[] remaining = {byDevice.size()};
+        Runnable deviceDone = () -> {
+            if (--remaining[0] == 0) {
+                done.run();
+            }
+        };
+        byDevice.values().forEach(uplinks -> sendNext(uplinks, deviceDone));
+    }
+
+    private void sendNext(ArrayDeque<PendingUplink> uplinks, Runnable deviceDone) {
+        PendingUplink uplink = uplinks.pollFirst();
+        if (uplink == null) {
+            deviceDone.run();
+            return;
+        }
+        sendSingle(new PendingUplink(uplink.type(), uplink.deviceId(), uplink.payload(), result -> {
+            uplink.done().handle(result);
+            sendNext(uplinks, deviceDone);
+        }, uplink.enqueuedNanos()), null);
+    }
+
+    private boolean isIdle() {
+        if (inFlight > 0 || queued > 0) {
+            return false;
+        }
+        for (LaneQueue lane : lanes) {
+            if (lane.queuedMessages > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void requestDone(LaneQueue lane) {
+        inFlight--;
+        if (lane != null) {
+            lane.inFlight--;
+            pump(lane);
+        }
+        if (isIdle() && !idleWaiters.isEmpty()) {
+            List<Promise<Void>> waiters = new ArrayList<>(idleWaiters);
+            idleWaiters.clear();
+            waiters.forEach(Promise::complete);
+        }
+    }
+
+    private static boolean isEmpty(Buffer payload) {
+        return payload == null || payload.length() == 0;
+    }
+
+    /**
+     * payload 是否恰好是一个 JSON 值：跳过首个值后必须到达输入末尾，多余的括号、逗号或第二个值都不通过。
+     */
+    static boolean isSingleJsonValue(Buffer payload) {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload.getBytes())) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个优先级通道：待发的批量组与逐条消息、在途请求数与各设备队列，只在所属 event loop 上访问。
+     * lane 为 null 表示未开启优先级时的唯一通道，不限在途与排队数。
+     */
+    private final class LaneQueue {
+        private final UplinkLane lane;
+        private final int maxInFlight;
+        private final int maxQueued;
+        private final ArrayDeque<Group> batches = new ArrayDeque<>();
+        private final ArrayDeque<PendingUplink> singles = new ArrayDeque<>();
+        private final Map<String, DeviceLane> devices = new HashMap<>();
+        private final Map<String, Group> latestTelemetry = new HashMap<>();
+        private int queuedMessages;
+        private int inFlight;
+        private long lingerTimerId = -1;
+
+        private LaneQueue(UplinkLane lane, GatewayConfig.UplinkPriority.LaneLimit limit) {
+            this.lane = lane;
+            this.maxInFlight = limit == null ? Integer.MAX_VALUE : limit.maxInFlight();
+            this.maxQueued = limit == null ? Integer.MAX_VALUE : limit.maxQueued();
+        }
+
+        private boolean replacesTelemetry() {
+            return lane == UplinkLane.LOW;
+        }
+
+        private Group offer(List<PendingUplink> uplinks) {
+            Group group = new Group(new ArrayList<>(uplinks), estimatedBytes(uplinks), System.nanoTime());
+            batches.addLast(group);
+            return group;
+        }
+
+        private void queued(int delta) {
+            queuedMessages += delta;
+            if (lane != null) {
+                metrics.onUplinkLaneQueued(lane, delta);
+            }
+        }
+
+        /**
+         * 消息离开通道交给回调时调用，记录排队时间。
+         */
+        private void taken(PendingUplink uplink) {
+            queued(-1);
+            if (lane != null) {
+                metrics.onUplinkLaneWait(lane, uplink.enqueuedNanos());
+            }
+        }
+    }
+
+    /**
+     * 一个设备的待发队列与在途条数，只在所属 event loop 上访问。
+     */
+    private final class DeviceLane {
+        private final LaneQueue queue;
+        private final String deviceId;
+        private final ArrayDeque<PendingUplink> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        private DeviceLane(LaneQueue queue, String deviceId) {
+            this.queue = queue;
+            this.deviceId = deviceId;
+        }
+
+        /**
+         * 计入在途，并在消息有结果后通知队列交出下一组。
+         */
+        private PendingUplink track(PendingUplink uplink) {
+            inFlight++;
+            return new PendingUplink(uplink.type(), uplink.deviceId(), uplink.payload(), result -> {
+                uplink.done().handle(result);
+                laneDone(this);
+            }, uplink.enqueuedNanos());
+        }
+    }
+
+    /**
+     * 批量通道中的一组消息，整组放入同一批次；遥测被取代时替换 uplinks 中的元素并更新字节估计。
+     */
+    private static final class Group {
+        private final List<PendingUplink> uplinks;
+        private final long enqueuedNanos;
+        private int bytes;
+
+        private Group(List<PendingUplink> uplinks, int bytes, long enqueuedNanos) {
+            this.uplinks = uplinks;
+            this.bytes = bytes;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private record PendingUplink(UplinkType type, String deviceId, Buffer payload, Handler<UplinkResult> done,
+                                 long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.deskpet.gateway;
+
+/**
+ * 上行优先级通道：pet-core 饱和时指令回执与设备请求优先，其次事件，周期遥测最先被限制与丢弃。
+ */
+enum UplinkLane {
+    HIGH("high"),
+    NORMAL("normal"),
+    LOW("low");
+
+    private final String key;
+
+    UplinkLane(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static UplinkLane of(UplinkType type) {
+        return switch (type) {
+            case ACK, REQUEST -> HIGH;
+            case EVENT -> NORMAL;
+            case TELEMETRY -> LOW;
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.deskpet.gateway;
+
+/**
+ * 上行消息投递结果。
+ */
+enum UplinkResult {
+    /** pet-core 已处理 */
+    DELIVERED,
+    /** pet-core 明确拒绝（4xx 或批内单条处理失败），重试无意义 */
+    REJECTED,
+    /** 网络错误、超时或 5xx，可稍后重试 */
+    FAILED,
+    /** 网关过载时主动丢弃的遥测（被同设备更新的一条取代或通道已满），不重试 */
+    SHED
+}
@@ -0,0 +1,377 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 上行消息本地预写日志（write-ahead spool）。
+ * <p>
+ * 由固定大小、内存映射的分段文件组成，只追加写入；每条记录带全局递增序号。已投递位置（ack 游标）保存在单独的
+ * 映射文件中，进程崩溃后从游标处重放尚未确认的记录。某个分段的记录全部确认后删除该分段文件。
+ * <p>
+ * 记录格式：{@code [int bodyLength][int crc32c(body)][long timestampMs][byte type][short idLength][deviceId][payload]}，
+ * 长度字段最后写入，恢复时遇到长度为 0 或校验失败即认为是未写完的尾部。
+ * <p>
+ * 追加可来自任意 event loop（加锁），读取与确认只由单个 {@link SpoolReplayer} 执行。
+ */
+@Slf4j
+final class UplinkSpool {
+
+    record SpoolRecord(long seq, long timestampMs, UplinkType type, String deviceId, Buffer payload) {
+    }
+
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int BODY_FIXED_BYTES = 8 + 1 + 2;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final UplinkType[] TYPES = UplinkType.values();
+    private static UplinkSpool shared;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final MappedByteBuffer cursor;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final List<Runnable> appendListeners = new CopyOnWriteArrayList<>();
+    private Segment writeSegment;
+    private long nextSeq;
+    private long usedBytes;
+    private volatile long ackedSeq;
+    private boolean replayerClaimed;
+
+    private long readSeq;
+    private Segment readSegment;
+    private int readPos;
+
+    UplinkSpool(Path dir, int segmentBytes, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve("spool.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = lockChannel.tryLock();
+        if (lock == null) {
+            throw new IOException("spool directory is locked by another process: " + dir);
+        }
+        try (FileChannel channel = FileChannel.open(dir.resolve("cursor"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        recover();
+    }
+
+    /**
+     * 获取进程级共享实例，首次调用时按配置打开（并恢复）spool 目录。
+     */
+    static synchronized UplinkSpool shared(GatewayConfig.Spool config) {
+        if (shared == null) {
+            try {
+                shared = new UplinkSpool(Paths.get(config.dir()), config.segmentBytes(), config.maxBytes());
+                UplinkSpool spool = shared;
+                GatewayMetrics.getInstance().registerSpool(spool::usedBytes, spool::segmentCount,
+                        () -> spool.nextSeq() - spool.ackedSeq());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * 仅第一个调用者返回 true，由它负责启动重放。
+     */
+    synchronized boolean claimReplayer() {
+        if (replayerClaimed) {
+            return false;
+        }
+        replayerClaimed = true;
+        return true;
+    }
+
+    void onAppend(Runnable listener) {
+        appendListeners.add(listener);
+    }
+
+    /**
+     * 追加一条记录，返回序号；记录过大或 spool 已满时返回 -1，由调用方走直连回调。
+     */
+    long append(UplinkType type, String deviceId, Buffer payload, long timestampMs) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        byte[] payloadBytes = payload == null ? null : payload.getBytes();
+        int payloadLength = payloadBytes == null ? 0 : payloadBytes.length;
+        int bodyLength = BODY_FIXED_BYTES + id.length + payloadLength;
+        int recordLength = FRAME_HEADER_BYTES + bodyLength;
+        if (recordLength > segmentBytes || id.length > Short.MAX_VALUE) {
+            return -1;
+        }
+        long seq;
+        synchronized (this) {
+            if (usedBytes + recordLength > maxBytes) {
+                return -1;
+            }
+            if (writeSegment.writePos + recordLength > segmentBytes) {
+                writeSegment.buffer.force();
+                writeSegment = openSegment(nextSeq);
+                segments.put(writeSegment.baseSeq, writeSegment);
+            }
+            ByteBuffer buffer = writeSegment.buffer;
+            int pos = writeSegment.writePos;
+            int bodyPos = pos + FRAME_HEADER_BYTES;
+            buffer.putLong(bodyPos, timestampMs);
+            buffer.put(bodyPos + 8, (byte) type.ordinal());
+            buffer.putShort(bodyPos + 9, (short) id.length);
+            buffer.put(bodyPos + BODY_FIXED_BYTES, id);
+            if (payloadLength > 0) {
+                buffer.put(bodyPos + BODY_FIXED_BYTES + id.length, payloadBytes);
+            }
+            buffer.putInt(pos + 4, crc(buffer, bodyPos, bodyLength));
+            buffer.putInt(pos, bodyLength);
+            writeSegment.writePos += recordLength;
+            writeSegment.count++;
+            usedBytes += recordLength;
+            seq = nextSeq++;
+        }
+        for (Runnable listener : appendListeners) {
+            listener.run();
+        }
+        return seq;
+    }
+
+    /**
+     * 读取下一条待重放记录；没有新记录时返回 null。只允许重放线程调用。
+     */
+    SpoolRecord next() {
+        Segment segment;
+        synchronized (this) {
+            if (readSeq >= nextSeq) {
+                return null;
+            }
+            if (readSegment == null || readSeq >= readSegment.baseSeq + readSegment.count) {
+                readSegment = segments.floorEntry(readSeq).getValue();
+                readPos = positionOf(readSegment, readSeq);
+            }
+            segment = readSegment;
+        }
+        ByteBuffer buffer = segment.buffer;
+        int bodyLength = buffer.getInt(readPos);
+        int bodyPos = readPos + FRAME_HEADER_BYTES;
+        long timestampMs = buffer.getLong(bodyPos);
+        UplinkType type = TYPES[buffer.get(bodyPos + 8)];
+        int idLength = buffer.getShort(bodyPos + 9);
+        byte[] id = new byte[idLength];
+        buffer.get(bodyPos + BODY_FIXED_BYTES, id);
+        byte[] payload = new byte[bodyLength - BODY_FIXED_BYTES - idLength];
+        buffer.get(bodyPos + BODY_FIXED_BYTES + idLength, payload);
+        SpoolRecord record = new SpoolRecord(readSeq, timestampMs, type,
+                new String(id, StandardCharsets.UTF_8), Buffer.buffer(payload));
+        readPos = bodyPos + bodyLength;
+        readSeq++;
+        return record;
+    }
+
+    /**
+     * 确认 seq 之前（不含）的记录均已投递：持久化游标并删除已全部确认的分段。
+     */
+    void commit(long seq) {
+        if (seq <= ackedSeq) {
+            return;
+        }
+        ackedSeq = seq;
+        cursor.putLong(0, seq);
+        List<Segment> removable = new ArrayList<>();
+        synchronized (this) {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Segment> first = segments.firstEntry();
+                Long nextBase = segments.higherKey(first.getKey());
+                if (nextBase == null || nextBase > seq || first.getValue() == readSegment) {
+                    break;
+                }
+                segments.pollFirstEntry();
+                usedBytes -= first.getValue().writePos;
+                removable.add(first.getValue());
+            }
+        }
+        for (Segment segment : removable) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("[Spool] 删除已确认分段失败: {}", segment.path, e);
+            }
+        }
+    }
+
+    /**
+     * 将映射内容刷到磁盘（停止时调用）。
+     */
+    synchronized void force() {
+        cursor.force();
+        writeSegment.buffer.force();
+    }
+
+    /**
+     * 刷盘并释放目录锁。
+     */
+    synchronized void close() throws IOException {
+        force();
+        lock.release();
+        lockChannel.close();
+    }
+
+    /**
+     * 下一条待读取记录的序号（只允许重放线程调用）。
+     */
+    long readSeq() {
+        return readSeq;
+    }
+
+    long ackedSeq() {
+        return ackedSeq;
+    }
+
+    synchronized long nextSeq() {
+        return nextSeq;
+    }
+
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    Path dir() {
+        return dir;
+    }
+
+    private void recover() throws IOException {
+        long acked = cursor.getLong(0);
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        bases.sort(Long::compare);
+        for (long base : bases) {
+            Segment segment = openSegment(base);
+            scan(segment);
+            segments.put(base, segment);
+            usedBytes += segment.writePos;
+        }
+        if (segments.isEmpty()) {
+            Segment segment = openSegment(acked);
+            segments.put(acked, segment);
+        }
+        writeSegment = segments.lastEntry().getValue();
+        nextSeq = writeSegment.baseSeq + writeSegment.count;
+        acked = Math.max(acked, segments.firstKey());
+        acked = Math.min(acked, nextSeq);
+        this.ackedSeq = acked;
+        this.readSeq = acked;
+        cursor.putLong(0, acked);
+        commitRecovered(acked);
+        log.info("[Spool] 恢复完成: dir={}, segments={}, ackedSeq={}, nextSeq={}, pending={}",
+                dir, segments.size(), acked, nextSeq, nextSeq - acked);
+    }
+
+    private void commitRecovered(long acked) throws IOException {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Segment> first = segments.firstEntry();
+            Long nextBase = segments.higherKey(first.getKey());
+            if (nextBase == null || nextBase > acked) {
+                break;
+            }
+            segments.pollFirstEntry();
+            usedBytes -= first.getValue().writePos;
+            Files.deleteIfExists(first.getValue().path);
+        }
+    }
+
+    /**
+     * 扫描分段确定有效记录数与写入位置，并清零未写完的尾部，避免残留字节在后续恢复时被误读。
+     */
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int capacity = buffer.capacity();
+        int pos = 0;
+        int count = 0;
+        while (pos + FRAME_HEADER_BYTES <= capacity) {
+            int bodyLength = buffer.getInt(pos);
+            if (bodyLength < BODY_FIXED_BYTES || pos + FRAME_HEADER_BYTES + bodyLength > capacity) {
+                break;
+            }
+            if (buffer.getInt(pos + 4) != crc(buffer, pos + FRAME_HEADER_BYTES, bodyLength)) {
+                break;
+            }
+            pos += FRAME_HEADER_BYTES + bodyLength;
+            count++;
+        }
+        for (int i = pos; i < capacity && i < pos + FRAME_HEADER_BYTES; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        segment.writePos = pos;
+        segment.count = count;
+    }
+
+    private int positionOf(Segment segment, long seq) {
+        ByteBuffer buffer = segment.buffer;
+        int pos = 0;
+        for (long s = segment.baseSeq; s < seq; s++) {
+            pos += FRAME_HEADER_BYTES + buffer.getInt(pos);
+        }
+        return pos;
+    }
+
+    private Segment openSegment(long baseSeq) {
+        Path path = dir.resolve(String.format("%020d%s", baseSeq, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentBytes);
+            return new Segment(baseSeq, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        private final long baseSeq;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePos;
+        private int count;
+
+        private Segment(long baseSeq, Path path, MappedByteBuffer buffer) {
+            this.baseSeq = baseSeq;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.deskpet.gateway;
+
+/**
+ * 设备上行消息类型，与 pet-core 内部回调接口一一对应。
+ */
+enum UplinkType {
+    TELEMETRY("telemetry", "/internal/telemetry/"),
+    EVENT("event", "/internal/event/"),
+    REQUEST("request", "/internal/request/"),
+    ACK("ack", "/internal/ack/");
+
+    private final String key;
+    private final String callbackPath;
+
+    UplinkType(String key, String callbackPath) {
+        this.key = key;
+        this.callbackPath = callbackPath;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String callbackPath() {
+        return callbackPath;
+    }
+
+    static UplinkType fromTopic(String topic) {
+        if (topic.endsWith("/telemetry")) {
+            return TELEMETRY;
+        }
+        if (topic.endsWith("/event")) {
+            return EVENT;
+        }
+        if (topic.endsWith("/req")) {
+            return REQUEST;
+        }
+        return ACK;
+    }
+
+    static UplinkType fromKey(String key) {
+        for (UplinkType type : values()) {
+            if (type.key.equalsIgnoreCase(key)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
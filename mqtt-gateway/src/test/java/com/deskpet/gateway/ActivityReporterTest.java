@@ -0,0 +1,129 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActivityReporterTest {
+
+    @Test
+    void flush_reportsOnlyOwnedSessionsWithNewActivityAndRetriesAfterFailure() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        List<JsonObject> batches = new CopyOnWriteArrayList<>();
+        AtomicInteger status = new AtomicInteger(200);
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body -> {
+            assertEquals(ActivityReporter.BATCH_PATH, request.path());
+            batches.add(body.toJsonObject());
+            request.response().setStatusCode(status.get()).putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("updated", body.toJsonObject().getJsonArray("deviceIds").size()).encode());
+        }));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("activity", new JsonObject().put("enabled", true).put("minAdvanceMs", 1)));
+            long connectedAtMs = System.currentTimeMillis() - 10_000;
+            EndpointSession active = session("pet-1", connectedAtMs);
+            EndpointSession idle = session("pet-2", connectedAtMs);
+            EndpointSession untracked = session("pet-3", connectedAtMs);
+            active.updateActivity();
+            untracked.updateActivity();
+            ActivityReporter reporter = reporter(vertx, config);
+            reporter.track(active);
+            reporter.track(idle);
+
+            status.set(500);
+            await(reporter);
+            status.set(200);
+            await(reporter);
+
+            assertTrue(batches.size() >= 2, "batches: " + batches.size());
+            JsonObject last = batches.get(batches.size() - 1);
+            assertEquals("gw-test", last.getString("gatewayInstanceId"));
+            assertEquals(new JsonArray().add("pet-1"), last.getJsonArray("deviceIds"));
+            assertEquals(new JsonArray().add(active.lastActivityMs()), last.getJsonArray("lastSeen"));
+            assertEquals(active.lastActivityMs(), active.reportedActivityMs());
+            assertEquals(connectedAtMs, idle.reportedActivityMs());
+            int sent = batches.size();
+            await(reporter);
+            assertEquals(sent, batches.size());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void flush_resumesAfterLastBatchAndDropsClosedSessions() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        List<JsonArray> batches = new CopyOnWriteArrayList<>();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body -> {
+            batches.add(body.toJsonObject().getJsonArray("deviceIds"));
+            request.response().setStatusCode(200).end();
+        }));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("activity", new JsonObject().put("enabled", true).put("minAdvanceMs", 1)
+                            .put("maxBatchSize", 2)));
+            long connectedAtMs = System.currentTimeMillis() - 10_000;
+            ActivityReporter reporter = reporter(vertx, config);
+            List<EndpointSession> tracked = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                EndpointSession session = session("pet-" + i, connectedAtMs);
+                session.updateActivity();
+                tracked.add(session);
+                reporter.track(session);
+            }
+            tracked.get(3).markClosed();
+
+            await(reporter);
+            // 前两台再次活跃，轮转时仍排在尚未上报的设备之后
+            advanceActivity(tracked.get(0));
+            advanceActivity(tracked.get(1));
+            await(reporter);
+            await(reporter);
+
+            assertEquals(List.of(new JsonArray().add("pet-1").add("pet-2"), new JsonArray().add("pet-3").add("pet-5"),
+                    new JsonArray().add("pet-1").add("pet-2")), batches);
+            assertEquals(4, reporter.trackedCount());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ActivityReporter reporter(Vertx vertx, GatewayConfig config) {
+        return new ActivityReporter(new CoreClient(vertx, WebClient.create(vertx), config), config.activity(),
+                "gw-test", GatewayMetrics.getInstance());
+    }
+
+    /**
+     * 让活动时间越过上次上报的时间（不小于 1ms）。
+     */
+    private static void advanceActivity(EndpointSession session) {
+        long reportedMs = session.reportedActivityMs();
+        while (session.lastActivityMs() <= reportedMs) {
+            session.updateActivity();
+        }
+    }
+
+    private static void await(ActivityReporter reporter) throws Exception {
+        reporter.flush().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private static EndpointSession session(String deviceId, long connectedAtMs) {
+        return new EndpointSession(deviceId, null, 0, connectedAtMs, "10.0.0.1", 60_000, null, 0, null, null, null);
+    }
+}
@@ -0,0 +1,59 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static AdaptiveLimiter limiter(int initial, int min, int max) {
+        return new AdaptiveLimiter(GatewayConfig.CoreGuard.fromConfig(new JsonObject()
+                .put("enabled", true).put("initialLimit", initial).put("minLimit", min).put("maxLimit", max)
+                .put("backoffRatio", 0.5).put("rttTolerance", 2.0)));
+    }
+
+    @Test
+    void tryAcquire_boundedByLimit() {
+        AdaptiveLimiter limiter = limiter(2, 1, 10);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.cancel();
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void release_growsWhenBusyAndShrinksOncePerRttOnSlowOrDropped() {
+        AdaptiveLimiter limiter = limiter(4, 2, 5);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 4; j++) {
+                limiter.tryAcquire();
+            }
+            for (int j = 0; j < 4; j++) {
+                limiter.release(CoreEndpoint.TELEMETRY, now += MS, 10 * MS, false);
+            }
+        }
+        assertEquals(5, limiter.limit());
+        assertEquals(10 * MS, limiter.baselineRttNanos(CoreEndpoint.TELEMETRY));
+        assertEquals(0, limiter.baselineRttNanos(CoreEndpoint.AUTH));
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.release(CoreEndpoint.TELEMETRY, now += MS, 100 * MS, false);
+        limiter.release(CoreEndpoint.TELEMETRY, now += MS, 0, true);
+        assertEquals(2, limiter.limit());
+
+        limiter.tryAcquire();
+        limiter.release(CoreEndpoint.TELEMETRY, now + 50 * MS, 0, true);
+        assertEquals(2, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+}
@@ -0,0 +1,51 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesOnSuccessfulProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000);
+
+        assertFalse(breaker.onFailure(0));
+        assertFalse(breaker.onFailure(0));
+        breaker.onSuccess();
+        assertFalse(breaker.onFailure(0));
+        assertFalse(breaker.onFailure(0));
+        assertTrue(breaker.onFailure(0));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertTrue(breaker.isOpen(999));
+        assertFalse(breaker.allow(999));
+
+        assertTrue(breaker.allow(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.allow(1000));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allow(1000));
+    }
+
+    @Test
+    void failedProbeReopensAndRetryAfterExtendsOpenWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+
+        assertTrue(breaker.onFailure(0));
+        assertTrue(breaker.allow(1000));
+        assertTrue(breaker.onFailure(1000));
+        assertTrue(breaker.isOpen(1999));
+        assertFalse(breaker.isOpen(2000));
+
+        CircuitBreaker throttled = new CircuitBreaker(20, 1000);
+        assertTrue(throttled.openUntil(3000));
+        assertFalse(throttled.openUntil(2000));
+        assertTrue(throttled.isOpen(2500));
+        assertFalse(throttled.openUntil(4000));
+        assertTrue(throttled.isOpen(3500));
+        assertTrue(throttled.allow(4000));
+    }
+}
@@ -0,0 +1,218 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.mqtt.MqttEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectAdmissionTest {
+
+    private static final int MAX_WAIT_MS = 1000;
+
+    private final Vertx vertx = Vertx.vertx();
+    private final Context context = vertx.getOrCreateContext();
+    private final AtomicLong nowMs = new AtomicLong(1_000_000);
+    // 以下只在 context 的 event loop 上修改
+    private final List<String> started = new ArrayList<>();
+    private final Map<String, MqttConnectReturnCode> rejected = new HashMap<>();
+    private final Map<String, Handler<Void>> closeHandlers = new HashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void rate_allowsBurstThenThrottles() {
+        ConnectAdmission.Shared shared = new ConnectAdmission.Shared(1000, 10, 5);
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (shared.tryAcquireRate()) {
+                allowed++;
+            }
+        }
+        assertEquals(5, allowed);
+    }
+
+    @Test
+    void rate_refillsOverTime() {
+        AtomicLong nanos = new AtomicLong();
+        ConnectAdmission.Shared shared = new ConnectAdmission.Shared(1000, 100, 1, nanos::get);
+        assertTrue(shared.tryAcquireRate());
+        assertFalse(shared.tryAcquireRate());
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(9));
+        assertFalse(shared.tryAcquireRate());
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(shared.tryAcquireRate());
+    }
+
+    @Test
+    void slots_areCappedGlobally() {
+        ConnectAdmission.Shared shared = new ConnectAdmission.Shared(3, 0, 1);
+        assertTrue(shared.tryAcquireSlot());
+        assertTrue(shared.tryAcquireSlot());
+        assertTrue(shared.tryAcquireSlot());
+        assertFalse(shared.tryAcquireSlot());
+    }
+
+    @Test
+    void admit_startsQueuedConnectsInFifoOrderAsPermitsAreReleased() throws Exception {
+        ConnectAdmission admission = onContext(() -> admission(1, 10, shared(10)));
+
+        onContext(() -> {
+            admit(admission, "pet-1");
+            admit(admission, "pet-2");
+            admit(admission, "pet-3");
+        });
+        assertEquals(List.of("pet-1"), onContext(() -> List.copyOf(started)));
+
+        onContext(admission::release);
+        assertEquals(List.of("pet-1", "pet-2"), onContext(() -> List.copyOf(started)));
+        onContext(admission::release);
+        assertEquals(List.of("pet-1", "pet-2", "pet-3"), onContext(() -> List.copyOf(started)));
+        assertTrue(onContext(rejected::isEmpty));
+    }
+
+    @Test
+    void admit_rejectsWithServerUnavailableWhenQueueIsFull() throws Exception {
+        ConnectAdmission admission = onContext(() -> admission(1, 1, shared(10)));
+
+        onContext(() -> {
+            admit(admission, "pet-1");
+            admit(admission, "pet-2");
+            admit(admission, "pet-3");
+        });
+
+        assertEquals(List.of("pet-1"), onContext(() -> List.copyOf(started)));
+        assertEquals(Map.of("pet-3", MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE),
+                onContext(() -> Map.copyOf(rejected)));
+    }
+
+    @Test
+    void drain_rejectsWaitersQueuedLongerThanMaxWait() throws Exception {
+        ConnectAdmission admission = onContext(() -> admission(1, 10, shared(10)));
+        onContext(() -> {
+            admit(admission, "pet-1");
+            admit(admission, "pet-2");
+        });
+        nowMs.addAndGet(MAX_WAIT_MS / 2);
+        onContext(() -> admit(admission, "pet-3"));
+
+        nowMs.addAndGet(MAX_WAIT_MS / 2 + 1);
+        onContext(admission::release);
+
+        assertEquals(List.of("pet-1", "pet-3"), onContext(() -> List.copyOf(started)));
+        assertEquals(Map.of("pet-2", MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE),
+                onContext(() -> Map.copyOf(rejected)));
+    }
+
+    @Test
+    void drain_dropsWaitersWhoseConnectionClosed() throws Exception {
+        ConnectAdmission admission = onContext(() -> admission(1, 10, shared(10)));
+        onContext(() -> {
+            admit(admission, "pet-1");
+            admit(admission, "pet-2");
+            admit(admission, "pet-3");
+            closeHandlers.get("pet-2").handle(null);
+        });
+
+        onContext(admission::release);
+
+        assertEquals(List.of("pet-1", "pet-3"), onContext(() -> List.copyOf(started)));
+        assertTrue(onContext(rejected::isEmpty));
+    }
+
+    @Test
+    void admit_capsInFlightPerVerticleBelowGlobalLimit() throws Exception {
+        ConnectAdmission.Shared shared = shared(10);
+        ConnectAdmission first = onContext(() -> admission(2, 10, shared));
+        ConnectAdmission second = onContext(() -> admission(2, 10, shared));
+
+        onContext(() -> {
+            admit(first, "pet-1");
+            admit(first, "pet-2");
+            admit(first, "pet-3");
+            admit(second, "pet-4");
+        });
+
+        assertEquals(List.of("pet-1", "pet-2", "pet-4"), onContext(() -> List.copyOf(started)));
+        onContext(first::release);
+        assertEquals(List.of("pet-1", "pet-2", "pet-4", "pet-3"), onContext(() -> List.copyOf(started)));
+    }
+
+    private ConnectAdmission admission(int maxInFlightPerVerticle, int maxQueue, ConnectAdmission.Shared shared) {
+        GatewayConfig.Admission config = new GatewayConfig.Admission(true, 10, maxInFlightPerVerticle, 0, 1,
+                maxQueue, MAX_WAIT_MS);
+        return new ConnectAdmission(vertx, config, shared, GatewayMetrics.getInstance(), nowMs::get);
+    }
+
+    private static ConnectAdmission.Shared shared(int maxInFlight) {
+        return new ConnectAdmission.Shared(maxInFlight, 0, 1);
+    }
+
+    private void admit(ConnectAdmission admission, String deviceId) {
+        admission.admit(endpoint(deviceId), endpoint -> started.add(endpoint.clientIdentifier()));
+    }
+
+    /**
+     * 只实现准入控制用到的 clientIdentifier / closeHandler / reject 的 MqttEndpoint 替身。
+     */
+    private MqttEndpoint endpoint(String deviceId) {
+        return (MqttEndpoint) Proxy.newProxyInstance(MqttEndpoint.class.getClassLoader(),
+                new Class<?>[]{MqttEndpoint.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "clientIdentifier":
+                            return deviceId;
+                        case "closeHandler":
+                            @SuppressWarnings("unchecked")
+                            Handler<Void> handler = (Handler<Void>) args[0];
+                            closeHandlers.put(deviceId, handler);
+                            return proxy;
+                        case "reject":
+                            rejected.put(deviceId, (MqttConnectReturnCode) args[0]);
+                            return proxy;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 在 event loop 上执行并等待完成；排队定时器也在同一 event loop 上运行，时钟不变时它的 drain 不改变状态。
+     */
+    private <T> T onContext(Supplier<T> action) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            try {
+                result.complete(action.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private void onContext(Runnable action) throws Exception {
+        onContext(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoreChannelTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final Context context = vertx.getOrCreateContext();
+    private CoreRpcStub stub;
+    private CoreChannel channel;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (channel != null) {
+            onContext(() -> {
+                channel.close();
+                return Future.succeededFuture();
+            });
+        }
+        if (stub != null) {
+            stub.close();
+        }
+        vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private void connect(int maxInFlight, BiConsumer<NetSocket, RpcFrame> core,
+                         CoreChannel.InboundHandler inbound) throws Exception {
+        stub = CoreRpcStub.start(vertx, core);
+        GatewayConfig.Rpc config = new GatewayConfig.Rpc(true, "127.0.0.1", stub.port(), maxInFlight,
+                2000, 20, 100, 1024 * 1024);
+        onContext(() -> {
+            channel = new CoreChannel(vertx, config, "token", "gateway-test", inbound, GatewayMetrics.getInstance());
+            channel.start();
+            return Future.succeededFuture();
+        });
+        awaitReady();
+    }
+
+    @Test
+    void request_matchesOutOfOrderResponsesById() throws Exception {
+        List<RpcFrame> held = new ArrayList<>();
+        connect(8, (socket, frame) -> {
+            held.add(frame);
+            if (held.size() == 2) {
+                // 逆序应答
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    RpcFrame request = held.get(i);
+                    CoreRpcStub.write(socket, RpcFrame.response(request.id(), request.op(), 200, request.body()));
+                }
+            }
+        }, (op, body) -> Future.succeededFuture(new CoreChannel.Reply(404, null)));
+
+        CompletableFuture<CoreChannel.Reply> first = new CompletableFuture<>();
+        CompletableFuture<CoreChannel.Reply> second = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            channel.request(RpcFrame.OP_UPLINK_BATCH, Buffer.buffer("first")).onSuccess(first::complete);
+            channel.request(RpcFrame.OP_UPLINK_BATCH, Buffer.buffer("second")).onSuccess(second::complete);
+        });
+
+        assertEquals("first", first.get(5, TimeUnit.SECONDS).body().toString());
+        assertEquals("second", second.get(5, TimeUnit.SECONDS).body().toString());
+    }
+
+    @Test
+    void request_failsFastWhenInFlightLimitReached() throws Exception {
+        connect(1, (socket, frame) -> {
+        }, (op, body) -> Future.succeededFuture(new CoreChannel.Reply(404, null)));
+
+        onContext(() -> {
+            channel.request(RpcFrame.OP_UPLINK_BATCH, Buffer.buffer("[]"));
+            return Future.succeededFuture();
+        });
+        ExecutionException busy = assertThrows(ExecutionException.class,
+                () -> onContext(() -> channel.request(RpcFrame.OP_UPLINK_BATCH, Buffer.buffer("[]"))));
+
+        assertTrue(busy.getCause().getMessage().contains("busy"));
+    }
+
+    @Test
+    void inboundRequest_isAnsweredOnSameConnection() throws Exception {
+        CompletableFuture<RpcFrame> response = new CompletableFuture<>();
+        connect(8, (socket, frame) -> response.complete(frame),
+                (op, body) -> Future.succeededFuture(new CoreChannel.Reply(200, Buffer.buffer("ok:" + body))));
+
+        CoreRpcStub.write(stub.connections().get(0), RpcFrame.request(42, RpcFrame.OP_COMMAND_SEND, Buffer.buffer("cmd")));
+        RpcFrame reply = response.get(5, TimeUnit.SECONDS);
+
+        assertEquals(42, reply.id());
+        assertEquals(200, reply.status());
+        assertEquals("ok:cmd", reply.body().toString());
+    }
+
+    @Test
+    void closedConnection_failsPendingAndReconnects() throws Exception {
+        connect(8, (socket, frame) -> socket.close(),
+                (op, body) -> Future.succeededFuture(new CoreChannel.Reply(404, null)));
+
+        ExecutionException closed = assertThrows(ExecutionException.class,
+                () -> onContext(() -> channel.request(RpcFrame.OP_UPLINK_BATCH, Buffer.buffer("[]"))));
+        assertTrue(closed.getCause().getMessage().contains("closed"));
+
+        awaitReady();
+        assertEquals(1, stub.connections().size());
+    }
+
+    private void awaitReady() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!onContext(() -> Future.succeededFuture(channel.ready()))) {
+            assertTrue(System.currentTimeMillis() < deadline, "channel not ready");
+            Thread.sleep(10);
+        }
+    }
+
+    private <T> T onContext(Supplier<Future<T>> action) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.runOnContext(v -> action.get().onComplete(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        }));
+        return result.get(5, TimeUnit.SECONDS);
+    }
+}
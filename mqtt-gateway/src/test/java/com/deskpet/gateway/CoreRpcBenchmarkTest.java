@@ -0,0 +1,160 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 批量上行传输基准：同一批次分别经现有 HTTP 回调（{@link CoreClient} + WebClient）与 {@link CoreChannel} 长连接发送，
+ * 对比串行延迟与并发吞吐。两端服务都是本地 Vert.x 替身，只衡量传输与客户端开销，不含 pet-core 业务处理。
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class CoreRpcBenchmarkTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int SEQUENTIAL = 5_000;
+    private static final int CONCURRENT = 20_000;
+    private static final int CONCURRENCY = 64;
+    private static final int BATCH_ITEMS = 50;
+
+    @Test
+    void channel_vsHttp_latencyAndThroughput() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        Context context = vertx.getOrCreateContext();
+        Buffer batch = batchBody();
+        Buffer reply = new JsonObject().put("accepted", BATCH_ITEMS).put("failed", new JsonArray()).toBuffer();
+        HttpServer http = vertx.createHttpServer()
+                .requestHandler(request -> request.body().onSuccess(body -> request.response().end(reply)));
+        int httpPort = http.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        CoreRpcStub stub = CoreRpcStub.start(vertx, (socket, frame) ->
+                CoreRpcStub.write(socket, RpcFrame.response(frame.id(), frame.op(), 200, reply)));
+        try {
+            GatewayConfig config = testConfig(httpPort, stub.port());
+            CoreClient coreClient = new CoreClient(vertx, WebClient.create(vertx), config);
+            CoreChannel channel = onContext(context, () -> {
+                CoreChannel created = new CoreChannel(vertx, config.rpc(), "", "bench",
+                        (op, body) -> Future.succeededFuture(new CoreChannel.Reply(404, null)), GatewayMetrics.getInstance());
+                created.start();
+                return Future.succeededFuture(created);
+            });
+            while (!onContext(context, () -> Future.succeededFuture(channel.ready()))) {
+                Thread.sleep(10);
+            }
+
+            Function<Void, Future<Integer>> viaHttp = v -> {
+                Promise<Integer> promise = Promise.promise();
+                coreClient.postCallback(UplinkDispatcher.BATCH_PATH, batch,
+                        ar -> promise.complete(CoreClient.statusOf(ar)));
+                return promise.future();
+            };
+            Function<Void, Future<Integer>> viaChannel = v -> channel.request(RpcFrame.OP_UPLINK_BATCH, batch)
+                    .map(CoreChannel.Reply::status);
+
+            System.out.printf("batch=%d items, %d bytes%n", BATCH_ITEMS, batch.length());
+            System.out.printf("%-8s %12s %12s %12s %14s%n", "path", "avg(us)", "p50(us)", "p99(us)", "batches/s@" + CONCURRENCY);
+            for (String name : new String[]{"http", "channel"}) {
+                Function<Void, Future<Integer>> send = name.equals("http") ? viaHttp : viaChannel;
+                sequential(context, send, WARMUP);
+                long[] latencies = sequential(context, send, SEQUENTIAL);
+                double throughput = concurrent(context, send, CONCURRENT, CONCURRENCY);
+                Arrays.sort(latencies);
+                System.out.printf("%-8s %12d %12d %12d %14.0f%n", name,
+                        Arrays.stream(latencies).sum() / latencies.length / 1000,
+                        latencies[latencies.length / 2] / 1000,
+                        latencies[(int) (latencies.length * 0.99)] / 1000,
+                        throughput);
+            }
+        } finally {
+            stub.close();
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long[] sequential(Context context, Function<Void, Future<Integer>> send, int count) throws Exception {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            assertEquals(200, onContext(context, () -> send.apply(null)));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static double concurrent(Context context, Function<Void, Future<Integer>> send,
+                                     int total, int concurrency) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        int[] state = new int[3];
+        long start = System.nanoTime();
+        context.runOnContext(v -> {
+            Runnable[] next = new Runnable[1];
+            next[0] = () -> {
+                if (state[0] >= total) {
+                    return;
+                }
+                state[0]++;
+                send.apply(null).onComplete(ar -> {
+                    if (ar.failed() || ar.result() != 200) {
+                        state[2]++;
+                    }
+                    if (++state[1] == total) {
+                        done.complete(null);
+                    } else {
+                        context.runOnContext(x -> next[0].run());
+                    }
+                });
+            };
+            for (int i = 0; i < concurrency; i++) {
+                next[0].run();
+            }
+        });
+        done.get(120, TimeUnit.SECONDS);
+        assertEquals(0, state[2], "non-200 results");
+        return total / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static <T> T onContext(Context context, Supplier<Future<T>> action) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.runOnContext(v -> action.get().onComplete(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        }));
+        return result.get(30, TimeUnit.SECONDS);
+    }
+
+    private static Buffer batchBody() {
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < BATCH_ITEMS; i++) {
+            items.add(new JsonObject().put("type", "telemetry").put("deviceId", "pet-" + i)
+                    .put("payload", new JsonObject().put("battery", 87).put("temp", 24.5).put("mood", "happy")));
+        }
+        return items.toBuffer();
+    }
+
+    private static GatewayConfig testConfig(int httpPort, int rpcPort) {
+        GatewayConfig.Rpc rpc = new GatewayConfig.Rpc(true, "127.0.0.1", rpcPort, CONCURRENCY, 5000, 100, 1000, 4 * 1024 * 1024);
+        return new GatewayConfig(1883, 8081, "http://127.0.0.1:" + httpPort, "bench", "",
+                2000, 1, 200, false, 5000, 0, 200, false, "/metrics", 60, 1, 120,
+                null, null, null, null, null, null, rpc, null, null, null, null, null,
+                GatewayConfig.CoreGuard.fromConfig(new JsonObject()), null, null, null, null);
+    }
+}
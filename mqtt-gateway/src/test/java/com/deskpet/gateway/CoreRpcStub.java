@@ -0,0 +1,87 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.parsetools.RecordParser;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * 测试用 pet-core 长连接服务端替身：自动应答 HELLO，其余帧交给 handler。
+ */
+final class CoreRpcStub implements AutoCloseable {
+
+    private final NetServer server;
+    private final List<NetSocket> connections = new CopyOnWriteArrayList<>();
+    private final BiConsumer<NetSocket, RpcFrame> handler;
+
+    private CoreRpcStub(Vertx vertx, BiConsumer<NetSocket, RpcFrame> handler) {
+        this.handler = handler;
+        this.server = vertx.createNetServer().connectHandler(this::accept);
+    }
+
+    static CoreRpcStub start(Vertx vertx, BiConsumer<NetSocket, RpcFrame> handler) throws Exception {
+        CoreRpcStub stub = new CoreRpcStub(vertx, handler);
+        stub.server.listen(0, "127.0.0.1").toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        return stub;
+    }
+
+    static void write(NetSocket socket, RpcFrame frame) {
+        socket.write(frame.encode());
+    }
+
+    int port() {
+        return server.actualPort();
+    }
+
+    List<NetSocket> connections() {
+        return connections;
+    }
+
+    private void accept(NetSocket socket) {
+        connections.add(socket);
+        socket.closeHandler(v -> connections.remove(socket));
+        RecordParser parser = RecordParser.newFixed(RpcFrame.LENGTH_BYTES);
+        parser.handler(new Handler<>() {
+            private int frameLength = -1;
+
+            @Override
+            public void handle(Buffer chunk) {
+                if (frameLength < 0) {
+                    frameLength = chunk.getInt(0);
+                    parser.fixedSizeMode(frameLength);
+                    return;
+                }
+                frameLength = -1;
+                parser.fixedSizeMode(RpcFrame.LENGTH_BYTES);
+                RpcFrame frame = RpcFrame.decode(chunk);
+                if (frame.isRequest() && frame.op() == RpcFrame.OP_HELLO) {
+                    write(socket, RpcFrame.response(frame.id(), frame.op(), 200, null));
+                    return;
+                }
+                handler.accept(socket, frame);
+            }
+        });
+        socket.handler(parser);
+    }
+
+    /**
+     * 等待服务端关闭；被中断时恢复中断标志后返回。
+     */
+    @Override
+    public void close() throws ExecutionException, TimeoutException {
+        try {
+            server.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private CredentialCache cache(int maxEntries) {
+        GatewayConfig.AuthCache config = new GatewayConfig.AuthCache(true, maxEntries, 60, 5);
+        return new CredentialCache(config, GatewayMetrics.getInstance(), now::get);
+    }
+
+    @Test
+    void lookup_hitsOnlyForSamePassword() {
+        CredentialCache cache = cache(100);
+        cache.putAllowed("pet-1", "secret", "deskpet-v1");
+
+        assertEquals(CredentialCache.Verdict.ALLOW, cache.lookup("pet-1", "secret"));
+        assertEquals(CredentialCache.Verdict.MISS, cache.lookup("pet-1", "other"));
+        assertEquals(CredentialCache.Verdict.MISS, cache.lookup("pet-2", "secret"));
+        assertEquals("deskpet-v1", cache.productKey("pet-1"));
+        assertNull(cache.productKey("pet-2"));
+    }
+
+    @Test
+    void negativeEntries_expireBeforePositiveOnes() {
+        CredentialCache cache = cache(100);
+        cache.putAllowed("pet-1", "secret", "deskpet-v1");
+        cache.putDenied("pet-2", "wrong");
+        assertEquals(CredentialCache.Verdict.DENY, cache.lookup("pet-2", "wrong"));
+
+        now.addAndGet(6_000);
+
+        assertEquals(CredentialCache.Verdict.MISS, cache.lookup("pet-2", "wrong"));
+        assertEquals(CredentialCache.Verdict.ALLOW, cache.lookup("pet-1", "secret"));
+        now.addAndGet(60_000);
+        assertEquals(CredentialCache.Verdict.MISS, cache.lookup("pet-1", "secret"));
+    }
+
+    @Test
+    void invalidate_removesDevices() {
+        CredentialCache cache = cache(100);
+        cache.putAllowed("pet-1", "secret", "deskpet-v1");
+        cache.putAllowed("pet-2", "secret", "deskpet-v1");
+
+        cache.invalidate(List.of("pet-1"));
+
+        assertEquals(CredentialCache.Verdict.MISS, cache.lookup("pet-1", "secret"));
+        assertEquals(CredentialCache.Verdict.ALLOW, cache.lookup("pet-2", "secret"));
+    }
+
+    @Test
+    void size_staysBoundedUnderChurn() {
+        CredentialCache cache = cache(1000);
+        for (int i = 0; i < 10_000; i++) {
+            cache.putAllowed("pet-" + i, "secret", "deskpet-v1");
+        }
+        assertTrue(cache.size() <= 1000, "size=" + cache.size());
+    }
+}
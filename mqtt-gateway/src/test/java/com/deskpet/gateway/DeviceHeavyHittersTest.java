@@ -0,0 +1,77 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceHeavyHittersTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void top_findsHeavyDevicesAmongLongTail() {
+        DeviceHeavyHitters hitters = newHitters();
+        long total = 0;
+        for (int i = 0; i < 20_000; i++) {
+            hitters.record("tail-" + i, UplinkType.TELEMETRY, 100, NOW);
+            total++;
+        }
+        for (int round = 0; round < 300; round++) {
+            for (int i = 0; i < 10; i++) {
+                hitters.record("heavy-" + i, round % 2 == 0 ? UplinkType.TELEMETRY : UplinkType.EVENT, 100, NOW + round);
+                total++;
+            }
+        }
+
+        List<DeviceHeavyHitters.Hitter> top = hitters.top(DeviceHeavyHitters.Window.M1, false, null, 10, NOW + 1000);
+
+        assertEquals(10, top.size());
+        for (DeviceHeavyHitters.Hitter hitter : top) {
+            assertTrue(hitter.deviceId().startsWith("heavy-"), hitter.deviceId());
+            assertTrue(hitter.messages() >= 300 && hitter.messages() <= 300 + total / 50, "messages: " + hitter.messages());
+        }
+    }
+
+    @Test
+    void top_ranksByBytesAndFiltersByType() {
+        DeviceHeavyHitters hitters = newHitters();
+        for (int i = 0; i < 50; i++) {
+            hitters.record("chatty", UplinkType.TELEMETRY, 50, NOW);
+            hitters.record("acker", UplinkType.ACK, 20, NOW);
+        }
+        hitters.record("camera", UplinkType.EVENT, 200_000, NOW);
+
+        assertEquals("camera", hitters.top(DeviceHeavyHitters.Window.M5, true, null, 1, NOW).get(0).deviceId());
+        Set<String> byMessages = hitters.top(DeviceHeavyHitters.Window.M5, false, null, 2, NOW).stream()
+                .map(DeviceHeavyHitters.Hitter::deviceId).collect(Collectors.toSet());
+        assertEquals(Set.of("chatty", "acker"), byMessages);
+        List<DeviceHeavyHitters.Hitter> acks = hitters.top(DeviceHeavyHitters.Window.M5, false, UplinkType.ACK, 10, NOW);
+        assertEquals(1, acks.size());
+        assertEquals(new DeviceHeavyHitters.Hitter("acker", 50, 1000), acks.get(0));
+    }
+
+    @Test
+    void top_dropsDevicesOutsideWindow() {
+        DeviceHeavyHitters hitters = newHitters();
+        hitters.record("pet-1", UplinkType.TELEMETRY, 10, NOW);
+
+        long later = NOW + 70_000;
+        assertTrue(hitters.top(DeviceHeavyHitters.Window.M1, false, null, 10, later).isEmpty());
+        assertEquals(1, hitters.top(DeviceHeavyHitters.Window.M5, false, null, 10, later).size());
+        assertEquals(1, hitters.top(DeviceHeavyHitters.Window.H1, false, null, 10, later).size());
+
+        hitters.record("pet-2", UplinkType.TELEMETRY, 10, later);
+        List<DeviceHeavyHitters.Hitter> top = hitters.top(DeviceHeavyHitters.Window.M1, false, null, 10, later);
+        assertEquals(List.of(new DeviceHeavyHitters.Hitter("pet-2", 1, 10)), top);
+    }
+
+    private static DeviceHeavyHitters newHitters() {
+        return new DeviceHeavyHitters(GatewayConfig.HeavyHitters.fromConfig(new JsonObject().put("enabled", true)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.deskpet.gateway;
+
+import com.deskpet.GatewayApplication;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownlinkBroadcastTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final Context context = vertx.getOrCreateContext();
+    private final SessionIndex sessions = new SessionIndex();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private void online(String deviceId, int owner) {
+        sessions.put(new EndpointSession(deviceId, null, owner, 0, "10.0.0.1", 60_000, null, 0, null, null, null));
+    }
+
+    @Test
+    void finish_groupsTargetsPerVerticleInChunksAndMergesFailures() throws Exception {
+        int verticleA = sessions.registerOwner("verticle-a");
+        int verticleB = sessions.registerOwner("verticle-b");
+        for (int i = 0; i < 2500; i++) {
+            online("pet-" + i, i % 2 == 0 ? verticleA : verticleB);
+        }
+        List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+        for (String address : List.of("verticle-a", "verticle-b")) {
+            vertx.eventBus().<JsonObject>consumer(address + GatewayApplication.BROADCAST_ADDRESS_SUFFIX, message -> {
+                JsonArray deviceIds = message.body().getJsonArray("deviceIds");
+                chunkSizes.add(deviceIds.size());
+                // 每批第一个设备被发送窗口拒绝
+                message.reply(new JsonObject()
+                        .put("sent", deviceIds.size() - 1)
+                        .put("failed", new JsonObject().put("WINDOW_FULL", new JsonArray().add(deviceIds.getString(0)))));
+            });
+        }
+
+        CompletableFuture<JsonObject> result = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            DownlinkBroadcast broadcast = new DownlinkBroadcast(vertx, sessions, null, GatewayMetrics.getInstance(),
+                    "{\"type\":\"setEmotion\"}", 1);
+            for (int i = 0; i < 2500; i++) {
+                broadcast.add("pet-" + i);
+            }
+            broadcast.add("pet-offline");
+            broadcast.finish().onSuccess(result::complete);
+        });
+        JsonObject summary = result.get(5, TimeUnit.SECONDS);
+
+        List<Integer> sorted = new ArrayList<>(chunkSizes);
+        sorted.sort(null);
+        assertEquals(List.of(250, 250, 1000, 1000), sorted);
+        assertEquals(2501, summary.getInteger("total"));
+        assertEquals(2496, summary.getInteger("sent"));
+        assertEquals(4, summary.getJsonObject("failed").getJsonArray("WINDOW_FULL").size());
+        assertEquals(new JsonArray().add("pet-offline"), summary.getJsonObject("failed").getJsonArray("OFFLINE"));
+    }
+
+    @Test
+    void saturated_untilOutstandingChunksReturn() throws Exception {
+        int verticleA = sessions.registerOwner("verticle-a");
+        int targets = DownlinkBroadcast.CHUNK_SIZE * DownlinkBroadcast.MAX_OUTSTANDING_CHUNKS;
+        for (int i = 0; i < targets; i++) {
+            online("pet-" + i, verticleA);
+        }
+        List<Message<JsonObject>> held = new CopyOnWriteArrayList<>();
+        vertx.eventBus().<JsonObject>consumer("verticle-a" + GatewayApplication.BROADCAST_ADDRESS_SUFFIX, held::add);
+
+        CompletableFuture<Boolean> saturated = new CompletableFuture<>();
+        CompletableFuture<Void> drained = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            DownlinkBroadcast broadcast = new DownlinkBroadcast(vertx, sessions, null, GatewayMetrics.getInstance(),
+                    "{}", 1);
+            for (int i = 0; i < targets; i++) {
+                broadcast.add("pet-" + i);
+            }
+            saturated.complete(broadcast.saturated());
+            broadcast.whenDrained(() -> drained.complete(null));
+            vertx.setTimer(50, id -> held.get(0).reply(new JsonObject().put("sent", DownlinkBroadcast.CHUNK_SIZE)));
+        });
+
+        assertTrue(saturated.get(5, TimeUnit.SECONDS));
+        assertFalse(drained.isDone());
+        drained.get(5, TimeUnit.SECONDS);
+    }
+}
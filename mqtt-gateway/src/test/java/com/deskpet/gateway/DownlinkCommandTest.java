@@ -0,0 +1,46 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownlinkCommandTest {
+
+    @Test
+    void rawPayload_isSliceOfRequestBody() throws IOException {
+        Buffer body = Buffer.buffer("{\"deviceId\":\"pet-1\",\"payload\":{\"type\":\"dance\",\"args\":[1,{\"a\":\"}\"}]},"
+                + "\"topic\":\"pet/pet-1/cmd\",\"qos\":1,\"ttlMs\":10000,\"extra\":{\"ignored\":true}}");
+        DownlinkCommand command = DownlinkCommand.parse(body);
+
+        assertEquals("pet-1", command.deviceId());
+        assertEquals("pet/pet-1/cmd", command.topic());
+        assertEquals(1, command.qos());
+        assertEquals(10_000, command.ttlMs());
+        assertEquals("{\"type\":\"dance\",\"args\":[1,{\"a\":\"}\"}]}", command.payload().toString());
+
+        int start = body.toString().indexOf("{\"type\"");
+        body.setByte(start + 2, (byte) 'T');
+        assertEquals('T', command.payload().getByte(2));
+    }
+
+    @Test
+    void stringPayload_isDecodedOnce() throws IOException {
+        DownlinkCommand command = DownlinkCommand.parse(Buffer.buffer(
+                "{\"deviceId\":\"pet-1\",\"topic\":\"pet/pet-1/resp\",\"payload\":\"{\\\"reply\\\":\\\"你好\\\"}\"}"));
+
+        assertEquals(0, command.qos());
+        assertEquals(0, command.ttlMs());
+        assertEquals("{\"reply\":\"你好\"}", command.payload().toString());
+        assertEquals(0, DownlinkCommand.parse(Buffer.buffer("{\"payload\":\"  \"}")).payload().length());
+    }
+
+    @Test
+    void malformedBody_isRejected() {
+        assertThrows(IOException.class, () -> DownlinkCommand.parse(Buffer.buffer("[1,2]")));
+        assertThrows(IOException.class, () -> DownlinkCommand.parse(Buffer.buffer("{\"deviceId\":")));
+    }
+}
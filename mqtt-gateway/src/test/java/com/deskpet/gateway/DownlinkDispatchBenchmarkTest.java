@@ -0,0 +1,124 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.management.ThreadMXBean;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 下行指令 event bus 往返基准：对比改动前的 JsonObject 指令/回复（HTTP 层 Jackson 绑定出 String payload，本地投递 copy，
+ * 接收方再包装成 Buffer）与 {@link DownlinkCommand} + {@link DownlinkReply} 经 {@link LocalMessageCodec} 原样传递，
+ * 输出每条指令的耗时与全部线程合计的分配字节数。
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class DownlinkDispatchBenchmarkTest {
+
+    private static final String BODY = "{\"deviceId\":\"pet-000123\",\"topic\":\"pet/pet-000123/cmd\",\"qos\":1,"
+            + "\"payload\":{\"schemaVersion\":1,\"reqId\":\"7f1c2a9e-1b7d-4c55-9a0e-3c1d5e6f7a8b\","
+            + "\"type\":\"setEmotion\",\"payload\":{\"emotion\":\"happy\"}}}";
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private final Vertx vertx = Vertx.vertx();
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DeliveryOptions options = new DeliveryOptions().setSendTimeout(3000);
+
+    record LegacyRequest(String deviceId, String topic, int qos, String payload) {
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void localCodec_allocatesLessPerCommand() {
+        EventBus eventBus = vertx.eventBus();
+        LocalMessageCodec.registerDownlink(vertx);
+        eventBus.<JsonObject>consumer("bench.json", message -> {
+            Buffer payload = Buffer.buffer(message.body().getString("payload", ""));
+            message.reply(new JsonObject().put("ok", payload.length() > 0).put("reason", "SENT"));
+        });
+        eventBus.<DownlinkCommand>consumer("bench.codec", message ->
+                message.reply(message.body().payload().length() > 0 ? DownlinkReply.SENT : DownlinkReply.OFFLINE));
+        Buffer body = Buffer.buffer(BODY);
+        JsonObject legacyBody = new JsonObject(BODY);
+        legacyBody.put("payload", legacyBody.getJsonObject("payload").encode());
+        Buffer stringBody = legacyBody.toBuffer();
+
+        Result json = measure(() -> {
+            LegacyRequest request = objectMapper.readValue(stringBody.toString(StandardCharsets.UTF_8), LegacyRequest.class);
+            JsonObject command = new JsonObject()
+                    .put("deviceId", request.deviceId())
+                    .put("topic", request.topic())
+                    .put("payload", request.payload())
+                    .put("qos", request.qos());
+            return eventBus.<JsonObject>request("bench.json", command, options)
+                    .map(reply -> reply.body().getBoolean("ok", false))
+                    .toCompletionStage().toCompletableFuture();
+        });
+        Result codec = measure(() -> {
+            DownlinkCommand command = DownlinkRouter.normalize(DownlinkCommand.parse(body));
+            return eventBus.<DownlinkReply>request("bench.codec", command, options)
+                    .map(reply -> reply.body().ok())
+                    .toCompletionStage().toCompletableFuture();
+        });
+
+        System.out.printf("%-12s %12s %14s%n", "path", "ns/cmd", "bytes/cmd");
+        System.out.printf("%-12s %12d %14d%n", "jsonObject", json.nanos(), json.bytes());
+        System.out.printf("%-12s %12d %14d%n", "localCodec", codec.nanos(), codec.bytes());
+
+        assertTrue(codec.bytes() < json.bytes());
+    }
+
+    private Result measure(Task task) {
+        for (int i = 0; i < WARMUP; i++) {
+            assertTrue(run(task));
+        }
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            run(task);
+        }
+        long nanos = (System.nanoTime() - start) / ITERATIONS;
+        return new Result(nanos, (allocatedBytes() - startBytes) / ITERATIONS);
+    }
+
+    private static boolean run(Task task) {
+        try {
+            return task.run().join();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private record Result(long nanos, long bytes) {
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        CompletableFuture<Boolean> run() throws Exception;
+    }
+}
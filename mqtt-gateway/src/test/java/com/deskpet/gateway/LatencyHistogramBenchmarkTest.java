@@ -0,0 +1,66 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 耗时直方图记录开销基准：单线程与多线程（模拟多个 event loop）各记录若干次，输出每次记录的纳秒数。
+ * <p>
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class LatencyHistogramBenchmarkTest {
+
+    private static final int RECORDS = 20_000_000;
+
+    @Test
+    void recordCost_staysInTensOfNanoseconds() throws InterruptedException {
+        System.out.printf("%8s %14s%n", "threads", "ns/record");
+        for (int threads : new int[]{1, 4, 8}) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            run(histogram, threads, RECORDS / 10);
+            double nanos = run(histogram, threads, RECORDS);
+            System.out.printf("%8d %14.1f%n", threads, nanos);
+            assertEquals((long) threads * (RECORDS + RECORDS / 10), histogram.snapshot().count());
+            assertTrue(nanos < 100, "ns/record=" + nanos);
+        }
+    }
+
+    /**
+     * 每个线程记录 count 次，返回单个线程视角的平均每次耗时：总墙钟时间按实际可并行的核数折算，
+     * 线程数超过核数时不把时间片轮转计入单次记录开销。
+     */
+    private static double run(LatencyHistogram histogram, int threads, int count) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    histogram.recordNanos((i & 0xFFFF) * 1000L);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        int parallel = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        return (double) elapsed * parallel / ((long) threads * count);
+    }
+}
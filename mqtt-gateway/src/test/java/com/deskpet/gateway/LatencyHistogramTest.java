@@ -0,0 +1,83 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketIndex_isExactForSmallValuesAndBoundedRelativeErrorAbove() {
+        for (long micros = 0; micros < 16; micros++) {
+            assertEquals(micros, LatencyHistogram.bucketIndex(micros));
+        }
+        for (long micros = 16; micros < 10_000_000; micros = micros * 3 / 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            long upper = LatencyHistogram.bucketUpperMicros(index);
+            long lower = index == 0 ? 0 : LatencyHistogram.bucketUpperMicros(index - 1);
+            assertTrue(micros >= lower && micros < upper, "micros=" + micros);
+            assertTrue(upper - lower <= Math.max(1, micros / 8) + 1, "micros=" + micros);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void snapshot_reportsPercentilesAndMean() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordNanos(i * 1_000_000L);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(50.5, snapshot.meanMs(), 0.001);
+        assertEquals(50, snapshot.percentileMs(50), 50 / 8.0);
+        assertEquals(99, snapshot.percentileMs(99), 99 / 8.0);
+        assertTrue(snapshot.percentileMs(100) >= 100);
+    }
+
+    @Test
+    void snapshot_mergesStripesFromAllRecordingThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordNanos(500_000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.snapshot().count());
+    }
+
+    @Test
+    void appendPrometheus_writesCumulativeBucketsSumAndCount() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(100_000);
+        histogram.recordNanos(3_000_000);
+        histogram.recordNanos(60_000_000_000L);
+
+        StringBuilder sb = new StringBuilder();
+        histogram.appendPrometheus(sb, "test_latency_ms", "test");
+        String text = sb.toString();
+
+        assertTrue(text.contains("# TYPE test_latency_ms histogram\n"));
+        assertTrue(text.contains("test_latency_ms_bucket{le=\"0.128\"} 1\n"));
+        assertTrue(text.contains("test_latency_ms_bucket{le=\"4.096\"} 2\n"));
+        assertTrue(text.contains("test_latency_ms_bucket{le=\"33554.432\"} 2\n"));
+        assertTrue(text.contains("test_latency_ms_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("test_latency_ms_sum 60003.1\n"));
+        assertTrue(text.contains("test_latency_ms_count 3\n"));
+    }
+}
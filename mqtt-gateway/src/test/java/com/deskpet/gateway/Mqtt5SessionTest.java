@@ -0,0 +1,85 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Mqtt5SessionTest {
+
+    private static final GatewayConfig.Mqtt5 CONFIG = new GatewayConfig.Mqtt5(true, 2, 4);
+
+    private static MqttProperties properties(MqttProperties.MqttPropertyType type, int value) {
+        MqttProperties properties = new MqttProperties();
+        properties.add(new MqttProperties.IntegerProperty(type.value(), value));
+        return properties;
+    }
+
+    private static int intProperty(MqttProperties properties, MqttProperties.MqttPropertyType type) {
+        MqttProperties.MqttProperty<?> property = properties.getProperty(type.value());
+        return property == null ? -1 : (Integer) property.value();
+    }
+
+    @Test
+    void negotiate_capsSessionExpiryAndAdvertisesLimits() {
+        MqttProperties connect = properties(MqttProperties.MqttPropertyType.SESSION_EXPIRY_INTERVAL, 0xFFFFFFFF);
+        connect.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM.value(), 5));
+
+        Mqtt5Session session = Mqtt5Session.negotiate(connect, CONFIG, 300);
+        MqttProperties connAck = session.connAckProperties();
+
+        assertEquals(0xFFFFFFFFL, session.requestedSessionExpirySec());
+        assertEquals(300, session.sessionExpirySec());
+        assertEquals(5, session.clientReceiveMaximum());
+        assertEquals(0, session.clientTopicAliasMaximum());
+        assertEquals(2, intProperty(connAck, MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM));
+        assertEquals(4, intProperty(connAck, MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM));
+        assertEquals(300, intProperty(connAck, MqttProperties.MqttPropertyType.SESSION_EXPIRY_INTERVAL));
+
+        Mqtt5Session defaults = Mqtt5Session.negotiate(MqttProperties.NO_PROPERTIES, CONFIG, 300);
+        assertEquals(0, defaults.sessionExpirySec());
+        assertEquals(Mqtt5Session.DEFAULT_RECEIVE_MAXIMUM, defaults.clientReceiveMaximum());
+        assertEquals(-1, intProperty(defaults.connAckProperties(), MqttProperties.MqttPropertyType.SESSION_EXPIRY_INTERVAL));
+    }
+
+    @Test
+    void resolveTopic_registersAliasThenResolvesEmptyTopic() {
+        Mqtt5Session session = Mqtt5Session.negotiate(MqttProperties.NO_PROPERTIES, CONFIG, 0);
+        MqttProperties alias1 = properties(MqttProperties.MqttPropertyType.TOPIC_ALIAS, 1);
+
+        assertEquals("pet/pet-1/telemetry", session.resolveTopic("pet/pet-1/telemetry", MqttProperties.NO_PROPERTIES));
+        assertNull(session.resolveTopic("", alias1));
+        assertEquals("pet/pet-1/telemetry", session.resolveTopic("pet/pet-1/telemetry", alias1));
+        assertEquals("pet/pet-1/telemetry", session.resolveTopic("", alias1));
+        assertEquals("pet/pet-1/event", session.resolveTopic("pet/pet-1/event", alias1));
+        assertEquals("pet/pet-1/event", session.resolveTopic("", alias1));
+
+        assertNull(session.resolveTopic("", MqttProperties.NO_PROPERTIES));
+        assertNull(session.resolveTopic("pet/pet-1/event", properties(MqttProperties.MqttPropertyType.TOPIC_ALIAS, 0)));
+        assertNull(session.resolveTopic("pet/pet-1/event", properties(MqttProperties.MqttPropertyType.TOPIC_ALIAS, 5)));
+        assertEquals(19 - Mqtt5Session.ALIAS_PROPERTY_BYTES, Mqtt5Session.aliasSavings("", "pet/pet-1/telemetry"));
+        assertEquals(-Mqtt5Session.ALIAS_PROPERTY_BYTES, Mqtt5Session.aliasSavings("pet/pet-1/telemetry", "pet/pet-1/telemetry"));
+    }
+
+    @Test
+    void outboundAliasesAndReceiveMaximum_stayWithinNegotiatedLimits() {
+        MqttProperties connect = properties(MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM, 2);
+        Mqtt5Session session = Mqtt5Session.negotiate(connect, CONFIG, 0);
+
+        assertEquals(0, session.outboundAlias("pet/pet-1/cmd"));
+        assertEquals(1, session.assignOutboundAlias("pet/pet-1/cmd"));
+        assertEquals(2, session.assignOutboundAlias("pet/pet-1/resp"));
+        assertEquals(0, session.assignOutboundAlias("pet/pet-1/cmd/cbor"));
+        assertEquals(1, session.outboundAlias("pet/pet-1/cmd"));
+        assertEquals(2, session.outboundAlias("pet/pet-1/resp"));
+
+        assertTrue(session.acquireInbound());
+        assertTrue(session.acquireInbound());
+        session.releaseInbound();
+        assertTrue(session.acquireInbound());
+        assertFalse(session.acquireInbound());
+    }
+}
@@ -0,0 +1,94 @@
+package com.deskpet.gateway;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.mqtt.MqttEndpoint;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+import io.vertx.mqtt.messages.codes.MqttPubAckReasonCode;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttServerVerticleTest {
+
+    private final List<List<Object>> pubAcks = new ArrayList<>();
+
+    /**
+     * 只记录 publishAcknowledge 调用的 MqttEndpoint 替身。
+     */
+    private MqttEndpoint endpoint() {
+        return (MqttEndpoint) Proxy.newProxyInstance(MqttEndpoint.class.getClassLoader(),
+                new Class<?>[]{MqttEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("publishAcknowledge")) {
+                        pubAcks.add(Arrays.asList(args));
+                        return proxy;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static MqttPublishMessage publish(MqttQoS qos) {
+        return MqttPublishMessage.create(7, qos, false, false, "pet/pet-1/telemetry", Unpooled.EMPTY_BUFFER);
+    }
+
+    @Test
+    void rejectPublish_mqtt311AcknowledgesInvalidPayloadAsDropped() {
+        MqttServerVerticle.rejectPublish(endpoint(), null, publish(MqttQoS.AT_LEAST_ONCE),
+                MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID);
+
+        assertEquals(List.of(List.of(7)), pubAcks);
+    }
+
+    @Test
+    void rejectPublish_mqtt311LeavesUnauthorizedAndQos0Unacknowledged() {
+        MqttServerVerticle.rejectPublish(endpoint(), null, publish(MqttQoS.AT_LEAST_ONCE),
+                MqttPubAckReasonCode.NOT_AUTHORIZED);
+        MqttServerVerticle.rejectPublish(endpoint(), null, publish(MqttQoS.AT_MOST_ONCE),
+                MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID);
+
+        assertTrue(pubAcks.isEmpty());
+    }
+
+    @Test
+    void rejectPublish_mqtt5RepliesReasonCodeAndReleasesReceiveQuota() {
+        Mqtt5Session mqtt5 = Mqtt5Session.negotiate(MqttProperties.NO_PROPERTIES,
+                new GatewayConfig.Mqtt5(true, 2, 4), 0);
+        assertTrue(mqtt5.acquireInbound());
+
+        MqttServerVerticle.rejectPublish(endpoint(), mqtt5, publish(MqttQoS.AT_LEAST_ONCE),
+                MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID);
+
+        assertEquals(List.of(List.of(7, MqttPubAckReasonCode.PAYLOAD_FORMAT_INVALID, MqttProperties.NO_PROPERTIES)),
+                pubAcks);
+        assertEquals(0, mqtt5.inboundInFlight());
+    }
+
+    @Test
+    void applyDownlinkFormat_tracksCommandAndResponseSeparately() {
+        EndpointSession session = new EndpointSession("pet-1", null, 0, 0, "10.0.0.1", 60_000, null, 0, null, null,
+                null);
+
+        assertTrue(MqttServerVerticle.applyDownlinkFormat(session, "pet/pet-1/cmd/cbor", true));
+        assertEquals(PayloadFormat.CBOR, session.downlinkFormat("pet/pet-1/cmd"));
+        assertEquals(PayloadFormat.JSON, session.downlinkFormat("pet/pet-1/resp"));
+
+        MqttServerVerticle.applyDownlinkFormat(session, "pet/pet-1/resp/msgpack", true);
+        // 取消未在使用的格式不影响当前编码
+        MqttServerVerticle.applyDownlinkFormat(session, "pet/pet-1/cmd/msgpack", false);
+        assertEquals(PayloadFormat.CBOR, session.downlinkFormat("pet/pet-1/cmd"));
+        assertEquals(PayloadFormat.MSGPACK, session.downlinkFormat("pet/pet-1/resp"));
+
+        MqttServerVerticle.applyDownlinkFormat(session, "pet/pet-1/cmd/cbor", false);
+        assertEquals(PayloadFormat.JSON, session.downlinkFormat("pet/pet-1/cmd"));
+        assertEquals(PayloadFormat.MSGPACK, session.downlinkFormat("pet/pet-1/resp"));
+        assertFalse(MqttServerVerticle.applyDownlinkFormat(session, "pet/pet-1/cmd", true));
+    }
+}
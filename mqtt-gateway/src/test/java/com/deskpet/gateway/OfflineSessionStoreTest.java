@@ -0,0 +1,132 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineSessionStoreTest {
+
+    private static final String TOPIC = "pet/pet-1/cmd";
+
+    private OfflineSessionStore store(int perDevice, int total) {
+        GatewayConfig.Session config = new GatewayConfig.Session(true, 60, perDevice, total, 10);
+        return new OfflineSessionStore(config, GatewayMetrics.getInstance());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reconnect_flushesQueuedMessagesInOrder() {
+        OfflineSessionStore store = store(10, 100);
+        OfflineSessionStore.Attachment first = store.attach("pet-1", false, 0);
+        assertFalse(first.sessionPresent());
+        store.recordSubscriptions("pet-1", List.of(TOPIC));
+        store.detach("pet-1", first.generation(), 1_000);
+
+        assertEquals(OfflineSessionStore.EnqueueResult.QUEUED, store.enqueue("pet-1", TOPIC, bytes("a"), 1_000));
+        assertEquals(OfflineSessionStore.EnqueueResult.QUEUED, store.enqueue("pet-1", TOPIC, bytes("b"), 1_500));
+        OfflineSessionStore.Attachment second = store.attach("pet-1", false, 3_000);
+
+        assertTrue(second.sessionPresent());
+        assertEquals(List.of("a", "b"), second.pending().stream()
+                .map(message -> new String(message.payload(), StandardCharsets.UTF_8)).toList());
+        assertEquals(Set.of(TOPIC), store.subscriptions("pet-1"));
+        assertEquals(0, store.queuedCount());
+        assertEquals(OfflineSessionStore.EnqueueResult.ONLINE, store.enqueue("pet-1", TOPIC, bytes("c"), 3_000));
+    }
+
+    @Test
+    void enqueue_respectsPerDeviceAndTotalLimits() {
+        OfflineSessionStore store = store(2, 3);
+        for (String deviceId : List.of("pet-1", "pet-2")) {
+            OfflineSessionStore.Attachment attachment = store.attach(deviceId, false, 0);
+            store.detach(deviceId, attachment.generation(), 0);
+        }
+
+        store.enqueue("pet-1", TOPIC, bytes("1"), 0);
+        store.enqueue("pet-1", TOPIC, bytes("2"), 0);
+        assertEquals(OfflineSessionStore.EnqueueResult.QUEUE_FULL, store.enqueue("pet-1", TOPIC, bytes("3"), 0));
+        store.enqueue("pet-2", TOPIC, bytes("1"), 0);
+        assertEquals(OfflineSessionStore.EnqueueResult.QUEUE_FULL, store.enqueue("pet-2", TOPIC, bytes("2"), 0));
+        assertEquals(3, store.queuedCount());
+        assertEquals(OfflineSessionStore.EnqueueResult.NO_SESSION, store.enqueue("pet-3", TOPIC, bytes("1"), 0));
+    }
+
+    @Test
+    void expiredMessagesAndSessions_areDropped() {
+        OfflineSessionStore store = store(10, 100);
+        OfflineSessionStore.Attachment attachment = store.attach("pet-1", false, 0);
+        store.detach("pet-1", attachment.generation(), 0);
+        store.enqueue("pet-1", TOPIC, bytes("old"), 0);
+        store.enqueue("pet-1", TOPIC, bytes("new"), 8_000);
+
+        store.sweep(10_000);
+        assertEquals(1, store.queuedCount());
+
+        store.sweep(60_000);
+        assertEquals(0, store.sessionCount());
+        assertEquals(0, store.queuedCount());
+    }
+
+    @Test
+    void callerTtl_capsMessageExpiry() {
+        OfflineSessionStore store = store(10, 100);
+        OfflineSessionStore.Attachment attachment = store.attach("pet-1", false, 0);
+        store.detach("pet-1", attachment.generation(), 0);
+        store.enqueue("pet-1", TOPIC, bytes("default"), 0);
+        store.enqueue("pet-1", TOPIC, bytes("short"), 0, 2_000);
+        store.enqueue("pet-1", TOPIC, bytes("long"), 0, 60_000);
+
+        store.sweep(5_000);
+        assertEquals(2, store.queuedCount());
+
+        OfflineSessionStore.Attachment resumed = store.attach("pet-1", false, 5_000);
+        assertEquals(List.of("default", "long"), resumed.pending().stream()
+                .map(message -> new String(message.payload(), StandardCharsets.UTF_8)).toList());
+        assertEquals(10_000, resumed.pending().get(1).expiresAtMs());
+    }
+
+    @Test
+    void staleDetach_fromReplacedConnectionIsIgnored() {
+        OfflineSessionStore store = store(10, 100);
+        OfflineSessionStore.Attachment old = store.attach("pet-1", false, 0);
+        store.attach("pet-1", false, 100);
+
+        store.detach("pet-1", old.generation(), 200);
+
+        assertEquals(OfflineSessionStore.EnqueueResult.ONLINE, store.enqueue("pet-1", TOPIC, bytes("a"), 300));
+    }
+
+    @Test
+    void cleanSession_discardsStoredState() {
+        OfflineSessionStore store = store(10, 100);
+        OfflineSessionStore.Attachment attachment = store.attach("pet-1", false, 0);
+        store.detach("pet-1", attachment.generation(), 0);
+        store.enqueue("pet-1", TOPIC, bytes("a"), 0);
+
+        OfflineSessionStore.Attachment clean = store.attach("pet-1", true, 100);
+
+        assertFalse(clean.sessionPresent());
+        assertEquals(0, store.queuedCount());
+        assertEquals(0, store.sessionCount());
+    }
+
+    @Test
+    void removeSubscriptions_dropsUnsubscribedTopicsFromResumedSession() {
+        OfflineSessionStore store = store(10, 100);
+        store.attach("pet-1", false, 0);
+        store.recordSubscriptions("pet-1", List.of(TOPIC + "/cbor", "pet/pet-1/resp/cbor"));
+
+        store.removeSubscriptions("pet-1", List.of(TOPIC + "/cbor"));
+
+        assertEquals(Set.of("pet/pet-1/resp/cbor"), store.subscriptions("pet-1"));
+    }
+}
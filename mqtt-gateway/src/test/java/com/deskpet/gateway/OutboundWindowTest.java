@@ -0,0 +1,164 @@
+package com.deskpet.gateway;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundWindowTest {
+
+    private final List<Sent> sent = new ArrayList<>();
+    private final List<String> results = new ArrayList<>();
+
+    private OutboundWindow window(int maxInFlight, int maxQueue) {
+        GatewayConfig.Downlink config = new GatewayConfig.Downlink(true, maxInFlight, maxQueue, 1000, 2, 500);
+        return new OutboundWindow("pet-1",
+                (topic, payload, qos, dup, messageId) -> {
+                    sent.add(new Sent(messageId, dup));
+                    return Future.succeededFuture();
+                },
+                config, GatewayMetrics.getInstance());
+    }
+
+    private void offer(OutboundWindow window, long now) {
+        window.offer("pet/pet-1/cmd", Buffer.buffer("{}"), MqttQoS.AT_LEAST_ONCE, now,
+                (ok, reason) -> results.add(reason));
+    }
+
+    @Test
+    void offer_queuesBeyondWindowAndRejectsWhenQueueFull() {
+        OutboundWindow window = window(2, 1);
+
+        offer(window, 0);
+        offer(window, 0);
+        offer(window, 0);
+        offer(window, 0);
+
+        assertEquals(2, sent.size());
+        assertEquals(List.of("SENT", "SENT", "WINDOW_FULL"), results);
+        assertEquals(1, window.queuedCount());
+
+        window.onPubAck(sent.get(0).messageId(), 10);
+
+        assertEquals(3, sent.size());
+        assertEquals(List.of("SENT", "SENT", "WINDOW_FULL", "SENT"), results);
+        assertEquals(2, window.inFlightCount());
+    }
+
+    @Test
+    void tick_retransmitsWithDupThenGivesUp() {
+        OutboundWindow window = window(4, 4);
+        offer(window, 0);
+        int messageId = sent.get(0).messageId();
+
+        window.tick(999);
+        assertEquals(1, sent.size());
+        window.tick(1000);
+        window.tick(2000);
+        window.tick(3000);
+
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(1).dup());
+        assertEquals(messageId, sent.get(2).messageId());
+        assertEquals(2, window.retransmitCount());
+        assertTrue(window.idle());
+    }
+
+    @Test
+    void tick_withoutRetransmitHoldsInFlightUntilPubAck() {
+        GatewayConfig.Downlink config = new GatewayConfig.Downlink(false, 16, 4, 1000, 2, 5000);
+        OutboundWindow window = new OutboundWindow("pet-1",
+                (topic, payload, qos, dup, messageId) -> {
+                    sent.add(new Sent(messageId, dup));
+                    return Future.succeededFuture();
+                },
+                config, GatewayMetrics.getInstance(), 1, false);
+        offer(window, 0);
+        offer(window, 0);
+
+        window.tick(4000);
+
+        assertEquals(1, sent.size());
+        assertEquals(1, window.inFlightCount());
+        assertEquals(1, window.queuedCount());
+
+        window.onPubAck(sent.get(0).messageId(), 4100);
+
+        assertEquals(2, sent.size());
+        assertFalse(sent.get(1).dup());
+        assertEquals(List.of("SENT", "SENT"), results);
+    }
+
+    @Test
+    void tick_failsQueuedMessagesAfterTimeout() {
+        OutboundWindow window = window(1, 4);
+        offer(window, 0);
+        offer(window, 0);
+
+        window.tick(600);
+
+        assertEquals(List.of("SENT", "QUEUE_TIMEOUT"), results);
+        assertEquals(0, window.queuedCount());
+        assertFalse(window.idle());
+    }
+
+    @Test
+    void close_failsQueuedAndHandsBackUnacknowledged() {
+        OutboundWindow window = window(1, 4);
+        offer(window, 0);
+        offer(window, 0);
+        List<String> unacknowledged = new ArrayList<>();
+
+        window.close((topic, payload, expiresAtMs) -> unacknowledged.add(topic));
+
+        assertEquals(List.of("SENT", "OFFLINE"), results);
+        assertEquals(List.of("pet/pet-1/cmd"), unacknowledged);
+        assertTrue(window.idle());
+    }
+
+    @Test
+    void close_handsBackDeadlineOfferedWithMessage() {
+        OutboundWindow window = window(1, 4);
+        window.offer("pet/pet-1/cmd", Buffer.buffer("{}"), MqttQoS.AT_LEAST_ONCE, 0, 10_000,
+                (ok, reason) -> results.add(reason));
+        List<Long> deadlines = new ArrayList<>();
+
+        window.close((topic, payload, expiresAtMs) -> deadlines.add(expiresAtMs));
+
+        assertEquals(List.of(10_000L), deadlines);
+    }
+
+    @Test
+    void offer_repliesOnlyAfterWriteCompletes() {
+        List<Promise<Void>> writes = new ArrayList<>();
+        GatewayConfig.Downlink config = new GatewayConfig.Downlink(true, 4, 4, 1000, 2, 500);
+        OutboundWindow window = new OutboundWindow("pet-1", (topic, payload, qos, dup, messageId) -> {
+            Promise<Void> write = Promise.promise();
+            writes.add(write);
+            return write.future();
+        }, config, GatewayMetrics.getInstance());
+        offer(window, 0);
+        window.offer("pet/pet-1/cmd", Buffer.buffer("{}"), MqttQoS.AT_MOST_ONCE, 0,
+                (ok, reason) -> results.add(reason));
+
+        assertEquals(2, writes.size());
+        assertTrue(results.isEmpty());
+
+        writes.get(1).complete();
+        writes.get(0).fail("connection reset");
+
+        assertEquals(List.of("SENT", "WRITE_FAILED"), results);
+        assertEquals(1, window.inFlightCount());
+    }
+
+    private record Sent(int messageId, boolean dup) {
+    }
+}
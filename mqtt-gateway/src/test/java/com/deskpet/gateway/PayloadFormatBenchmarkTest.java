@@ -0,0 +1,69 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上行编码基准：对比 JSON 与 CBOR/MessagePack 的线上字节数，以及每条消息的 CPU 开销。
+ * <p>
+ * JSON 路径 = 网关透传 + pet-core 解析 JSON；二进制路径 = 网关转码为 JSON + pet-core 解析 JSON；
+ * 另列出 pet-core 直接解析二进制（透传）的开销作参考。
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class PayloadFormatBenchmarkTest {
+
+    private static final String TELEMETRY = "{\"ts\":1718000000000,\"battery\":87,\"charging\":false,"
+            + "\"temp\":24.5,\"humidity\":41.2,\"mood\":\"happy\",\"energy\":72,\"rssi\":-61,"
+            + "\"pose\":{\"yaw\":12.5,\"pitch\":-3.25,\"roll\":0.5},\"touch\":[0,0,1,0],\"fw\":\"1.4.2\"}";
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    void binaryFormats_areSmallerOnTheWire() throws IOException {
+        Buffer json = Buffer.buffer(TELEMETRY);
+        Buffer cbor = PayloadFormat.CBOR.fromJson(json);
+        Buffer msgpack = PayloadFormat.MSGPACK.fromJson(json);
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        ObjectMapper msgpackMapper = new ObjectMapper(new MessagePackFactory());
+
+        System.out.printf("%-10s %8s %22s %22s%n", "format", "bytes", "gateway+core ns/msg", "core-direct ns/msg");
+        System.out.printf("%-10s %8d %22d %22s%n", "json", json.length(),
+                measure(() -> jsonMapper.readTree(json.getBytes())), "-");
+        System.out.printf("%-10s %8d %22d %22d%n", "cbor", cbor.length(),
+                measure(() -> jsonMapper.readTree(PayloadFormat.CBOR.toJson(cbor).getBytes())),
+                measure(() -> cborMapper.readTree(cbor.getBytes())));
+        System.out.printf("%-10s %8d %22d %22d%n", "msgpack", msgpack.length(),
+                measure(() -> jsonMapper.readTree(PayloadFormat.MSGPACK.toJson(msgpack).getBytes())),
+                measure(() -> msgpackMapper.readTree(msgpack.getBytes())));
+
+        assertTrue(cbor.length() < json.length());
+        assertTrue(msgpack.length() < json.length());
+    }
+
+    private long measure(Task task) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        Object run() throws IOException;
+    }
+}
@@ -0,0 +1,59 @@
+package com.deskpet.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadFormatTest {
+
+    private static final String TELEMETRY = "{\"battery\":87,\"temp\":24.5,\"mood\":\"happy\",\"pose\":[1,2,3],\"charging\":false}";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void detect_distinguishesJsonCborAndMessagePack() throws IOException {
+        Buffer json = Buffer.buffer(TELEMETRY);
+
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect(json));
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect(Buffer.buffer(" \n{}")));
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect(Buffer.buffer()));
+        assertEquals(PayloadFormat.CBOR, PayloadFormat.detect(PayloadFormat.CBOR.fromJson(json)));
+        assertEquals(PayloadFormat.MSGPACK, PayloadFormat.detect(PayloadFormat.MSGPACK.fromJson(json)));
+    }
+
+    @Test
+    void transcode_roundTripsThroughBinaryFormats() throws IOException {
+        JsonNode expected = objectMapper.readTree(TELEMETRY);
+        for (PayloadFormat format : PayloadFormat.values()) {
+            Buffer encoded = format.fromJson(Buffer.buffer(TELEMETRY));
+            Buffer decoded = format.toJson(encoded);
+
+            assertEquals(expected, objectMapper.readTree(decoded.getBytes()), format.name());
+            if (format != PayloadFormat.JSON) {
+                assertTrue(encoded.length() < TELEMETRY.length(), format + " size=" + encoded.length());
+            }
+        }
+    }
+
+    @Test
+    void toJson_rejectsTruncatedPayload() throws IOException {
+        Buffer encoded = PayloadFormat.CBOR.fromJson(Buffer.buffer(TELEMETRY));
+        Buffer truncated = encoded.getBuffer(0, encoded.length() / 2);
+
+        assertThrows(IOException.class, () -> PayloadFormat.CBOR.toJson(truncated));
+    }
+
+    @Test
+    void fromTopicSuffix_parsesLastSegment() {
+        assertEquals(PayloadFormat.CBOR, PayloadFormat.fromTopicSuffix("pet/pet-1/cmd/cbor"));
+        assertEquals(PayloadFormat.MSGPACK, PayloadFormat.fromTopicSuffix("pet/pet-1/resp/msgpack"));
+        assertNull(PayloadFormat.fromTopicSuffix("pet/pet-1/cmd"));
+    }
+}
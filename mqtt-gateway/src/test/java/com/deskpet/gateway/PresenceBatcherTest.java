@@ -0,0 +1,60 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceBatcherTest {
+
+    private PresenceBatcher batcher() {
+        GatewayConfig.Presence config = new GatewayConfig.Presence(true, 5_000, 1_000, 100, 1_000, 3600);
+        return new PresenceBatcher(config, GatewayMetrics.getInstance());
+    }
+
+    @Test
+    void reconnectWithinWindow_cancelsOfflineButKeepsHistory() {
+        PresenceBatcher batcher = batcher();
+        batcher.online("pet-1", "10.0.0.1", 0);
+        PresenceBatcher.Batch first = batcher.drain(0);
+        assertEquals(1, first.changes().size());
+        assertTrue(first.changes().get(0).online());
+
+        batcher.offline("pet-1", "10.0.0.1", 1_000);
+        batcher.online("pet-1", "10.0.0.2", 2_000);
+        batcher.offline("pet-1", "10.0.0.2", 3_000);
+        batcher.online("pet-1", "10.0.0.3", 4_000);
+        PresenceBatcher.Batch second = batcher.drain(10_000);
+
+        assertTrue(second.changes().isEmpty());
+        assertEquals(List.of(false, true, false, true),
+                second.history().stream().map(PresenceBatcher.Transition::online).toList());
+        List<PresenceBatcher.Flap> flaps = batcher.topFlaps(10);
+        assertEquals(1, flaps.size());
+        assertEquals(2, flaps.get(0).count());
+    }
+
+    @Test
+    void offlineIsSentAfterDebounceAndRestoredOnFailure() {
+        PresenceBatcher batcher = batcher();
+        batcher.online("pet-1", "10.0.0.1", 0);
+        batcher.drain(0);
+        batcher.offline("pet-1", "10.0.0.1", 1_000);
+
+        assertTrue(batcher.drain(5_999).changes().isEmpty());
+        PresenceBatcher.Batch due = batcher.drain(6_000);
+        assertEquals(1, due.changes().size());
+        assertFalse(due.changes().get(0).online());
+        assertEquals(0, batcher.pendingCount());
+
+        batcher.restore(due, 6_100);
+        assertEquals(1, batcher.pendingCount());
+        PresenceBatcher.Batch retried = batcher.drain(6_100);
+        assertEquals(1, retried.changes().size());
+        assertEquals(due.history(), retried.history());
+        assertTrue(batcher.drain(7_000).isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionIndexTest {
+
+    private EndpointSession session(String deviceId, int owner, String ip) {
+        return new EndpointSession(deviceId, null, owner, 1_000, ip, 60_000, null, 0, null, null, null);
+    }
+
+    @Test
+    void reconnect_oldConnectionCloseKeepsNewSession() {
+        SessionIndex index = new SessionIndex();
+        int a = index.registerOwner("verticle-a");
+        int b = index.registerOwner("verticle-b");
+        EndpointSession first = session("pet-1", a, "10.0.0.1");
+        EndpointSession sameVerticle = session("pet-1", a, "10.0.0.2");
+        EndpointSession otherVerticle = session("pet-1", b, "10.0.0.3");
+
+        index.put(first);
+        assertSame(first, index.put(sameVerticle));
+        assertFalse(index.remove(first));
+        assertEquals("verticle-a", index.routeOf("pet-1"));
+
+        index.put(otherVerticle);
+        assertFalse(index.remove(sameVerticle));
+        assertEquals("verticle-b", index.routeOf("pet-1"));
+
+        index.unregisterOwner(b);
+        assertNull(index.routeOf("pet-1"));
+        assertTrue(index.remove(otherVerticle));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void ipv4IsPackedAndOtherAddressesKept() {
+        EndpointSession v4 = session("pet-1", 0, "192.168.255.7");
+        assertNull(v4.otherIp());
+        assertEquals("192.168.255.7", v4.clientIp());
+
+        for (String ip : new String[]{"::1", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1..2.3", "unknown"}) {
+            assertEquals(ip, session("pet-1", 0, ip).clientIp());
+            assertEquals(-1, EndpointSession.packIpv4(ip));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 百万会话的堆占用：对比改动前的布局（每个 MqttServerVerticle 一张会话表 + 共享路由 LocalMap，会话记录两个
+ * Instant 语义的字段、AtomicReference/AtomicLong 包装与 IP 字符串）与 {@link SessionIndex} + 紧凑 {@link EndpointSession}。
+ * 两者都计入心跳时间轮节点；连接对象本身用 null 代替。输出实测与 {@link SessionIndex#footprint()} 估算的每会话字节数。
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class SessionTableHeapBenchmarkTest {
+
+    private static final int SESSIONS = 1_000_000;
+    private static final int VERTICLES = 8;
+    private static final int PRODUCTS = 16;
+
+    record LegacySession(String deviceId, Object endpoint, Instant connectedAt, String clientIp, long idleTimeoutMs,
+                         Object outbound, long persistentGeneration, String productKey, Object telemetryGate,
+                         AtomicReference<PayloadFormat> downlinkFormat, AtomicLong lastActivityMs) {
+    }
+
+    @Test
+    void compactTable_usesLessHeapPerSession() {
+        long legacy = measure(this::legacyTable);
+        long[] estimate = new long[1];
+        long compact = measure(() -> {
+            Object[] table = compactTable();
+            estimate[0] = ((SessionIndex) table[0]).footprint().getLong("tableBytesPerSession");
+            return table;
+        });
+
+        System.out.printf("%-10s %14s%n", "layout", "bytes/session");
+        System.out.printf("%-10s %14d%n", "legacy", legacy);
+        System.out.printf("%-10s %14d%n", "compact", compact);
+        System.out.printf("%-10s %14d%n", "estimate", estimate[0]);
+
+        assertTrue(compact < legacy);
+        assertTrue(Math.abs(compact - estimate[0]) < compact / 5, "footprint estimate off by more than 20%");
+    }
+
+    private Object legacyTable() {
+        long now = System.currentTimeMillis();
+        Map<String, String> routing = new ConcurrentHashMap<>();
+        List<Map<String, LegacySession>> perVerticle = new ArrayList<>(VERTICLES);
+        for (int v = 0; v < VERTICLES; v++) {
+            perVerticle.add(new ConcurrentHashMap<>());
+        }
+        TimingWheel<LegacySession> wheel = new TimingWheel<>(1000, 180, now);
+        for (int i = 0; i < SESSIONS; i++) {
+            String deviceId = new String(deviceId(i));
+            LegacySession session = new LegacySession(deviceId, null, Instant.ofEpochMilli(now), new String(ip(i)),
+                    90_000, null, 0, new String(productKey(i)), null,
+                    new AtomicReference<>(PayloadFormat.JSON), new AtomicLong(now));
+            perVerticle.get(i % VERTICLES).put(deviceId, session);
+            routing.put(deviceId, "gateway.command.verticle-" + (i % VERTICLES));
+            wheel.schedule(session, now + 90_000);
+        }
+        return new Object[]{routing, perVerticle, wheel};
+    }
+
+    private Object[] compactTable() {
+        long now = System.currentTimeMillis();
+        SessionIndex index = new SessionIndex();
+        for (int v = 0; v < VERTICLES; v++) {
+            index.registerOwner("gateway.command.verticle-" + v);
+        }
+        TimingWheel<EndpointSession> wheel = new TimingWheel<>(1000, 180, now);
+        for (int i = 0; i < SESSIONS; i++) {
+            EndpointSession session = new EndpointSession(new String(deviceId(i)).intern(), null, i % VERTICLES, now,
+                    new String(ip(i)), 90_000, null, 0, new String(productKey(i)).intern(), null, null);
+            index.put(session);
+            wheel.schedule(session, now + 90_000);
+        }
+        return new Object[]{index, wheel};
+    }
+
+    private long measure(Supplier<Object> build) {
+        long before = usedHeap();
+        Object table = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(table);
+        return (after - before) / SESSIONS;
+    }
+
+    private static String deviceId(int i) {
+        return String.format("pet-%08d", i);
+    }
+
+    private static String ip(int i) {
+        return "10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+    }
+
+    private static String productKey(int i) {
+        return "pk-" + (i % PRODUCTS);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
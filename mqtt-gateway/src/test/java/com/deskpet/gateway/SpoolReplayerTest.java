@@ -0,0 +1,82 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpoolReplayerTest {
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void drain_keepsPerDeviceOrderWhenDeliveryFails() throws Exception {
+        UplinkSpool spool = new UplinkSpool(dir, 64 * 1024, 1024 * 1024);
+        spool.append(UplinkType.TELEMETRY, "pet-1", Buffer.buffer("{\"n\":1}"), 1);
+        spool.append(UplinkType.TELEMETRY, "pet-1", Buffer.buffer("{\"n\":2}"), 2);
+        spool.append(UplinkType.TELEMETRY, "pet-2", Buffer.buffer("{\"n\":3}"), 3);
+        spool.append(UplinkType.TELEMETRY, "pet-1", Buffer.buffer("{\"n\":4}"), 4);
+        GatewayConfig.Spool config = new GatewayConfig.Spool(true, dir.toString(), 64 * 1024, 1024 * 1024,
+                16, 10, 10, Set.of(UplinkType.TELEMETRY));
+        Context context = vertx.getOrCreateContext();
+        // 只在 context 的 event loop 上访问
+        List<String> attempts = new ArrayList<>();
+        List<String> delivered = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        boolean[] failed = {false};
+        SpoolReplayer.Sink sink = (type, deviceId, payload, handler) -> {
+            String item = deviceId + payload;
+            attempts.add(item);
+            boolean fail = !failed[0] && item.equals("pet-1{\"n\":1}");
+            failed[0] |= fail;
+            // 与真实投递一样异步回调
+            vertx.runOnContext(v -> {
+                if (fail) {
+                    handler.handle(UplinkResult.FAILED);
+                    return;
+                }
+                delivered.add(item);
+                handler.handle(UplinkResult.DELIVERED);
+                done.countDown();
+            });
+        };
+
+        context.runOnContext(v -> new SpoolReplayer(vertx, spool, sink, config, GatewayMetrics.getInstance()).start());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        CountDownLatch read = new CountDownLatch(1);
+        List<List<String>> snapshot = new ArrayList<>();
+        context.runOnContext(v -> {
+            snapshot.add(List.copyOf(attempts));
+            snapshot.add(List.copyOf(delivered));
+            read.countDown();
+        });
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        List<String> pet1 = snapshot.get(1).stream().filter(item -> item.startsWith("pet-1")).toList();
+        assertEquals(List.of("pet-1{\"n\":1}", "pet-1{\"n\":2}", "pet-1{\"n\":4}"), pet1);
+        // 失败的第一条重试成功前，同设备的后续记录一条都没有发出
+        assertEquals(List.of("pet-1{\"n\":1}", "pet-2{\"n\":3}", "pet-1{\"n\":1}"), snapshot.get(0).subList(0, 3));
+        assertTrue(snapshot.get(1).contains("pet-2{\"n\":3}"));
+        spool.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TelemetryGateTest {
+
+    @Test
+    void tokenBucket_allowsBurstThenRefillsAtRate() {
+        TelemetryGate gate = new TelemetryGate(new GatewayConfig.Telemetry.Policy(2, 3, 0), 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TelemetryGate.Verdict.FORWARD, gate.offer(0));
+        }
+        assertEquals(TelemetryGate.Verdict.RATE_LIMITED, gate.offer(0));
+        assertEquals(TelemetryGate.Verdict.RATE_LIMITED, gate.offer(400));
+        assertEquals(TelemetryGate.Verdict.FORWARD, gate.offer(500));
+        assertEquals(2, gate.rateLimitedCount());
+    }
+
+    @Test
+    void coalescing_forwardsFirstThenOnlyLatestPerWindow() {
+        TelemetryGate gate = new TelemetryGate(new GatewayConfig.Telemetry.Policy(0, 1, 1000), 0);
+        TelemetryGate.Held first = held(1);
+        TelemetryGate.Held second = held(2);
+
+        assertEquals(TelemetryGate.Verdict.FORWARD, gate.offer(0));
+        assertEquals(TelemetryGate.Verdict.HOLD, gate.offer(100));
+        assertNull(gate.hold(first));
+        assertEquals(900, gate.armFlush(100));
+        assertEquals(TelemetryGate.Verdict.HOLD, gate.offer(200));
+        assertSame(first, gate.hold(second));
+        assertEquals(-1, gate.armFlush(200));
+
+        assertSame(second, gate.flush(1000));
+        assertEquals(1, gate.coalescedCount());
+        // 刚转发过，新窗口内的消息继续暂存
+        assertEquals(TelemetryGate.Verdict.HOLD, gate.offer(1500));
+        assertNull(gate.hold(first));
+        assertEquals(500, gate.armFlush(1500));
+        assertSame(first, gate.drain());
+        assertNull(gate.flush(2000));
+        assertEquals(TelemetryGate.Verdict.FORWARD, gate.offer(3000));
+    }
+
+    @Test
+    void policyFor_appliesProductOverridesOnTopOfDefaults() {
+        GatewayConfig.Telemetry telemetry = GatewayConfig.Telemetry.fromConfig(new JsonObject()
+                .put("enabled", true)
+                .put("ratePerSec", 5)
+                .put("products", new JsonObject()
+                        .put("deskpet-v1", new JsonObject().put("coalesceMs", 1000))
+                        .put("deskpet-lab", new JsonObject().put("ratePerSec", 0))));
+
+        assertEquals(new GatewayConfig.Telemetry.Policy(5, 5, 0), telemetry.policyFor(null));
+        assertEquals(new GatewayConfig.Telemetry.Policy(5, 5, 1000), telemetry.policyFor("deskpet-v1"));
+        assertNull(telemetry.policyFor("deskpet-lab"));
+        assertNull(GatewayConfig.Telemetry.fromConfig(new JsonObject().put("ratePerSec", 5)).policyFor(null));
+    }
+
+    private static TelemetryGate.Held held(int battery) {
+        return new TelemetryGate.Held(Buffer.buffer("{\"battery\":" + battery + "}"), null);
+    }
+}
@@ -0,0 +1,21 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThingModelRegistryTest {
+
+    @Test
+    void claimFetch_allowsOneFetchPerProductUntilBackoffExpires() {
+        ThingModelRegistry registry = new ThingModelRegistry(new GatewayConfig.ThingModel(true, false, 30),
+                GatewayMetrics.getInstance());
+
+        assertTrue(registry.claimFetch("deskpet-v1", 0));
+        assertFalse(registry.claimFetch("deskpet-v1", 1_000));
+        assertTrue(registry.claimFetch("deskpet-v2", 1_000));
+        assertFalse(registry.claimFetch("deskpet-v1", 29_999));
+        assertTrue(registry.claimFetch("deskpet-v1", 30_000));
+    }
+}
@@ -0,0 +1,70 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThingModelValidatorTest {
+
+    private static final ThingModelValidator VALIDATOR = ThingModelValidator.compile(new JsonObject("""
+            {"productKey": "deskpet-v1", "version": 4, "properties": [
+              {"identifier": "battery", "dataType": "int", "specs": {"min": 0, "max": 100, "unit": "%"}},
+              {"identifier": "speed", "dataType": "FLOAT", "specs": {"min": 0, "max": 1.0}},
+              {"identifier": "charging", "dataType": "bool"},
+              {"identifier": "version", "dataType": "string", "specs": {"maxLength": 5}},
+              {"identifier": "emotion", "dataType": "enum", "specs": {"values": [{"value": "happy"}, {"value": "sad"}]}},
+              {"identifier": "mode", "dataType": "enum", "specs": {"0": "空闲", "1": "工作"}},
+              {"identifier": "pose", "dataType": "struct"}
+            ]}
+            """));
+
+    @Test
+    void compile_buildsOneCheckPerPropertyAndKeepsVersion() {
+        assertEquals("deskpet-v1", VALIDATOR.productKey());
+        assertEquals(4, VALIDATOR.version());
+        assertEquals(7, VALIDATOR.propertyCount());
+        assertTrue(ThingModelValidator.empty("deskpet-v2").isEmpty());
+    }
+
+    @Test
+    void validate_checksTypesAndSpecsOfDefinedFieldsOnly() {
+        JsonObject valid = new JsonObject("""
+                {"schemaVersion": 1, "ts": 1730000000, "battery": 87.0, "speed": 0.5, "charging": 1,
+                 "version": "0.1.0", "emotion": "happy", "mode": 1, "pose": {"x": 1}, "unknown": [1, 2],
+                 "rssi": null, "extra": {"battery": 100}}
+                """);
+        assertEquals(0, VALIDATOR.validate(valid, false));
+
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("battery", 101), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("battery", 87.5), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("battery", "87"), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("speed", 1.5), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("charging", 2), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("version", "10.0.0"), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("emotion", "angry"), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("mode", 2), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("pose", 3), false));
+        assertEquals(1, VALIDATOR.validate(new JsonObject().put("extra", new JsonObject().put("battery", -1)), false));
+    }
+
+    @Test
+    void validate_stripRemovesOnlyInvalidFields() {
+        JsonObject telemetry = new JsonObject()
+                .put("ts", 1730000000)
+                .put("battery", 150)
+                .put("speed", 0.2)
+                .put("extra", new JsonObject().put("emotion", "angry").put("temperature", 26.5));
+
+        assertEquals(2, VALIDATOR.validate(telemetry, true));
+
+        assertFalse(telemetry.containsKey("battery"));
+        assertEquals(0.2, telemetry.getDouble("speed"));
+        assertEquals(1730000000, telemetry.getInteger("ts"));
+        assertFalse(telemetry.getJsonObject("extra").containsKey("emotion"));
+        assertEquals(26.5, telemetry.getJsonObject("extra").getDouble("temperature"));
+        assertEquals(0, VALIDATOR.validate(telemetry, false));
+    }
+}
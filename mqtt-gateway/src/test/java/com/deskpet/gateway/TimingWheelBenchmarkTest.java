@@ -0,0 +1,130 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 心跳时间轮 tick 开销基准，参数与随附配置一致：tick 1 秒、keepalive 60 秒、空闲超时 90 秒（keepalive 的 1.5 倍）。
+ * 每个会话挂在 lastActivity + 超时 上，设备按 keepalive 周期 PINGREQ 只更新活动时间、不动时间轮，到期检查时
+ * 仍活跃的会话按新的活动时间重新挂入；另有 1% 的设备在运行中途静默，到期后超时断开。
+ * <p>
+ * 每个 tick 检查的会话数约为 会话数 / 续期间隔，随会话数线性增长，但比逐个扫描全部会话的旧实现少一到两个数量级。
+ * 测量覆盖两圈完整的时间轮。
+ * <p>
+ * 运行：{@code mvn test -pl mqtt-gateway -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class TimingWheelBenchmarkTest {
+
+    private static final long TICK_MS = 1000;
+    private static final int KEEPALIVE_TICKS = 60;
+    private static final int IDLE_TIMEOUT_TICKS = 90;
+    private static final int WHEEL_TICKS = 120 + 1;
+    private static final int SILENT_EVERY = 100;
+    private static final int WARMUP_TICKS = 2 * IDLE_TIMEOUT_TICKS;
+    private static final int SCAN_TICKS = 10;
+
+    @Test
+    void tickCost_examinesOnlyDueSessionsUnderHeartbeatMix() {
+        System.out.printf("%10s %16s %16s %12s %16s%n",
+                "sessions", "wheel ns/tick", "examined/tick", "timeouts", "scan ns/tick");
+        for (int sessions : new int[]{10_000, 100_000, 1_000_000}) {
+            Result wheel = measureWheel(sessions);
+            long scanNanos = measureFullScan(sessions);
+            System.out.printf("%10d %16d %16d %12d %16d%n",
+                    sessions, wheel.nanosPerTick, wheel.examinedPerTick, wheel.timeouts, scanNanos);
+            // 每次检查后至少续期 超时 - keepalive 个 tick，平均每 tick 检查数不会超过 会话数 / 该间隔
+            assertTrue(wheel.examinedPerTick <= sessions / (IDLE_TIMEOUT_TICKS - KEEPALIVE_TICKS),
+                    "examined/tick=" + wheel.examinedPerTick);
+            assertTrue(wheel.timeouts > 0);
+        }
+    }
+
+    private Result measureWheel(int sessions) {
+        TimingWheel<Session> wheel = new TimingWheel<>(TICK_MS, WHEEL_TICKS, 0);
+        int measuredTicks = 2 * wheel.wheelSize();
+        int totalTicks = WARMUP_TICKS + measuredTicks;
+        List<List<Session>> pingBuckets = new ArrayList<>(KEEPALIVE_TICKS);
+        for (int i = 0; i < KEEPALIVE_TICKS; i++) {
+            pingBuckets.add(new ArrayList<>(sessions / KEEPALIVE_TICKS + 1));
+        }
+        for (int i = 0; i < sessions; i++) {
+            // 静默时间在整个运行期间均匀分布，测量阶段持续有会话超时
+            long silentFromTick = i % SILENT_EVERY == 0 ? (long) (i / SILENT_EVERY) * 7919 % totalTicks : Long.MAX_VALUE;
+            Session session = new Session(silentFromTick);
+            pingBuckets.get(i % KEEPALIVE_TICKS).add(session);
+            wheel.schedule(session, session.expiresAtMs());
+        }
+        long[] timeouts = {0};
+        TimingWheel.ExpiryHandler<Session> handler = (session, now) -> {
+            long expiresAt = session.expiresAtMs();
+            if (expiresAt > now) {
+                return expiresAt;
+            }
+            timeouts[0]++;
+            return 0;
+        };
+        long examined = 0;
+        long elapsed = 0;
+        for (int tick = 1; tick <= totalTicks; tick++) {
+            long now = tick * TICK_MS;
+            for (Session session : pingBuckets.get(tick % KEEPALIVE_TICKS)) {
+                if (tick < session.silentFromTick) {
+                    session.lastActivityMs = now;
+                }
+            }
+            if (tick == WARMUP_TICKS + 1) {
+                examined = 0;
+                elapsed = 0;
+                timeouts[0] = 0;
+            }
+            long start = System.nanoTime();
+            examined += wheel.advance(now, handler);
+            elapsed += System.nanoTime() - start;
+        }
+        return new Result(elapsed / measuredTicks, (int) (examined / measuredTicks), timeouts[0]);
+    }
+
+    private long measureFullScan(int sessions) {
+        List<Session> all = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            all.add(new Session(Long.MAX_VALUE));
+        }
+        long examined = 0;
+        long start = System.nanoTime();
+        for (int tick = 1; tick <= SCAN_TICKS; tick++) {
+            long now = tick * TICK_MS;
+            for (Session session : all) {
+                examined++;
+                if (session.expiresAtMs() <= now) {
+                    session.lastActivityMs = now;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals((long) sessions * SCAN_TICKS, examined);
+        return elapsed / SCAN_TICKS;
+    }
+
+    private static final class Session {
+        private final long silentFromTick;
+        private long lastActivityMs;
+
+        private Session(long silentFromTick) {
+            this.silentFromTick = silentFromTick;
+        }
+
+        private long expiresAtMs() {
+            return lastActivityMs + IDLE_TIMEOUT_TICKS * TICK_MS;
+        }
+    }
+
+    private record Result(long nanosPerTick, int examinedPerTick, long timeouts) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.deskpet.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void advance_firesOnlyDueEntries() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 120, 0);
+        wheel.schedule("a", 5_000);
+        wheel.schedule("b", 10_000);
+        List<String> fired = new ArrayList<>();
+
+        int examined = wheel.advance(5_000, (item, now) -> {
+            fired.add(item);
+            return 0;
+        });
+
+        assertEquals(List.of("a"), fired);
+        assertEquals(1, examined);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void advance_rearmsEntriesWithLaterDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 120, 0);
+        Map<String, Long> lastActivity = new HashMap<>();
+        lastActivity.put("pet-1", 0L);
+        wheel.schedule("pet-1", 30_000);
+        List<Long> expiredAt = new ArrayList<>();
+        TimingWheel.ExpiryHandler<String> handler = (item, now) -> {
+            long deadline = lastActivity.get(item) + 30_000;
+            if (deadline > now) {
+                return deadline;
+            }
+            expiredAt.add(now);
+            return 0;
+        };
+
+        lastActivity.put("pet-1", 20_000L);
+        for (long now = 1_000; now <= 60_000; now += 1_000) {
+            wheel.advance(now, handler);
+        }
+
+        assertEquals(List.of(50_000L), expiredAt);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_clampsDeadlinesBeyondWheelSpan() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10, 0);
+        wheel.schedule("far", 100_000);
+        List<Long> seen = new ArrayList<>();
+
+        for (long now = 1_000; now <= 100_000; now += 1_000) {
+            wheel.advance(now, (item, t) -> {
+                seen.add(t);
+                return t < 100_000 ? 100_000 : 0;
+            });
+        }
+
+        assertTrue(seen.size() > 1 && seen.size() < 20, "seen=" + seen);
+        assertEquals(100_000L, seen.get(seen.size() - 1));
+    }
+}
@@ -15,6 +15,15 @@ class TopicAclTest {
         assertFalse(TopicAcl.isValidSubscribe("pet-1", "pet/pet-1/telemetry"));
     }
 
+    @Test
+    void subscribeAcl_allowsFormatSuffixOnDownlinkTopics() {
+        assertTrue(TopicAcl.isValidSubscribe("pet-1", "pet/pet-1/cmd/cbor"));
+        assertTrue(TopicAcl.isValidSubscribe("pet-1", "pet/pet-1/resp/msgpack"));
+        assertFalse(TopicAcl.isValidSubscribe("pet-1", "pet/pet-1/telemetry/cbor"));
+        assertFalse(TopicAcl.isValidSubscribe("pet-1", "pet/pet-2/cmd/cbor"));
+        assertFalse(TopicAcl.isValidSubscribe("pet-1", "pet/pet-1/cmd/xml"));
+    }
+
     @Test
     void publishAcl_allowsTelemetryAckEventAndReqOnly() {
         assertTrue(TopicAcl.isValidPublish("pet-1", "pet/pet-1/telemetry"));
@@ -0,0 +1,397 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UplinkDispatcherTest {
+
+    private static final int DEVICES = 20;
+    private static final int MESSAGES = 40;
+
+    @Test
+    void dispatch_keepsPerDeviceOrderUnderRandomCallbackLatency() throws Exception {
+        assertOrdered(false);
+    }
+
+    @Test
+    void dispatch_keepsPerDeviceOrderWhenBatchFallsBackToSingle() throws Exception {
+        assertOrdered(true);
+    }
+
+    /**
+     * 替身 pet-core 对每个请求随机延迟 0~15ms 后才"处理"（记录序号），批量按数组顺序处理；
+     * 遥测与 ack 走批量、request 逐条回调，同一设备的消息按序号递增到达才算保序。
+     */
+    private static void assertOrdered(boolean rejectBatches) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body -> {
+            if (rejectBatches && request.path().equals(UplinkDispatcher.BATCH_PATH)) {
+                request.response().setStatusCode(400).end();
+                return;
+            }
+            vertx.setTimer(1 + ThreadLocalRandom.current().nextInt(15), id -> {
+                if (request.path().equals(UplinkDispatcher.BATCH_PATH)) {
+                    JsonArray items = body.toJsonArray();
+                    for (int i = 0; i < items.size(); i++) {
+                        JsonObject item = items.getJsonObject(i);
+                        record(processed, item.getString("deviceId"), item.getJsonObject("payload"));
+                    }
+                    respond(request, new JsonObject().put("accepted", items.size()).put("failed", new JsonArray()));
+                } else {
+                    String path = request.path();
+                    record(processed, path.substring(path.lastIndexOf('/') + 1), body.toJsonObject());
+                    respond(request, new JsonObject());
+                }
+            });
+        }));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 8).put("lingerMs", 1))
+                    .put("uplinkOrder", new JsonObject().put("enabled", true).put("maxInFlightPerDevice", 4)));
+            Context context = vertx.getOrCreateContext();
+            CountDownLatch done = new CountDownLatch(DEVICES * MESSAGES);
+            List<UplinkResult> results = new ArrayList<>();
+            context.runOnContext(v -> {
+                UplinkDispatcher dispatcher = new UplinkDispatcher(vertx,
+                        new CoreClient(vertx, WebClient.create(vertx), config), null, config.batch(),
+                        config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance());
+                for (int seq = 0; seq < MESSAGES; seq++) {
+                    for (int device = 0; device < DEVICES; device++) {
+                        UplinkType type = (seq + device) % 5 == 0 ? UplinkType.REQUEST
+                                : seq % 3 == 0 ? UplinkType.ACK : UplinkType.TELEMETRY;
+                        dispatcher.dispatch(type, "pet-" + device, new JsonObject().put("seq", seq).toBuffer(), result -> {
+                            results.add(result);
+                            done.countDown();
+                        });
+                    }
+                }
+            });
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertTrue(results.stream().allMatch(result -> result == UplinkResult.DELIVERED));
+            List<Integer> expected = new ArrayList<>();
+            for (int seq = 0; seq < MESSAGES; seq++) {
+                expected.add(seq);
+            }
+            assertEquals(DEVICES, processed.size());
+            processed.forEach((deviceId, seqs) -> assertEquals(expected, seqs, deviceId));
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 只能发布自身遥测的设备在 payload 里闭合当前条目并拼出另一台设备的 ack：这类 payload 不能进入批次，
+     * pet-core 收到的批次里只有合法条目。
+     */
+    @Test
+    void dispatch_rejectsPayloadThatWouldInjectBatchItems() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        List<JsonObject> items = new CopyOnWriteArrayList<>();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body -> {
+            JsonArray batch = body.toJsonArray();
+            for (int i = 0; i < batch.size(); i++) {
+                items.add(batch.getJsonObject(i));
+            }
+            respond(request, new JsonObject().put("accepted", batch.size()).put("failed", new JsonArray()));
+        }));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 8).put("lingerMs", 1)));
+            List<String> payloads = List.of(
+                    "{\"t\":1}},{\"type\":\"ack\",\"deviceId\":\"victim\",\"payload\":{\"reqId\":\"x\"}",
+                    "{\"t\":1} {\"t\":2}",
+                    "{\"t\":1",
+                    "{\"seq\":0}");
+            CountDownLatch done = new CountDownLatch(payloads.size());
+            List<UplinkResult> results = new CopyOnWriteArrayList<>();
+            vertx.getOrCreateContext().runOnContext(v -> {
+                UplinkDispatcher dispatcher = new UplinkDispatcher(vertx,
+                        new CoreClient(vertx, WebClient.create(vertx), config), null, config.batch(),
+                        config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance());
+                for (String payload : payloads) {
+                    dispatcher.dispatch(UplinkType.TELEMETRY, "attacker", Buffer.buffer(payload), result -> {
+                        results.add(result);
+                        done.countDown();
+                    });
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of(UplinkResult.REJECTED, UplinkResult.REJECTED, UplinkResult.REJECTED,
+                    UplinkResult.DELIVERED), results);
+            assertEquals(1, items.size());
+            assertEquals("attacker", items.get(0).getString("deviceId"));
+            assertEquals(new JsonObject().put("seq", 0), items.get(0).getJsonObject("payload"));
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void isSingleJsonValue_acceptsOneValueOnly() {
+        assertTrue(UplinkDispatcher.isSingleJsonValue(Buffer.buffer(" {\"a\":[1,{\"b\":\"}\"}]} ")));
+        assertTrue(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("\"text\"")));
+        assertTrue(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("42")));
+        assertFalse(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("{}]")));
+        assertFalse(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("{},{}")));
+        assertFalse(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("1 2")));
+        assertFalse(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("not json")));
+        assertFalse(UplinkDispatcher.isSingleJsonValue(Buffer.buffer("  ")));
+    }
+
+    /**
+     * 替身 pet-core 每个请求固定延迟 50ms，遥测通道只允许 1 个在途批次：先积压 100 台设备各 5 条遥测，再投递一条 ack。
+     * ack 应在遥测积压清空前送达；每台设备未发出的遥测只保留最新一条，其余以 SHED 结束，最后送达的是最新一条。
+     */
+    @Test
+    void dispatch_prioritizesAckOverTelemetryBacklogAndKeepsLatestTelemetry() throws Exception {
+        int devices = 100;
+        int perDevice = 5;
+        Vertx vertx = Vertx.vertx();
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body ->
+                vertx.setTimer(50, id -> {
+                    if (request.path().equals(UplinkDispatcher.BATCH_PATH)) {
+                        JsonArray items = body.toJsonArray();
+                        for (int i = 0; i < items.size(); i++) {
+                            JsonObject item = items.getJsonObject(i);
+                            record(processed, item.getString("type") + ":" + item.getString("deviceId"), item.getJsonObject("payload"));
+                        }
+                        respond(request, new JsonObject().put("accepted", items.size()).put("failed", new JsonArray()));
+                    } else {
+                        respond(request, new JsonObject());
+                    }
+                })));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 4).put("lingerMs", 1))
+                    .put("uplinkPriority", new JsonObject().put("enabled", true)
+                            .put("low", new JsonObject().put("maxInFlight", 1))));
+            CountDownLatch done = new CountDownLatch(devices * perDevice + 1);
+            List<UplinkResult> telemetryResults = new ArrayList<>();
+            int[] telemetryDeliveredBeforeAck = {-1};
+            vertx.getOrCreateContext().runOnContext(v -> {
+                UplinkDispatcher dispatcher = new UplinkDispatcher(vertx,
+                        new CoreClient(vertx, WebClient.create(vertx), config), null, config.batch(),
+                        config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance());
+                for (int seq = 0; seq < perDevice; seq++) {
+                    for (int device = 0; device < devices; device++) {
+                        dispatcher.dispatch(UplinkType.TELEMETRY, "pet-" + device, new JsonObject().put("seq", seq).toBuffer(),
+                                result -> {
+                                    telemetryResults.add(result);
+                                    done.countDown();
+                                });
+                    }
+                }
+                dispatcher.dispatch(UplinkType.ACK, "pet-0", new JsonObject().put("seq", 0).toBuffer(), result -> {
+                    telemetryDeliveredBeforeAck[0] = (int) telemetryResults.stream()
+                            .filter(r -> r == UplinkResult.DELIVERED).count();
+                    done.countDown();
+                });
+            });
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertTrue(telemetryDeliveredBeforeAck[0] >= 0 && telemetryDeliveredBeforeAck[0] < devices / 2,
+                    "telemetry delivered before ack: " + telemetryDeliveredBeforeAck[0]);
+            // 攒满的第一批在积压形成前已发出，其余设备只送达最新一条
+            long delivered = telemetryResults.stream().filter(r -> r == UplinkResult.DELIVERED).count();
+            assertTrue(delivered >= devices && delivered <= devices + 4, "delivered: " + delivered);
+            assertEquals(devices * perDevice - delivered, telemetryResults.stream().filter(r -> r == UplinkResult.SHED).count());
+            for (int device = 0; device < devices; device++) {
+                List<Integer> seqs = processed.get("telemetry:pet-" + device);
+                assertEquals(perDevice - 1, seqs.get(seqs.size() - 1));
+            }
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 遥测通道只允许 1 个在途批次且批量接口总是返回 400：被拒批次逐条回退期间仍占着通道额度，
+     * 下一批要等回退全部完成才发出，同时在途的逐条回调不超过一批的条数。
+     */
+    @Test
+    void dispatch_keepsLaneSlotUntilBatchFallbackCompletes() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        AtomicInteger singlesInFlight = new AtomicInteger();
+        AtomicInteger maxSinglesInFlight = new AtomicInteger();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> request.body().onSuccess(body -> {
+            if (request.path().equals(UplinkDispatcher.BATCH_PATH)) {
+                request.response().setStatusCode(400).end();
+                return;
+            }
+            maxSinglesInFlight.accumulateAndGet(singlesInFlight.incrementAndGet(), Math::max);
+            vertx.setTimer(30, id -> {
+                singlesInFlight.decrementAndGet();
+                respond(request, new JsonObject());
+            });
+        }));
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 4).put("lingerMs", 1))
+                    .put("uplinkPriority", new JsonObject().put("enabled", true)
+                            .put("low", new JsonObject().put("maxInFlight", 1))));
+            CountDownLatch done = new CountDownLatch(16);
+            List<UplinkResult> results = new ArrayList<>();
+            vertx.getOrCreateContext().runOnContext(v -> {
+                UplinkDispatcher dispatcher = new UplinkDispatcher(vertx,
+                        new CoreClient(vertx, WebClient.create(vertx), config), null, config.batch(),
+                        config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance());
+                for (int device = 0; device < 16; device++) {
+                    dispatcher.dispatch(UplinkType.TELEMETRY, "pet-" + device, new JsonObject().put("seq", 0).toBuffer(),
+                            result -> {
+                                results.add(result);
+                                done.countDown();
+                            });
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertTrue(results.stream().allMatch(result -> result == UplinkResult.DELIVERED));
+            assertTrue(maxSinglesInFlight.get() <= 4, "singles in flight: " + maxSinglesInFlight.get());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 长连接上的批次已写出但 pet-core 一直不应答：超时后整批以 FAILED 结束，不能再经 HTTP 重发，以免重复入库。
+     */
+    @Test
+    void dispatch_doesNotResendOverHttpWhenWrittenRpcBatchTimesOut() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        AtomicInteger httpPosts = new AtomicInteger();
+        AtomicInteger rpcBatches = new AtomicInteger();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+            httpPosts.incrementAndGet();
+            respond(request, new JsonObject().put("failed", new JsonArray()));
+        });
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        CoreRpcStub stub = CoreRpcStub.start(vertx, (socket, frame) -> rpcBatches.incrementAndGet());
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 4).put("lingerMs", 1))
+                    .put("rpc", new JsonObject().put("enabled", true).put("host", "127.0.0.1").put("port", stub.port())
+                            .put("timeoutMs", 200)));
+            Context context = vertx.getOrCreateContext();
+            CoreChannel channel = startChannel(vertx, context, config);
+            CompletableFuture<UplinkResult> result = new CompletableFuture<>();
+            context.runOnContext(v -> new UplinkDispatcher(vertx, new CoreClient(vertx, WebClient.create(vertx), config),
+                    channel, config.batch(), config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance())
+                    .dispatch(UplinkType.EVENT, "pet-1", new JsonObject().put("seq", 0).toBuffer(), result::complete));
+
+            assertEquals(UplinkResult.FAILED, result.get(5, TimeUnit.SECONDS));
+            assertEquals(1, rpcBatches.get());
+            assertEquals(0, httpPosts.get());
+        } finally {
+            stub.close();
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 开启 coreGuard 且熔断阈值为 1：长连接上的批次超时后 uplink_batch 熔断，下一批在准入处直接失败，不再写到长连接上。
+     */
+    @Test
+    void dispatch_countsRpcBatchTimeoutsInCoreGuard() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        AtomicInteger httpPosts = new AtomicInteger();
+        AtomicInteger rpcBatches = new AtomicInteger();
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+            httpPosts.incrementAndGet();
+            respond(request, new JsonObject().put("failed", new JsonArray()));
+        });
+        int port = server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        CoreRpcStub stub = CoreRpcStub.start(vertx, (socket, frame) -> rpcBatches.incrementAndGet());
+        try {
+            GatewayConfig config = GatewayConfig.fromConfig(new JsonObject()
+                    .put("core", new JsonObject().put("internalBaseUrl", "http://127.0.0.1:" + port))
+                    .put("batch", new JsonObject().put("enabled", true).put("maxMessages", 4).put("lingerMs", 1))
+                    .put("rpc", new JsonObject().put("enabled", true).put("host", "127.0.0.1").put("port", stub.port())
+                            .put("timeoutMs", 200))
+                    .put("coreGuard", new JsonObject().put("enabled", true).put("breakerFailureThreshold", 1)
+                            .put("breakerOpenMs", 60_000)));
+            Context context = vertx.getOrCreateContext();
+            CoreChannel channel = startChannel(vertx, context, config);
+            CompletableFuture<UplinkResult> first = new CompletableFuture<>();
+            CompletableFuture<UplinkResult> second = new CompletableFuture<>();
+            context.runOnContext(v -> {
+                UplinkDispatcher dispatcher = new UplinkDispatcher(vertx,
+                        new CoreClient(vertx, WebClient.create(vertx), config), channel, config.batch(),
+                        config.uplinkOrder(), config.uplinkPriority(), GatewayMetrics.getInstance());
+                dispatcher.dispatch(UplinkType.EVENT, "pet-1", new JsonObject().put("seq", 0).toBuffer(), result -> {
+                    first.complete(result);
+                    dispatcher.dispatch(UplinkType.EVENT, "pet-1", new JsonObject().put("seq", 1).toBuffer(),
+                            second::complete);
+                });
+            });
+
+            assertEquals(UplinkResult.FAILED, first.get(5, TimeUnit.SECONDS));
+            assertEquals(UplinkResult.FAILED, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, rpcBatches.get());
+            assertEquals(0, httpPosts.get());
+        } finally {
+            stub.close();
+            vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static CoreChannel startChannel(Vertx vertx, Context context, GatewayConfig config) throws Exception {
+        CompletableFuture<CoreChannel> ready = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            CoreChannel channel = new CoreChannel(vertx, config.rpc(), "token", "gateway-test",
+                    (op, body) -> Future.succeededFuture(new CoreChannel.Reply(404, null)), GatewayMetrics.getInstance());
+            channel.start();
+            vertx.setPeriodic(10, id -> {
+                if (channel.ready()) {
+                    vertx.cancelTimer(id);
+                    ready.complete(channel);
+                }
+            });
+        });
+        return ready.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void record(Map<String, List<Integer>> processed, String deviceId, JsonObject payload) {
+        List<Integer> seqs = processed.computeIfAbsent(deviceId, key -> new ArrayList<>());
+        synchronized (seqs) {
+            seqs.add(payload.getInteger("seq"));
+        }
+    }
+
+    private static void respond(HttpServerRequest request, JsonObject body) {
+        request.response().putHeader("Content-Type", "application/json").end(body.toBuffer());
+    }
+}
@@ -0,0 +1,123 @@
+package com.deskpet.gateway;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UplinkSpoolTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void next_returnsRecordsInAppendOrder() throws IOException {
+        UplinkSpool spool = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        spool.append(UplinkType.TELEMETRY, "pet-1", Buffer.buffer("{\"t\":1}"), 100L);
+        spool.append(UplinkType.EVENT, "pet-2", Buffer.buffer("{\"e\":2}"), 200L);
+
+        UplinkSpool.SpoolRecord first = spool.next();
+        UplinkSpool.SpoolRecord second = spool.next();
+
+        assertEquals(0, first.seq());
+        assertEquals(UplinkType.TELEMETRY, first.type());
+        assertEquals("pet-1", first.deviceId());
+        assertEquals("{\"t\":1}", first.payload().toString());
+        assertEquals(100L, first.timestampMs());
+        assertEquals(UplinkType.EVENT, second.type());
+        assertEquals("{\"e\":2}", second.payload().toString());
+        assertNull(spool.next());
+        spool.close();
+    }
+
+    @Test
+    void recovery_replaysOnlyUnacknowledgedRecords() throws IOException {
+        UplinkSpool spool = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            spool.append(UplinkType.TELEMETRY, "pet-" + i, Buffer.buffer("{\"i\":" + i + "}"), i);
+        }
+        for (int i = 0; i < 4; i++) {
+            spool.next();
+        }
+        spool.commit(4);
+        spool.close();
+
+        UplinkSpool reopened = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        for (int i = 4; i < 10; i++) {
+            UplinkSpool.SpoolRecord record = reopened.next();
+            assertEquals(i, record.seq());
+            assertEquals("pet-" + i, record.deviceId());
+        }
+        assertNull(reopened.next());
+        assertEquals(10, reopened.append(UplinkType.EVENT, "pet-x", Buffer.buffer("{}"), 0));
+        reopened.close();
+    }
+
+    @Test
+    void recovery_discardsTornTail() throws IOException {
+        UplinkSpool spool = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        spool.append(UplinkType.TELEMETRY, "pet-1", Buffer.buffer("{\"ok\":true}"), 1L);
+        spool.append(UplinkType.TELEMETRY, "pet-2", Buffer.buffer("{\"ok\":false}"), 2L);
+        spool.close();
+        Path segment = segments().findFirst().orElseThrow();
+        // 模拟第二条记录写到一半进程崩溃：破坏其 payload，使校验和不匹配
+        int secondRecordPayloadOffset = 8 + 11 + 5 + 11 + 8 + 11 + 5 + 2;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), secondRecordPayloadOffset);
+        }
+
+        UplinkSpool reopened = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        assertEquals("pet-1", reopened.next().deviceId());
+        assertNull(reopened.next());
+        assertEquals(1, reopened.append(UplinkType.TELEMETRY, "pet-3", Buffer.buffer("{}"), 3L));
+        assertEquals("pet-3", reopened.next().deviceId());
+        reopened.close();
+    }
+
+    @Test
+    void commit_deletesFullyAcknowledgedSegments() throws IOException {
+        UplinkSpool spool = new UplinkSpool(dir, SEGMENT_BYTES, 16 * 1024 * 1024);
+        Buffer payload = Buffer.buffer(new byte[1000]);
+        for (int i = 0; i < 300; i++) {
+            spool.append(UplinkType.TELEMETRY, "pet-1", payload, i);
+        }
+        assertTrue(spool.segmentCount() > 2, "segments=" + spool.segmentCount());
+        while (spool.next() != null) {
+            // 读完全部记录
+        }
+        spool.commit(300);
+
+        assertEquals(1, spool.segmentCount());
+        assertEquals(1, segments().count());
+        spool.close();
+    }
+
+    @Test
+    void append_rejectsWhenFull() throws IOException {
+        UplinkSpool spool = new UplinkSpool(dir, SEGMENT_BYTES, 1024 * 1024);
+        Buffer payload = Buffer.buffer(new byte[60 * 1024]);
+        long last = 0;
+        for (int i = 0; i < 40 && last >= 0; i++) {
+            last = spool.append(UplinkType.TELEMETRY, "pet-1", payload, i);
+        }
+        assertEquals(-1, last);
+        spool.close();
+    }
+
+    private Stream<Path> segments() throws IOException {
+        return Files.list(dir).filter(path -> path.getFileName().toString().endsWith(".seg"));
+    }
+}
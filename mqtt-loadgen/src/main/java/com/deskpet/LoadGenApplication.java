@@ -0,0 +1,31 @@
+package com.deskpet;
+
+import com.deskpet.loadgen.LoadGenConfig;
+import com.deskpet.loadgen.LoadRun;
+import io.vertx.core.Vertx;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * MQTT 压测入口：java -jar mqtt-loadgen.jar --devices.count=100000 --connect.ratePerSec=2000 ...
+ * 运行结束后进程退出，压测失败时退出码为 1。
+ */
+@Slf4j
+public class LoadGenApplication {
+
+    public static void main(String[] args) throws InterruptedException {
+        Vertx vertx = Vertx.vertx();
+        CountDownLatch finished = new CountDownLatch(1);
+        int[] exitCode = {0};
+        LoadGenConfig.load(vertx, args)
+                .compose(config -> new LoadRun(vertx, config).start())
+                .onFailure(e -> {
+                    log.error("[LOADGEN] 压测失败: {}", e.getMessage(), e);
+                    exitCode[0] = 1;
+                })
+                .onComplete(ar -> vertx.close().onComplete(v -> finished.countDown()));
+        finished.await();
+        System.exit(exitCode[0]);
+    }
+}
@@ -0,0 +1,96 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按配置速率随机挑选在线设备，经网关 /internal/command/send 下发指令；往返计时在 pet-core 桩收到回执时结束。
+ */
+@Slf4j
+final class CommandDriverVerticle extends AbstractVerticle {
+
+    private static final String HEADER_INTERNAL_TOKEN = "X-Internal-Token";
+    private static final int PICK_ATTEMPTS = 8;
+
+    private final LoadGenConfig config;
+    private final LoadStats stats;
+    private WebClient client;
+    private long tickTimerId = -1;
+    private long expireTimerId = -1;
+    private double budget;
+
+    CommandDriverVerticle(LoadGenConfig config, LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+    }
+
+    @Override
+    public void start() {
+        client = WebClient.create(vertx, new WebClientOptions().setMaxPoolSize(64));
+        tickTimerId = vertx.setPeriodic(DeviceFleetVerticle.TICK_MS, id -> tick());
+        expireTimerId = vertx.setPeriodic(1000, id -> stats.expireCommands(config.command().timeoutMs()));
+    }
+
+    @Override
+    public void stop() {
+        vertx.cancelTimer(tickTimerId);
+        vertx.cancelTimer(expireTimerId);
+        client.close();
+    }
+
+    private void tick() {
+        budget += config.command().ratePerSec() * DeviceFleetVerticle.TICK_MS / 1000.0;
+        while (budget >= 1) {
+            budget--;
+            int index = pickOnlineDevice();
+            if (index >= 0) {
+                send(config.devices().deviceId(index));
+            }
+        }
+    }
+
+    private int pickOnlineDevice() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < PICK_ATTEMPTS; i++) {
+            int index = random.nextInt(stats.deviceCount());
+            if (stats.isOnline(index)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void send(String deviceId) {
+        String reqId = UUID.randomUUID().toString();
+        JsonObject command = new JsonObject()
+                .put("schemaVersion", 1)
+                .put("reqId", reqId)
+                .put("type", "loadgen")
+                .put("payload", new JsonObject());
+        JsonObject body = new JsonObject()
+                .put("deviceId", deviceId)
+                .put("topic", "pet/" + deviceId + "/cmd")
+                .put("qos", config.command().qos())
+                .put("payload", command);
+        HttpRequest<?> request = client.postAbs(config.target().internalBaseUrl() + "/internal/command/send");
+        if (!config.target().internalToken().isBlank()) {
+            request.putHeader(HEADER_INTERNAL_TOKEN, config.target().internalToken());
+        }
+        stats.commandStarted(reqId, System.nanoTime());
+        request.sendJsonObject(body).onComplete(ar -> {
+            if (ar.failed() || ar.result().statusCode() != 200) {
+                stats.commandRejected(reqId);
+                if (ar.failed()) {
+                    log.warn("[COMMAND] 指令下发失败: deviceId={}, error={}", deviceId, ar.cause().getMessage());
+                }
+            }
+        });
+    }
+}
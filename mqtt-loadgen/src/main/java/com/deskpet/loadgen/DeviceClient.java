@@ -0,0 +1,28 @@
+package com.deskpet.loadgen;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * 一台模拟设备的 MQTT 连接：3.1.1 用 vertx-mqtt 的 MqttClient（{@link Mqtt3DeviceClient}），
+ * MQTT 5 用 {@link Mqtt5DeviceClient}。与 MqttClient 一样只在所属 Verticle 的 event loop 上使用，下行与连接关闭通过回调通知。
+ */
+interface DeviceClient {
+
+    DeviceClient publishHandler(Handler<MqttPublishMessage> handler);
+
+    DeviceClient closeHandler(Handler<Void> handler);
+
+    Future<Void> connect(int port, String host);
+
+    boolean isConnected();
+
+    Future<Void> disconnect();
+
+    void subscribe(String topic, int qos);
+
+    Future<Void> publish(String topic, Buffer payload, MqttQoS qos);
+}
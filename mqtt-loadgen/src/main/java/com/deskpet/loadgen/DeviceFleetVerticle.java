@@ -0,0 +1,309 @@
+package com.deskpet.loadgen;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.mqtt.MqttClientOptions;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 驱动一部分模拟设备（序号 % verticles == slot）：按速率建连、随机断开与抖动重连、按固定间隔上报遥测与事件、
+ * 收到指令后回执。每台设备的上报时刻随机分布在 {@value #TICK_MS}ms 一格的时间槽上，
+ * 由一个周期定时器按槽批量发送，避免为每台设备各建一个定时器。
+ */
+@Slf4j
+final class DeviceFleetVerticle extends AbstractVerticle {
+
+    static final int TICK_MS = 100;
+
+    private final int slot;
+    private final LoadGenConfig config;
+    private final LoadStats stats;
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private final ArrayDeque<SimulatedDevice> connectQueue = new ArrayDeque<>();
+    private final List<NetClient> netClients = new ArrayList<>();
+    private List<List<SimulatedDevice>> telemetrySlots;
+    private List<List<SimulatedDevice>> eventSlots;
+    private long tickTimerId = -1;
+    private long ticks;
+    private double connectBudget;
+    private double churnBudget;
+    private int nextLocalAddress;
+    private boolean stopping;
+
+    DeviceFleetVerticle(int slot, LoadGenConfig config, LoadStats stats) {
+        this.slot = slot;
+        this.config = config;
+        this.stats = stats;
+    }
+
+    @Override
+    public void start() {
+        int verticles = config.run().verticles();
+        for (int i = slot; i < config.devices().count(); i += verticles) {
+            SimulatedDevice device = new SimulatedDevice(i, config.devices().deviceId(i));
+            devices.add(device);
+            connectQueue.add(device);
+        }
+        if (config.devices().protocolVersion() == 5) {
+            createNetClients();
+        }
+        telemetrySlots = spread(config.traffic().telemetryIntervalMs());
+        eventSlots = spread(config.traffic().eventIntervalMs());
+        tickTimerId = vertx.setPeriodic(TICK_MS, id -> tick());
+        log.info("[FLEET] 设备分片启动: slot={}, devices={}, protocolVersion={}", slot, devices.size(),
+                config.devices().protocolVersion());
+    }
+
+    /**
+     * MQTT 5 设备共用 NetClient，每个本地源地址一个。
+     */
+    private void createNetClients() {
+        List<String> localAddresses = config.devices().localAddresses();
+        for (int i = 0; i < Math.max(1, localAddresses.size()); i++) {
+            NetClientOptions options = new NetClientOptions().setConnectTimeout(config.connect().timeoutMs());
+            if (!localAddresses.isEmpty()) {
+                options.setLocalAddress(localAddresses.get(i));
+            }
+            netClients.add(vertx.createNetClient(options));
+        }
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        stopping = true;
+        if (tickTimerId >= 0) {
+            vertx.cancelTimer(tickTimerId);
+        }
+        List<Future<Void>> disconnects = new ArrayList<>();
+        for (SimulatedDevice device : devices) {
+            if (device.client != null && device.client.isConnected()) {
+                disconnects.add(device.client.disconnect());
+            }
+        }
+        Future.join(disconnects).onComplete(ar -> stopPromise.complete());
+    }
+
+    private List<List<SimulatedDevice>> spread(int intervalMs) {
+        if (intervalMs <= 0) {
+            return null;
+        }
+        int slots = Math.max(1, intervalMs / TICK_MS);
+        List<List<SimulatedDevice>> result = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            result.add(new ArrayList<>());
+        }
+        for (SimulatedDevice device : devices) {
+            result.get(ThreadLocalRandom.current().nextInt(slots)).add(device);
+        }
+        return result;
+    }
+
+    private void tick() {
+        ticks++;
+        drainConnectQueue();
+        churn();
+        if (telemetrySlots != null) {
+            for (SimulatedDevice device : telemetrySlots.get((int) (ticks % telemetrySlots.size()))) {
+                publishTelemetry(device);
+            }
+        }
+        if (eventSlots != null) {
+            for (SimulatedDevice device : eventSlots.get((int) (ticks % eventSlots.size()))) {
+                publishEvent(device);
+            }
+        }
+    }
+
+    private void drainConnectQueue() {
+        double ratePerSec = config.connect().ratePerSec();
+        if (ratePerSec <= 0) {
+            while (!connectQueue.isEmpty()) {
+                connect(connectQueue.poll());
+            }
+            return;
+        }
+        double share = ratePerSec / config.run().verticles();
+        connectBudget = Math.min(connectBudget + share * TICK_MS / 1000.0, Math.max(1, share));
+        while (connectBudget >= 1 && !connectQueue.isEmpty()) {
+            connectBudget--;
+            connect(connectQueue.poll());
+        }
+    }
+
+    private void churn() {
+        double churnPerSec = config.connect().churnPerSec();
+        if (churnPerSec <= 0 || devices.isEmpty()) {
+            return;
+        }
+        churnBudget += churnPerSec / config.run().verticles() * TICK_MS / 1000.0;
+        while (churnBudget >= 1) {
+            churnBudget--;
+            SimulatedDevice device = devices.get(ThreadLocalRandom.current().nextInt(devices.size()));
+            if (device.online) {
+                device.client.disconnect();
+            }
+        }
+    }
+
+    private void connect(SimulatedDevice device) {
+        DeviceClient client = createClient(device);
+        device.client = client;
+        client.publishHandler(message -> onCommand(device, message));
+        client.closeHandler(v -> onClosed(device, client));
+
+        stats.connectAttempts.increment();
+        long startNanos = System.nanoTime();
+        client.connect(config.target().mqttPort(), config.target().mqttHost()).onComplete(ar -> {
+            if (device.client != client) {
+                return;
+            }
+            if (ar.failed()) {
+                stats.connectFailed.increment();
+                if (stats.connectFailed.sum() % 1000 == 1) {
+                    log.warn("[FLEET] 建连失败: deviceId={}, error={}", device.deviceId, ar.cause().getMessage());
+                }
+                device.client = null;
+                scheduleReconnect(device);
+                return;
+            }
+            stats.connectLatency.recordSince(startNanos);
+            stats.connected.increment();
+            stats.setOnline(device.index, true);
+            device.online = true;
+            client.subscribe(device.commandTopic, config.command().qos());
+        });
+    }
+
+    private DeviceClient createClient(SimulatedDevice device) {
+        LoadGenConfig.Devices deviceConfig = config.devices();
+        if (deviceConfig.protocolVersion() == 5) {
+            return new Mqtt5DeviceClient(vertx, netClients.get(nextLocalAddress++ % netClients.size()), deviceConfig,
+                    device.deviceId, config.connect().timeoutMs(), stats);
+        }
+        MqttClientOptions options = new MqttClientOptions()
+                .setClientId(device.deviceId)
+                .setUsername(device.deviceId)
+                .setPassword(deviceConfig.secret())
+                .setCleanSession(true)
+                .setKeepAliveInterval(deviceConfig.keepAliveSec())
+                .setAutoKeepAlive(true);
+        options.setConnectTimeout(config.connect().timeoutMs());
+        List<String> localAddresses = deviceConfig.localAddresses();
+        if (!localAddresses.isEmpty()) {
+            options.setLocalAddress(localAddresses.get(nextLocalAddress++ % localAddresses.size()));
+        }
+        return new Mqtt3DeviceClient(vertx, options, stats);
+    }
+
+    private void onClosed(SimulatedDevice device, DeviceClient client) {
+        if (device.client != client) {
+            return;
+        }
+        device.client = null;
+        if (device.online) {
+            device.online = false;
+            stats.disconnected.increment();
+            stats.setOnline(device.index, false);
+        }
+        scheduleReconnect(device);
+    }
+
+    private void scheduleReconnect(SimulatedDevice device) {
+        if (stopping) {
+            return;
+        }
+        LoadGenConfig.Connect connect = config.connect();
+        int delayMs = connect.reconnectMinMs()
+                + ThreadLocalRandom.current().nextInt(connect.reconnectMaxMs() - connect.reconnectMinMs() + 1);
+        vertx.setTimer(Math.max(1, delayMs), id -> {
+            if (!stopping) {
+                connectQueue.add(device);
+            }
+        });
+    }
+
+    private void publishTelemetry(SimulatedDevice device) {
+        if (!device.online) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        JsonObject payload = new JsonObject()
+                .put("schemaVersion", 1)
+                .put("ts", System.currentTimeMillis() / 1000)
+                .put("firmwareVersion", "loadgen")
+                .put("rssi", -40 - random.nextInt(30))
+                .put("battery", 0.4 + random.nextInt(60) / 100.0)
+                .put("lastAction", device.lastAction)
+                .put("extra", new JsonObject().put(StubCoreVerticle.SENT_NANOS_FIELD, System.nanoTime()));
+        publish(device, device.telemetryTopic, payload.toBuffer());
+        stats.telemetrySent.increment();
+    }
+
+    private void publishEvent(SimulatedDevice device) {
+        if (!device.online) {
+            return;
+        }
+        JsonObject payload = new JsonObject()
+                .put("eventId", "loadgen")
+                .put("eventType", "info")
+                .put("timestamp", System.currentTimeMillis())
+                .put("params", new JsonObject().put(StubCoreVerticle.SENT_NANOS_FIELD, System.nanoTime()));
+        publish(device, device.eventTopic, payload.toBuffer());
+        stats.eventSent.increment();
+    }
+
+    private void publish(SimulatedDevice device, String topic, Buffer payload) {
+        MqttQoS qos = MqttQoS.valueOf(config.traffic().qos());
+        device.client.publish(topic, payload, qos).onFailure(e -> stats.publishFailed.increment());
+    }
+
+    private void onCommand(SimulatedDevice device, MqttPublishMessage message) {
+        String reqId;
+        try {
+            JsonObject command = message.payload().toJsonObject();
+            reqId = command.getString("reqId");
+            device.lastAction = command.getString("type", device.lastAction);
+        } catch (RuntimeException e) {
+            log.warn("[FLEET] 指令解析失败: deviceId={}, error={}", device.deviceId, e.getMessage());
+            return;
+        }
+        LoadGenConfig.Command command = config.command();
+        if (command.ackDropRate() > 0 && ThreadLocalRandom.current().nextDouble() < command.ackDropRate()) {
+            stats.ackDropped.increment();
+            return;
+        }
+        if (command.ackDelayMs() > 0) {
+            vertx.setTimer(command.ackDelayMs(), id -> sendAck(device, reqId));
+        } else {
+            sendAck(device, reqId);
+        }
+    }
+
+    private void sendAck(SimulatedDevice device, String reqId) {
+        if (!device.online) {
+            return;
+        }
+        JsonObject ack = new JsonObject()
+                .put("schemaVersion", 1)
+                .put("reqId", reqId)
+                .put("ok", true)
+                .put("code", "DONE")
+                .put("message", "ok")
+                .put("ts", System.currentTimeMillis() / 1000);
+        device.client.publish(device.ackTopic, ack.toBuffer(), MqttQoS.AT_LEAST_ONCE)
+                .onFailure(e -> stats.publishFailed.increment());
+        stats.ackSent.increment();
+    }
+}
@@ -0,0 +1,106 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的耗时直方图（微秒，对数-线性分桶，每个 2 的幂区间 16 个子桶，相对误差约 6%）。
+ * 报告按区间输出时用两次 {@link #snapshot()} 相减得到该区间的分布。
+ */
+final class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    void recordNanos(long nanos) {
+        counts.incrementAndGet(bucketIndex(Math.max(0, nanos) / 1000));
+    }
+
+    static int bucketIndex(long micros) {
+        long value = Math.min(micros, MAX_MICROS);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketUpperMicros(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    record Snapshot(long[] counts) {
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS]);
+
+        long count() {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            return total;
+        }
+
+        Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(diff);
+        }
+
+        /**
+         * 返回分位数所在桶的上界（毫秒），没有样本时为 0。
+         */
+        double percentileMs(double quantile) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperMicros(i) / 1000.0;
+                }
+            }
+            return bucketUpperMicros(BUCKETS - 1) / 1000.0;
+        }
+
+        JsonObject toJson() {
+            return new JsonObject()
+                    .put("count", count())
+                    .put("p50Ms", percentileMs(0.50))
+                    .put("p90Ms", percentileMs(0.90))
+                    .put("p99Ms", percentileMs(0.99))
+                    .put("p999Ms", percentileMs(0.999))
+                    .put("maxMs", percentileMs(1.0));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.deskpet.loadgen;
+
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测配置：默认读取 classpath 下的 loadgen.yaml（可用 -Dloadgen.config=path 指定），
+ * 命令行 {@code --section.key=value} 覆盖同名配置项。
+ */
+public record LoadGenConfig(
+        Target target,
+        Devices devices,
+        Connect connect,
+        Traffic traffic,
+        Command command,
+        Stub stub,
+        Run run
+) {
+    public static Future<LoadGenConfig> load(Vertx vertx, String[] args) {
+        ConfigStoreOptions store = new ConfigStoreOptions()
+                .setType("file")
+                .setFormat("yaml")
+                .setOptional(true)
+                .setConfig(new JsonObject().put("path", resolveConfigPath()));
+        ConfigRetriever retriever = ConfigRetriever.create(vertx, new ConfigRetrieverOptions().addStore(store));
+        return retriever.getConfig().map(config -> fromConfig(applyArgs(config, args)));
+    }
+
+    static LoadGenConfig fromConfig(JsonObject config) {
+        return new LoadGenConfig(
+                Target.fromConfig(config.getJsonObject("target", new JsonObject())),
+                Devices.fromConfig(config.getJsonObject("devices", new JsonObject())),
+                Connect.fromConfig(config.getJsonObject("connect", new JsonObject())),
+                Traffic.fromConfig(config.getJsonObject("traffic", new JsonObject())),
+                Command.fromConfig(config.getJsonObject("command", new JsonObject())),
+                Stub.fromConfig(config.getJsonObject("stub", new JsonObject())),
+                Run.fromConfig(config.getJsonObject("run", new JsonObject())));
+    }
+
+    /**
+     * 把 {@code --devices.count=100000} 形式的参数写入配置树，数字与布尔值按字面量解析。
+     */
+    static JsonObject applyArgs(JsonObject config, String[] args) {
+        JsonObject merged = config.copy();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式应为 --section.key=value: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            String[] path = key.split("\\.");
+            JsonObject node = merged;
+            for (int i = 0; i < path.length - 1; i++) {
+                JsonObject child = node.getJsonObject(path[i]);
+                if (child == null) {
+                    child = new JsonObject();
+                    node.put(path[i], child);
+                }
+                node = child;
+            }
+            node.put(path[path.length - 1], parseLiteral(value));
+        }
+        return merged;
+    }
+
+    private static Object parseLiteral(String value) {
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ignored) {
+            // 不是整数
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+            return value;
+        }
+    }
+
+    private static String resolveConfigPath() {
+        String configured = System.getProperty("loadgen.config");
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        URL resource = LoadGenConfig.class.getClassLoader().getResource("loadgen.yaml");
+        if (resource != null && "file".equalsIgnoreCase(resource.getProtocol())) {
+            try {
+                return Paths.get(resource.toURI()).toString();
+            } catch (Exception ignored) {
+                // 使用默认配置路径
+            }
+        }
+        return "loadgen.yaml";
+    }
+
+    /**
+     * 被测网关：MQTT 地址与内部 HTTP 接口（下发指令用）。
+     */
+    public record Target(
+            String mqttHost,
+            int mqttPort,
+            String internalBaseUrl,
+            String internalToken
+    ) {
+        static Target fromConfig(JsonObject json) {
+            return new Target(
+                    json.getString("mqttHost", "localhost"),
+                    json.getInteger("mqttPort", 1883),
+                    json.getString("internalBaseUrl", "http://localhost:8081"),
+                    json.getString("internalToken", ""));
+        }
+    }
+
+    /**
+     * 模拟设备：deviceId 为 idPrefix + 序号，password 为 secret。
+     * localAddresses 配置多个本地源地址时轮流绑定，突破单个源地址约 28k 个临时端口的上限。
+     * protocolVersion 为 5 时以 MQTT 5 连接，双向最多使用 topicAliasMaximum 个 Topic Alias（0 表示不用），
+     * 并向网关声明 receiveMaximum。
+     */
+    public record Devices(
+            int count,
+            String idPrefix,
+            String secret,
+            int keepAliveSec,
+            List<String> localAddresses,
+            int protocolVersion,
+            int topicAliasMaximum,
+            int receiveMaximum
+    ) {
+        static Devices fromConfig(JsonObject json) {
+            return new Devices(
+                    Math.max(1, json.getInteger("count", 1000)),
+                    json.getString("idPrefix", "lg-"),
+                    json.getString("secret", "loadgen"),
+                    json.getInteger("keepAliveSec", 60),
+                    stringList(json.getValue("localAddresses")),
+                    json.getInteger("protocolVersion", 4) == 5 ? 5 : 4,
+                    Math.max(0, Math.min(65_535, json.getInteger("topicAliasMaximum", 4))),
+                    Math.max(1, Math.min(65_535, json.getInteger("receiveMaximum", 16))));
+        }
+
+        String deviceId(int index) {
+            return idPrefix + index;
+        }
+    }
+
+    /**
+     * 连接模式：ratePerSec 为总建连速率，0 表示所有设备同时发起（连接风暴）；
+     * 断线或被主动断开（churnPerSec）后在 [reconnectMinMs, reconnectMaxMs] 内随机延迟重连。
+     */
+    public record Connect(
+            double ratePerSec,
+            int timeoutMs,
+            int reconnectMinMs,
+            int reconnectMaxMs,
+            double churnPerSec
+    ) {
+        static Connect fromConfig(JsonObject json) {
+            int reconnectMinMs = Math.max(0, json.getInteger("reconnectMinMs", 1000));
+            return new Connect(
+                    Math.max(0, json.getDouble("ratePerSec", 500.0)),
+                    json.getInteger("timeoutMs", 10000),
+                    reconnectMinMs,
+                    Math.max(reconnectMinMs, json.getInteger("reconnectMaxMs", 5000)),
+                    Math.max(0, json.getDouble("churnPerSec", 0.0)));
+        }
+    }
+
+    /**
+     * 每台设备的上行节奏，间隔为 0 表示不发送该类消息。
+     */
+    public record Traffic(
+            int telemetryIntervalMs,
+            int eventIntervalMs,
+            int qos
+    ) {
+        static Traffic fromConfig(JsonObject json) {
+            return new Traffic(
+                    Math.max(0, json.getInteger("telemetryIntervalMs", 5000)),
+                    Math.max(0, json.getInteger("eventIntervalMs", 0)),
+                    Math.min(1, Math.max(0, json.getInteger("qos", 1))));
+        }
+    }
+
+    /**
+     * 经网关 /internal/command/send 下发指令的总速率，以及设备回执的延迟与丢弃比例。
+     */
+    public record Command(
+            double ratePerSec,
+            int qos,
+            int ackDelayMs,
+            double ackDropRate,
+            int timeoutMs
+    ) {
+        static Command fromConfig(JsonObject json) {
+            return new Command(
+                    Math.max(0, json.getDouble("ratePerSec", 0.0)),
+                    Math.min(1, Math.max(0, json.getInteger("qos", 1))),
+                    Math.max(0, json.getInteger("ackDelayMs", 0)),
+                    Math.min(1, Math.max(0, json.getDouble("ackDropRate", 0.0))),
+                    json.getInteger("timeoutMs", 30000));
+        }
+    }
+
+    /**
+     * 内置 pet-core 桩：实现网关调用的 /internal/* 接口，每个请求延迟 latencyMs + [0, jitterMs) 毫秒后返回。
+     */
+    public record Stub(
+            boolean enabled,
+            int port,
+            int latencyMs,
+            int jitterMs,
+            String productKey
+    ) {
+        static Stub fromConfig(JsonObject json) {
+            return new Stub(
+                    json.getBoolean("enabled", true),
+                    json.getInteger("port", 8080),
+                    Math.max(0, json.getInteger("latencyMs", 0)),
+                    Math.max(0, json.getInteger("jitterMs", 0)),
+                    json.getString("productKey", ""));
+        }
+    }
+
+    /**
+     * 运行时长与报告：每 reportIntervalSec 输出一行区间统计，结束时输出汇总，reportFile 非空时另写一份 JSON。
+     */
+    public record Run(
+            int durationSec,
+            int reportIntervalSec,
+            String reportFile,
+            int verticles
+    ) {
+        static Run fromConfig(JsonObject json) {
+            int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+            return new Run(
+                    Math.max(1, json.getInteger("durationSec", 60)),
+                    Math.max(1, json.getInteger("reportIntervalSec", 10)),
+                    json.getString("reportFile", ""),
+                    Math.max(1, json.getInteger("verticles", cores)));
+        }
+    }
+
+    private static List<String> stringList(Object value) {
+        List<String> result = new ArrayList<>();
+        if (value instanceof JsonArray array) {
+            array.forEach(item -> result.add(String.valueOf(item)));
+        } else if (value != null) {
+            for (String item : String.valueOf(value).split(",")) {
+                if (!item.isBlank()) {
+                    result.add(item.trim());
+                }
+            }
+        }
+        return List.copyOf(result);
+    }
+}
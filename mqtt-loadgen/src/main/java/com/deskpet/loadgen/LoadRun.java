@@ -0,0 +1,147 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次压测：启动 pet-core 桩、设备分片与指令驱动，按区间输出统计，到时后停止并返回汇总。
+ */
+@Slf4j
+public final class LoadRun {
+
+    private final Vertx vertx;
+    private final LoadGenConfig config;
+    private final LoadStats stats;
+    private final List<String> deploymentIds = new ArrayList<>();
+    private long startedAtNanos;
+    private long lastReportNanos;
+    private JsonObject lastCounters = new JsonObject();
+    private LatencyRecorder.Snapshot lastUplink = LatencyRecorder.Snapshot.EMPTY;
+    private LatencyRecorder.Snapshot lastCommand = LatencyRecorder.Snapshot.EMPTY;
+    private double peakConnectRate;
+
+    public LoadRun(Vertx vertx, LoadGenConfig config) {
+        this.vertx = vertx;
+        this.config = config;
+        this.stats = new LoadStats(config.devices().count());
+    }
+
+    public Future<JsonObject> start() {
+        Promise<JsonObject> done = Promise.promise();
+        deployStub()
+                .compose(v -> deployFleet())
+                .onSuccess(v -> {
+                    startedAtNanos = System.nanoTime();
+                    lastReportNanos = startedAtNanos;
+                    log.info("[LOADGEN] 压测开始: devices={}, verticles={}, target={}:{}, durationSec={}",
+                            config.devices().count(), config.run().verticles(),
+                            config.target().mqttHost(), config.target().mqttPort(), config.run().durationSec());
+                    long reportTimerId = vertx.setPeriodic(config.run().reportIntervalSec() * 1000L, id -> report());
+                    vertx.setTimer(config.run().durationSec() * 1000L, id -> {
+                        vertx.cancelTimer(reportTimerId);
+                        if (System.nanoTime() - lastReportNanos > 1_000_000_000L) {
+                            report();
+                        }
+                        finish().onComplete(done);
+                    });
+                })
+                .onFailure(done::fail);
+        return done.future();
+    }
+
+    private Future<Void> deployStub() {
+        if (!config.stub().enabled()) {
+            return Future.succeededFuture();
+        }
+        DeploymentOptions options = new DeploymentOptions().setInstances(config.run().verticles());
+        return vertx.deployVerticle(() -> new StubCoreVerticle(config.stub(), stats), options)
+                .onSuccess(deploymentIds::add)
+                .mapEmpty();
+    }
+
+    private Future<Void> deployFleet() {
+        List<Future<String>> deployments = new ArrayList<>();
+        for (int slot = 0; slot < config.run().verticles(); slot++) {
+            deployments.add(vertx.deployVerticle(new DeviceFleetVerticle(slot, config, stats)));
+        }
+        if (config.command().ratePerSec() > 0) {
+            deployments.add(vertx.deployVerticle(new CommandDriverVerticle(config, stats)));
+        }
+        return Future.all(deployments)
+                .onSuccess(all -> all.<String>list().forEach(deploymentIds::add))
+                .mapEmpty();
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        double intervalSec = Math.max(0.001, (now - lastReportNanos) / 1e9);
+        JsonObject counters = stats.counters();
+        double connectRate = rate(counters, "connected", intervalSec);
+        peakConnectRate = Math.max(peakConnectRate, connectRate);
+        LatencyRecorder.Snapshot uplink = stats.uplinkLatency.snapshot();
+        LatencyRecorder.Snapshot command = stats.commandRoundTrip.snapshot();
+        LatencyRecorder.Snapshot uplinkInterval = uplink.minus(lastUplink);
+        LatencyRecorder.Snapshot commandInterval = command.minus(lastCommand);
+        log.info("[LOADGEN] t={}s online={} connect/s={} uplink/s={} cmd/s={} uplink p50/p99={}/{}ms cmd p50/p99={}/{}ms "
+                        + "connectFailed={} publishFailed={} cmdRejected={} cmdTimedOut={}",
+                Math.round((now - startedAtNanos) / 1e9), counters.getLong("online"),
+                format(connectRate), format(rate(counters, "uplinkReceived", intervalSec)),
+                format(rate(counters, "commandCompleted", intervalSec)),
+                format(uplinkInterval.percentileMs(0.50)), format(uplinkInterval.percentileMs(0.99)),
+                format(commandInterval.percentileMs(0.50)), format(commandInterval.percentileMs(0.99)),
+                counters.getLong("connectFailed"), counters.getLong("publishFailed"),
+                counters.getLong("commandRejected"), counters.getLong("commandTimedOut"));
+        lastReportNanos = now;
+        lastCounters = counters;
+        lastUplink = uplink;
+        lastCommand = command;
+    }
+
+    private double rate(JsonObject counters, String key, double intervalSec) {
+        return (counters.getLong(key) - lastCounters.getLong(key, 0L)) / intervalSec;
+    }
+
+    private Future<JsonObject> finish() {
+        double elapsedSec = (System.nanoTime() - startedAtNanos) / 1e9;
+        List<Future<Void>> undeploys = new ArrayList<>();
+        for (int i = deploymentIds.size() - 1; i >= 0; i--) {
+            undeploys.add(vertx.undeploy(deploymentIds.get(i)));
+        }
+        JsonObject counters = stats.counters();
+        JsonObject summary = new JsonObject()
+                .put("devices", config.devices().count())
+                .put("durationSec", Math.round(elapsedSec))
+                .put("connectRate", new JsonObject()
+                        .put("avgPerSec", Math.round(counters.getLong("connected") / elapsedSec))
+                        .put("peakPerSec", Math.round(peakConnectRate)))
+                .put("counters", counters)
+                .put("wire", stats.wire().put("protocolVersion", config.devices().protocolVersion()))
+                .put("latency", new JsonObject()
+                        .put("connect", stats.connectLatency.snapshot().toJson())
+                        .put("uplink", stats.uplinkLatency.snapshot().toJson())
+                        .put("commandRoundTrip", stats.commandRoundTrip.snapshot().toJson()));
+        log.info("[LOADGEN] 压测结束: {}", summary.encode());
+        Future<Void> written = Future.succeededFuture();
+        if (!config.run().reportFile().isBlank()) {
+            written = vertx.fileSystem().writeFile(config.run().reportFile(), summary.toBuffer().appendString("\n"))
+                    .onFailure(e -> log.warn("[LOADGEN] 报告写入失败: file={}, error={}",
+                            config.run().reportFile(), e.getMessage()));
+        }
+        Future<Void> reportWritten = written;
+        return Future.join(undeploys)
+                .otherwiseEmpty()
+                .compose(v -> reportWritten.otherwiseEmpty())
+                .map(summary);
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+}
@@ -0,0 +1,162 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次压测的全部统计，设备 Verticle、指令驱动与 pet-core 桩共享同一实例（同一 JVM，System.nanoTime 可直接相减）。
+ */
+final class LoadStats {
+
+    final LongAdder connectAttempts = new LongAdder();
+    final LongAdder connected = new LongAdder();
+    final LongAdder connectFailed = new LongAdder();
+    final LongAdder disconnected = new LongAdder();
+    final LongAdder telemetrySent = new LongAdder();
+    final LongAdder eventSent = new LongAdder();
+    final LongAdder publishFailed = new LongAdder();
+    final LongAdder uplinkReceived = new LongAdder();
+    final LongAdder commandSent = new LongAdder();
+    final LongAdder commandRejected = new LongAdder();
+    final LongAdder commandCompleted = new LongAdder();
+    final LongAdder commandTimedOut = new LongAdder();
+    final LongAdder ackSent = new LongAdder();
+    final LongAdder ackDropped = new LongAdder();
+    final LongAdder stubRequests = new LongAdder();
+    final LongAdder uplinkPublishes = new LongAdder();
+    final LongAdder uplinkWireBytes = new LongAdder();
+    final LongAdder uplinkAliasSavedBytes = new LongAdder();
+    final LongAdder downlinkPublishes = new LongAdder();
+    final LongAdder downlinkWireBytes = new LongAdder();
+    final LongAdder downlinkAliasSavedBytes = new LongAdder();
+
+    /**
+     * 发起 CONNECT 到收到 CONNACK。
+     */
+    final LatencyRecorder connectLatency = new LatencyRecorder();
+    /**
+     * 设备 PUBLISH 到 pet-core 桩收到该条上行（经网关鉴权、转码、批量回调）。
+     */
+    final LatencyRecorder uplinkLatency = new LatencyRecorder();
+    /**
+     * 调用网关 /internal/command/send 到 pet-core 桩收到设备回执。
+     */
+    final LatencyRecorder commandRoundTrip = new LatencyRecorder();
+
+    private final AtomicIntegerArray online;
+    private final Map<String, Long> pendingCommands = new ConcurrentHashMap<>();
+
+    LoadStats(int devices) {
+        this.online = new AtomicIntegerArray(devices);
+    }
+
+    void setOnline(int index, boolean value) {
+        online.set(index, value ? 1 : 0);
+    }
+
+    boolean isOnline(int index) {
+        return online.get(index) == 1;
+    }
+
+    int deviceCount() {
+        return online.length();
+    }
+
+    long onlineCount() {
+        return connected.sum() - disconnected.sum();
+    }
+
+    void commandStarted(String reqId, long startNanos) {
+        commandSent.increment();
+        pendingCommands.put(reqId, startNanos);
+    }
+
+    void commandRejected(String reqId) {
+        if (pendingCommands.remove(reqId) != null) {
+            commandRejected.increment();
+        }
+    }
+
+    void commandAcked(String reqId) {
+        Long startNanos = reqId == null ? null : pendingCommands.remove(reqId);
+        if (startNanos != null) {
+            commandRoundTrip.recordSince(startNanos);
+            commandCompleted.increment();
+        }
+    }
+
+    /**
+     * 清理超过 timeoutMs 仍未收到回执的指令。
+     */
+    void expireCommands(long timeoutMs) {
+        long deadline = System.nanoTime() - timeoutMs * 1_000_000L;
+        Iterator<Map.Entry<String, Long>> it = pendingCommands.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() - deadline < 0) {
+                it.remove();
+                commandTimedOut.increment();
+            }
+        }
+    }
+
+    /**
+     * 一条上行 PUBLISH 的线上字节数，savedBytes 为 Topic Alias 相对完整 topic 节省的字节数（建立映射时为负）。
+     */
+    void recordUplinkWire(int wireBytes, int savedBytes) {
+        uplinkPublishes.increment();
+        uplinkWireBytes.add(wireBytes);
+        uplinkAliasSavedBytes.add(savedBytes);
+    }
+
+    void recordDownlinkWire(int wireBytes, int savedBytes) {
+        downlinkPublishes.increment();
+        downlinkWireBytes.add(wireBytes);
+        downlinkAliasSavedBytes.add(savedBytes);
+    }
+
+    /**
+     * 每条 PUBLISH 的平均线上字节数与 Topic Alias 平均节省字节数。
+     */
+    JsonObject wire() {
+        return new JsonObject()
+                .put("uplinkBytesPerMessage", perMessage(uplinkWireBytes, uplinkPublishes))
+                .put("uplinkAliasSavedBytesPerMessage", perMessage(uplinkAliasSavedBytes, uplinkPublishes))
+                .put("downlinkBytesPerMessage", perMessage(downlinkWireBytes, downlinkPublishes))
+                .put("downlinkAliasSavedBytesPerMessage", perMessage(downlinkAliasSavedBytes, downlinkPublishes));
+    }
+
+    private static double perMessage(LongAdder bytes, LongAdder messages) {
+        long count = messages.sum();
+        return count == 0 ? 0 : Math.round(bytes.sum() * 100.0 / count) / 100.0;
+    }
+
+    int pendingCommandCount() {
+        return pendingCommands.size();
+    }
+
+    JsonObject counters() {
+        return new JsonObject()
+                .put("connectAttempts", connectAttempts.sum())
+                .put("connected", connected.sum())
+                .put("connectFailed", connectFailed.sum())
+                .put("disconnected", disconnected.sum())
+                .put("online", onlineCount())
+                .put("telemetrySent", telemetrySent.sum())
+                .put("eventSent", eventSent.sum())
+                .put("publishFailed", publishFailed.sum())
+                .put("uplinkReceived", uplinkReceived.sum())
+                .put("commandSent", commandSent.sum())
+                .put("commandRejected", commandRejected.sum())
+                .put("commandCompleted", commandCompleted.sum())
+                .put("commandTimedOut", commandTimedOut.sum())
+                .put("commandPending", pendingCommandCount())
+                .put("ackSent", ackSent.sum())
+                .put("ackDropped", ackDropped.sum())
+                .put("stubRequests", stubRequests.sum());
+    }
+}
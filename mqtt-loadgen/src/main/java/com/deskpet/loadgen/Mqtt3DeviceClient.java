@@ -0,0 +1,67 @@
+package com.deskpet.loadgen;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.MqttClientOptions;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * MQTT 3.1.1 设备连接，委托给 vertx-mqtt 的 MqttClient，另按报文格式统计 PUBLISH 字节数。
+ */
+final class Mqtt3DeviceClient implements DeviceClient {
+
+    private final MqttClient client;
+    private final LoadStats stats;
+
+    Mqtt3DeviceClient(Vertx vertx, MqttClientOptions options, LoadStats stats) {
+        this.client = MqttClient.create(vertx, options);
+        this.stats = stats;
+    }
+
+    @Override
+    public DeviceClient publishHandler(Handler<MqttPublishMessage> handler) {
+        client.publishHandler(message -> {
+            stats.recordDownlinkWire(MqttWire.publishBytes(ByteBufUtil.utf8Bytes(message.topicName()),
+                    message.payload().length(), message.qosLevel(), false, 0), 0);
+            handler.handle(message);
+        });
+        return this;
+    }
+
+    @Override
+    public DeviceClient closeHandler(Handler<Void> handler) {
+        client.closeHandler(handler);
+        return this;
+    }
+
+    @Override
+    public Future<Void> connect(int port, String host) {
+        return client.connect(port, host).mapEmpty();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public Future<Void> disconnect() {
+        return client.disconnect();
+    }
+
+    @Override
+    public void subscribe(String topic, int qos) {
+        client.subscribe(topic, qos);
+    }
+
+    @Override
+    public Future<Void> publish(String topic, Buffer payload, MqttQoS qos) {
+        stats.recordUplinkWire(MqttWire.publishBytes(ByteBufUtil.utf8Bytes(topic), payload.length(), qos, false, 0), 0);
+        return client.publish(topic, payload, qos, false, false).mapEmpty();
+    }
+}
@@ -0,0 +1,273 @@
+package com.deskpet.loadgen;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.impl.NetSocketInternal;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MQTT 5 设备连接。vertx-mqtt 的 MqttClient 只支持 3.1.1，这里与它一样在 NetSocket 的 pipeline 上挂 Netty 的
+ * MQTT 编解码器，只实现压测用到的部分：CONNECT 声明 Topic Alias Maximum 与 Receive Maximum，上行按 CONNACK
+ * 声明的个数为 topic 分配别名、在途 QoS1 不超过网关的 Receive Maximum，下行按别名还原 topic 并自动回 PUBACK。
+ */
+final class Mqtt5DeviceClient implements DeviceClient {
+
+    private final Vertx vertx;
+    private final NetClient netClient;
+    private final LoadGenConfig.Devices config;
+    private final String deviceId;
+    private final int connectTimeoutMs;
+    private final LoadStats stats;
+    private final Map<String, Integer> outboundAliases = new HashMap<>();
+    private final Set<Integer> inFlight = new HashSet<>();
+    private String[] inboundAliases;
+    private NetSocketInternal socket;
+    private Promise<Void> connecting;
+    private boolean connected;
+    private int serverReceiveMaximum = 65_535;
+    private int serverTopicAliasMaximum;
+    private int nextMessageId = 1;
+    private Handler<MqttPublishMessage> messageHandler = message -> {
+    };
+    private Handler<Void> closeHandler = v -> {
+    };
+
+    Mqtt5DeviceClient(Vertx vertx, NetClient netClient, LoadGenConfig.Devices config, String deviceId,
+                      int connectTimeoutMs, LoadStats stats) {
+        this.vertx = vertx;
+        this.netClient = netClient;
+        this.config = config;
+        this.deviceId = deviceId;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.stats = stats;
+    }
+
+    @Override
+    public DeviceClient publishHandler(Handler<MqttPublishMessage> handler) {
+        this.messageHandler = handler;
+        return this;
+    }
+
+    @Override
+    public DeviceClient closeHandler(Handler<Void> handler) {
+        this.closeHandler = handler;
+        return this;
+    }
+
+    @Override
+    public Future<Void> connect(int port, String host) {
+        connecting = Promise.promise();
+        Promise<Void> connAck = connecting;
+        netClient.connect(port, host).onComplete(ar -> {
+            if (ar.failed()) {
+                connAck.tryFail(ar.cause());
+                return;
+            }
+            socket = (NetSocketInternal) ar.result();
+            ChannelPipeline pipeline = socket.channelHandlerContext().pipeline();
+            pipeline.addBefore("handler", "mqttEncoder", MqttEncoder.INSTANCE);
+            pipeline.addBefore("handler", "mqttDecoder", new MqttDecoder());
+            if (config.keepAliveSec() > 0) {
+                pipeline.addBefore("handler", "idle", new IdleStateHandler(0, config.keepAliveSec(), 0));
+            }
+            socket.eventHandler(event -> {
+                if (event instanceof IdleStateEvent) {
+                    socket.writeMessage(MqttMessage.PINGREQ);
+                }
+            });
+            socket.messageHandler(this::handleMessage);
+            socket.closeHandler(v -> handleClose());
+            MqttProperties properties = new MqttProperties();
+            properties.add(new MqttProperties.IntegerProperty(
+                    MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM.value(), config.topicAliasMaximum()));
+            properties.add(new MqttProperties.IntegerProperty(
+                    MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM.value(), config.receiveMaximum()));
+            socket.writeMessage(MqttMessageBuilders.connect()
+                    .protocolVersion(MqttVersion.MQTT_5)
+                    .clientId(deviceId)
+                    .username(deviceId)
+                    .password(config.secret().getBytes())
+                    .cleanSession(true)
+                    .keepAlive(config.keepAliveSec())
+                    .properties(properties)
+                    .build());
+        });
+        vertx.setTimer(connectTimeoutMs, id -> {
+            if (connAck.tryFail("CONNACK timeout") && socket != null) {
+                socket.close();
+            }
+        });
+        return connAck.future();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public Future<Void> disconnect() {
+        if (socket == null) {
+            return Future.succeededFuture();
+        }
+        socket.writeMessage(MqttMessage.DISCONNECT);
+        return socket.close();
+    }
+
+    @Override
+    public void subscribe(String topic, int qos) {
+        socket.writeMessage(MqttMessageBuilders.subscribe()
+                .messageId(allocateMessageId())
+                .addSubscription(MqttQoS.valueOf(qos), topic)
+                .build());
+    }
+
+    @Override
+    public Future<Void> publish(String topic, Buffer payload, MqttQoS qos) {
+        if (!connected) {
+            return Future.failedFuture("not connected");
+        }
+        int messageId = 0;
+        if (qos == MqttQoS.AT_LEAST_ONCE) {
+            if (inFlight.size() >= serverReceiveMaximum) {
+                return Future.failedFuture("receive maximum reached");
+            }
+            messageId = allocateMessageId();
+            inFlight.add(messageId);
+        }
+        int topicBytes = ByteBufUtil.utf8Bytes(topic);
+        Integer alias = outboundAliases.get(topic);
+        String wireTopic = topic;
+        int savedBytes = 0;
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (alias != null) {
+            wireTopic = "";
+            savedBytes = topicBytes - MqttWire.TOPIC_ALIAS_PROPERTY_BYTES;
+        } else if (outboundAliases.size() < Math.min(serverTopicAliasMaximum, config.topicAliasMaximum())) {
+            alias = outboundAliases.size() + 1;
+            outboundAliases.put(topic, alias);
+            savedBytes = -MqttWire.TOPIC_ALIAS_PROPERTY_BYTES;
+        }
+        if (alias != null) {
+            properties = new MqttProperties();
+            properties.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS.value(), alias));
+        }
+        stats.recordUplinkWire(MqttWire.publishBytes(ByteBufUtil.utf8Bytes(wireTopic), payload.length(), qos, true,
+                alias != null ? MqttWire.TOPIC_ALIAS_PROPERTY_BYTES : 0), savedBytes);
+        return socket.writeMessage(new io.netty.handler.codec.mqtt.MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, false, 0),
+                new MqttPublishVariableHeader(wireTopic, messageId, properties),
+                Unpooled.wrappedBuffer(payload.getBytes())));
+    }
+
+    private void handleMessage(Object message) {
+        try {
+            if (message instanceof MqttConnAckMessage connAck) {
+                handleConnAck(connAck);
+            } else if (message instanceof io.netty.handler.codec.mqtt.MqttPublishMessage publish) {
+                handlePublish(publish);
+            } else if (message instanceof MqttMessage mqtt
+                    && mqtt.fixedHeader().messageType() == MqttMessageType.PUBACK
+                    && mqtt.variableHeader() instanceof MqttMessageIdVariableHeader header) {
+                inFlight.remove(header.messageId());
+            }
+        } finally {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    private void handleConnAck(MqttConnAckMessage connAck) {
+        MqttConnectReturnCode code = connAck.variableHeader().connectReturnCode();
+        if (code != MqttConnectReturnCode.CONNECTION_ACCEPTED) {
+            connecting.tryFail("CONNACK " + code);
+            socket.close();
+            return;
+        }
+        MqttProperties properties = connAck.variableHeader().properties();
+        serverReceiveMaximum = intProperty(properties, MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM, 65_535);
+        serverTopicAliasMaximum = intProperty(properties, MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM, 0);
+        if (connecting.tryComplete()) {
+            connected = true;
+        }
+    }
+
+    private void handlePublish(io.netty.handler.codec.mqtt.MqttPublishMessage publish) {
+        MqttPublishVariableHeader header = publish.variableHeader();
+        String wireTopic = header.topicName();
+        int alias = intProperty(header.properties(), MqttProperties.MqttPropertyType.TOPIC_ALIAS, 0);
+        String topic = wireTopic;
+        int savedBytes = 0;
+        if (alias > 0 && alias <= config.topicAliasMaximum()) {
+            if (inboundAliases == null) {
+                inboundAliases = new String[config.topicAliasMaximum()];
+            }
+            if (wireTopic.isEmpty()) {
+                topic = inboundAliases[alias - 1];
+                savedBytes = topic == null ? 0 : ByteBufUtil.utf8Bytes(topic) - MqttWire.TOPIC_ALIAS_PROPERTY_BYTES;
+            } else {
+                inboundAliases[alias - 1] = wireTopic;
+                savedBytes = -MqttWire.TOPIC_ALIAS_PROPERTY_BYTES;
+            }
+        }
+        MqttQoS qos = publish.fixedHeader().qosLevel();
+        int payloadBytes = publish.payload().readableBytes();
+        stats.recordDownlinkWire(MqttWire.publishBytes(ByteBufUtil.utf8Bytes(wireTopic), payloadBytes, qos, true,
+                alias > 0 ? MqttWire.TOPIC_ALIAS_PROPERTY_BYTES : 0), savedBytes);
+        if (qos == MqttQoS.AT_LEAST_ONCE) {
+            socket.writeMessage(MqttMessageBuilders.pubAck().packetId(header.packetId()).build());
+        }
+        if (topic == null) {
+            return;
+        }
+        messageHandler.handle(MqttPublishMessage.create(header.packetId(), qos, publish.fixedHeader().isDup(),
+                publish.fixedHeader().isRetain(), topic, Unpooled.copiedBuffer(publish.payload()), header.properties()));
+    }
+
+    private void handleClose() {
+        connected = false;
+        inFlight.clear();
+        if (connecting != null) {
+            connecting.tryFail("connection closed");
+        }
+        closeHandler.handle(null);
+    }
+
+    private int allocateMessageId() {
+        int id = nextMessageId;
+        nextMessageId = id == 0xFFFF ? 1 : id + 1;
+        return id;
+    }
+
+    private static int intProperty(MqttProperties properties, MqttProperties.MqttPropertyType type, int defaultValue) {
+        MqttProperties.MqttProperty<?> property = properties == null ? null : properties.getProperty(type.value());
+        return property != null && property.value() instanceof Integer value ? value : defaultValue;
+    }
+}
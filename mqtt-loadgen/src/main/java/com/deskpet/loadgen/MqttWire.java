@@ -0,0 +1,35 @@
+package com.deskpet.loadgen;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+/**
+ * 按 MQTT 报文格式计算 PUBLISH 的线上字节数，3.1.1 与 MQTT 5 的差别只在属性段，用于对比 Topic Alias 节省的流量。
+ */
+final class MqttWire {
+
+    // Topic Alias 属性：1 字节标识 + 2 字节值
+    static final int TOPIC_ALIAS_PROPERTY_BYTES = 3;
+
+    private MqttWire() {
+    }
+
+    /**
+     * 固定报头（1 字节类型 + 剩余长度）+ topic（2 字节长度前缀）+ 报文标识 + MQTT 5 属性段 + payload。
+     */
+    static int publishBytes(int topicBytes, int payloadBytes, MqttQoS qos, boolean mqtt5, int propertyBytes) {
+        int remaining = 2 + topicBytes + (qos.value() > 0 ? 2 : 0) + payloadBytes;
+        if (mqtt5) {
+            remaining += varIntBytes(propertyBytes) + propertyBytes;
+        }
+        return 1 + varIntBytes(remaining) + remaining;
+    }
+
+    static int varIntBytes(int value) {
+        int bytes = 1;
+        while (value >= 128) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,26 @@
+package com.deskpet.loadgen;
+
+/**
+ * 一台模拟设备的连接状态，只在所属 DeviceFleetVerticle 的 event loop 上访问。
+ */
+final class SimulatedDevice {
+
+    final int index;
+    final String deviceId;
+    final String telemetryTopic;
+    final String eventTopic;
+    final String commandTopic;
+    final String ackTopic;
+    DeviceClient client;
+    boolean online;
+    String lastAction = "idle";
+
+    SimulatedDevice(int index, String deviceId) {
+        this.index = index;
+        this.deviceId = deviceId;
+        this.telemetryTopic = "pet/" + deviceId + "/telemetry";
+        this.eventTopic = "pet/" + deviceId + "/event";
+        this.commandTopic = "pet/" + deviceId + "/cmd";
+        this.ackTopic = "pet/" + deviceId + "/cmd/ack";
+    }
+}
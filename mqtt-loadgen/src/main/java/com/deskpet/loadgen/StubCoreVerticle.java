@@ -0,0 +1,117 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * pet-core 桩：实现网关调用的 /internal/* 接口（鉴权一律通过），按配置延迟后应答。
+ * 收到上行时读取设备写入 extra（遥测）或 params（事件）的 {@value #SENT_NANOS_FIELD} 计算端到端延迟，
+ * 收到指令回执时结束对应指令的往返计时。
+ */
+@Slf4j
+final class StubCoreVerticle extends AbstractVerticle {
+
+    static final String SENT_NANOS_FIELD = "loadgenSentNanos";
+    static final String HEADER_PRODUCT_KEY = "X-Product-Key";
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final Buffer OK_BODY = Buffer.buffer("{\"ok\":true}");
+
+    private final LoadGenConfig.Stub config;
+    private final LoadStats stats;
+
+    StubCoreVerticle(LoadGenConfig.Stub config, LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        Router router = Router.router(vertx);
+        router.route().handler(ctx -> {
+            stats.stubRequests.increment();
+            ctx.next();
+        });
+        router.route().handler(BodyHandler.create());
+        router.get("/internal/auth").handler(this::handleAuth);
+        router.post("/internal/uplink/batch").handler(this::handleBatch);
+        router.post("/internal/gateway/:action").handler(ctx -> respond(ctx, OK_BODY));
+        router.post("/internal/gateway/presence/batch").handler(ctx -> respond(ctx, OK_BODY));
+        router.post("/internal/:type/:deviceId").handler(this::handleUplink);
+
+        vertx.createHttpServer(new HttpServerOptions().setReusePort(true))
+                .requestHandler(router)
+                .listen(config.port())
+                .onSuccess(server -> {
+                    log.info("[STUB] pet-core 桩已启动: port={}, latencyMs={}, jitterMs={}",
+                            server.actualPort(), config.latencyMs(), config.jitterMs());
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+
+    private void handleAuth(RoutingContext ctx) {
+        if (!config.productKey().isBlank()) {
+            ctx.response().putHeader(HEADER_PRODUCT_KEY, config.productKey());
+        }
+        respond(ctx, OK_BODY);
+    }
+
+    private void handleUplink(RoutingContext ctx) {
+        String type = ctx.pathParam("type");
+        onUplink(type, ctx.body().asJsonObject());
+        respond(ctx, OK_BODY);
+    }
+
+    private void handleBatch(RoutingContext ctx) {
+        JsonArray items = ctx.body().asJsonArray();
+        int size = items == null ? 0 : items.size();
+        for (int i = 0; i < size; i++) {
+            JsonObject item = items.getJsonObject(i);
+            onUplink(item.getString("type"), item.getJsonObject("payload"));
+        }
+        respond(ctx, new JsonObject().put("accepted", size).put("failed", new JsonArray()).toBuffer());
+    }
+
+    private void onUplink(String type, JsonObject payload) {
+        stats.uplinkReceived.increment();
+        if (payload == null) {
+            return;
+        }
+        if ("ack".equals(type)) {
+            stats.commandAcked(payload.getString("reqId"));
+            return;
+        }
+        JsonObject carrier = payload.getJsonObject("extra", payload.getJsonObject("params"));
+        Long sentNanos = carrier == null ? null : carrier.getLong(SENT_NANOS_FIELD);
+        if (sentNanos != null) {
+            stats.uplinkLatency.recordSince(sentNanos);
+        }
+    }
+
+    private void respond(RoutingContext ctx, Buffer body) {
+        int delayMs = config.latencyMs()
+                + (config.jitterMs() > 0 ? ThreadLocalRandom.current().nextInt(config.jitterMs()) : 0);
+        if (delayMs <= 0) {
+            end(ctx, body);
+            return;
+        }
+        vertx.setTimer(delayMs, id -> end(ctx, body));
+    }
+
+    private static void end(RoutingContext ctx, Buffer body) {
+        ctx.response()
+                .setStatusCode(200)
+                .putHeader("Content-Type", CONTENT_TYPE_JSON)
+                .end(body);
+    }
+}
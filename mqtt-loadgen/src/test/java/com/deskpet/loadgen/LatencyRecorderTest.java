@@ -0,0 +1,40 @@
+package com.deskpet.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyRecorderTest {
+
+    @Test
+    void bucketIndex_isMonotonicAndUpperBoundContainsValue() {
+        int previous = -1;
+        for (long micros = 0; micros < 5_000_000; micros += 1 + micros / 7) {
+            int index = LatencyRecorder.bucketIndex(micros);
+            assertTrue(index >= previous);
+            assertTrue(LatencyRecorder.bucketUpperMicros(index) >= micros);
+            assertTrue(LatencyRecorder.bucketUpperMicros(index) <= micros + micros / 16 + 1);
+            previous = index;
+        }
+        assertEquals(LatencyRecorder.BUCKETS - 1, LatencyRecorder.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void snapshotMinus_reportsOnlyTheInterval() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < 100; i++) {
+            recorder.recordNanos(1_000_000);
+        }
+        LatencyRecorder.Snapshot first = recorder.snapshot();
+        for (int i = 0; i < 100; i++) {
+            recorder.recordNanos(50_000_000);
+        }
+        LatencyRecorder.Snapshot interval = recorder.snapshot().minus(first);
+
+        assertEquals(1.0, first.percentileMs(0.99), 0.07);
+        assertEquals(100, interval.count());
+        assertEquals(50.0, interval.percentileMs(0.50), 3.2);
+        assertEquals(0, LatencyRecorder.Snapshot.EMPTY.percentileMs(0.99));
+    }
+}
@@ -0,0 +1,39 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadGenConfigTest {
+
+    @Test
+    void applyArgs_overridesNestedKeysWithTypedLiterals() {
+        JsonObject file = new JsonObject()
+                .put("devices", new JsonObject().put("count", 1000).put("idPrefix", "lg-"))
+                .put("stub", new JsonObject().put("enabled", true));
+
+        LoadGenConfig config = LoadGenConfig.fromConfig(LoadGenConfig.applyArgs(file, new String[]{
+                "--devices.count=100000",
+                "--devices.localAddresses=127.0.0.2,127.0.0.3",
+                "--connect.ratePerSec=2500.5",
+                "--stub.enabled=false"}));
+
+        assertEquals(100000, config.devices().count());
+        assertEquals("lg-42", config.devices().deviceId(42));
+        assertEquals(List.of("127.0.0.2", "127.0.0.3"), config.devices().localAddresses());
+        assertEquals(2500.5, config.connect().ratePerSec());
+        assertFalse(config.stub().enabled());
+        assertEquals(1000, file.getJsonObject("devices").getInteger("count"));
+    }
+
+    @Test
+    void applyArgs_rejectsPositionalArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadGenConfig.applyArgs(new JsonObject(), new String[]{"devices=10"}));
+    }
+}
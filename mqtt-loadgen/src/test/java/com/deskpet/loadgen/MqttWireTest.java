@@ -0,0 +1,20 @@
+package com.deskpet.loadgen;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MqttWireTest {
+
+    @Test
+    void publishBytes_matchesFramingForBothProtocols() {
+        // pet/lg-1/telemetry 为 18 字节
+        assertEquals(124, MqttWire.publishBytes(18, 100, MqttQoS.AT_LEAST_ONCE, false, 0));
+        assertEquals(125, MqttWire.publishBytes(18, 100, MqttQoS.AT_LEAST_ONCE, true, 0));
+        assertEquals(110, MqttWire.publishBytes(0, 100, MqttQoS.AT_LEAST_ONCE, true, MqttWire.TOPIC_ALIAS_PROPERTY_BYTES));
+        assertEquals(18 - MqttWire.TOPIC_ALIAS_PROPERTY_BYTES, 125 - 110);
+        // 剩余长度超过 127 时占 2 字节
+        assertEquals(1 + 2 + 2 + 18 + 200, MqttWire.publishBytes(18, 200, MqttQoS.AT_MOST_ONCE, false, 0));
+    }
+}
@@ -0,0 +1,76 @@
+package com.deskpet.loadgen;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StubCoreVerticleTest {
+
+    private static final int PORT = 18480;
+
+    private final Vertx vertx = Vertx.vertx();
+    private final LoadStats stats = new LoadStats(10);
+    private WebClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        LoadGenConfig.Stub config = new LoadGenConfig.Stub(true, PORT, 1, 0, "deskpet-v1");
+        await(vertx.deployVerticle(new StubCoreVerticle(config, stats)).toCompletionStage());
+        client = WebClient.create(vertx);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(vertx.close().toCompletionStage());
+    }
+
+    @Test
+    void auth_acceptsAnyDeviceAndReturnsProductKey() throws Exception {
+        HttpResponse<Buffer> response = await(client.get(PORT, "localhost", "/internal/auth")
+                .addQueryParam("deviceId", "lg-1")
+                .addQueryParam("secret", "whatever")
+                .send().toCompletionStage());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("deskpet-v1", response.getHeader(StubCoreVerticle.HEADER_PRODUCT_KEY));
+    }
+
+    @Test
+    void uplinkBatch_acceptsAllAndRecordsLatencyAndAcks() throws Exception {
+        stats.commandStarted("req-1", System.nanoTime());
+        JsonArray batch = new JsonArray()
+                .add(new JsonObject().put("type", "telemetry").put("deviceId", "lg-1")
+                        .put("payload", new JsonObject().put("extra",
+                                new JsonObject().put(StubCoreVerticle.SENT_NANOS_FIELD, System.nanoTime()))))
+                .add(new JsonObject().put("type", "ack").put("deviceId", "lg-1")
+                        .put("payload", new JsonObject().put("reqId", "req-1")));
+
+        HttpResponse<Buffer> response = await(client.post(PORT, "localhost", "/internal/uplink/batch")
+                .sendJson(batch).toCompletionStage());
+        HttpResponse<Buffer> single = await(client.post(PORT, "localhost", "/internal/event/lg-2")
+                .sendJsonObject(new JsonObject().put("params",
+                        new JsonObject().put(StubCoreVerticle.SENT_NANOS_FIELD, System.nanoTime())))
+                .toCompletionStage());
+
+        assertEquals(2, response.bodyAsJsonObject().getInteger("accepted"));
+        assertEquals(200, single.statusCode());
+        assertEquals(3, stats.uplinkReceived.sum());
+        assertEquals(2, stats.uplinkLatency.snapshot().count());
+        assertEquals(1, stats.commandCompleted.sum());
+        assertEquals(0, stats.pendingCommandCount());
+    }
+
+    private static <T> T await(java.util.concurrent.CompletionStage<T> stage) throws Exception {
+        return stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+}
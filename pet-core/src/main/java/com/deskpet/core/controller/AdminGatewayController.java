@@ -8,16 +8,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/admin/gateway")
 @Tag(name = "网关管理", description = "网关状态与指标查询")
 public class AdminGatewayController {
 
+    private static final Set<String> HITTER_WINDOWS = Set.of("1m", "5m", "1h");
+    private static final Set<String> HITTER_ORDERS = Set.of("messages", "bytes");
+
     @Autowired
     private GatewayClient gatewayClient;
 
@@ -31,4 +36,32 @@ public class AdminGatewayController {
         }
         return metrics;
     }
+
+    @GetMapping("/latency")
+    @SaCheckPermission("device:list")
+    @Operation(summary = "获取网关耗时分布", description = "鉴权、CONNECT 到接受、回调 pet-core、指令投递各阶段的耗时百分位(毫秒)")
+    public Map<String, Object> getGatewayLatency() {
+        Map<String, Object> latency = gatewayClient.fetchLatency();
+        if (latency == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "无法连接到网关");
+        }
+        return latency;
+    }
+
+    @GetMapping("/hitters")
+    @SaCheckPermission("device:list")
+    @Operation(summary = "获取上行流量最多的设备", description = "网关按 1m/5m/1h 窗口统计的设备消息数或字节数近似排行，type 为空时合计所有消息类型")
+    public Map<String, Object> getHeavyHitters(@RequestParam(defaultValue = "1m") String window,
+                                               @RequestParam(defaultValue = "messages") String by,
+                                               @RequestParam(required = false) String type,
+                                               @RequestParam(defaultValue = "20") int limit) {
+        if (!HITTER_WINDOWS.contains(window) || !HITTER_ORDERS.contains(by) || limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window 取 1m/5m/1h，by 取 messages/bytes");
+        }
+        Map<String, Object> hitters = gatewayClient.fetchHeavyHitters(window, by, type, limit);
+        if (hitters == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "无法连接到网关");
+        }
+        return hitters;
+    }
 }
@@ -6,7 +6,10 @@ import com.deskpet.core.service.CommandService;
 import com.deskpet.core.service.DeviceEventService;
 import com.deskpet.core.service.DeviceRequestService;
 import com.deskpet.core.service.DeviceService;
+import com.deskpet.core.service.GatewayHandoffService;
+import com.deskpet.core.service.ProductService;
 import com.deskpet.core.service.TelemetryService;
+import com.deskpet.core.service.UplinkBatchService;
 import io.swagger.v3.oas.annotations.Hidden;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +21,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -30,17 +34,26 @@ public class InternalController {
     private final CommandService commandService;
     private final DeviceEventService deviceEventService;
     private final DeviceRequestService deviceRequestService;
+    private final UplinkBatchService uplinkBatchService;
+    private final GatewayHandoffService gatewayHandoffService;
+    private final ProductService productService;
 
     public InternalController(DeviceService deviceService,
                               TelemetryService telemetryService,
                               CommandService commandService,
                               DeviceEventService deviceEventService,
-                              DeviceRequestService deviceRequestService) {
+                              DeviceRequestService deviceRequestService,
+                              UplinkBatchService uplinkBatchService,
+                              GatewayHandoffService gatewayHandoffService,
+                              ProductService productService) {
         this.deviceService = deviceService;
         this.telemetryService = telemetryService;
         this.commandService = commandService;
         this.deviceEventService = deviceEventService;
         this.deviceRequestService = deviceRequestService;
+        this.uplinkBatchService = uplinkBatchService;
+        this.gatewayHandoffService = gatewayHandoffService;
+        this.productService = productService;
     }
 
     @GetMapping("/auth")
@@ -54,7 +67,25 @@ public class InternalController {
         if (!deviceService.verifySecret(device, secret)) {
             return ResponseEntity.status(401).body("INVALID_SECRET");
         }
-        return ResponseEntity.ok("OK");
+        // 网关按产品选择遥测限流策略
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (device.productKey() != null) {
+            ok.header("X-Product-Key", device.productKey());
+        }
+        return ok.body("OK");
+    }
+
+    /**
+     * 网关拉取物模型快照，knownVersion 与当前版本一致时返回 304
+     */
+    @GetMapping("/thingModel/{productKey}")
+    public ResponseEntity<ThingModelSnapshot> thingModel(@PathVariable String productKey,
+                                                         @RequestParam(required = false) Long knownVersion) {
+        ThingModelSnapshot snapshot = productService.getThingModelSnapshot(productKey, knownVersion);
+        if (snapshot == null) {
+            return ResponseEntity.status(304).build();
+        }
+        return ResponseEntity.ok(snapshot);
     }
 
     @PostMapping("/telemetry/{deviceId}")
@@ -74,6 +105,7 @@ public class InternalController {
     @PostMapping("/gateway/deviceOnline")
     public ResponseEntity<Void> deviceOnline(@RequestBody GatewayPresenceRequest request) {
         deviceService.markOnline(request.deviceId(), request.gatewayInstanceId(), request.ip());
+        gatewayHandoffService.onOnline(request.deviceId(), System.currentTimeMillis());
         return ResponseEntity.accepted().build();
     }
 
@@ -83,6 +115,23 @@ public class InternalController {
         return ResponseEntity.accepted().build();
     }
 
+    @PostMapping("/gateway/presence/batch")
+    public ResponseEntity<Void> presenceBatch(@RequestBody GatewayPresenceBatchRequest request) {
+        int updated = deviceService.applyPresenceBatch(request);
+        gatewayHandoffService.onPresenceBatch(request);
+        log.debug("Presence batch: instanceId={}, changes={}, history={}", request.gatewayInstanceId(), updated,
+                request.history() == null ? 0 : request.history().size());
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/gateway/activity/batch")
+    public ResponseEntity<Map<String, Integer>> activityBatch(@RequestBody GatewayActivityBatchRequest request) {
+        int updated = deviceService.applyActivityBatch(request);
+        log.debug("Activity batch: instanceId={}, devices={}, updated={}", request.gatewayInstanceId(),
+                request.deviceIds() == null ? 0 : request.deviceIds().size(), updated);
+        return ResponseEntity.ok(Map.of("updated", updated));
+    }
+
     @PostMapping("/event/{deviceId}")
     public ResponseEntity<Void> event(@PathVariable String deviceId,
                                                      @RequestBody DeviceEventRequest request) {
@@ -97,6 +146,17 @@ public class InternalController {
         return ResponseEntity.accepted().build();
     }
 
+    @PostMapping("/uplink/batch")
+    public ResponseEntity<UplinkBatchResponse> uplinkBatch(@RequestBody List<UplinkBatchItem> items) {
+        return ResponseEntity.ok(uplinkBatchService.ingest(items));
+    }
+
+    @PostMapping("/gateway/handoff")
+    public ResponseEntity<Void> gatewayHandoff(@RequestBody GatewayHandoffRequest request) {
+        gatewayHandoffService.begin(request.gatewayInstanceId(), request.deviceIds(), request.graceSec());
+        return ResponseEntity.accepted().build();
+    }
+
     @PostMapping("/gateway/cleanup")
     public ResponseEntity<Void> gatewayCleanup(@RequestBody Map<String, String> request) {
         String gatewayInstanceId = request.get("gatewayInstanceId");
@@ -0,0 +1,18 @@
+package com.deskpet.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * 网关批量上报设备最近活动时间：deviceIds 与 lastSeen 按下标一一对应，只包含上次上报后有新活动的在线设备
+ */
+public record GatewayActivityBatchRequest(
+        @Schema(description = "网关实例ID", example = "gateway-1")
+        String gatewayInstanceId,
+        @Schema(description = "设备ID列表")
+        List<String> deviceIds,
+        @Schema(description = "与 deviceIds 对应的最近活动时间(毫秒时间戳)")
+        List<Long> lastSeen
+) {
+}
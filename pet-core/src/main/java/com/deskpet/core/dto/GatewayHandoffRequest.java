@@ -0,0 +1,18 @@
+package com.deskpet.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * 网关优雅下线前的设备迁移通知
+ */
+public record GatewayHandoffRequest(
+        @Schema(description = "下线中的网关实例ID", example = "gateway-1")
+        String gatewayInstanceId,
+        @Schema(description = "即将断开、预计重连到其他网关的设备ID")
+        List<String> deviceIds,
+        @Schema(description = "等待重连的秒数，超时仍未重连的设备标记为离线", example = "60")
+        int graceSec
+) {
+}
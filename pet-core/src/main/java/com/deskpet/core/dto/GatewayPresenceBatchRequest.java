@@ -0,0 +1,18 @@
+package com.deskpet.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * 网关批量在线状态通知：changes 为去抖后的净变化，history 为原始上下线记录
+ */
+public record GatewayPresenceBatchRequest(
+        @Schema(description = "网关实例ID", example = "gateway-1")
+        String gatewayInstanceId,
+        @Schema(description = "每台设备相对上次通知的净变化，用于更新在线状态与推送")
+        List<GatewayPresenceChange> changes,
+        @Schema(description = "原始上下线记录，只写入会话历史")
+        List<GatewayPresenceChange> history
+) {
+}
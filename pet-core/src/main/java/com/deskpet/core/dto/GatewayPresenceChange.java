@@ -0,0 +1,18 @@
+package com.deskpet.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * 网关批量在线状态通知中的单条上下线记录
+ */
+public record GatewayPresenceChange(
+        @Schema(description = "设备ID", example = "pet001")
+        String deviceId,
+        @Schema(description = "是否在线", example = "true")
+        boolean online,
+        @Schema(description = "设备连接IP", example = "192.168.1.10")
+        String ip,
+        @Schema(description = "网关观察到变化的时间（毫秒时间戳）", example = "1710000000000")
+        long ts
+) {
+}
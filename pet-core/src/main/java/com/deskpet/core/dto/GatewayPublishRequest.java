@@ -1,5 +1,7 @@
 package com.deskpet.core.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 public record GatewayPublishRequest(
@@ -9,7 +11,15 @@ public record GatewayPublishRequest(
         String topic,
         @Schema(description = "QoS 等级", example = "1")
         int qos,
-        @Schema(description = "消息内容（JSON字符串）", example = "{\"schemaVersion\":1}")
-        String payload
+        @Schema(description = "消息内容（JSON），按原始 JSON 值写入请求体，网关可直接切片下发", example = "{\"schemaVersion\":1}")
+        @JsonRawValue
+        String payload,
+        @Schema(description = "设备离线时网关缓存该消息的最长毫秒数，缺省按网关配置", example = "10000")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Long ttlMs
 ) {
+
+    public GatewayPublishRequest(String deviceId, String topic, int qos, String payload) {
+        this(deviceId, topic, qos, payload, null);
+    }
 }
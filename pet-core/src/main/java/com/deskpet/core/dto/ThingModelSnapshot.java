@@ -0,0 +1,52 @@
+package com.deskpet.core.dto;
+
+import com.deskpet.core.model.Product;
+import com.deskpet.core.model.ThingModelProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 网关遥测校验用的物模型快照，只含属性的类型与规格
+ */
+public record ThingModelSnapshot(
+    @Schema(description = "产品标识", example = "deskpet-v1")
+    String productKey,
+    @Schema(description = "物模型版本号，属性、服务、事件每次变更加一", example = "3")
+    long version,
+    @Schema(description = "属性列表")
+    List<Property> properties
+) {
+    public record Property(
+        @Schema(description = "属性标识符", example = "battery")
+        String identifier,
+        @Schema(description = "数据类型（int/float/bool/string/enum/struct）", example = "int")
+        String dataType,
+        @Schema(description = "数据规格", example = "{\"min\":0,\"max\":100}")
+        Map<String, Object> specs,
+        @Schema(description = "是否必填", example = "true")
+        boolean required
+    ) {
+        static Property from(ThingModelProperty property) {
+            return new Property(
+                property.getIdentifier(),
+                property.getDataType(),
+                property.getSpecs(),
+                Boolean.TRUE.equals(property.getRequired())
+            );
+        }
+    }
+
+    public static ThingModelSnapshot from(Product product) {
+        return new ThingModelSnapshot(
+            product.getProductKey(),
+            product.getThingModelVersion() == null ? 1L : product.getThingModelVersion(),
+            product.getProperties().stream()
+                .sorted(Comparator.comparing(ThingModelProperty::getSortOrder))
+                .map(Property::from)
+                .toList()
+        );
+    }
+}
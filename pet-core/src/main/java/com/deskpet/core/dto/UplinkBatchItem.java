@@ -0,0 +1,17 @@
+package com.deskpet.core.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * 网关批量上行中的单条消息
+ */
+public record UplinkBatchItem(
+        @Schema(description = "消息类型（telemetry/event/ack/request）", example = "telemetry")
+        String type,
+        @Schema(description = "设备ID", example = "pet001")
+        String deviceId,
+        @Schema(description = "设备原始上报内容，与对应单条接口的请求体一致")
+        JsonNode payload
+) {
+}
@@ -0,0 +1,13 @@
+package com.deskpet.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public record UplinkBatchResponse(
+        @Schema(description = "处理成功条数", example = "198")
+        int accepted,
+        @Schema(description = "处理失败的消息下标（按请求数组顺序）", example = "[3, 17]")
+        List<Integer> failed
+) {
+}
@@ -54,6 +54,7 @@ public enum ErrorCode {
 
     // 系统错误
     GATEWAY_UNAVAILABLE(HttpStatus.SERVICE_UNAVAILABLE, "C0001", "Gateway unavailable"),
+    INTERNAL_OVERLOADED(HttpStatus.TOO_MANY_REQUESTS, "C0002", "Internal API overloaded"),
     INTERNAL_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "B0001", "Internal server error");
 
     private final HttpStatus status;
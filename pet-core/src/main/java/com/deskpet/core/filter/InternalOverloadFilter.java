@@ -0,0 +1,65 @@
+package com.deskpet.core.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+import com.deskpet.core.error.ErrorCode;
+
+/**
+ * 内部接口过载保护：同时处理的 /internal 请求超过 internal.overload.maxConcurrent 时直接返回 429 与 Retry-After，
+ * 网关据此退避并熔断对应接口，而不是继续堆积等待数据库连接。maxConcurrent 为 0 时不限制。
+ */
+@Component
+public class InternalOverloadFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final String retryAfterSec;
+
+    public InternalOverloadFilter(@Value("${internal.overload.maxConcurrent:0}") int maxConcurrent,
+                                  @Value("${internal.overload.retryAfterSec:1}") int retryAfterSec) {
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        this.retryAfterSec = Integer.toString(Math.max(1, retryAfterSec));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (permits == null) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (contextPath != null && !contextPath.isEmpty() && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+        return !path.startsWith("/internal");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!permits.tryAcquire()) {
+            response.setStatus(ErrorCode.INTERNAL_OVERLOADED.status().value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSec);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            String body = "{\"code\":\"" + ErrorCode.INTERNAL_OVERLOADED.code()
+                    + "\",\"message\":\"" + ErrorCode.INTERNAL_OVERLOADED.defaultMessage() + "\"}";
+            response.getWriter().write(body);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
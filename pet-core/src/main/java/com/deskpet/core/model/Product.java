@@ -45,6 +45,10 @@ public class Product {
     @Builder.Default
     private Status status = Status.ACTIVE;
 
+    @Column(name = "thing_model_version", nullable = false)
+    @Builder.Default
+    private Long thingModelVersion = 1L;
+
     @Column(name = "created_at", nullable = false)
     @Builder.Default
     private Instant createdAt = Instant.now();
@@ -69,6 +73,14 @@ public class Product {
         this.updatedAt = Instant.now();
     }
 
+    /**
+     * 物模型（属性、服务、事件）变更后调用，网关按版本号刷新遥测校验快照
+     */
+    public void bumpThingModelVersion() {
+        this.thingModelVersion = thingModelVersion == null ? 1L : thingModelVersion + 1;
+        this.updatedAt = Instant.now();
+    }
+
     public boolean isActive() {
         return status == Status.ACTIVE;
     }
@@ -2,9 +2,22 @@ package com.deskpet.core.repository;
 
 import com.deskpet.core.model.DeviceSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface DeviceSessionRepository extends JpaRepository<DeviceSession, String> {
     List<DeviceSession> findByGatewayInstanceIdAndOnlineTrue(String gatewayInstanceId);
+
+    /**
+     * 一条语句批量推进 last_seen：两个数组按下标配对展开，只更新比现值更新的行，返回实际更新的行数。
+     */
+    @Modifying
+    @Query(value = "UPDATE device_session s SET last_seen = to_timestamp(v.last_seen_ms / 1000.0) " +
+            "FROM unnest(CAST(:deviceIds AS text[]), CAST(:lastSeenMs AS bigint[])) AS v(device_id, last_seen_ms) " +
+            "WHERE s.device_id = v.device_id AND s.last_seen < to_timestamp(v.last_seen_ms / 1000.0)",
+            nativeQuery = true)
+    int advanceLastSeen(@Param("deviceIds") String[] deviceIds, @Param("lastSeenMs") Long[] lastSeenMs);
 }
@@ -0,0 +1,305 @@
+package com.deskpet.core.rpc;
+
+import com.deskpet.core.dto.UplinkBatchItem;
+import com.deskpet.core.dto.UplinkBatchResponse;
+import com.deskpet.core.service.UplinkBatchService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网关内部长连接服务端，帧格式见 {@link RpcFrame}。
+ * <p>
+ * 网关每个 Verticle 启动时主动连接并以 HELLO 完成内部 Token 校验，之后同一连接双向多路复用：
+ * 批量上行在有界线程池中处理，线程池排满时返回 503 让网关回退 HTTP；下行指令轮询选择一条可写的连接发送，
+ * 没有可用连接时由调用方回退 HTTP。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InternalRpcServer {
+    private static final TypeReference<List<UplinkBatchItem>> BATCH_TYPE = new TypeReference<>() {
+    };
+
+    private final UplinkBatchService uplinkBatchService;
+    private final ObjectMapper objectMapper;
+    @Value("${internal.rpc.enabled:false}")
+    private boolean enabled;
+    @Value("${internal.rpc.port:9091}")
+    private int port;
+    @Value("${internal.rpc.workerThreads:8}")
+    private int workerThreads;
+    @Value("${internal.rpc.maxQueue:1000}")
+    private int maxQueue;
+    @Value("${internal.rpc.timeoutMs:3000}")
+    private long timeoutMs;
+    @Value("${internal.rpc.maxFrameBytes:4194304}")
+    private int maxFrameBytes;
+    @Value("${internal.token:}")
+    private String internalToken;
+
+    private final List<Channel> readyChannels = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ThreadPoolExecutor executor;
+    private Channel serverChannel;
+
+    @PostConstruct
+    public void start() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueue)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "internal-rpc-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        bossGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new LengthFieldBasedFrameDecoder(maxFrameBytes, 0, RpcFrame.LENGTH_BYTES,
+                                        0, RpcFrame.LENGTH_BYTES))
+                                .addLast(new LengthFieldPrepender(RpcFrame.LENGTH_BYTES))
+                                .addLast(new ConnectionHandler());
+                    }
+                })
+                .bind(port)
+                .sync()
+                .channel();
+        log.info("[RPC] 网关内部长连接已监听: port={}", boundPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close().syncUninterruptibly();
+        readyChannels.forEach(Channel::close);
+        bossGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    /**
+     * 是否有已通过校验的网关连接。
+     */
+    public boolean available() {
+        return !readyChannels.isEmpty();
+    }
+
+    int boundPort() {
+        return serverChannel == null ? -1 : ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * 经长连接向网关发起请求并同步等待响应。
+     * <p>
+     * 没有可写的连接或请求未能写出时返回 null，由调用方回退 HTTP；请求已写出但连接断开或超时未响应时抛出
+     * IOException（网关可能已经执行，调用方不应再重发）。
+     */
+    public RpcFrame call(byte op, byte[] body) throws IOException {
+        Channel channel = nextChannel();
+        if (channel == null) {
+            return null;
+        }
+        int id = nextId.incrementAndGet();
+        CompletableFuture<RpcFrame> future = new CompletableFuture<>();
+        pending.put(id, new Pending(channel, future));
+        try {
+            ChannelFuture write = channel.writeAndFlush(RpcFrame.request(id, op, body).encode(channel.alloc()));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            if (!write.await(timeoutMs)) {
+                throw new SocketTimeoutException("写出网关请求超时");
+            }
+            if (!write.isSuccess()) {
+                return null;
+            }
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("等待网关响应超时: timeoutMs=" + timeoutMs);
+        } catch (ExecutionException e) {
+            throw new IOException("网关连接已断开", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待网关响应被中断", e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private Channel nextChannel() {
+        Channel[] channels = readyChannels.toArray(new Channel[0]);
+        if (channels.length == 0) {
+            return null;
+        }
+        int start = Math.floorMod(roundRobin.getAndIncrement(), channels.length);
+        for (int i = 0; i < channels.length; i++) {
+            Channel channel = channels[(start + i) % channels.length];
+            if (channel.isActive() && channel.isWritable()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private boolean tokenMatches(byte[] helloBody) {
+        if (internalToken == null || internalToken.isBlank()) {
+            return true;
+        }
+        try {
+            JsonNode hello = objectMapper.readTree(helloBody);
+            return internalToken.equals(hello.path("token").asText(null));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private byte[] ingestBatch(byte[] body) throws IOException {
+        List<UplinkBatchItem> items = objectMapper.readValue(body, BATCH_TYPE);
+        UplinkBatchResponse response = uplinkBatchService.ingest(items);
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    private record Pending(Channel channel, CompletableFuture<RpcFrame> future) {
+    }
+
+    private final class ConnectionHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private boolean ready;
+        private String instanceId;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+            RpcFrame frame = RpcFrame.decode(msg);
+            if (!frame.isRequest()) {
+                Pending waiting = pending.remove(frame.id());
+                if (waiting != null) {
+                    waiting.future().complete(frame);
+                }
+                return;
+            }
+            if (frame.op() == RpcFrame.OP_HELLO) {
+                handleHello(ctx, frame);
+                return;
+            }
+            if (!ready) {
+                reply(ctx, frame, 401, null).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            if (frame.op() != RpcFrame.OP_UPLINK_BATCH) {
+                reply(ctx, frame, 404, null);
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        reply(ctx, frame, 200, ingestBatch(frame.body()));
+                    } catch (IOException e) {
+                        log.warn("[RPC] 批量上行解析失败: instanceId={}, error={}", instanceId, e.getMessage());
+                        reply(ctx, frame, 400, null);
+                    } catch (RuntimeException e) {
+                        log.error("[RPC] 批量上行处理异常: instanceId={}", instanceId, e);
+                        reply(ctx, frame, 500, null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                reply(ctx, frame, 503, null);
+            }
+        }
+
+        private void handleHello(ChannelHandlerContext ctx, RpcFrame frame) {
+            if (!tokenMatches(frame.body())) {
+                log.warn("[RPC] 网关连接 Token 校验失败: remote={}", ctx.channel().remoteAddress());
+                reply(ctx, frame, 401, null).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            try {
+                instanceId = objectMapper.readTree(frame.body()).path("instanceId").asText("");
+            } catch (IOException e) {
+                instanceId = "";
+            }
+            if (!ready) {
+                ready = true;
+                readyChannels.add(ctx.channel());
+            }
+            log.info("[RPC] 网关已连接: instanceId={}, remote={}, connections={}",
+                    instanceId, ctx.channel().remoteAddress(), readyChannels.size());
+            reply(ctx, frame, 200, null);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (readyChannels.remove(ctx.channel())) {
+                log.info("[RPC] 网关连接断开: instanceId={}, connections={}", instanceId, readyChannels.size());
+            }
+            pending.values().removeIf(waiting -> {
+                if (waiting.channel() != ctx.channel()) {
+                    return false;
+                }
+                waiting.future().completeExceptionally(new IOException("channel closed"));
+                return true;
+            });
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("[RPC] 网关连接异常: instanceId={}, error={}", instanceId, cause.getMessage());
+            ctx.close();
+        }
+
+        private ChannelFuture reply(ChannelHandlerContext ctx, RpcFrame request, int status, byte[] body) {
+            return ctx.writeAndFlush(RpcFrame.response(request.id(), request.op(), status, body).encode(ctx.alloc()));
+        }
+    }
+}
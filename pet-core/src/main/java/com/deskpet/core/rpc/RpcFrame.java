@@ -0,0 +1,65 @@
+package com.deskpet.core.rpc;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * 网关内部长连接的帧（长度前缀由 Netty 编解码器处理，须与网关侧 {@code com.deskpet.gateway.RpcFrame} 保持一致）：
+ * <pre>
+ * [int length][byte type][int id][byte op][short status][body...]
+ * </pre>
+ * body 为 JSON，与对应 HTTP 内部接口的请求/响应体相同；status 仅响应使用，语义与 HTTP 状态码一致。
+ */
+public record RpcFrame(byte type, int id, byte op, int status, byte[] body) {
+
+    public static final byte TYPE_REQUEST = 0;
+    public static final byte TYPE_RESPONSE = 1;
+
+    public static final byte OP_HELLO = 1;
+    public static final byte OP_UPLINK_BATCH = 2;
+    public static final byte OP_COMMAND_SEND = 3;
+    public static final byte OP_RESPONSE_SEND = 4;
+
+    static final int LENGTH_BYTES = 4;
+    static final int HEADER_BYTES = 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    public static RpcFrame request(int id, byte op, byte[] body) {
+        return new RpcFrame(TYPE_REQUEST, id, op, 0, body);
+    }
+
+    public static RpcFrame response(int id, byte op, int status, byte[] body) {
+        return new RpcFrame(TYPE_RESPONSE, id, op, status, body);
+    }
+
+    public boolean isRequest() {
+        return type == TYPE_REQUEST;
+    }
+
+    /**
+     * 编码帧内容（不含长度前缀）。
+     */
+    public ByteBuf encode(ByteBufAllocator allocator) {
+        byte[] payload = body == null ? EMPTY : body;
+        return allocator.buffer(HEADER_BYTES + payload.length)
+                .writeByte(type)
+                .writeInt(id)
+                .writeByte(op)
+                .writeShort(status)
+                .writeBytes(payload);
+    }
+
+    public static RpcFrame decode(ByteBuf frame) {
+        if (frame.readableBytes() < HEADER_BYTES) {
+            throw new IllegalArgumentException("frame too short: " + frame.readableBytes());
+        }
+        byte type = frame.readByte();
+        int id = frame.readInt();
+        byte op = frame.readByte();
+        int status = frame.readUnsignedShort();
+        byte[] body = new byte[frame.readableBytes()];
+        frame.readBytes(body);
+        return new RpcFrame(type, id, op, status, body);
+    }
+}
@@ -131,7 +131,8 @@ public class CommandService {
         try {
             log.info("[CMD] 发送到网关: reqId={}, deviceId={}", command.reqId(), command.deviceId());
             response = gatewayClient.sendCommand(
-                    new GatewayPublishRequest(command.deviceId(), "pet/" + command.deviceId() + "/cmd", 1, payloadJson));
+                    new GatewayPublishRequest(command.deviceId(), "pet/" + command.deviceId() + "/cmd", 1, payloadJson,
+                            timeoutSeconds * 1000L));
             log.info("[CMD] 网关响应: reqId={}, ok={}, reason={}", command.reqId(),
                     response != null ? response.ok() : "null",
                     response != null ? response.reason() : "null");
@@ -1,6 +1,9 @@
 package com.deskpet.core.service;
 
 import com.deskpet.core.dto.DeviceResponse;
+import com.deskpet.core.dto.GatewayActivityBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceChange;
 import com.deskpet.core.error.BusinessException;
 import com.deskpet.core.error.ErrorCode;
 import com.deskpet.core.model.Device;
@@ -16,14 +19,20 @@ import com.deskpet.core.repository.ProductRepository;
 import com.deskpet.core.repository.TelemetryLatestRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
 import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -38,8 +47,11 @@ public class DeviceService {
     private final CosUtil cosUtil;
     private final SecretHasher secretHasher;
 
+    private final Object pendingInvalidationKey = new Object();
+
     private TimeSeriesService timeSeriesService;
     private WebSocketPushService webSocketPushService;
+    private GatewayClient gatewayClient;
 
     public DeviceService(DeviceRepository deviceRepository,
                          DeviceSessionRepository sessionRepository,
@@ -65,13 +77,57 @@ public class DeviceService {
         this.webSocketPushService = webSocketPushService;
     }
 
+    /**
+     * GatewayClient 经 InternalRpcServer、UplinkBatchService 间接依赖本类，用 setter 注入避免构造器循环依赖。
+     */
+    @Autowired(required = false)
+    public void setGatewayClient(GatewayClient gatewayClient) {
+        this.gatewayClient = gatewayClient;
+    }
+
     public Device register(String deviceId, String secret, String model, String productKey, String remark,Long productId) {
         if (deviceRepository.existsById(deviceId)) {
             throw new BusinessException(ErrorCode.DEVICE_ALREADY_EXISTS);
         }
         SecretHash hashed = secretHasher.hash(secret);
         Device device = new Device(deviceId, hashed.hash(), hashed.salt(), model, productKey, productId, remark, Instant.now());
-        return deviceRepository.save(device);
+        Device saved = deviceRepository.save(device);
+        // 注册前用该 deviceId 连接过的设备会在网关留下 DEVICE_NOT_FOUND 的拒绝缓存
+        invalidateGatewayCredentials(deviceId);
+        return saved;
+    }
+
+    /**
+     * 通知网关失效设备凭证缓存。处于事务中时推迟到提交后，并把同一事务内的设备合并为一次请求（批量生成授权码）；
+     * 提交前通知的话，网关在提交前重新鉴权仍会得到旧结果。
+     */
+    private void invalidateGatewayCredentials(String deviceId) {
+        if (gatewayClient == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            gatewayClient.invalidateCredentials(List.of(deviceId));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(pendingInvalidationKey);
+        if (pending == null) {
+            Set<String> deviceIds = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(pendingInvalidationKey, deviceIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    gatewayClient.invalidateCredentials(deviceIds);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(pendingInvalidationKey);
+                }
+            });
+            pending = deviceIds;
+        }
+        pending.add(deviceId);
     }
 
     public Collection<Device> list() {
@@ -124,6 +180,87 @@ public class DeviceService {
         return saved;
     }
 
+    /**
+     * 网关批量在线状态通知：净变化一次性更新会话并逐台推送，原始上下线记录批量写入会话历史。
+     * 网关的下线通知会延迟去抖窗口后才发出，设备可能已在其他网关重新上线，因此当前会话属于其他网关、
+     * 或 last_seen 晚于下线时间的下线变化不再覆盖会话。
+     *
+     * @return 更新的设备数
+     */
+    public int applyPresenceBatch(GatewayPresenceBatchRequest request) {
+        String gatewayInstanceId = request.gatewayInstanceId();
+        List<GatewayPresenceChange> received = request.changes() == null ? List.of() : request.changes();
+        List<GatewayPresenceChange> history = request.history() == null ? List.of() : request.history();
+        if (timeSeriesService != null && !history.isEmpty()) {
+            timeSeriesService.writeDeviceSessions(history, gatewayInstanceId);
+        }
+        List<GatewayPresenceChange> changes = withoutStaleOffline(received, gatewayInstanceId);
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        sessionRepository.saveAll(changes.stream()
+                .map(change -> new DeviceSession(change.deviceId(), change.online(), gatewayInstanceId, change.ip(),
+                        Instant.ofEpochMilli(change.ts())))
+                .toList());
+        if (webSocketPushService != null) {
+            for (GatewayPresenceChange change : changes) {
+                webSocketPushService.pushPresence(change.deviceId(), change.online());
+            }
+        }
+        return changes.size();
+    }
+
+    private List<GatewayPresenceChange> withoutStaleOffline(List<GatewayPresenceChange> changes, String gatewayInstanceId) {
+        List<String> offlineIds = changes.stream()
+                .filter(change -> !change.online())
+                .map(GatewayPresenceChange::deviceId)
+                .toList();
+        if (offlineIds.isEmpty()) {
+            return changes;
+        }
+        Map<String, DeviceSession> stored = sessionRepository.findAllById(offlineIds).stream()
+                .collect(Collectors.toMap(DeviceSession::deviceId, session -> session));
+        return changes.stream()
+                .filter(change -> {
+                    DeviceSession current = change.online() ? null : stored.get(change.deviceId());
+                    if (current == null) {
+                        return true;
+                    }
+                    boolean stale = !Objects.equals(current.gatewayInstanceId(), gatewayInstanceId)
+                            || current.lastSeen().toEpochMilli() > change.ts();
+                    if (stale) {
+                        log.info("忽略过期的下线通知: deviceId={}, gateway={}, currentGateway={}",
+                                change.deviceId(), gatewayInstanceId, current.gatewayInstanceId());
+                    }
+                    return !stale;
+                })
+                .toList();
+    }
+
+    /**
+     * 网关批量上报的最近活动时间：同一设备取最大值，以一条 UPDATE ... FROM unnest 推进 last_seen，不会回退。
+     *
+     * @return 实际更新的会话数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int applyActivityBatch(GatewayActivityBatchRequest request) {
+        List<String> deviceIds = request.deviceIds() == null ? List.of() : request.deviceIds();
+        List<Long> lastSeen = request.lastSeen() == null ? List.of() : request.lastSeen();
+        if (deviceIds.size() != lastSeen.size()) {
+            throw new BusinessException(ErrorCode.INVALID_PARAM, "deviceIds 与 lastSeen 长度不一致");
+        }
+        Map<String, Long> latest = new LinkedHashMap<>();
+        for (int i = 0; i < deviceIds.size(); i++) {
+            if (deviceIds.get(i) != null && lastSeen.get(i) != null) {
+                latest.merge(deviceIds.get(i), lastSeen.get(i), Math::max);
+            }
+        }
+        if (latest.isEmpty()) {
+            return 0;
+        }
+        return sessionRepository.advanceLastSeen(latest.keySet().toArray(String[]::new), latest.values().toArray(Long[]::new));
+    }
+
     /**
      * 根据设备ID列表查询设备（带会话和遥测信息）
      */
@@ -159,13 +296,35 @@ public class DeviceService {
     public void markAllOfflineByGateway(String gatewayInstanceId) {
         List<DeviceSession> sessions = sessionRepository
                 .findByGatewayInstanceIdAndOnlineTrue(gatewayInstanceId);
-        for (DeviceSession s : sessions) {
-            markOffline(s.deviceId(), gatewayInstanceId, s.ip());
-        }
+        markOfflineBulk(gatewayInstanceId, sessions);
         log.info("Gateway cleanup: instanceId={}, offlined={} devices",
                 gatewayInstanceId, sessions.size());
     }
 
+    /**
+     * 批量标记离线：会话一次性保存，上下线历史一次批量写入，再逐台推送。
+     */
+    public void markOfflineBulk(String gatewayInstanceId, List<DeviceSession> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<GatewayPresenceChange> changes = sessions.stream()
+                .map(s -> new GatewayPresenceChange(s.deviceId(), false, s.ip(), now.toEpochMilli()))
+                .toList();
+        if (timeSeriesService != null) {
+            timeSeriesService.writeDeviceSessions(changes, gatewayInstanceId);
+        }
+        sessionRepository.saveAll(sessions.stream()
+                .map(s -> new DeviceSession(s.deviceId(), false, gatewayInstanceId, s.ip(), now))
+                .toList());
+        if (webSocketPushService != null) {
+            for (DeviceSession s : sessions) {
+                webSocketPushService.pushPresence(s.deviceId(), false);
+            }
+        }
+    }
+
     private Map<Long, String> loadProductIconMap(List<Device> devices) {
         Set<Long> productIds = devices.stream()
                 .map(Device::productId)
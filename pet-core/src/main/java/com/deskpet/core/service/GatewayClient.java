@@ -2,19 +2,31 @@ package com.deskpet.core.service;
 
 import com.deskpet.core.dto.GatewayPublishRequest;
 import com.deskpet.core.dto.GatewayPublishResponse;
+import com.deskpet.core.rpc.InternalRpcServer;
+import com.deskpet.core.rpc.RpcFrame;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -22,6 +34,7 @@ import java.util.Map;
 public class GatewayClient {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final InternalRpcServer internalRpcServer;
     @Value("${gateway.baseUrl:http://localhost:8081}")
     private String gatewayBaseUrl;
     @Value("${internal.token:}")
@@ -29,17 +42,24 @@ public class GatewayClient {
 
     public GatewayPublishResponse sendCommand(GatewayPublishRequest request) {
         String url = gatewayBaseUrl + "/internal/command/send";
-        return publish(url, request, "发送指令");
+        return publish(url, RpcFrame.OP_COMMAND_SEND, request, "发送指令");
     }
 
     public GatewayPublishResponse sendResponse(GatewayPublishRequest request) {
         String url = gatewayBaseUrl + "/internal/response/send";
-        return publish(url, request, "发送设备响应");
+        return publish(url, RpcFrame.OP_RESPONSE_SEND, request, "发送设备响应");
     }
 
-    private GatewayPublishResponse publish(String url, GatewayPublishRequest request, String action) {
+    private GatewayPublishResponse publish(String url, byte op, GatewayPublishRequest request, String action) {
         log.info("[GW] {}到网关: url={}, deviceId={}, topic={}, qos={}, payload={}",
                 action, url, request.deviceId(), request.topic(), request.qos(), request.payload());
+        if (internalRpcServer.available()) {
+            RpcFrame reply = callRpc(op, request);
+            if (reply != null) {
+                return handleRpcReply(reply);
+            }
+            log.info("[GW] 网关长连接不可用，回退 HTTP: deviceId={}", request.deviceId());
+        }
         HttpHeaders headers = new HttpHeaders();
         if (internalToken != null && !internalToken.isBlank()) {
             headers.add("X-Internal-Token", internalToken);
@@ -66,6 +86,63 @@ public class GatewayClient {
         }
     }
 
+    /**
+     * 经网关长连接下发；没有可用连接时返回 null。请求已写出但未得到响应时按 I/O 失败处理，不再回退 HTTP 重发。
+     */
+    private RpcFrame callRpc(byte op, GatewayPublishRequest request) {
+        try {
+            return internalRpcServer.call(op, objectMapper.writeValueAsBytes(request));
+        } catch (IOException ex) {
+            throw new ResourceAccessException("[GW] 网关长连接请求失败: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 与 HTTP 路径保持一致：2xx 与 409 返回响应体，其余状态抛出对应的 HttpStatusCodeException。
+     */
+    private GatewayPublishResponse handleRpcReply(RpcFrame reply) {
+        String body = new String(reply.body(), StandardCharsets.UTF_8);
+        HttpStatusCode status = HttpStatusCode.valueOf(reply.status());
+        log.info("[GW] 网关响应(长连接): statusCode={}, body={}", status, body);
+        if (status.is2xxSuccessful() || status.value() == HttpStatus.CONFLICT.value()) {
+            if (body.isBlank()) {
+                return null;
+            }
+            try {
+                return objectMapper.readValue(body, GatewayPublishResponse.class);
+            } catch (Exception ex) {
+                log.error("[GW] 解析网关响应失败: body={}", body);
+                return null;
+            }
+        }
+        log.warn("[GW] 网关返回错误: statusCode={}, body={}", status, body);
+        if (status.is5xxServerError()) {
+            throw HttpServerErrorException.create(status, "", HttpHeaders.EMPTY, reply.body(), StandardCharsets.UTF_8);
+        }
+        throw HttpClientErrorException.create(status, "", HttpHeaders.EMPTY, reply.body(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 通知网关失效指定设备的凭证缓存（设备注册、密钥变更后调用）。
+     * 失败只记录日志，网关侧缓存仍会在 TTL 到期后自然失效。
+     */
+    public void invalidateCredentials(Collection<String> deviceIds) {
+        if (deviceIds == null || deviceIds.isEmpty()) {
+            return;
+        }
+        String url = gatewayBaseUrl + "/internal/auth/invalidate";
+        HttpHeaders headers = new HttpHeaders();
+        if (internalToken != null && !internalToken.isBlank()) {
+            headers.add("X-Internal-Token", internalToken);
+        }
+        try {
+            restTemplate.postForEntity(url, new HttpEntity<>(Map.of("deviceIds", deviceIds), headers), String.class);
+            log.info("[GW] 已通知网关失效凭证缓存: deviceIds={}", deviceIds);
+        } catch (Exception ex) {
+            log.warn("[GW] 通知网关失效凭证缓存失败: deviceIds={}, error={}", deviceIds, ex.getMessage());
+        }
+    }
+
     /**
      * 从网关获取 Prometheus 格式的 metrics 文本，解析为 Map
      */
@@ -84,6 +161,54 @@ public class GatewayClient {
         }
     }
 
+    /**
+     * 从网关获取各热路径阶段的耗时百分位（毫秒）
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> fetchLatency() {
+        String url = gatewayBaseUrl + "/internal/debug/latency";
+        HttpHeaders headers = new HttpHeaders();
+        if (internalToken != null && !internalToken.isBlank()) {
+            headers.add("X-Internal-Token", internalToken);
+        }
+        try {
+            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Map.class);
+            Map<String, Object> body = response.getBody();
+            if (body == null || !(body.get("stages") instanceof Map<?, ?> stages)) {
+                return Map.of();
+            }
+            return (Map<String, Object>) stages;
+        } catch (Exception ex) {
+            log.warn("[GW] 获取网关耗时分布失败: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 从网关获取窗口内上行流量最多的设备（近似 Top-K），参数由调用方校验后原样透传
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> fetchHeavyHitters(String window, String by, String type, int limit) {
+        String url = UriComponentsBuilder.fromHttpUrl(gatewayBaseUrl + "/internal/debug/hitters")
+                .queryParam("window", window)
+                .queryParam("by", by)
+                .queryParamIfPresent("type", Optional.ofNullable(type).filter(value -> !value.isBlank()))
+                .queryParam("limit", limit)
+                .toUriString();
+        HttpHeaders headers = new HttpHeaders();
+        if (internalToken != null && !internalToken.isBlank()) {
+            headers.add("X-Internal-Token", internalToken);
+        }
+        try {
+            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Map.class);
+            Map<String, Object> body = response.getBody();
+            return body == null ? Map.of() : body;
+        } catch (Exception ex) {
+            log.warn("[GW] 获取网关设备流量排行失败: {}", ex.getMessage());
+            return null;
+        }
+    }
+
     private Map<String, Object> parsePrometheusText(String text) {
         Map<String, Object> result = new java.util.LinkedHashMap<>();
         for (String line : text.split("\n")) {
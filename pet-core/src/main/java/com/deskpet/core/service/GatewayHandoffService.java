@@ -0,0 +1,103 @@
+package com.deskpet.core.service;
+
+import com.deskpet.core.dto.GatewayPresenceBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceChange;
+import com.deskpet.core.model.DeviceSession;
+import com.deskpet.core.repository.DeviceSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 网关优雅下线时的设备迁移：网关断开设备前一次性告知设备列表，期间不逐台标记离线；
+ * 宽限期过后仍挂在原网关上的在线会话再批量标记离线，已在其他网关重连的设备不受影响。
+ * 设备在迁移开始后重新上线（包括网关重启后以同一 gatewayInstanceId 重连）时撤销其迁移记录，不再标记离线。
+ */
+@Slf4j
+@Service
+public class GatewayHandoffService {
+
+    private record Handoff(String gatewayInstanceId, Instant startedAt, Instant deadline) {
+    }
+
+    private final Map<String, Handoff> handoffs = new ConcurrentHashMap<>();
+    private final DeviceSessionRepository sessionRepository;
+    private final DeviceService deviceService;
+
+    public GatewayHandoffService(DeviceSessionRepository sessionRepository, DeviceService deviceService) {
+        this.sessionRepository = sessionRepository;
+        this.deviceService = deviceService;
+    }
+
+    public void begin(String gatewayInstanceId, List<String> deviceIds, int graceSec) {
+        if (deviceIds == null || deviceIds.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Handoff handoff = new Handoff(gatewayInstanceId, now, now.plusSeconds(Math.max(0, graceSec)));
+        for (String deviceId : deviceIds) {
+            handoffs.put(deviceId, handoff);
+        }
+        log.info("Gateway handoff: instanceId={}, devices={}, graceSec={}", gatewayInstanceId, deviceIds.size(), graceSec);
+    }
+
+    /**
+     * 设备在 atMs 上线：迁移开始之后的上线说明设备已经重连，撤销迁移记录。
+     */
+    public void onOnline(String deviceId, long atMs) {
+        handoffs.computeIfPresent(deviceId,
+                (id, handoff) -> handoff.startedAt().toEpochMilli() <= atMs ? null : handoff);
+    }
+
+    /**
+     * 按批量在线状态通知中的上线记录（净变化与原始记录）撤销迁移记录。
+     */
+    public void onPresenceBatch(GatewayPresenceBatchRequest request) {
+        if (handoffs.isEmpty()) {
+            return;
+        }
+        cancelOnline(request.changes());
+        cancelOnline(request.history());
+    }
+
+    private void cancelOnline(List<GatewayPresenceChange> changes) {
+        if (changes == null) {
+            return;
+        }
+        for (GatewayPresenceChange change : changes) {
+            if (change != null && change.online() && change.deviceId() != null) {
+                onOnline(change.deviceId(), change.ts());
+            }
+        }
+    }
+
+    public int pendingCount() {
+        return handoffs.size();
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.handoffScanMs:1000}")
+    public void expireHandoffs() {
+        Instant now = Instant.now();
+        Map<String, List<String>> expired = new HashMap<>();
+        handoffs.forEach((deviceId, handoff) -> {
+            if (!handoff.deadline().isAfter(now) && handoffs.remove(deviceId, handoff)) {
+                expired.computeIfAbsent(handoff.gatewayInstanceId(), id -> new ArrayList<>()).add(deviceId);
+            }
+        });
+        expired.forEach((gatewayInstanceId, deviceIds) -> {
+            List<DeviceSession> stale = sessionRepository.findAllById(deviceIds).stream()
+                    .filter(session -> session.online() && gatewayInstanceId.equals(session.gatewayInstanceId()))
+                    .toList();
+            deviceService.markOfflineBulk(gatewayInstanceId, stale);
+            log.info("Gateway handoff expired: instanceId={}, devices={}, offlined={}",
+                    gatewayInstanceId, deviceIds.size(), stale.size());
+        });
+    }
+}
@@ -143,6 +143,7 @@ public class ProductService {
             .build();
 
         property = propertyRepository.save(property);
+        bumpThingModelVersion(product);
         log.info("Property added: productKey={}, identifier={}", productKey, request.identifier());
         return PropertyDTO.from(property);
     }
@@ -188,6 +189,7 @@ public class ProductService {
         }
 
         property = propertyRepository.save(property);
+        bumpThingModelVersion(product);
         log.info("Property updated: productKey={}, propertyId={}", productKey, propertyId);
         return PropertyDTO.from(property);
     }
@@ -208,6 +210,7 @@ public class ProductService {
         }
 
         propertyRepository.delete(property);
+        bumpThingModelVersion(product);
         log.info("Property deleted: productKey={}, propertyId={}", productKey, propertyId);
     }
 
@@ -237,6 +240,7 @@ public class ProductService {
             .build();
 
         service = serviceRepository.save(service);
+        bumpThingModelVersion(product);
         log.info("Service added: productKey={}, identifier={}", productKey, request.identifier());
         return ServiceDTO.from(service);
     }
@@ -281,6 +285,7 @@ public class ProductService {
         }
 
         service = serviceRepository.save(service);
+        bumpThingModelVersion(product);
         log.info("Service updated: productKey={}, serviceId={}", productKey, serviceId);
         return ServiceDTO.from(service);
     }
@@ -301,6 +306,7 @@ public class ProductService {
         }
 
         serviceRepository.delete(service);
+        bumpThingModelVersion(product);
         log.info("Service deleted: productKey={}, serviceId={}", productKey, serviceId);
     }
 
@@ -329,6 +335,7 @@ public class ProductService {
             .build();
 
         event = eventRepository.save(event);
+        bumpThingModelVersion(product);
         log.info("Event added: productKey={}, identifier={}", productKey, request.identifier());
         return EventDTO.from(event);
     }
@@ -368,6 +375,7 @@ public class ProductService {
         }
 
         event = eventRepository.save(event);
+        bumpThingModelVersion(product);
         log.info("Event updated: productKey={}, eventId={}", productKey, eventId);
         return EventDTO.from(event);
     }
@@ -388,6 +396,7 @@ public class ProductService {
         }
 
         eventRepository.delete(event);
+        bumpThingModelVersion(product);
         log.info("Event deleted: productKey={}, eventId={}", productKey, eventId);
     }
 
@@ -477,10 +486,30 @@ public class ProductService {
             }
         }
 
+        bumpThingModelVersion(product);
         log.info("Thing model imported: productKey={}", productKey);
         return getProductWithThingModel(productKey);
     }
 
+    /**
+     * 获取网关遥测校验用的物模型快照；knownVersion 与当前版本一致时返回 null
+     */
+    @Transactional(readOnly = true)
+    public ThingModelSnapshot getThingModelSnapshot(String productKey, Long knownVersion) {
+        Product product = productRepository.findByProductKey(productKey)
+            .orElseThrow(() -> new BusinessException(ErrorCode.PRODUCT_NOT_FOUND, "产品不存在"));
+        if (knownVersion != null && knownVersion.equals(product.getThingModelVersion())) {
+            return null;
+        }
+        product = productRepository.findByIdWithProperties(product.getId()).orElse(product);
+        return ThingModelSnapshot.from(product);
+    }
+
+    private void bumpThingModelVersion(Product product) {
+        product.bumpThingModelVersion();
+        productRepository.save(product);
+    }
+
     private ProductResponse buildProductResponse(Product product) {
         String iconKey = normalizeIconValue(product.getIcon());
         String iconUrl = cosUtil.resolveObjectUrl(iconKey);
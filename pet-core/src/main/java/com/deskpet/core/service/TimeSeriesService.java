@@ -1,5 +1,6 @@
 package com.deskpet.core.service;
 
+import com.deskpet.core.dto.GatewayPresenceChange;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -72,6 +74,25 @@ public class TimeSeriesService {
         }
     }
 
+    /**
+     * 批量写入设备上下线记录（网关批量在线状态通知中的原始记录）
+     */
+    @Async
+    public void writeDeviceSessions(List<GatewayPresenceChange> changes, String gatewayInstanceId) {
+        try {
+            tsJdbc.batchUpdate(
+                "INSERT INTO deskpet_ts.ts_device_session (device_id, online, gateway_instance_id, ip, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                changes.stream()
+                    .map(change -> new Object[]{change.deviceId(), change.online(), gatewayInstanceId, change.ip(),
+                            new Timestamp(change.ts())})
+                    .toList());
+        } catch (Exception e) {
+            log.error("Failed to write device sessions to TimescaleDB: gatewayInstanceId={}, count={}",
+                    gatewayInstanceId, changes.size(), e);
+        }
+    }
+
     /**
      * 写入指令记录
      */
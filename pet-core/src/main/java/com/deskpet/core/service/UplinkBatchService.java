@@ -0,0 +1,70 @@
+package com.deskpet.core.service;
+
+import com.deskpet.core.dto.AckRequest;
+import com.deskpet.core.dto.DeviceEventRequest;
+import com.deskpet.core.dto.DeviceRequestEnvelope;
+import com.deskpet.core.dto.TelemetryRequest;
+import com.deskpet.core.dto.UplinkBatchItem;
+import com.deskpet.core.dto.UplinkBatchResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关批量上行处理：按消息类型分发到遥测、事件、指令回执与设备请求服务。
+ * 单条失败不影响同批其他消息，失败下标回传给网关。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UplinkBatchService {
+    private final TelemetryService telemetryService;
+    private final DeviceEventService deviceEventService;
+    private final CommandService commandService;
+    private final DeviceRequestService deviceRequestService;
+    private final ObjectMapper objectMapper;
+
+    public UplinkBatchResponse ingest(List<UplinkBatchItem> items) {
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            UplinkBatchItem item = items.get(i);
+            try {
+                dispatch(item);
+            } catch (Exception e) {
+                failed.add(i);
+                log.warn("Uplink batch item failed: index={}, type={}, deviceId={}, error={}",
+                        i, item.type(), item.deviceId(), e.getMessage());
+            }
+        }
+        return new UplinkBatchResponse(items.size() - failed.size(), failed);
+    }
+
+    private void dispatch(UplinkBatchItem item) throws JsonProcessingException {
+        if (item.deviceId() == null || item.payload() == null || item.payload().isNull()) {
+            throw new IllegalArgumentException("deviceId and payload are required");
+        }
+        String type = item.type() == null ? "" : item.type();
+        switch (type) {
+            case "telemetry" -> telemetryService.updateLatest(item.deviceId(),
+                    read(item, TelemetryRequest.class).toMap());
+            case "event" -> deviceEventService.recordEvent(item.deviceId(),
+                    read(item, DeviceEventRequest.class));
+            case "ack" -> {
+                AckRequest ack = read(item, AckRequest.class);
+                commandService.handleAck(ack.reqId(), ack);
+            }
+            case "request" -> deviceRequestService.handleRequest(item.deviceId(),
+                    read(item, DeviceRequestEnvelope.class));
+            default -> throw new IllegalArgumentException("unsupported uplink type: " + type);
+        }
+    }
+
+    private <T> T read(UplinkBatchItem item, Class<T> type) throws JsonProcessingException {
+        return objectMapper.treeToValue(item.payload(), type);
+    }
+}
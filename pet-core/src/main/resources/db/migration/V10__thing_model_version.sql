@@ -0,0 +1,3 @@
+-- 物模型版本号：属性、服务、事件每次变更加一，网关据此判断遥测校验快照是否需要刷新
+ALTER TABLE product
+    ADD COLUMN IF NOT EXISTS thing_model_version BIGINT NOT NULL DEFAULT 1;
@@ -1,12 +1,19 @@
 package com.deskpet.core.controller;
 
 import com.deskpet.core.dto.AckRequest;
+import com.deskpet.core.dto.ThingModelSnapshot;
+import com.deskpet.core.dto.UplinkBatchItem;
+import com.deskpet.core.dto.UplinkBatchResponse;
 import com.deskpet.core.error.GlobalExceptionHandler;
+import com.deskpet.core.model.Device;
 import com.deskpet.core.service.CommandService;
 import com.deskpet.core.service.DeviceEventService;
 import com.deskpet.core.service.DeviceRequestService;
 import com.deskpet.core.service.DeviceService;
+import com.deskpet.core.service.GatewayHandoffService;
+import com.deskpet.core.service.ProductService;
 import com.deskpet.core.service.TelemetryService;
+import com.deskpet.core.service.UplinkBatchService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,12 +24,20 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,12 +58,22 @@ class InternalControllerTest {
     @Mock
     private DeviceRequestService deviceRequestService;
 
+    @Mock
+    private UplinkBatchService uplinkBatchService;
+
+    @Mock
+    private GatewayHandoffService gatewayHandoffService;
+
+    @Mock
+    private ProductService productService;
+
     private MockMvc mockMvc;
 
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.standaloneSetup(
-                new InternalController(deviceService, telemetryService, commandService, deviceEventService, deviceRequestService)
+                new InternalController(deviceService, telemetryService, commandService, deviceEventService,
+                        deviceRequestService, uplinkBatchService, gatewayHandoffService, productService)
             )
             .setControllerAdvice(new GlobalExceptionHandler())
             .build();
@@ -81,6 +106,36 @@ class InternalControllerTest {
         assertThat(map.get("extra")).isNotNull();
     }
 
+    @Test
+    void gatewayHandoffAccepted_andDelegated() throws Exception {
+        String body = """
+                {"gatewayInstanceId": "gateway-1", "deviceIds": ["pet-1", "pet-2"], "graceSec": 30}
+                """;
+
+        mockMvc.perform(post("/internal/gateway/handoff")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+            .andExpect(status().isAccepted());
+
+        verify(gatewayHandoffService).begin("gateway-1", List.of("pet-1", "pet-2"), 30);
+    }
+
+    @Test
+    void thingModelSnapshot_returnsNotModifiedForKnownVersion() throws Exception {
+        when(productService.getThingModelSnapshot("deskpet-v1", null)).thenReturn(new ThingModelSnapshot("deskpet-v1", 3,
+                List.of(new ThingModelSnapshot.Property("battery", "int", Map.of("min", 0, "max", 100), true))));
+        when(productService.getThingModelSnapshot("deskpet-v1", 3L)).thenReturn(null);
+
+        mockMvc.perform(get("/internal/thingModel/deskpet-v1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.version").value(3))
+            .andExpect(jsonPath("$.properties[0].identifier").value("battery"))
+            .andExpect(jsonPath("$.properties[0].specs.max").value(100));
+
+        mockMvc.perform(get("/internal/thingModel/deskpet-v1").param("knownVersion", "3"))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     void ackAccepted_andDelegated() throws Exception {
         String body = """
@@ -129,4 +184,39 @@ class InternalControllerTest {
         assertThat(captor.getValue().type()).isEqualTo("getWeather");
         assertThat(captor.getValue().payload()).containsEntry("location", "Shanghai");
     }
+
+    @Test
+    void uplinkBatch_delegatesAndReturnsFailedIndexes() throws Exception {
+        String body = """
+                [
+                  {"type": "telemetry", "deviceId": "pet-1", "payload": {"schemaVersion": 1, "ts": 1710000000}},
+                  {"type": "ack", "deviceId": "pet-2", "payload": {"schemaVersion": 1, "reqId": "req-1", "ok": true}}
+                ]
+                """;
+        when(uplinkBatchService.ingest(any())).thenReturn(new UplinkBatchResponse(1, List.of(1)));
+
+        mockMvc.perform(post("/internal/uplink/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accepted").value(1))
+            .andExpect(jsonPath("$.failed[0]").value(1));
+
+        ArgumentCaptor<List<UplinkBatchItem>> captor = ArgumentCaptor.forClass(List.class);
+        verify(uplinkBatchService).ingest(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(captor.getValue().get(1).deviceId()).isEqualTo("pet-2");
+        assertThat(captor.getValue().get(1).payload().get("reqId").asText()).isEqualTo("req-1");
+    }
+
+    @Test
+    void auth_returnsProductKeyHeaderForGateway() throws Exception {
+        Device device = new Device("pet-1", "hash", "salt", "DP-1", "deskpet-v1", 1L, null, Instant.now());
+        when(deviceService.find("pet-1")).thenReturn(Optional.of(device));
+        when(deviceService.verifySecret(device, "secret")).thenReturn(true);
+
+        mockMvc.perform(get("/internal/auth").param("deviceId", "pet-1").param("secret", "secret"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Product-Key", "deskpet-v1"));
+    }
 }
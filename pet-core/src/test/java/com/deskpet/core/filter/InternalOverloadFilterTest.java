@@ -0,0 +1,46 @@
+package com.deskpet.core.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InternalOverloadFilterTest {
+
+    @Test
+    void rejectsInternalRequestsBeyondLimitWithRetryAfter() throws Exception {
+        InternalOverloadFilter filter = new InternalOverloadFilter(1, 2);
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+        MockHttpServletResponse outer = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/internal/uplink/batch"), outer,
+                (request, response) -> filter.doFilter(new MockHttpServletRequest("GET", "/internal/auth"), nested,
+                        new MockFilterChain()));
+
+        assertThat(outer.getStatus()).isEqualTo(200);
+        assertThat(nested.getStatus()).isEqualTo(429);
+        assertThat(nested.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(nested.getContentAsString()).contains("C0002");
+
+        MockHttpServletResponse after = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/internal/auth"), after, new MockFilterChain());
+        assertThat(after.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ignoresNonInternalPathsAndDisabledLimit() throws Exception {
+        InternalOverloadFilter filter = new InternalOverloadFilter(1, 1);
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/internal/auth"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(new MockHttpServletRequest("GET", "/api/devices"), nested,
+                        new MockFilterChain()));
+        assertThat(nested.getStatus()).isEqualTo(200);
+
+        InternalOverloadFilter disabled = new InternalOverloadFilter(0, 1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        disabled.doFilter(new MockHttpServletRequest("GET", "/internal/auth"), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,151 @@
+package com.deskpet.core.rpc;
+
+import com.deskpet.core.dto.UplinkBatchResponse;
+import com.deskpet.core.service.UplinkBatchService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+class InternalRpcServerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UplinkBatchService uplinkBatchService;
+    private InternalRpcServer server;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        uplinkBatchService = Mockito.mock(UplinkBatchService.class);
+        server = new InternalRpcServer(uplinkBatchService, objectMapper);
+        ReflectionTestUtils.setField(server, "enabled", true);
+        ReflectionTestUtils.setField(server, "port", 0);
+        ReflectionTestUtils.setField(server, "workerThreads", 2);
+        ReflectionTestUtils.setField(server, "maxQueue", 16);
+        ReflectionTestUtils.setField(server, "timeoutMs", 2000L);
+        ReflectionTestUtils.setField(server, "maxFrameBytes", 1024 * 1024);
+        ReflectionTestUtils.setField(server, "internalToken", "secret");
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void hello_withWrongTokenIsRejected() throws IOException {
+        try (FakeGateway gateway = new FakeGateway(server.boundPort())) {
+            gateway.write(RpcFrame.request(1, RpcFrame.OP_HELLO, hello("wrong")));
+
+            assertThat(gateway.read().status()).isEqualTo(401);
+            assertThat(server.available()).isFalse();
+        }
+    }
+
+    @Test
+    void uplinkBatch_isIngestedAfterHello() throws IOException {
+        when(uplinkBatchService.ingest(anyList())).thenReturn(new UplinkBatchResponse(1, List.of()));
+        try (FakeGateway gateway = new FakeGateway(server.boundPort())) {
+            gateway.write(RpcFrame.request(1, RpcFrame.OP_HELLO, hello("secret")));
+            assertThat(gateway.read().status()).isEqualTo(200);
+
+            byte[] batch = "[{\"type\":\"telemetry\",\"deviceId\":\"pet-1\",\"payload\":{\"battery\":0.5}}]"
+                    .getBytes(StandardCharsets.UTF_8);
+            gateway.write(RpcFrame.request(7, RpcFrame.OP_UPLINK_BATCH, batch));
+            RpcFrame reply = gateway.read();
+
+            assertThat(reply.id()).isEqualTo(7);
+            assertThat(reply.status()).isEqualTo(200);
+            assertThat(objectMapper.readTree(reply.body()).path("accepted").asInt()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void call_roundTripsThroughConnectedGateway() throws Exception {
+        assertThat(server.call(RpcFrame.OP_COMMAND_SEND, new byte[0])).isNull();
+        try (FakeGateway gateway = new FakeGateway(server.boundPort())) {
+            gateway.write(RpcFrame.request(1, RpcFrame.OP_HELLO, hello("secret")));
+            assertThat(gateway.read().status()).isEqualTo(200);
+
+            CompletableFuture<RpcFrame> call = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return server.call(RpcFrame.OP_COMMAND_SEND, "{\"deviceId\":\"pet-1\"}".getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            RpcFrame request = gateway.read();
+            assertThat(request.isRequest()).isTrue();
+            assertThat(request.op()).isEqualTo(RpcFrame.OP_COMMAND_SEND);
+            gateway.write(RpcFrame.response(request.id(), request.op(), 409,
+                    "{\"ok\":false,\"reason\":\"OFFLINE\"}".getBytes(StandardCharsets.UTF_8)));
+
+            RpcFrame reply = call.get(2, TimeUnit.SECONDS);
+            assertThat(reply.status()).isEqualTo(409);
+            assertThat(new String(reply.body(), StandardCharsets.UTF_8)).contains("OFFLINE");
+        }
+    }
+
+    private byte[] hello(String token) throws IOException {
+        return objectMapper.writeValueAsBytes(Map.of("token", token, "instanceId", "gateway-test"));
+    }
+
+    /**
+     * 按帧格式直接读写 socket 的网关替身。
+     */
+    private static final class FakeGateway implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private FakeGateway(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(2000);
+            in = new DataInputStream(socket.getInputStream());
+            out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        private void write(RpcFrame frame) throws IOException {
+            byte[] body = frame.body() == null ? new byte[0] : frame.body();
+            out.writeInt(RpcFrame.HEADER_BYTES + body.length);
+            out.writeByte(frame.type());
+            out.writeInt(frame.id());
+            out.writeByte(frame.op());
+            out.writeShort(frame.status());
+            out.write(body);
+            out.flush();
+        }
+
+        private RpcFrame read() throws IOException {
+            int length = in.readInt();
+            byte type = in.readByte();
+            int id = in.readInt();
+            byte op = in.readByte();
+            int status = in.readUnsignedShort();
+            byte[] body = new byte[length - RpcFrame.HEADER_BYTES];
+            in.readFully(body);
+            return new RpcFrame(type, id, op, status, body);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -1,25 +1,42 @@
 package com.deskpet.core.service;
 
 import com.deskpet.core.dto.DeviceResponse;
+import com.deskpet.core.dto.GatewayActivityBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceChange;
+import com.deskpet.core.error.BusinessException;
 import com.deskpet.core.model.Device;
+import com.deskpet.core.model.DeviceSession;
 import com.deskpet.core.model.Product;
 import com.deskpet.core.repository.DeviceRepository;
 import com.deskpet.core.repository.DeviceSessionRepository;
 import com.deskpet.core.repository.ProductRepository;
 import com.deskpet.core.repository.TelemetryLatestRepository;
+import com.deskpet.core.security.SecretHash;
 import com.deskpet.core.security.SecretHasher;
 import com.deskpet.core.util.CosUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +54,12 @@ class DeviceServiceTest {
     private CosUtil cosUtil;
     @Mock
     private SecretHasher secretHasher;
+    @Mock
+    private GatewayClient gatewayClient;
+    @Mock
+    private TimeSeriesService timeSeriesService;
+    @Mock
+    private WebSocketPushService webSocketPushService;
 
     private DeviceService deviceService;
 
@@ -50,6 +73,39 @@ class DeviceServiceTest {
                 cosUtil,
                 secretHasher
         );
+        deviceService.setGatewayClient(gatewayClient);
+    }
+
+    @Test
+    void register_invalidatesGatewayCredentialCache() {
+        when(secretHasher.hash("secret")).thenReturn(new SecretHash("hash", "salt"));
+        when(deviceRepository.save(any(Device.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        deviceService.register("pet-001", "secret", "deskpet", "deskpet-v1", null, 10L);
+
+        verify(gatewayClient).invalidateCredentials(List.of("pet-001"));
+    }
+
+    @Test
+    void register_inTransaction_invalidatesOnceAfterCommit() {
+        when(secretHasher.hash("secret")).thenReturn(new SecretHash("hash", "salt"));
+        when(deviceRepository.save(any(Device.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            deviceService.register("pet-001", "secret", "deskpet", "deskpet-v1", null, 10L);
+            deviceService.register("pet-002", "secret", "deskpet", "deskpet-v1", null, 10L);
+            verify(gatewayClient, never()).invalidateCredentials(anyCollection());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(gatewayClient).invalidateCredentials(Set.of("pet-001", "pet-002"));
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
     }
 
     @Test
@@ -90,4 +146,75 @@ class DeviceServiceTest {
         assertThat(responses.get(0).productIcon()).isNull();
         assertThat(responses.get(0).productKey()).isEqualTo("deskpet-v1");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void applyPresenceBatch_savesNetChangesAndWritesHistoryOnce() {
+        deviceService.setTimeSeriesService(timeSeriesService);
+        deviceService.setWebSocketPushService(webSocketPushService);
+        List<GatewayPresenceChange> history = List.of(
+                new GatewayPresenceChange("pet-001", false, "10.0.0.1", 1_000),
+                new GatewayPresenceChange("pet-001", true, "10.0.0.2", 2_000),
+                new GatewayPresenceChange("pet-002", false, "10.0.0.3", 3_000));
+        GatewayPresenceBatchRequest request = new GatewayPresenceBatchRequest("gateway-1",
+                List.of(new GatewayPresenceChange("pet-002", false, "10.0.0.3", 3_000)), history);
+
+        int updated = deviceService.applyPresenceBatch(request);
+
+        assertThat(updated).isEqualTo(1);
+        verify(timeSeriesService).writeDeviceSessions(history, "gateway-1");
+        ArgumentCaptor<List<DeviceSession>> saved = ArgumentCaptor.forClass(List.class);
+        verify(sessionRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).singleElement().satisfies(session -> {
+            assertThat(session.deviceId()).isEqualTo("pet-002");
+            assertThat(session.online()).isFalse();
+            assertThat(session.lastSeen()).isEqualTo(Instant.ofEpochMilli(3_000));
+        });
+        verify(webSocketPushService).pushPresence("pet-002", false);
+    }
+
+    @Test
+    void applyPresenceBatch_skipsDelayedOfflineAfterReconnect() {
+        deviceService.setWebSocketPushService(webSocketPushService);
+        when(sessionRepository.findAllById(List.of("pet-001", "pet-002", "pet-003"))).thenReturn(List.of(
+                new DeviceSession("pet-001", true, "gateway-2", "10.0.0.9", Instant.ofEpochMilli(1_500)),
+                new DeviceSession("pet-002", true, "gateway-1", "10.0.0.2", Instant.ofEpochMilli(500)),
+                new DeviceSession("pet-003", true, "gateway-1", "10.0.0.3", Instant.ofEpochMilli(9_000))));
+        GatewayPresenceBatchRequest request = new GatewayPresenceBatchRequest("gateway-1", List.of(
+                new GatewayPresenceChange("pet-001", false, "10.0.0.1", 1_000),
+                new GatewayPresenceChange("pet-002", false, "10.0.0.2", 3_000),
+                new GatewayPresenceChange("pet-003", false, "10.0.0.3", 4_000)), List.of());
+
+        int updated = deviceService.applyPresenceBatch(request);
+
+        assertThat(updated).isEqualTo(1);
+        ArgumentCaptor<List<DeviceSession>> saved = ArgumentCaptor.forClass(List.class);
+        verify(sessionRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).singleElement()
+                .satisfies(session -> assertThat(session.deviceId()).isEqualTo("pet-002"));
+        verify(webSocketPushService).pushPresence("pet-002", false);
+        verifyNoMoreInteractions(webSocketPushService);
+    }
+
+    @Test
+    void applyActivityBatch_advancesLastSeenInOneStatementKeepingLatestPerDevice() {
+        when(sessionRepository.advanceLastSeen(
+                new String[]{"pet-001", "pet-002"}, new Long[]{5_000L, 4_000L})).thenReturn(2);
+        GatewayActivityBatchRequest request = new GatewayActivityBatchRequest("gateway-1",
+                List.of("pet-001", "pet-002", "pet-001"), List.of(1_000L, 4_000L, 5_000L));
+
+        int updated = deviceService.applyActivityBatch(request);
+
+        assertThat(updated).isEqualTo(2);
+        verify(sessionRepository).advanceLastSeen(new String[]{"pet-001", "pet-002"}, new Long[]{5_000L, 4_000L});
+    }
+
+    @Test
+    void applyActivityBatch_rejectsMismatchedArrays() {
+        GatewayActivityBatchRequest request = new GatewayActivityBatchRequest("gateway-1",
+                List.of("pet-001", "pet-002"), List.of(1_000L));
+
+        assertThatThrownBy(() -> deviceService.applyActivityBatch(request)).isInstanceOf(BusinessException.class);
+        verifyNoInteractions(sessionRepository);
+    }
 }
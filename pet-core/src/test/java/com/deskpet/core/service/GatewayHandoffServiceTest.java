@@ -0,0 +1,70 @@
+package com.deskpet.core.service;
+
+import com.deskpet.core.dto.GatewayPresenceBatchRequest;
+import com.deskpet.core.dto.GatewayPresenceChange;
+import com.deskpet.core.model.DeviceSession;
+import com.deskpet.core.repository.DeviceSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GatewayHandoffServiceTest {
+
+    @Mock
+    private DeviceSessionRepository sessionRepository;
+    @Mock
+    private DeviceService deviceService;
+
+    @Test
+    void expireHandoffs_offlinesOnlyDevicesStillOnDrainedGateway() {
+        GatewayHandoffService service = new GatewayHandoffService(sessionRepository, deviceService);
+        service.begin("gateway-1", List.of("pet-1", "pet-2"), 0);
+        DeviceSession stale = new DeviceSession("pet-1", true, "gateway-1", "10.0.0.1", Instant.now());
+        DeviceSession moved = new DeviceSession("pet-2", true, "gateway-2", "10.0.0.2", Instant.now());
+        when(sessionRepository.findAllById(anyIterable())).thenReturn(List.of(stale, moved));
+
+        service.expireHandoffs();
+
+        verify(deviceService).markOfflineBulk("gateway-1", List.of(stale));
+        assertThat(service.pendingCount()).isZero();
+    }
+
+    @Test
+    void expireHandoffs_keepsDevicesThatReconnectedToSameInstance() {
+        GatewayHandoffService service = new GatewayHandoffService(sessionRepository, deviceService);
+        service.begin("gateway-1", List.of("pet-1", "pet-2"), 0);
+        long reconnectedAt = System.currentTimeMillis();
+        // 网关重启后仍以 gateway-1 上报：pet-1 经净变化、pet-2 只出现在原始记录中
+        service.onPresenceBatch(new GatewayPresenceBatchRequest("gateway-1",
+                List.of(new GatewayPresenceChange("pet-1", true, "10.0.0.1", reconnectedAt)),
+                List.of(new GatewayPresenceChange("pet-2", false, "10.0.0.2", reconnectedAt),
+                        new GatewayPresenceChange("pet-2", true, "10.0.0.2", reconnectedAt))));
+
+        service.expireHandoffs();
+
+        assertThat(service.pendingCount()).isZero();
+        verifyNoInteractions(sessionRepository, deviceService);
+    }
+
+    @Test
+    void onOnline_ignoresPresenceOlderThanHandoff() {
+        GatewayHandoffService service = new GatewayHandoffService(sessionRepository, deviceService);
+        long before = System.currentTimeMillis() - 1_000;
+        service.begin("gateway-1", List.of("pet-1"), 60);
+
+        service.onOnline("pet-1", before);
+
+        assertThat(service.pendingCount()).isEqualTo(1);
+    }
+}
@@ -1,9 +1,12 @@
 package com.deskpet.core.service;
 
 import com.deskpet.core.dto.ProductCreateRequest;
+import com.deskpet.core.dto.PropertyCreateRequest;
 import com.deskpet.core.dto.ProductResponse;
 import com.deskpet.core.dto.ProductUpdateRequest;
+import com.deskpet.core.dto.ThingModelSnapshot;
 import com.deskpet.core.model.Product;
+import com.deskpet.core.model.ThingModelProperty;
 import com.deskpet.core.repository.ProductRepository;
 import com.deskpet.core.repository.ThingModelEventRepository;
 import com.deskpet.core.repository.ThingModelPropertyRepository;
@@ -17,9 +20,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -102,4 +107,32 @@ class ProductServiceTest {
         assertEquals("product-icons/new.png", response.iconKey());
         assertEquals("DEPRECATED", response.status());
     }
+
+    @Test
+    void addProperty_bumpsThingModelVersionAndSnapshotFollowsIt() {
+        Product product = Product.builder()
+            .id(1L)
+            .productKey("deskpet-v2")
+            .name("桌宠 V2")
+            .build();
+        when(productRepository.findByProductKey("deskpet-v2")).thenReturn(Optional.of(product));
+        when(propertyRepository.save(any(ThingModelProperty.class))).thenAnswer(invocation -> {
+            ThingModelProperty property = invocation.getArgument(0);
+            product.getProperties().add(property);
+            return property;
+        });
+
+        productService.addProperty("deskpet-v2", new PropertyCreateRequest(
+            "battery", "电量", "int", Map.of("min", 0, "max", 100), "r", true, null, 1));
+
+        assertEquals(2L, product.getThingModelVersion());
+        verify(productRepository).save(product);
+        assertNull(productService.getThingModelSnapshot("deskpet-v2", 2L));
+
+        when(productRepository.findByIdWithProperties(1L)).thenReturn(Optional.of(product));
+        ThingModelSnapshot snapshot = productService.getThingModelSnapshot("deskpet-v2", 1L);
+        assertEquals(2L, snapshot.version());
+        assertEquals("battery", snapshot.properties().get(0).identifier());
+        assertEquals(100, snapshot.properties().get(0).specs().get("max"));
+    }
 }
@@ -0,0 +1,83 @@
+package com.deskpet.core.service;
+
+import com.deskpet.core.dto.AckRequest;
+import com.deskpet.core.dto.DeviceEventRequest;
+import com.deskpet.core.dto.UplinkBatchItem;
+import com.deskpet.core.dto.UplinkBatchResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+class UplinkBatchServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TelemetryService telemetryService;
+    private DeviceEventService deviceEventService;
+    private CommandService commandService;
+    private DeviceRequestService deviceRequestService;
+    private UplinkBatchService uplinkBatchService;
+
+    @BeforeEach
+    void setUp() {
+        telemetryService = Mockito.mock(TelemetryService.class);
+        deviceEventService = Mockito.mock(DeviceEventService.class);
+        commandService = Mockito.mock(CommandService.class);
+        deviceRequestService = Mockito.mock(DeviceRequestService.class);
+        uplinkBatchService = new UplinkBatchService(telemetryService, deviceEventService, commandService,
+                deviceRequestService, objectMapper);
+    }
+
+    @Test
+    void ingest_fansOutByType() {
+        UplinkBatchResponse response = uplinkBatchService.ingest(List.of(
+                item("telemetry", "pet-1", Map.of("schemaVersion", 1, "ts", 1710000000, "battery", 0.5)),
+                item("event", "pet-2", Map.of("eventId", "collision", "eventType", "alert")),
+                item("ack", "pet-3", Map.of("schemaVersion", 1, "reqId", "req-1", "ok", true))
+        ));
+
+        assertThat(response.accepted()).isEqualTo(3);
+        assertThat(response.failed()).isEmpty();
+        ArgumentCaptor<Map<String, Object>> telemetry = ArgumentCaptor.forClass(Map.class);
+        verify(telemetryService).updateLatest(eq("pet-1"), telemetry.capture());
+        assertThat(telemetry.getValue()).containsEntry("battery", 0.5);
+        ArgumentCaptor<DeviceEventRequest> event = ArgumentCaptor.forClass(DeviceEventRequest.class);
+        verify(deviceEventService).recordEvent(eq("pet-2"), event.capture());
+        assertThat(event.getValue().eventId()).isEqualTo("collision");
+        ArgumentCaptor<AckRequest> ack = ArgumentCaptor.forClass(AckRequest.class);
+        verify(commandService).handleAck(eq("req-1"), ack.capture());
+        assertThat(ack.getValue().ok()).isTrue();
+    }
+
+    @Test
+    void ingest_isolatesFailedItems() {
+        doThrow(new IllegalStateException("db down")).when(telemetryService).updateLatest(eq("pet-2"), anyMap());
+
+        UplinkBatchResponse response = uplinkBatchService.ingest(List.of(
+                item("telemetry", "pet-1", Map.of("schemaVersion", 1, "ts", 1)),
+                item("telemetry", "pet-2", Map.of("schemaVersion", 1, "ts", 2)),
+                item("unknown", "pet-3", Map.of()),
+                new UplinkBatchItem("telemetry", "pet-4", null),
+                item("telemetry", "pet-5", Map.of("schemaVersion", 1, "ts", 5))
+        ));
+
+        assertThat(response.accepted()).isEqualTo(2);
+        assertThat(response.failed()).containsExactly(1, 2, 3);
+        verify(telemetryService).updateLatest(eq("pet-5"), anyMap());
+    }
+
+    private UplinkBatchItem item(String type, String deviceId, Map<String, Object> payload) {
+        return new UplinkBatchItem(type, deviceId, objectMapper.valueToTree(payload));
+    }
+}